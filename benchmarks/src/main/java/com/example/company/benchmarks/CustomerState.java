@@ -0,0 +1,55 @@
+package com.example.company.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The customers making requests from a single benchmark thread. Their emails
+ * are created up front, so building them doesn't show up in the results.
+ */
+@State(Scope.Thread)
+public class CustomerState {
+
+    /**
+     * The number of customers per thread (a power of 2).
+     */
+    private static final int NUM_CUSTOMERS = 4096;
+    /**
+     * The index of the next benchmark thread, to give each thread its own
+     * customers.
+     */
+    private static final AtomicInteger NEXT_THREAD = new AtomicInteger(0);
+
+    /**
+     * The emails of the thread's customers.
+     */
+    private final String[] emails = new String[NUM_CUSTOMERS];
+    /**
+     * The index of the last customer that made a request.
+     */
+    private int customer = 0;
+
+    /**
+     * Creates the emails of the thread's customers.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        final int thread = NEXT_THREAD.getAndIncrement();
+        for (int i = 0; i < NUM_CUSTOMERS; i++) {
+            emails[i] = "customer-" + thread + "-" + i + "@email.com";
+        }
+    }
+
+    /**
+     * @return The email of the next customer to make a request. Customers are
+     *     reused once every customer has made a request.
+     */
+    public String nextEmail() {
+        customer = (customer + 1) & (NUM_CUSTOMERS - 1);
+        return emails[customer];
+    }
+}
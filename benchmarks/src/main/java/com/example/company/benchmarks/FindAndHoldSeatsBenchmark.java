@@ -0,0 +1,59 @@
+package com.example.company.benchmarks;
+
+import com.example.company.Venue;
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures holding seats with every seating preference.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindAndHoldSeatsBenchmark {
+
+    /**
+     * The number of seats held by every request.
+     */
+    @Param({"1", "4", "16"})
+    public int groupSize;
+    /**
+     * The seating preference of every request (every preference, by
+     * default).
+     */
+    @Param
+    public SeatingPreference preference;
+
+    /**
+     * @param venue The venue to hold seats in
+     * @param customer The customers of the benchmark thread
+     * @return The SeatHold, or null if the venue was full
+     */
+    @Benchmark
+    public SeatHold<Integer> findAndHoldSeats(final VenueState venue,
+        final CustomerState customer) {
+        final Venue currentVenue = venue.get();
+        SeatHold<Integer> seatHold = currentVenue.findAndHoldSeats(groupSize,
+            customer.nextEmail(), preference);
+        if (seatHold == null) {
+            venue.replace(currentVenue);
+        }
+        return seatHold;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.company.benchmarks;
+
+import com.example.company.Venue;
+import com.example.company.VenueLayout;
+import com.example.company.struct.SeatingPreference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filling a venue with seat holds and waiting for all of them to
+ * expire. Holds expire after a single millisecond, so the time is dominated by
+ * holding the seats, then releasing them in batches as the hold timer ticks.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Thread)
+public class HoldExpirationBenchmark {
+
+    /**
+     * The number of seats in every row of the venue.
+     */
+    private static final int SEATS_PER_ROW = 100;
+
+    /**
+     * The total number of seats in the venue.
+     */
+    @Param({"100", "10000", "100000"})
+    public int venueSeats;
+    /**
+     * The number of seats held by every customer.
+     */
+    @Param({"1", "4", "16"})
+    public int groupSize;
+
+    /**
+     * The emails of the customers holding seats.
+     */
+    private String[] emails;
+    /**
+     * A fresh venue for every invocation.
+     */
+    private Venue venue;
+
+    /**
+     * Creates the emails of the customers.
+     */
+    @Setup(Level.Trial)
+    public void setUpCustomers() {
+        emails = new String[venueSeats / groupSize + 1];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = "customer-" + i + "@email.com";
+        }
+    }
+
+    /**
+     * Creates an empty venue.
+     */
+    @Setup(Level.Invocation)
+    public void setUpVenue() {
+        final int seatsPerRow = Math.min(SEATS_PER_ROW, venueSeats);
+        venue = new Venue(VenueLayout.rectangular(seatsPerRow,
+            venueSeats / seatsPerRow));
+        venue.setSeatHoldExpiration(1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the venue, stopping the thread of its hold timer.
+     *
+     * @throws IOException If the venue could not be closed
+     */
+    @TearDown(Level.Invocation)
+    public void tearDownVenue() throws IOException {
+        venue.close();
+    }
+
+    /**
+     * @return The number of holds that expired
+     */
+    @Benchmark
+    public int holdUntilFullThenExpire() {
+        final int capacity = venue.numSeatsAvailable();
+        int holds = 0;
+        while (holds < emails.length && venue.findAndHoldSeats(groupSize,
+            emails[holds], SeatingPreference.CLOSEST_TO_BACK) != null) {
+            holds++;
+        }
+        while (venue.numSeatsAvailable() != capacity) {
+            Thread.onSpinWait();
+        }
+        return holds;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.company.benchmarks;
+
+import com.example.company.Venue;
+import com.example.company.VenueLayout;
+import com.example.company.VenueSnapshot;
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a half-sold venue to a snapshot file, and restoring a venue
+ * from it. Sold seats are reserved in groups of four, scattered across the
+ * venue, so the snapshot has many reservations with a few runs each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    /**
+     * The number of seats in every row of the venue.
+     */
+    private static final int SEATS_PER_ROW = 100;
+    /**
+     * The number of seats reserved by every customer.
+     */
+    private static final int GROUP_SIZE = 4;
+
+    /**
+     * The total number of seats in the venue.
+     */
+    @Param({"10000", "100000"})
+    public int venueSeats;
+
+    /**
+     * The half-sold venue.
+     */
+    private Venue venue;
+    /**
+     * The file the venue's snapshot is written to.
+     */
+    private Path file;
+
+    /**
+     * Sells half of the venue's seats, and writes its snapshot.
+     *
+     * @throws IOException If the snapshot could not be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        venue = new Venue(VenueLayout.rectangular(SEATS_PER_ROW,
+            venueSeats / SEATS_PER_ROW).withSectionsOf(10));
+        for (int customer = 0; customer < venueSeats / GROUP_SIZE / 2;
+            customer++) {
+            final String email = "customer-" + customer + "@email.com";
+            SeatHold<Integer> seatHold = venue.findAndHoldSeats(GROUP_SIZE,
+                email, SeatingPreference.NONE);
+            venue.reserveSeats(seatHold.getId(), email);
+        }
+        file = Files.createTempFile("venue", ".snapshot");
+        venue.snapshot().write(file);
+    }
+
+    /**
+     * Deletes the snapshot file.
+     *
+     * @throws IOException If the file could not be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * @return The restored venue
+     * @throws IOException If the snapshot could not be read
+     */
+    @Benchmark
+    public Venue restore() throws IOException {
+        return new Venue(VenueSnapshot.read(file));
+    }
+
+    /**
+     * @throws IOException If the snapshot could not be written
+     */
+    @Benchmark
+    public void snapshot() throws IOException {
+        venue.snapshot().write(file);
+    }
+}
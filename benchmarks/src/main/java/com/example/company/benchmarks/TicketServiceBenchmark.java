@@ -0,0 +1,75 @@
+package com.example.company.benchmarks;
+
+import com.example.company.Venue;
+import com.example.company.struct.SeatHold;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reserving seats and counting the available seats, with the venue's
+ * default seating preference.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TicketServiceBenchmark {
+
+    /**
+     * The number of seats held before they are reserved.
+     */
+    @Param({"1", "4", "16"})
+    public int groupSize;
+
+    /**
+     * @param venue The venue to reserve seats in
+     * @param customer The customers of the benchmark thread
+     * @return The confirmation code, or null if the venue was full
+     */
+    @Benchmark
+    public String holdThenReserveSeats(final VenueState venue,
+        final CustomerState customer) {
+        final Venue currentVenue = venue.get();
+        final String email = customer.nextEmail();
+        SeatHold<Integer> seatHold = currentVenue.findAndHoldSeats(groupSize,
+            email);
+        if (seatHold == null) {
+            venue.replace(currentVenue);
+            return null;
+        }
+        return currentVenue.reserveSeats(seatHold.getId(), email);
+    }
+
+    /**
+     * @param venue The venue to reserve seats in
+     * @param customer The customers of the benchmark thread
+     * @return Null, since the customer has no SeatHold
+     */
+    @Benchmark
+    public String reserveSeatsWithoutHold(final VenueState venue,
+        final CustomerState customer) {
+        return venue.get().reserveSeats(0, customer.nextEmail());
+    }
+
+    /**
+     * @param venue The venue to count the seats of
+     * @return The number of seats available
+     */
+    @Benchmark
+    public int numSeatsAvailable(final VenueState venue) {
+        return venue.get().numSeatsAvailable();
+    }
+}
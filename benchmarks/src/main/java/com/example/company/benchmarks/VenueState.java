@@ -0,0 +1,127 @@
+package com.example.company.benchmarks;
+
+import com.example.company.TimingWheel;
+import com.example.company.Venue;
+import com.example.company.VenueLayout;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A venue shared by every benchmark thread, with part of its seats already
+ * taken before each iteration.
+ *
+ * <p>Held seats are released after a short time so the venue reaches a steady
+ * state, and the number of pending holds stays bounded. If a hold still fails
+ * because the venue is full, the venue is replaced with a fresh one. The taken
+ * seats are marked unavailable in the venue's layout rather than held, so
+ * replacing the venue is cheap (well under a millisecond for 100k seats).
+ * Every venue expires its holds on the same timer, so replacing one doesn't
+ * start another timer thread.
+ */
+@State(Scope.Benchmark)
+public class VenueState {
+
+    /**
+     * The number of seats in every row of the venue.
+     */
+    private static final int SEATS_PER_ROW = 100;
+    /**
+     * The amount of time in milliseconds before held seats are released.
+     */
+    private static final long SEAT_HOLD_EXPIRATION_MILLIS = 100;
+
+    /**
+     * The total number of seats in the venue.
+     */
+    @Param({"100", "10000", "100000"})
+    public int venueSeats;
+    /**
+     * The percentage of the venue's seats (from the back) that are taken
+     * before each iteration.
+     */
+    @Param({"0", "50", "90"})
+    public int fillPercent;
+
+    /**
+     * The venue currently being benchmarked.
+     */
+    private final AtomicReference<Venue> venue = new AtomicReference<>();
+    /**
+     * The layout of the venue, with the taken seats marked unavailable.
+     */
+    private VenueLayout layout;
+    /**
+     * The timer every venue expires its holds on.
+     */
+    private TimingWheel holdTimer;
+
+    /**
+     * Creates the layout of the venue, and the timer of its holds.
+     */
+    @Setup(Level.Trial)
+    public void setUpLayout() {
+        holdTimer = new TimingWheel();
+        final int seatsPerRow = Math.min(SEATS_PER_ROW, venueSeats);
+        final int takenSeats = venueSeats * fillPercent / 100;
+        boolean[][] seats = new boolean[venueSeats / seatsPerRow][seatsPerRow];
+        for (int row = 0; row < seats.length; row++) {
+            for (int column = 0; column < seatsPerRow; column++) {
+                seats[row][column] = row * seatsPerRow + column >= takenSeats;
+            }
+        }
+        layout = VenueLayout.fromConfiguration(seats);
+    }
+
+    /**
+     * Stops the timer of the venues' holds.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        holdTimer.close();
+    }
+
+    /**
+     * Creates a fresh venue for each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        venue.set(newVenue());
+    }
+
+    /**
+     * @return The venue currently being benchmarked
+     */
+    public Venue get() {
+        return venue.get();
+    }
+
+    /**
+     * Replaces a full venue with a fresh one, unless another thread already
+     * has.
+     *
+     * @param fullVenue The venue that is full
+     */
+    public void replace(final Venue fullVenue) {
+        if (venue.get() == fullVenue) {
+            venue.compareAndSet(fullVenue, newVenue());
+        }
+    }
+
+    /**
+     * @return A venue with fillPercent of its seats taken
+     */
+    private Venue newVenue() {
+        Venue newVenue = new Venue(layout, null, holdTimer);
+        newVenue.setSeatHoldExpiration(SEAT_HOLD_EXPIRATION_MILLIS,
+            TimeUnit.MILLISECONDS);
+        return newVenue;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.company;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct ByteBuffers of a fixed size, so connections reuse the
+ * buffers of closed connections instead of allocating (and eventually
+ * freeing) direct memory for every connection.
+ */
+final class BufferPool {
+
+    /**
+     * The size of every buffer.
+     */
+    private final int bufferSize;
+    /**
+     * The most buffers kept in the pool.
+     */
+    private final int maxPooled;
+    /**
+     * The buffers that aren't in use.
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers =
+        new ConcurrentLinkedQueue<>();
+    /**
+     * The number of buffers in the pool.
+     */
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param size The size of every buffer
+     * @param maxBuffers The most buffers kept in the pool (any more are left
+     *     to the garbage collector)
+     */
+    BufferPool(final int size, final int maxBuffers) {
+        bufferSize = size;
+        maxPooled = maxBuffers;
+    }
+
+    /**
+     * @return A cleared buffer, from the pool if it isn't empty
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * @param buffer A buffer acquired from the pool, which must not be used
+     *     afterwards
+     */
+    void release(final ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            buffer.clear();
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return The number of buffers in the pool
+     */
+    int size() {
+        return pooled.get();
+    }
+}
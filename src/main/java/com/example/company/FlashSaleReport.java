@@ -0,0 +1,250 @@
+package com.example.company;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The results of a run of a {@link FlashSaleSimulator}: how many customers
+ * held and reserved seats, how fast, and why the others failed.
+ */
+public final class FlashSaleReport {
+
+    /**
+     * Why a customer's attempt to hold or reserve seats failed.
+     */
+    public enum FailureReason {
+        /**
+         * The hold failed, and no seats were left at all.
+         */
+        SOLD_OUT,
+        /**
+         * The hold failed, and fewer seats were left than the customer
+         * asked for.
+         */
+        NOT_ENOUGH_SEATS,
+        /**
+         * The hold failed even though enough seats seemed to be left (e.g.
+         * other customers held them first).
+         */
+        HOLD_REJECTED,
+        /**
+         * The customer was turned away before holding (e.g. by a full
+         * WaitingRoom).
+         */
+        TURNED_AWAY,
+        /**
+         * The reservation failed (e.g. the hold expired while the customer
+         * was deciding).
+         */
+        RESERVATION_REJECTED,
+        /**
+         * The service threw an exception.
+         */
+        ERROR
+    }
+
+    /**
+     * The number of customers who arrived.
+     */
+    private final long customers;
+    /**
+     * The time from the first arrival until the last customer left, in
+     * nanoseconds.
+     */
+    private final long durationNanos;
+    /**
+     * The time from the first arrival until no seats were left to hold for
+     * the first time, in nanoseconds, or -1 if seats were always left.
+     */
+    private final long sellOutNanos;
+    /**
+     * The number of holds that succeeded.
+     */
+    private final long holds;
+    /**
+     * The number of reservations that succeeded.
+     */
+    private final long reservations;
+    /**
+     * The number of seats reserved.
+     */
+    private final long seatsReserved;
+    /**
+     * The number of holds left to expire.
+     */
+    private final long abandonedHolds;
+    /**
+     * The number of customers who gave up after running out of attempts.
+     */
+    private final long customersGaveUp;
+    /**
+     * The number of failed attempts, by reason.
+     */
+    private final Map<FailureReason, Long> failures;
+    /**
+     * The latency of every hold, whether it succeeded or not.
+     */
+    private final LatencySnapshot holdLatency;
+    /**
+     * The latency of every reservation, whether it succeeded or not.
+     */
+    private final LatencySnapshot reserveLatency;
+
+    /**
+     * @param numCustomers The number of customers who arrived
+     * @param duration The length of the run, in nanoseconds
+     * @param sellOut The time until no seats were left, in nanoseconds, or
+     *     -1
+     * @param numHolds The number of holds that succeeded
+     * @param numReservations The number of reservations that succeeded
+     * @param numSeatsReserved The number of seats reserved
+     * @param numAbandoned The number of holds left to expire
+     * @param numGaveUp The number of customers who ran out of attempts
+     * @param failureCounts The number of failed attempts, by reason. Used as
+     *     it is, not copied.
+     * @param holdLatencies The latency of every hold
+     * @param reserveLatencies The latency of every reservation
+     */
+    FlashSaleReport(final long numCustomers, final long duration,
+        final long sellOut, final long numHolds, final long numReservations,
+        final long numSeatsReserved, final long numAbandoned,
+        final long numGaveUp, final EnumMap<FailureReason, Long> failureCounts,
+        final LatencySnapshot holdLatencies,
+        final LatencySnapshot reserveLatencies) {
+        customers = numCustomers;
+        durationNanos = duration;
+        sellOutNanos = sellOut;
+        holds = numHolds;
+        reservations = numReservations;
+        seatsReserved = numSeatsReserved;
+        abandonedHolds = numAbandoned;
+        customersGaveUp = numGaveUp;
+        failures = failureCounts;
+        holdLatency = holdLatencies;
+        reserveLatency = reserveLatencies;
+    }
+
+    /**
+     * @return The number of customers who arrived
+     */
+    public long getCustomers() {
+        return customers;
+    }
+
+    /**
+     * @param unit The unit of the duration
+     * @return The time from the first arrival until the last customer left
+     */
+    public long getDuration(final TimeUnit unit) {
+        return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit The unit of the time
+     * @return The time from the first arrival until every seat was held or
+     *     reserved for the first time, or -1 if seats were always left
+     */
+    public long getTimeToSellOut(final TimeUnit unit) {
+        return sellOutNanos < 0
+            ? -1 : unit.convert(sellOutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of holds that succeeded
+     */
+    public long getHolds() {
+        return holds;
+    }
+
+    /**
+     * @return The number of holds that succeeded per second of the run
+     */
+    public double getHoldsPerSecond() {
+        return durationNanos > 0
+            ? holds * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos
+            : 0;
+    }
+
+    /**
+     * @return The number of hold attempts, whether they succeeded or not
+     */
+    public long getHoldAttempts() {
+        return holdLatency.getCount();
+    }
+
+    /**
+     * @return The number of reservations that succeeded
+     */
+    public long getReservations() {
+        return reservations;
+    }
+
+    /**
+     * @return The number of seats reserved
+     */
+    public long getSeatsReserved() {
+        return seatsReserved;
+    }
+
+    /**
+     * @return The number of holds customers left to expire
+     */
+    public long getAbandonedHolds() {
+        return abandonedHolds;
+    }
+
+    /**
+     * @return The number of customers who ran out of attempts without
+     *     reserving (or abandoning) a hold
+     */
+    public long getCustomersGaveUp() {
+        return customersGaveUp;
+    }
+
+    /**
+     * @param reason A reason attempts fail
+     * @return The number of attempts that failed for that reason
+     */
+    public long getFailures(final FailureReason reason) {
+        return failures.getOrDefault(reason, 0L);
+    }
+
+    /**
+     * @return The latency of every hold, whether it succeeded or not
+     */
+    public LatencySnapshot getHoldLatency() {
+        return holdLatency;
+    }
+
+    /**
+     * @return The latency of every reservation, whether it succeeded or not
+     */
+    public LatencySnapshot getReserveLatency() {
+        return reserveLatency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder()
+            .append("customers=").append(customers)
+            .append(" duration=").append(getDuration(TimeUnit.MILLISECONDS))
+            .append("ms sellOut=")
+            .append(sellOutNanos < 0
+                ? "never" : getTimeToSellOut(TimeUnit.MILLISECONDS) + "ms")
+            .append('\n')
+            .append("holds=").append(holds)
+            .append(String.format(" (%.1f/s)", getHoldsPerSecond()))
+            .append(" reservations=").append(reservations)
+            .append(" seatsReserved=").append(seatsReserved)
+            .append(" abandoned=").append(abandonedHolds)
+            .append(" gaveUp=").append(customersGaveUp)
+            .append('\n')
+            .append("failures=").append(failures)
+            .append('\n')
+            .append("hold: ").append(holdLatency)
+            .append('\n')
+            .append("reserve: ").append(reserveLatency);
+        return report.toString();
+    }
+}
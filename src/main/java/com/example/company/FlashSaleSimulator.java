@@ -0,0 +1,591 @@
+package com.example.company;
+
+import com.example.company.FlashSaleReport.FailureReason;
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+import com.example.company.struct.TicketService;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulates the customers of a flash sale against a TicketService, and
+ * reports the throughput and latency of their holds and reservations, why
+ * the failed ones failed, and how long the venue took to sell out.
+ *
+ * <p>Customers arrive as a Poisson process at the configured rate (or all at
+ * once), and each one runs as a task on an Executor: it holds a group of
+ * seats with its seating preference, thinks for a while, then either reserves
+ * them or abandons the hold to expire. A customer whose attempt fails tries
+ * again after a delay, up to a maximum number of attempts. Every customer's
+ * group size, seating preference, and decision to abandon are drawn from a
+ * seeded Random, so runs with the same seed ask for the same seats.
+ *
+ * <p>Seating preferences are only passed on to a Venue or a
+ * SequencedTicketService; other services hold seats with their default
+ * preference.
+ *
+ * <p>Note: Latencies are measured from the start of each call, so a customer
+ * waiting for a thread of the executor isn't counted. The simulator should be
+ * configured before it is run, from a single thread.
+ */
+public final class FlashSaleSimulator {
+
+    /**
+     * The default number of threads customers run on, if no executor is set.
+     */
+    private static final int DEFAULT_THREADS = 200;
+
+    /**
+     * The service customers hold and reserve seats from.
+     */
+    private final TicketService service;
+    /**
+     * The number of customers who arrive.
+     */
+    private int numCustomers = 10_000;
+    /**
+     * The number of customers who arrive per second, on average, or
+     * Double.POSITIVE_INFINITY if they all arrive at once.
+     */
+    private double arrivalRate = Double.POSITIVE_INFINITY;
+    /**
+     * The relative weight of every group size, starting from groups of 1.
+     */
+    private int[] groupSizeWeights = {30, 35, 10, 15, 5, 5};
+    /**
+     * The relative weight of every seating preference. Customers use the
+     * service's default preference if no preference has a weight.
+     */
+    private final Map<SeatingPreference, Integer> preferenceWeights =
+        new EnumMap<>(SeatingPreference.class);
+    /**
+     * The fraction of successful holds customers abandon to expire.
+     */
+    private double abandonRate = 0.3;
+    /**
+     * The time a customer thinks between holding and reserving seats, in
+     * nanoseconds.
+     */
+    private long thinkTimeNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * The number of times a customer tries to hold and reserve seats.
+     */
+    private int maxAttempts = 3;
+    /**
+     * The time a customer waits before trying again, in nanoseconds.
+     */
+    private long retryDelayNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    /**
+     * The executor customers run on, or null to run them on a pool of
+     * platform threads created for every run.
+     */
+    private Executor executor;
+    /**
+     * The number of threads in the pool customers run on, if no executor is
+     * set.
+     */
+    private int numThreads = DEFAULT_THREADS;
+    /**
+     * The seed of the Random customers and their arrivals are drawn from.
+     */
+    private long seed = 42;
+
+    /**
+     * A customer, and what it will ask for.
+     */
+    private static final class Customer {
+
+        /**
+         * The email of the customer.
+         */
+        private final String email;
+        /**
+         * The number of seats the customer holds.
+         */
+        private final int groupSize;
+        /**
+         * The seating preference of the customer, or null for the service's
+         * default.
+         */
+        private final SeatingPreference preference;
+        /**
+         * True if the customer abandons its hold instead of reserving it.
+         */
+        private final boolean abandons;
+
+        /**
+         * @param customerEmail The email of the customer
+         * @param seats The number of seats the customer holds
+         * @param seatingPreference The seating preference of the customer
+         * @param abandonsHold True if the customer abandons its hold
+         */
+        private Customer(final String customerEmail, final int seats,
+            final SeatingPreference seatingPreference,
+            final boolean abandonsHold) {
+            email = customerEmail;
+            groupSize = seats;
+            preference = seatingPreference;
+            abandons = abandonsHold;
+        }
+    }
+
+    /**
+     * The results of a run, as they are recorded by its customers.
+     */
+    private static final class Results {
+
+        /**
+         * The time the run started, from System.nanoTime().
+         */
+        private final long startTime;
+        /**
+         * The time until no seats were left for the first time, in
+         * nanoseconds, or -1.
+         */
+        private final AtomicLong sellOutNanos = new AtomicLong(-1);
+        /**
+         * The number of holds that succeeded.
+         */
+        private final LongAdder holds = new LongAdder();
+        /**
+         * The number of reservations that succeeded.
+         */
+        private final LongAdder reservations = new LongAdder();
+        /**
+         * The number of seats reserved.
+         */
+        private final LongAdder seatsReserved = new LongAdder();
+        /**
+         * The number of holds left to expire.
+         */
+        private final LongAdder abandonedHolds = new LongAdder();
+        /**
+         * The number of customers who ran out of attempts.
+         */
+        private final LongAdder customersGaveUp = new LongAdder();
+        /**
+         * The number of failed attempts, by reason.
+         */
+        private final LongAdder[] failures =
+            new LongAdder[FailureReason.values().length];
+        /**
+         * The latency of every hold.
+         */
+        private final LatencyHistogram holdLatency = new LatencyHistogram();
+        /**
+         * The latency of every reservation.
+         */
+        private final LatencyHistogram reserveLatency =
+            new LatencyHistogram();
+
+        /**
+         * @param start The time the run started, from System.nanoTime()
+         */
+        private Results(final long start) {
+            startTime = start;
+            for (int reason = 0; reason < failures.length; reason++) {
+                failures[reason] = new LongAdder();
+            }
+        }
+
+        /**
+         * @param reason The reason an attempt failed
+         */
+        private void fail(final FailureReason reason) {
+            failures[reason.ordinal()].increment();
+        }
+
+        /**
+         * Records the time the service sold out, if it has no seats left and
+         * hadn't sold out before.
+         *
+         * @param service The service
+         */
+        private void checkSoldOut(final TicketService service) {
+            if (sellOutNanos.get() < 0 && service.numSeatsAvailable() == 0) {
+                sellOutNanos.compareAndSet(-1, System.nanoTime() - startTime);
+            }
+        }
+
+        /**
+         * @param numCustomers The number of customers who arrived
+         * @param endTime The time the run ended, from System.nanoTime()
+         * @return The report of the run
+         */
+        private FlashSaleReport report(final long numCustomers,
+            final long endTime) {
+            EnumMap<FailureReason, Long> failureCounts =
+                new EnumMap<>(FailureReason.class);
+            for (FailureReason reason : FailureReason.values()) {
+                final long count = failures[reason.ordinal()].sum();
+                if (count > 0) {
+                    failureCounts.put(reason, count);
+                }
+            }
+            return new FlashSaleReport(numCustomers, endTime - startTime,
+                sellOutNanos.get(), holds.sum(), reservations.sum(),
+                seatsReserved.sum(), abandonedHolds.sum(),
+                customersGaveUp.sum(), failureCounts,
+                holdLatency.snapshot(), reserveLatency.snapshot());
+        }
+    }
+
+    /**
+     * @param ticketService The service customers hold and reserve seats from
+     */
+    public FlashSaleSimulator(final TicketService ticketService) {
+        if (ticketService == null) {
+            throw new IllegalArgumentException("The service must not be null");
+        }
+        service = ticketService;
+    }
+
+    /**
+     * @param customers The number of customers who arrive (10,000 by
+     *     default)
+     */
+    public void setCustomers(final int customers) {
+        if (customers < 0) {
+            throw new IllegalArgumentException(
+                "The number of customers must not be negative");
+        }
+        numCustomers = customers;
+    }
+
+    /**
+     * @param customersPerSecond The number of customers who arrive per
+     *     second, on average, or Double.POSITIVE_INFINITY (the default) for
+     *     every customer to arrive at once
+     */
+    public void setArrivalRate(final double customersPerSecond) {
+        if (!(customersPerSecond > 0)) {
+            throw new IllegalArgumentException(
+                "The arrival rate must be positive");
+        }
+        arrivalRate = customersPerSecond;
+    }
+
+    /**
+     * Sets how likely every group size is. By default, groups of 1 to 6
+     * have weights 30, 35, 10, 15, 5, and 5.
+     *
+     * @param weights The relative weight of every group size, starting from
+     *     groups of 1 seat
+     */
+    public void setGroupSizeWeights(final int... weights) {
+        if (totalOf(weights) <= 0) {
+            throw new IllegalArgumentException(
+                "At least one group size must have a positive weight");
+        }
+        groupSizeWeights = weights.clone();
+    }
+
+    /**
+     * Sets how likely customers are to have a seating preference. Customers
+     * use the service's default preference until a preference has a weight.
+     *
+     * @param preference The seating preference
+     * @param weight The relative weight of the preference, or 0 for no
+     *     customer to have it
+     */
+    public void setPreferenceWeight(final SeatingPreference preference,
+        final int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException(
+                "The weight must not be negative");
+        }
+        preferenceWeights.put(preference, weight);
+    }
+
+    /**
+     * @param rate The fraction of successful holds customers abandon to
+     *     expire instead of reserving (0.3 by default)
+     */
+    public void setAbandonRate(final double rate) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException(
+                "The abandon rate must be between 0 and 1");
+        }
+        abandonRate = rate;
+    }
+
+    /**
+     * @param duration The time a customer thinks between holding and
+     *     reserving seats (100ms by default)
+     * @param unit The unit of the duration
+     */
+    public void setThinkTime(final long duration, final TimeUnit unit) {
+        thinkTimeNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * @param attempts The number of times a customer tries to hold and
+     *     reserve seats (3 by default)
+     * @param retryDelay The time a customer waits before trying again (50ms
+     *     by default)
+     * @param unit The unit of the delay
+     */
+    public void setAttempts(final int attempts, final long retryDelay,
+        final TimeUnit unit) {
+        if (attempts < 1) {
+            throw new IllegalArgumentException(
+                "Customers must make at least one attempt");
+        }
+        maxAttempts = attempts;
+        retryDelayNanos = unit.toNanos(retryDelay);
+    }
+
+    /**
+     * Sets the executor customers run on. Every customer is a single task,
+     * which sleeps while it thinks or waits to try again, so an executor
+     * with a thread per task (e.g.
+     * Executors.newVirtualThreadPerTaskExecutor()) lets every customer
+     * arrive on time.
+     *
+     * @param customerExecutor The executor, or null to run customers on a
+     *     pool of platform threads created for every run
+     */
+    public void setExecutor(final Executor customerExecutor) {
+        executor = customerExecutor;
+    }
+
+    /**
+     * @param threads The number of platform threads customers run on if no
+     *     executor is set (200 by default)
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                "There must be at least one thread");
+        }
+        numThreads = threads;
+    }
+
+    /**
+     * @param randomSeed The seed customers and their arrivals are drawn from
+     */
+    public void setSeed(final long randomSeed) {
+        seed = randomSeed;
+    }
+
+    /**
+     * Runs the sale: lets every customer arrive, and waits for all of them to
+     * reserve their seats, abandon their holds, or give up.
+     *
+     * @return The report of the run
+     * @throws InterruptedException If the thread is interrupted while
+     *     customers arrive or run
+     */
+    public FlashSaleReport run() throws InterruptedException {
+        final Random random = new Random(seed);
+        final CountDownLatch finished = new CountDownLatch(numCustomers);
+        ExecutorService pool = null;
+        Executor customerExecutor = executor;
+        if (customerExecutor == null) {
+            pool = Executors.newFixedThreadPool(numThreads, task -> {
+                Thread thread = new Thread(task, "flash-sale-customer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            customerExecutor = pool;
+        }
+
+        final Results results = new Results(System.nanoTime());
+        try {
+            long arrivalTime = results.startTime;
+            for (int i = 0; i < numCustomers; i++) {
+                final Customer customer = newCustomer(i, random);
+                if (arrivalRate != Double.POSITIVE_INFINITY) {
+                    // Exponential gaps between arrivals make a Poisson
+                    // process
+                    arrivalTime += (long) (-Math.log(1 - random.nextDouble())
+                        / arrivalRate * TimeUnit.SECONDS.toNanos(1));
+                    if (!sleepUntil(arrivalTime)) {
+                        Thread.interrupted();
+                        throw new InterruptedException(
+                            "Interrupted while customers were arriving");
+                    }
+                }
+                customerExecutor.execute(() -> {
+                    try {
+                        serve(customer, results);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+            }
+            finished.await();
+            return results.report(numCustomers, System.nanoTime());
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @param index The number of the customer, in order of arrival
+     * @param random The Random the customer is drawn from
+     * @return The customer
+     */
+    private Customer newCustomer(final int index, final Random random) {
+        final int groupSize = pick(groupSizeWeights, random) + 1;
+        SeatingPreference preference = null;
+        int preferenceTotal = 0;
+        for (int weight : preferenceWeights.values()) {
+            preferenceTotal += weight;
+        }
+        if (preferenceTotal > 0) {
+            int target = random.nextInt(preferenceTotal);
+            for (Map.Entry<SeatingPreference, Integer> entry
+                : preferenceWeights.entrySet()) {
+                target -= entry.getValue();
+                if (target < 0) {
+                    preference = entry.getKey();
+                    break;
+                }
+            }
+        }
+        return new Customer("customer" + index + "@flash.sale", groupSize,
+            preference, random.nextDouble() < abandonRate);
+    }
+
+    /**
+     * @param weights Relative weights
+     * @return The sum of the weights
+     */
+    private static int totalOf(final int[] weights) {
+        return Arrays.stream(weights).sum();
+    }
+
+    /**
+     * @param weights Relative weights, with a positive total
+     * @param random The Random to draw from
+     * @return The index of a weight, drawn in proportion to the weights
+     */
+    private static int pick(final int[] weights, final Random random) {
+        int target = random.nextInt(totalOf(weights));
+        for (int index = 0; index < weights.length; index++) {
+            target -= weights[index];
+            if (target < 0) {
+                return index;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    /**
+     * Makes a customer's attempts until one of them succeeds or it runs out.
+     *
+     * @param customer The customer
+     * @param results The results of the run
+     */
+    private void serve(final Customer customer, final Results results) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0
+                && !sleepUntil(System.nanoTime() + retryDelayNanos)) {
+                return;
+            }
+            if (attempt(customer, results)) {
+                return;
+            }
+        }
+        results.customersGaveUp.increment();
+    }
+
+    /**
+     * Holds seats for a customer, then reserves or abandons them.
+     *
+     * @param customer The customer
+     * @param results The results of the run
+     * @return True if the customer is done, false if it should try again
+     */
+    private boolean attempt(final Customer customer, final Results results) {
+        SeatHold<?> seatHold;
+        final long holdStart = System.nanoTime();
+        try {
+            seatHold = TicketServices.findAndHoldSeats(service,
+                customer.groupSize, customer.email, customer.preference);
+        } catch (RejectedExecutionException e) {
+            results.holdLatency.record(System.nanoTime() - holdStart);
+            results.fail(FailureReason.TURNED_AWAY);
+            return false;
+        } catch (RuntimeException e) {
+            results.holdLatency.record(System.nanoTime() - holdStart);
+            results.fail(FailureReason.ERROR);
+            return false;
+        }
+        results.holdLatency.record(System.nanoTime() - holdStart);
+
+        if (seatHold == null) {
+            final int seatsLeft = service.numSeatsAvailable();
+            if (seatsLeft == 0) {
+                results.checkSoldOut(service);
+                results.fail(FailureReason.SOLD_OUT);
+            } else if (seatsLeft < customer.groupSize) {
+                results.fail(FailureReason.NOT_ENOUGH_SEATS);
+            } else {
+                results.fail(FailureReason.HOLD_REJECTED);
+            }
+            return false;
+        }
+        results.holds.increment();
+        results.checkSoldOut(service);
+        if (customer.abandons) {
+            results.abandonedHolds.increment();
+            return true;
+        }
+
+        if (!sleepUntil(System.nanoTime() + thinkTimeNanos)) {
+            return true;
+        }
+        String confirmationCode;
+        final long reserveStart = System.nanoTime();
+        try {
+            confirmationCode = service.reserveSeats(seatHold.getId(),
+                customer.email);
+        } catch (RuntimeException e) {
+            results.reserveLatency.record(System.nanoTime() - reserveStart);
+            results.fail(FailureReason.ERROR);
+            return false;
+        }
+        results.reserveLatency.record(System.nanoTime() - reserveStart);
+        if (confirmationCode == null) {
+            results.fail(FailureReason.RESERVATION_REJECTED);
+            return false;
+        }
+        results.reservations.increment();
+        results.seatsReserved.add(seatHold.getReservedSeats().size());
+        return true;
+    }
+
+    /**
+     * Sleeps until a deadline. If the thread is interrupted, the interrupt is
+     * kept and the sleep ends early.
+     *
+     * @param deadline The time to sleep until, from System.nanoTime()
+     * @return True if the deadline was reached, false if interrupted
+     */
+    private static boolean sleepUntil(final long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(remaining);
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+}
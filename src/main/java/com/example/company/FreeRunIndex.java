@@ -0,0 +1,517 @@
+package com.example.company;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An index of the runs (consecutive free seats) in a range of rows, kept up
+ * to date as seats are claimed and released so the best run for a group of
+ * seats can be found without scanning the venue. Runs end at the end of their
+ * row, so a group is never split between the last seat of one row and the
+ * first seat of the next.
+ *
+ * <p>Every run is linked into a bucket for its length, and a bitmap records
+ * which buckets are non-empty, so finding the smallest run that fits k seats
+ * is a single scan of that bitmap. Each claim or release only touches the
+ * (at most three) runs around the seat.
+ *
+ * <p>The index also tracks (a bound on) the longest run in every row, so a
+ * block of seats spanning adjacent rows can be searched for by skipping the
+ * rows that can't fit their part of it.
+ *
+ * <p>This class is not thread-safe; callers must synchronize on it. Claims
+ * and releases are recorded as states rather than changes (recording a seat
+ * in the state it already has does nothing), so callers record the seat's
+ * current state, read while synchronized, rather than the change they made.
+ */
+final class FreeRunIndex {
+
+    /**
+     * The marker for the lack of a run.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * The number of seats indexed.
+     */
+    private final int size;
+    /**
+     * The first seat of every row, followed by the number of seats indexed.
+     */
+    private final int[] rowStarts;
+    /**
+     * The first seats of the rows, which runs never extend past.
+     */
+    private final BitSet rowBreaks;
+    /**
+     * For every row, the length of its longest run, or (if the row is stale)
+     * a length at least as long as it.
+     */
+    private final int[] longestRuns;
+    /**
+     * The rows whose longest run may have been unlinked since it was last
+     * computed.
+     */
+    private final BitSet staleRows;
+    /**
+     * The seats the index considers free.
+     */
+    private final BitSet free;
+    /**
+     * The start of the first run of every length, or NONE if there is none.
+     */
+    private final int[] heads;
+    /**
+     * For the start of every run, the start of the next run with the same
+     * length.
+     */
+    private final int[] next;
+    /**
+     * For the start of every run, the start of the previous run with the same
+     * length.
+     */
+    private final int[] previous;
+    /**
+     * For the first seat of every run, the seat after its last seat, and for
+     * the last seat of every run, its first seat. (Only runs of two or more
+     * seats are ever looked up, and their first and last seats differ, so a
+     * single array holds both.)
+     */
+    private final int[] runBounds;
+    /**
+     * The lengths that have at least one run, followed by a bit that is always
+     * set. (BitSet.clear scans down to the highest set bit, so without it,
+     * unlinking the longest run would scan the whole bitmap.)
+     */
+    private final BitSet lengths;
+
+    /**
+     * @param seatRowStarts The first seat of every row, followed by the
+     *     number of seats indexed. Used as it is, not copied.
+     * @param initiallyFree The seats that are initially free
+     */
+    FreeRunIndex(final int[] seatRowStarts, final BitSet initiallyFree) {
+        rowStarts = seatRowStarts;
+        size = rowStarts[rowStarts.length - 1];
+        free = (BitSet) initiallyFree.clone();
+        free.clear(size, Math.max(size, free.length()));
+        heads = new int[size + 1];
+        next = new int[size];
+        previous = new int[size];
+        runBounds = new int[size];
+        lengths = new BitSet(size + 2);
+        lengths.set(size + 1);
+        Arrays.fill(heads, NONE);
+        rowBreaks = new BitSet(size + 1);
+        for (int rowStart : rowStarts) {
+            rowBreaks.set(rowStart);
+        }
+        longestRuns = new int[rowStarts.length - 1];
+        staleRows = new BitSet(longestRuns.length);
+
+        int start = free.nextSetBit(0);
+        while (start != -1) {
+            final int end =
+                Math.min(free.nextClearBit(start), rowEndAfter(start));
+            link(start, end - start);
+            start = free.nextSetBit(end);
+        }
+    }
+
+    /**
+     * @param seat A seat
+     * @return The row containing the seat
+     */
+    private int rowOf(final int seat) {
+        // Find the last row starting at or before the seat. Any empty rows
+        // starting at the same seat come before the one containing it.
+        int low = 0;
+        int high = rowStarts.length - 2;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (rowStarts[middle] <= seat) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param seat A seat
+     * @return The seat after the last seat of the row containing it
+     */
+    private int rowEndAfter(final int seat) {
+        final int rowEnd = rowBreaks.nextSetBit(seat + 1);
+        return rowEnd == -1 ? size : rowEnd;
+    }
+
+    /**
+     * Adds a run to the bucket for its length.
+     *
+     * @param start The first seat of the run
+     * @param length The length of the run
+     */
+    private void link(final int start, final int length) {
+        runBounds[start] = start + length;
+        runBounds[start + length - 1] = start;
+        final int head = heads[length];
+        next[start] = head;
+        previous[start] = NONE;
+        if (head != NONE) {
+            previous[head] = start;
+        }
+        heads[length] = start;
+        lengths.set(length);
+        final int row = rowOf(start);
+        if (length > longestRuns[row]) {
+            longestRuns[row] = length;
+        }
+    }
+
+    /**
+     * Removes a run from the bucket for its length.
+     *
+     * @param start The first seat of the run
+     * @param length The length of the run
+     */
+    private void unlink(final int start, final int length) {
+        if (previous[start] != NONE) {
+            next[previous[start]] = next[start];
+        } else {
+            heads[length] = next[start];
+            if (next[start] == NONE) {
+                lengths.clear(length);
+            }
+        }
+        if (next[start] != NONE) {
+            previous[next[start]] = previous[start];
+        }
+        final int row = rowOf(start);
+        if (length == longestRuns[row]) {
+            staleRows.set(row);
+        }
+    }
+
+    /**
+     * @param seat A free seat
+     * @return True if the seat is the first seat of its run
+     */
+    private boolean isRunStart(final int seat) {
+        return rowBreaks.get(seat) || !free.get(seat - 1);
+    }
+
+    /**
+     * @param seat A free seat
+     * @return True if the seat is the last seat of its run
+     */
+    private boolean isRunEnd(final int seat) {
+        return rowBreaks.get(seat + 1) || !free.get(seat + 1);
+    }
+
+    /**
+     * Note: Seats are usually claimed from either end of a run, and released
+     * next to one, so this is constant-time in those cases. Otherwise, it
+     * scans the free seats (and row starts) before the seat.
+     *
+     * @param seat A free seat
+     * @return The first seat of the run containing it
+     */
+    private int runStart(final int seat) {
+        if (isRunStart(seat)) {
+            return seat;
+        } else if (isRunEnd(seat)) {
+            return runBounds[seat];
+        }
+        return Math.max(free.previousClearBit(seat) + 1,
+            rowBreaks.previousSetBit(seat));
+    }
+
+    /**
+     * Note: Seats are usually claimed from either end of a run, and released
+     * next to one, so this is constant-time in those cases. Otherwise, it
+     * scans the free seats (and row starts) after the seat.
+     *
+     * @param seat A free seat
+     * @return The seat after the last seat of the run containing it
+     */
+    private int runEnd(final int seat) {
+        if (isRunEnd(seat)) {
+            return seat + 1;
+        } else if (isRunStart(seat)) {
+            return runBounds[seat];
+        }
+        return Math.min(free.nextClearBit(seat), rowEndAfter(seat));
+    }
+
+    /**
+     * Records that a seat has been claimed, splitting the run containing it.
+     * Does nothing if the index already has the seat as claimed.
+     *
+     * @param seat The seat that was claimed
+     */
+    void claim(final int seat) {
+        if (!free.get(seat)) {
+            return;
+        }
+        final int start = runStart(seat);
+        final int end = runEnd(seat);
+        unlink(start, end - start);
+        free.clear(seat);
+        if (start < seat) {
+            link(start, seat - start);
+        }
+        if (seat + 1 < end) {
+            link(seat + 1, end - seat - 1);
+        }
+    }
+
+    /**
+     * Records that a seat has been released, merging it with the runs on
+     * either side of it (within its row). Does nothing if the index already
+     * has the seat as free.
+     *
+     * @param seat The seat that was released
+     */
+    void release(final int seat) {
+        if (free.get(seat)) {
+            return;
+        }
+        int start = seat;
+        int end = seat + 1;
+        if (!rowBreaks.get(seat) && free.get(seat - 1)) {
+            start = runStart(seat - 1);
+            unlink(start, seat - start);
+        }
+        if (!rowBreaks.get(seat + 1) && free.get(seat + 1)) {
+            end = runEnd(seat + 1);
+            unlink(seat + 1, end - seat - 1);
+        }
+        free.set(seat);
+        link(start, end - start);
+    }
+
+    /**
+     * Records that a range of seats has been released, merging it with the
+     * runs on either side of it (within their rows).
+     *
+     * @param fromSeat The first seat that was released
+     * @param toSeat The seat after the last seat that was released
+     */
+    void releaseRange(final int fromSeat, final int toSeat) {
+        final int rowEnd = rowEndAfter(fromSeat);
+        if (rowEnd < toSeat) {
+            // Release the range a row at a time, since runs end with their
+            // rows
+            releaseRange(fromSeat, rowEnd);
+            releaseRange(rowEnd, toSeat);
+            return;
+        }
+        final int firstFree = free.nextSetBit(fromSeat);
+        if (firstFree != -1 && firstFree < toSeat) {
+            // Part of the range is already free, so it doesn't form a
+            // single run
+            for (int seat = fromSeat; seat < toSeat; seat++) {
+                release(seat);
+            }
+            return;
+        }
+        int start = fromSeat;
+        int end = toSeat;
+        if (!rowBreaks.get(fromSeat) && free.get(fromSeat - 1)) {
+            start = runStart(fromSeat - 1);
+            unlink(start, fromSeat - start);
+        }
+        if (!rowBreaks.get(toSeat) && free.get(toSeat)) {
+            end = runEnd(toSeat);
+            unlink(toSeat, end - toSeat);
+        }
+        free.set(fromSeat, toSeat);
+        link(start, end - start);
+    }
+
+    /**
+     * @param numSeats The number of seats needed
+     * @return The length of the smallest run with at least that many seats,
+     *     or -1 if there is none
+     */
+    int bestFitLength(final int numSeats) {
+        final int length = lengths.nextSetBit(Math.max(1, numSeats));
+        return length > size ? -1 : length;
+    }
+
+    /**
+     * @param length A length returned by bestFitLength
+     * @return The first seat of a run with that length
+     */
+    int runOfLength(final int length) {
+        return heads[length];
+    }
+
+    /**
+     * Collects the largest runs, in descending order of length, until they
+     * contain at least the given number of seats (or there are no runs left).
+     *
+     * @param numSeats The number of seats needed
+     * @return The runs, as consecutive (first seat, length) pairs
+     */
+    int[] largestRuns(final int numSeats) {
+        int[] runs = new int[2];
+        int used = 0;
+        int seats = 0;
+        for (int length = lengths.previousSetBit(size);
+            length > 0 && seats < numSeats;
+            length = lengths.previousSetBit(length - 1)) {
+            for (int start = heads[length]; start != NONE && seats < numSeats;
+                start = next[start]) {
+                if (used == runs.length) {
+                    runs = Arrays.copyOf(runs, used * 2);
+                }
+                runs[used++] = start;
+                runs[used++] = length;
+                seats += length;
+            }
+        }
+        return Arrays.copyOf(runs, used);
+    }
+
+    /**
+     * @param row The index of a row
+     * @return The length of the longest run in the row
+     */
+    private int longestRunInRow(final int row) {
+        if (staleRows.get(row)) {
+            int longest = 0;
+            final int rowEnd = rowStarts[row + 1];
+            for (int start = free.nextSetBit(rowStarts[row]);
+                start != -1 && start < rowEnd;
+                start = free.nextSetBit(start + 1)) {
+                final int end = Math.min(rowEnd, free.nextClearBit(start));
+                longest = Math.max(longest, end - start);
+                start = end;
+            }
+            longestRuns[row] = longest;
+            staleRows.clear(row);
+        }
+        return longestRuns[row];
+    }
+
+    /**
+     * Finds where in a row a number of consecutive seats could start.
+     *
+     * @param row The index of a row
+     * @param numSeats The number of consecutive seats needed
+     * @return The columns the seats could start at, as ascending (first
+     *     column, last column) pairs
+     */
+    private int[] startColumns(final int row, final int numSeats) {
+        int[] columns = new int[2];
+        int used = 0;
+        final int rowStart = rowStarts[row];
+        final int rowEnd = rowStarts[row + 1];
+        for (int start = free.nextSetBit(rowStart);
+            start != -1 && start < rowEnd;
+            start = free.nextSetBit(start + 1)) {
+            final int end = Math.min(rowEnd, free.nextClearBit(start));
+            if (end - start >= numSeats) {
+                if (used == columns.length) {
+                    columns = Arrays.copyOf(columns, used * 2);
+                }
+                columns[used++] = start - rowStart;
+                columns[used++] = end - numSeats - rowStart;
+            }
+            start = end;
+        }
+        return Arrays.copyOf(columns, used);
+    }
+
+    /**
+     * @param first Ascending (first column, last column) pairs
+     * @param second Ascending (first column, last column) pairs
+     * @return The columns in both, as ascending (first column, last column)
+     *     pairs
+     */
+    private static int[] intersectColumns(final int[] first,
+        final int[] second) {
+        int[] columns = new int[first.length + second.length];
+        int used = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            final int low = Math.max(first[i], second[j]);
+            final int high = Math.min(first[i + 1], second[j + 1]);
+            if (low <= high) {
+                columns[used++] = low;
+                columns[used++] = high;
+            }
+            // Move past whichever range ends first
+            if (first[i + 1] < second[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return Arrays.copyOf(columns, used);
+    }
+
+    /**
+     * Finds a block of seats spanning adjacent rows, with the same number of
+     * seats in every row but the last (which may have fewer), all starting
+     * at the same column. Blocks over fewer rows are preferred, and among
+     * those, blocks closer to the first row and column.
+     *
+     * <p>Rows whose longest run can't fit their part of a block are skipped,
+     * along with every block containing them, without scanning them.
+     *
+     * @param numSeats The number of seats in the block
+     * @return The rows of the block, as consecutive (first seat, length)
+     *     pairs, or null if no block fits. Blocks always span at least two
+     *     rows, with at least two seats in every row but the last.
+     */
+    int[] findBlock(final int numSeats) {
+        final int numRows = rowStarts.length - 1;
+        for (int blockRows = 2;
+            blockRows <= Math.min(numRows, numSeats / 2); blockRows++) {
+            final int width = (numSeats + blockRows - 1) / blockRows;
+            final int lastWidth = numSeats - width * (blockRows - 1);
+            if (lastWidth <= 0) {
+                // Fewer rows would have held the same block
+                continue;
+            }
+            for (int first = 0; first + blockRows <= numRows; first++) {
+                final int last = first + blockRows - 1;
+                // Check the rows from the last one, so the next block to try
+                // starts after the last row that can't fit
+                int blocked = -1;
+                for (int row = last; row >= first && blocked == -1; row--) {
+                    if (longestRunInRow(row)
+                        < (row == last ? lastWidth : width)) {
+                        blocked = row;
+                    }
+                }
+                if (blocked != -1) {
+                    first = blocked;
+                    continue;
+                }
+
+                int[] columns = startColumns(first, width);
+                for (int row = first + 1; row <= last && columns.length != 0;
+                    row++) {
+                    columns = intersectColumns(columns, startColumns(row,
+                        row == last ? lastWidth : width));
+                }
+                if (columns.length != 0) {
+                    int[] block = new int[blockRows * 2];
+                    for (int row = first; row <= last; row++) {
+                        block[(row - first) * 2] = rowStarts[row] + columns[0];
+                        block[(row - first) * 2 + 1] =
+                            row == last ? lastWidth : width;
+                    }
+                    return block;
+                }
+            }
+        }
+        return null;
+    }
+}
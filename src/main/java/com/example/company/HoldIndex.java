@@ -0,0 +1,149 @@
+package com.example.company;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free map from SeatHold ids to SeatHolds. Ids are handed out
+ * sequentially, so the index is a directory of fixed-size pages of
+ * references: looking a SeatHold up is two array reads, without hashing or
+ * boxing its id.
+ *
+ * <p>Pages are created the first time an id in them is stored. The directory
+ * is copied whenever a page is added (which only happens once every few
+ * thousand ids), so readers never need to lock.
+ */
+final class HoldIndex {
+
+    /**
+     * The number of bits of an id addressing a slot within its page.
+     */
+    private static final int PAGE_BITS = 12;
+    /**
+     * The number of slots in every page.
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    /**
+     * The mask used to map an id to its slot within its page.
+     */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * The pages of the index, or null for pages without any ids stored yet.
+     * Replaced (never modified) whenever a page is added.
+     */
+    private volatile AtomicReferenceArray<VenueSeatHold>[] pages =
+        newDirectory(0);
+
+    /**
+     * @param length The number of pages in the directory
+     * @return An empty directory
+     */
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<VenueSeatHold>[] newDirectory(
+        final int length) {
+        return (AtomicReferenceArray<VenueSeatHold>[])
+            new AtomicReferenceArray<?>[length];
+    }
+
+    /**
+     * @param id The id of a SeatHold
+     * @return The page containing the id, or null if it hasn't been created
+     */
+    private AtomicReferenceArray<VenueSeatHold> pageOf(final int id) {
+        final AtomicReferenceArray<VenueSeatHold>[] directory = pages;
+        final int page = id >>> PAGE_BITS;
+        return page < directory.length ? directory[page] : null;
+    }
+
+    /**
+     * @param id The id of a SeatHold
+     * @return The page containing the id, created if necessary
+     */
+    private AtomicReferenceArray<VenueSeatHold> createPageOf(final int id) {
+        AtomicReferenceArray<VenueSeatHold> page = pageOf(id);
+        if (page != null) {
+            return page;
+        }
+        synchronized (this) {
+            final int index = id >>> PAGE_BITS;
+            AtomicReferenceArray<VenueSeatHold>[] directory = pages;
+            if (index < directory.length && directory[index] != null) {
+                return directory[index];
+            }
+            AtomicReferenceArray<VenueSeatHold>[] copy =
+                newDirectory(Math.max(directory.length, index + 1));
+            System.arraycopy(directory, 0, copy, 0, directory.length);
+            page = new AtomicReferenceArray<>(PAGE_SIZE);
+            copy[index] = page;
+            pages = copy;
+            return page;
+        }
+    }
+
+    /**
+     * @param id The id of a SeatHold
+     * @return The SeatHold with that id, or null if there is none
+     */
+    VenueSeatHold get(final int id) {
+        if (id < 0) {
+            return null;
+        }
+        final AtomicReferenceArray<VenueSeatHold> page = pageOf(id);
+        return page != null ? page.get(id & PAGE_MASK) : null;
+    }
+
+    /**
+     * Stores a SeatHold under its id, replacing any other SeatHold with that
+     * id.
+     *
+     * @param seatHold The SeatHold
+     */
+    void put(final VenueSeatHold seatHold) {
+        final int id = seatHold.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative SeatHold id: " + id);
+        }
+        createPageOf(id).set(id & PAGE_MASK, seatHold);
+    }
+
+    /**
+     * Removes a SeatHold, unless another thread removed (or replaced) it
+     * first.
+     *
+     * @param seatHold The SeatHold to remove
+     * @return True if this call removed the SeatHold
+     */
+    boolean remove(final VenueSeatHold seatHold) {
+        final int id = seatHold.getId();
+        if (id < 0) {
+            return false;
+        }
+        final AtomicReferenceArray<VenueSeatHold> page = pageOf(id);
+        return page != null
+            && page.compareAndSet(id & PAGE_MASK, seatHold, null);
+    }
+
+    /**
+     * Calls an action for every SeatHold in the index, in order of their
+     * ids.
+     *
+     * <p>Note: Like the iterators of the concurrent collections, this is only
+     * weakly consistent if the index is modified while it is running.
+     *
+     * @param action The action
+     */
+    void forEach(final Consumer<? super VenueSeatHold> action) {
+        for (AtomicReferenceArray<VenueSeatHold> page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                final VenueSeatHold seatHold = page.get(slot);
+                if (seatHold != null) {
+                    action.accept(seatHold);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,618 @@
+package com.example.company;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only, memory-mapped journal of the holds, reservations, and
+ * expirations of a venue, so its state can be rebuilt after a restart.
+ *
+ * <p>Appending a record is a copy into the mapped file under a short lock. A
+ * background thread forces the file to disk, so one force covers every record
+ * appended before it (group commit). With FSYNC_PER_BATCH durability,
+ * awaitDurable blocks until the record has been forced; with ASYNC
+ * durability, records are forced every few milliseconds and nothing waits.
+ * Waiting parks on a ReentrantLock's condition rather than an object's
+ * monitor, so a virtual thread waiting for a force doesn't pin its carrier.
+ *
+ * <p>Every record is prefixed with its length and a CRC32 of its contents, so
+ * a record torn by a crash ends the replay instead of corrupting it. Records
+ * are replayed in the order they were appended, and holds share seats, so
+ * callers must append records in the order their changes to the seats
+ * happened: the expiration of a hold before its seats can be held again, and
+ * a hold after its seats have been claimed.
+ *
+ * <p>If forcing the file fails, the journal stops forcing it: every record
+ * appended since can't be made durable, so waiting for one, or appending
+ * another, throws the error instead.
+ *
+ * <p>Appending a hold or reservation once the journal is closed throws an
+ * IllegalStateException, while an expiration is skipped: its hold is still
+ * pending in the journal, so it expires again once the venue is restored.
+ */
+public final class HoldJournal implements AutoCloseable {
+
+    /**
+     * When records become durable.
+     */
+    public enum Durability {
+        /**
+         * Callers waiting for a record block until a force covering it has
+         * completed. Concurrent callers share a single force.
+         */
+        FSYNC_PER_BATCH,
+        /**
+         * Records are forced in the background, and nothing waits for them.
+         * A crash can lose the last few milliseconds of records.
+         */
+        ASYNC
+    }
+
+    /**
+     * Receives the records of a journal as it is replayed.
+     */
+    interface Replayer {
+
+        /**
+         * @param seatHoldId The id of the SeatHold
+         * @param customerEmail The email of the customer holding the seats
+         * @param expiresAtMillis When the hold expires (after these seats
+         *     were added to it), in milliseconds since the epoch
+         * @param seats The seats added to the hold
+         */
+        void hold(int seatHoldId, String customerEmail, long expiresAtMillis,
+            int[] seats);
+
+        /**
+         * @param seatHoldId The id of the SeatHold
+         * @param customerEmail The email of the customer reserving the seats
+         */
+        void reserve(int seatHoldId, String customerEmail);
+
+        /**
+         * @param seatHoldId The id of the SeatHold
+         * @param customerEmail The email of the customer whose hold expired
+         */
+        void expire(int seatHoldId, String customerEmail);
+    }
+
+    /**
+     * The type of a hold record.
+     */
+    private static final byte HOLD = 1;
+    /**
+     * The type of a reservation record.
+     */
+    private static final byte RESERVE = 2;
+    /**
+     * The type of an expiration record.
+     */
+    private static final byte EXPIRE = 3;
+    /**
+     * The size of a record's header (its length and checksum).
+     */
+    private static final int HEADER_SIZE = 8;
+    /**
+     * The initial size of the mapped region.
+     */
+    private static final int INITIAL_MAPPED_SIZE = 1 << 20;
+    /**
+     * How often records are forced with ASYNC durability, in milliseconds.
+     */
+    private static final long ASYNC_FORCE_INTERVAL_MILLIS = 10;
+
+    /**
+     * The journal file.
+     */
+    private final FileChannel channel;
+    /**
+     * When records become durable.
+     */
+    private final Durability durability;
+    /**
+     * Guards the mapped region and the positions of the journal.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signalled when a record is appended or the journal is closed.
+     */
+    private final Condition appended = lock.newCondition();
+    /**
+     * Signalled when a force completes (or fails).
+     */
+    private final Condition forced = lock.newCondition();
+    /**
+     * Computes record checksums. Guarded by lock.
+     */
+    private final CRC32 checksum = new CRC32();
+    /**
+     * The thread forcing records to disk.
+     */
+    private final Thread forceThread;
+    /**
+     * The mapped region of the file. Guarded by lock.
+     */
+    private MappedByteBuffer mapped;
+    /**
+     * The position after the last record appended. Guarded by lock.
+     */
+    private long appendedPosition;
+    /**
+     * The position after the last record known to be on disk. Guarded by
+     * lock.
+     */
+    private long durablePosition;
+    /**
+     * True once the journal has been closed. Guarded by lock.
+     */
+    private boolean closed = false;
+    /**
+     * The error thrown by the force that failed, if one did (after which the
+     * force thread stops). Guarded by lock.
+     */
+    private IOException forceError;
+
+    /**
+     * @param fileChannel The journal file
+     * @param recordDurability When records become durable
+     * @throws IOException If the file could not be mapped
+     */
+    private HoldJournal(final FileChannel fileChannel,
+        final Durability recordDurability) throws IOException {
+        channel = fileChannel;
+        durability = recordDurability;
+        final long size = Math.max(channel.size(), INITIAL_MAPPED_SIZE);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The journal is too large to map: " + size);
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        appendedPosition = findEnd(mapped);
+        durablePosition = appendedPosition;
+        forceThread = new Thread(this::forceRecords, "hold-journal");
+        forceThread.setDaemon(true);
+        forceThread.start();
+    }
+
+    /**
+     * Opens a journal, creating the file if it doesn't exist. New records
+     * are appended after the last valid record in the file.
+     *
+     * @param file The journal file
+     * @param durability When records become durable
+     * @return The journal
+     * @throws IOException If the file could not be opened
+     */
+    public static HoldJournal open(final Path file,
+        final Durability durability) throws IOException {
+        return new HoldJournal(FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE), durability);
+    }
+
+    /**
+     * @return When records become durable
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Appends a hold record.
+     *
+     * @param seatHoldId The id of the SeatHold
+     * @param customerEmail The email of the customer holding the seats
+     * @param expiresAtMillis When the hold expires, in milliseconds since the
+     *     epoch
+     * @param seats The seats added to the hold
+     * @return The position after the record
+     */
+    long appendHold(final int seatHoldId, final String customerEmail,
+        final long expiresAtMillis, final Collection<Integer> seats) {
+        final byte[] email = customerEmail.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES
+            + Long.BYTES + Short.BYTES + email.length + Integer.BYTES
+            + seats.size() * Integer.BYTES);
+        record.put(HOLD).putInt(seatHoldId).putLong(expiresAtMillis);
+        putEmail(record, email);
+        record.putInt(seats.size());
+        for (int seat : seats) {
+            record.putInt(seat);
+        }
+        return append(record);
+    }
+
+    /**
+     * Appends a reservation record.
+     *
+     * @param seatHoldId The id of the SeatHold
+     * @param customerEmail The email of the customer reserving the seats
+     * @return The position after the record
+     */
+    long appendReservation(final int seatHoldId, final String customerEmail) {
+        final byte[] email = customerEmail.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES
+            + Short.BYTES + email.length);
+        record.put(RESERVE).putInt(seatHoldId);
+        putEmail(record, email);
+        return append(record);
+    }
+
+    /**
+     * Appends an expiration record.
+     *
+     * @param seatHoldId The id of the SeatHold
+     * @param customerEmail The email of the customer whose hold expired
+     * @return The position after the record, or -1 if the journal is closed
+     *     (in which case the expiration is skipped)
+     */
+    long appendExpiration(final int seatHoldId, final String customerEmail) {
+        final byte[] email = customerEmail.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES
+            + Short.BYTES + email.length);
+        record.put(EXPIRE).putInt(seatHoldId);
+        putEmail(record, email);
+        return append(record, true);
+    }
+
+    /**
+     * @param record The record being written
+     * @param email The UTF-8 bytes of an email
+     */
+    private static void putEmail(final ByteBuffer record, final byte[] email) {
+        if (email.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Email is too long");
+        }
+        record.putShort((short) email.length).put(email);
+    }
+
+    /**
+     * Copies a record into the mapped file, after its header.
+     *
+     * @param record The contents of the record
+     * @return The position after the record
+     * @throws IllegalStateException If the journal is closed
+     * @throws UncheckedIOException If the journal could not be forced to disk
+     */
+    private long append(final ByteBuffer record) {
+        return append(record, false);
+    }
+
+    /**
+     * Copies a record into the mapped file, after its header.
+     *
+     * @param record The contents of the record
+     * @param skipIfClosed True to skip the record if the journal is closed,
+     *     instead of throwing
+     * @return The position after the record, or -1 if it was skipped
+     * @throws IllegalStateException If the journal is closed (and the record
+     *     isn't skipped)
+     * @throws UncheckedIOException If the journal could not be forced to disk
+     */
+    private long append(final ByteBuffer record, final boolean skipIfClosed) {
+        lock.lock();
+        try {
+            if (closed) {
+                if (skipIfClosed) {
+                    return -1;
+                }
+                throw new IllegalStateException("The journal is closed");
+            }
+            if (forceError != null) {
+                throw new UncheckedIOException(
+                    "The journal could not be forced to disk", forceError);
+            }
+            record.flip();
+            final int length = record.remaining();
+            ensureCapacity(appendedPosition + HEADER_SIZE + length);
+
+            checksum.reset();
+            checksum.update(record.array(), 0, length);
+            final int position = (int) appendedPosition;
+            mapped.putInt(position + Integer.BYTES,
+                (int) checksum.getValue());
+            ByteBuffer target = mapped.duplicate();
+            target.position(position + HEADER_SIZE);
+            target.put(record);
+            // Write the length last, so a record is only valid once complete
+            mapped.putInt(position, length);
+
+            appendedPosition += HEADER_SIZE + length;
+            if (durability == Durability.FSYNC_PER_BATCH) {
+                appended.signal();
+            }
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grows the mapped region of the file (doubling it) if it can't fit the
+     * given position. Must be called while holding the lock.
+     *
+     * @param end The position that must fit
+     */
+    private void ensureCapacity(final long end) {
+        if (end <= mapped.capacity()) {
+            return;
+        }
+        long size = mapped.capacity();
+        while (size < end) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The journal is full");
+        }
+        try {
+            // Records in the old region are still forced by the next force,
+            // since both regions map the same file
+            mapped.force();
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Blocks until every record up to the given position is on disk. Returns
+     * immediately with ASYNC durability.
+     *
+     * @param position A position returned when appending a record
+     */
+    void awaitDurable(final long position) {
+        if (durability == Durability.ASYNC) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                if (forceError != null) {
+                    throw new UncheckedIOException(forceError);
+                }
+                // Note: Closing the journal forces every record, so this
+                // also returns once the journal is closed
+                forced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The loop run by the force thread.
+     */
+    private void forceRecords() {
+        while (true) {
+            final MappedByteBuffer region;
+            final long position;
+            lock.lock();
+            try {
+                while (!closed && durablePosition == appendedPosition) {
+                    try {
+                        appended.await(ASYNC_FORCE_INTERVAL_MILLIS,
+                            TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed && durablePosition == appendedPosition) {
+                    return;
+                }
+                region = mapped;
+                position = appendedPosition;
+            } finally {
+                lock.unlock();
+            }
+            if (durability == Durability.ASYNC && !isClosed()) {
+                // Let records accumulate between forces
+                try {
+                    Thread.sleep(ASYNC_FORCE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            // Force outside the lock, so appends continue meanwhile. Every
+            // record appended before reading the position is covered.
+            IOException error = null;
+            try {
+                region.force();
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+            }
+            lock.lock();
+            try {
+                forced.signalAll();
+                if (error != null) {
+                    // Forcing again would most likely fail again, and
+                    // waiting for it never ends, so fail every caller instead
+                    forceError = error;
+                    return;
+                }
+                durablePosition = Math.max(durablePosition, position);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return True once the journal has been closed
+     */
+    private boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The position after the last record appended
+     */
+    long position() {
+        lock.lock();
+        try {
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays every valid record in the journal, in the order they were
+     * appended.
+     *
+     * @param replayer Receives the records
+     */
+    void replay(final Replayer replayer) {
+        replay(replayer, 0);
+    }
+
+    /**
+     * Replays the valid records in the journal after a position, in the order
+     * they were appended.
+     *
+     * @param replayer Receives the records
+     * @param fromPosition A position returned by {@link #position()}
+     */
+    void replay(final Replayer replayer, final long fromPosition) {
+        final ByteBuffer records;
+        lock.lock();
+        try {
+            if (fromPosition < 0 || fromPosition > appendedPosition) {
+                throw new IllegalArgumentException("Position " + fromPosition
+                    + " is past the end of the journal");
+            }
+            records = mapped.duplicate();
+            records.position((int) fromPosition).limit((int) appendedPosition);
+        } finally {
+            lock.unlock();
+        }
+        // Records are never modified once appended, so they can be read
+        // without the lock
+        while (records.hasRemaining()) {
+            final int length = records.getInt();
+            records.getInt();
+            ByteBuffer record = records.slice();
+            record.limit(length);
+            records.position(records.position() + length);
+
+            final byte type = record.get();
+            if (type == HOLD) {
+                final int seatHoldId = record.getInt();
+                final long expiresAtMillis = record.getLong();
+                final String email = getEmail(record);
+                int[] seats = new int[record.getInt()];
+                for (int i = 0; i < seats.length; i++) {
+                    seats[i] = record.getInt();
+                }
+                replayer.hold(seatHoldId, email, expiresAtMillis, seats);
+            } else if (type == RESERVE) {
+                final int seatHoldId = record.getInt();
+                replayer.reserve(seatHoldId, getEmail(record));
+            } else if (type == EXPIRE) {
+                final int seatHoldId = record.getInt();
+                replayer.expire(seatHoldId, getEmail(record));
+            }
+        }
+    }
+
+    /**
+     * @param record The record being read
+     * @return The email read from it
+     */
+    private static String getEmail(final ByteBuffer record) {
+        byte[] email = new byte[record.getShort()];
+        record.get(email);
+        return new String(email, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the end of the valid records in a journal: the first record that
+     * is empty, truncated, or fails its checksum.
+     *
+     * @param region The mapped journal
+     * @return The position after the last valid record
+     */
+    private static long findEnd(final ByteBuffer region) {
+        CRC32 crc = new CRC32();
+        int position = 0;
+        try {
+            while (position + HEADER_SIZE <= region.capacity()) {
+                final int length = region.getInt(position);
+                if (length <= 0
+                    || position + HEADER_SIZE + length > region.capacity()) {
+                    break;
+                }
+                ByteBuffer record = region.duplicate();
+                record.position(position + HEADER_SIZE)
+                    .limit(position + HEADER_SIZE + length);
+                crc.reset();
+                crc.update(record);
+                if ((int) crc.getValue()
+                    != region.getInt(position + Integer.BYTES)) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // A torn record; the journal ends before it
+        }
+        return position;
+    }
+
+    /**
+     * Forces every record to disk, then closes the file.
+     *
+     * @throws IOException If the file could not be closed, or an earlier
+     *     force failed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            forceThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final IOException error;
+        lock.lock();
+        try {
+            if (forceError == null) {
+                mapped.force();
+                durablePosition = appendedPosition;
+            }
+            error = forceError;
+            forced.signalAll();
+        } finally {
+            lock.unlock();
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
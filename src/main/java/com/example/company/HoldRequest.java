@@ -0,0 +1,67 @@
+package com.example.company;
+
+import com.example.company.struct.SeatingPreference;
+
+/**
+ * A customer's request to hold seats, for holding seats for many customers at
+ * once with Venue.findAndHoldSeats(List).
+ */
+public final class HoldRequest {
+
+    /**
+     * The number of seats to hold.
+     */
+    private final int numSeats;
+    /**
+     * The email of the customer trying to hold the seats.
+     */
+    private final String customerEmail;
+    /**
+     * The seating preference of the customer, or null for the venue's
+     * default.
+     */
+    private final SeatingPreference seatingPreference;
+
+    /**
+     * @param seats The number of seats to hold
+     * @param email The email of the customer trying to hold the seats
+     * @param preference The seating preference of the customer, or null for
+     *     the venue's default
+     */
+    public HoldRequest(final int seats, final String email,
+        final SeatingPreference preference) {
+        numSeats = seats;
+        customerEmail = email;
+        seatingPreference = preference;
+    }
+
+    /**
+     * @param seats The number of seats to hold
+     * @param email The email of the customer trying to hold the seats
+     */
+    public HoldRequest(final int seats, final String email) {
+        this(seats, email, null);
+    }
+
+    /**
+     * @return The number of seats to hold
+     */
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    /**
+     * @return The email of the customer trying to hold the seats
+     */
+    public String getCustomerEmail() {
+        return customerEmail;
+    }
+
+    /**
+     * @return The seating preference of the customer, or null for the venue's
+     *     default
+     */
+    public SeatingPreference getSeatingPreference() {
+        return seatingPreference;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.company;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the requests and responses of the TicketGateway: flat
+ * objects whose values are strings, numbers, booleans, or null.
+ */
+final class Json {
+
+    /**
+     * Not instantiable.
+     */
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object. Strings are unescaped; numbers, booleans,
+     * and null are kept as they were written (null as a Java null).
+     *
+     * @param text The JSON text
+     * @return The values of the object by name, in the order they appear
+     * @throws IllegalArgumentException If the text isn't a flat JSON object
+     */
+    static Map<String, String> parseObject(final String text) {
+        Map<String, String> values = new LinkedHashMap<>();
+        int[] position = {skipWhitespace(text, 0)};
+        expect(text, position, '{');
+        if (peek(text, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                final String name = parseString(text, position);
+                expect(text, position, ':');
+                values.put(name, parseValue(text, position));
+                if (peek(text, position) == ',') {
+                    position[0]++;
+                    continue;
+                }
+                expect(text, position, '}');
+                break;
+            }
+        }
+        if (skipWhitespace(text, position[0]) != text.length()) {
+            throw new IllegalArgumentException(
+                "Unexpected text after the object at " + position[0]);
+        }
+        return values;
+    }
+
+    /**
+     * @param text The JSON text
+     * @param position The position to start from, moved past the value
+     * @return A string value (unescaped), a literal as written, or null
+     */
+    private static String parseValue(final String text,
+        final int[] position) {
+        final char first = peek(text, position);
+        if (first == '"') {
+            return parseString(text, position);
+        } else if (first == '{' || first == '[') {
+            throw new IllegalArgumentException(
+                "Nested values aren't supported, at " + position[0]);
+        }
+        final int start = position[0];
+        int end = start;
+        while (end < text.length() && ",}".indexOf(text.charAt(end)) < 0
+            && !Character.isWhitespace(text.charAt(end))) {
+            end++;
+        }
+        final String literal = text.substring(start, end);
+        if (literal.isEmpty()) {
+            throw new IllegalArgumentException("Missing value at " + start);
+        }
+        position[0] = end;
+        return literal.equals("null") ? null : literal;
+    }
+
+    /**
+     * @param text The JSON text
+     * @param position The position of the opening quote, moved past the
+     *     closing quote
+     * @return The unescaped string
+     */
+    private static String parseString(final String text,
+        final int[] position) {
+        expect(text, position, '"');
+        StringBuilder value = new StringBuilder();
+        int index = position[0];
+        while (true) {
+            if (index >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            final char c = text.charAt(index++);
+            if (c == '"') {
+                break;
+            } else if (c != '\\') {
+                value.append(c);
+                continue;
+            } else if (index >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            final char escaped = text.charAt(index++);
+            switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (index + 4 > text.length()) {
+                        throw new IllegalArgumentException(
+                            "Truncated escape at " + index);
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(
+                            text.substring(index, index + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(
+                            "Invalid escape at " + index);
+                    }
+                    index += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+        position[0] = index;
+        return value.toString();
+    }
+
+    /**
+     * Skips whitespace, then checks the next character and moves past it.
+     *
+     * @param text The JSON text
+     * @param position The current position
+     * @param expected The character expected next
+     */
+    private static void expect(final String text, final int[] position,
+        final char expected) {
+        if (peek(text, position) != expected) {
+            throw new IllegalArgumentException(
+                "Expected '" + expected + "' at " + position[0]);
+        }
+        position[0]++;
+    }
+
+    /**
+     * Skips whitespace, and returns the next character without moving past
+     * it.
+     *
+     * @param text The JSON text
+     * @param position The current position, moved past any whitespace
+     * @return The next character
+     */
+    private static char peek(final String text, final int[] position) {
+        position[0] = skipWhitespace(text, position[0]);
+        if (position[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return text.charAt(position[0]);
+    }
+
+    /**
+     * @param text The JSON text
+     * @param position A position in the text
+     * @return The position of the next character that isn't whitespace
+     */
+    private static int skipWhitespace(final String text, final int position) {
+        int index = position;
+        while (index < text.length()
+            && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @param value A string
+     * @return The string as a quoted JSON string
+     */
+    static String quote(final String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2)
+            .append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.company;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies, in nanoseconds.
+ *
+ * <p>Latencies are counted in log-linear buckets: every power of 2 is split
+ * into 8 buckets, so a recorded latency is known to within 12.5%. Recording
+ * a latency is a single atomic increment, plus an add to a striped total.
+ */
+final class LatencyHistogram {
+
+    /**
+     * The number of bits of a latency (after its leading bit) used to pick
+     * its bucket.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * The number of buckets per power of 2.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The highest power of 2 with its own buckets (2^40ns is over 18
+     * minutes). Longer latencies are counted in the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+    /**
+     * The number of buckets.
+     */
+    static final int NUM_BUCKETS =
+        (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /**
+     * The number of latencies recorded in every bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    /**
+     * The sum of every latency recorded.
+     */
+    private final LongAdder totalNanos = new LongAdder();
+    /**
+     * The longest latency recorded.
+     */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param nanos A latency
+     * @return The bucket the latency is counted in
+     */
+    static int bucketOf(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+        final int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS))
+            & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket A bucket
+     * @return The longest latency counted in the bucket
+     */
+    static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS))
+            - 1;
+    }
+
+    /**
+     * @param nanos The latency to record
+     */
+    void record(final long nanos) {
+        buckets.incrementAndGet(bucketOf(nanos));
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Note: Latencies recorded while the snapshot is taken may or may not be
+     * included.
+     *
+     * @return A snapshot of the latencies recorded so far
+     */
+    LatencySnapshot snapshot() {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+        }
+        return new LatencySnapshot(counts, totalNanos.sum(), maxNanos.get());
+    }
+}
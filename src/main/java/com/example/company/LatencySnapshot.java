@@ -0,0 +1,119 @@
+package com.example.company;
+
+/**
+ * An immutable snapshot of a latency histogram. Percentiles are accurate to
+ * within 12.5%, and are rounded up.
+ */
+public final class LatencySnapshot {
+
+    /**
+     * The number of latencies in every bucket of the histogram.
+     */
+    private final long[] counts;
+    /**
+     * The number of latencies recorded.
+     */
+    private final long count;
+    /**
+     * The sum of every latency recorded, in nanoseconds.
+     */
+    private final long totalNanos;
+    /**
+     * The longest latency recorded, in nanoseconds.
+     */
+    private final long maxNanos;
+
+    /**
+     * @param bucketCounts The number of latencies in every bucket
+     * @param total The sum of every latency recorded
+     * @param max The longest latency recorded
+     */
+    LatencySnapshot(final long[] bucketCounts, final long total,
+        final long max) {
+        counts = bucketCounts;
+        totalNanos = total;
+        maxNanos = max;
+        long sum = 0;
+        for (long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        count = sum;
+    }
+
+    /**
+     * @return The number of latencies recorded
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The mean latency, in nanoseconds
+     */
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @return The median latency, in nanoseconds
+     */
+    public long getP50Nanos() {
+        return percentileNanos(50);
+    }
+
+    /**
+     * @return The 90th percentile latency, in nanoseconds
+     */
+    public long getP90Nanos() {
+        return percentileNanos(90);
+    }
+
+    /**
+     * @return The 99th percentile latency, in nanoseconds
+     */
+    public long getP99Nanos() {
+        return percentileNanos(99);
+    }
+
+    /**
+     * @return The 99.9th percentile latency, in nanoseconds
+     */
+    public long getP999Nanos() {
+        return percentileNanos(99.9);
+    }
+
+    /**
+     * @return The longest latency recorded, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param percentile A percentile, from 0 to 100
+     * @return The latency at that percentile, in nanoseconds, or 0 if no
+     *     latencies were recorded
+     */
+    public long percentileNanos(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1,
+            (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(maxNanos, LatencyHistogram.upperBoundOf(bucket));
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + getMeanNanos() + "ns p50="
+            + getP50Nanos() + "ns p99=" + getP99Nanos() + "ns p99.9="
+            + getP999Nanos() + "ns max=" + maxNanos + "ns";
+    }
+}
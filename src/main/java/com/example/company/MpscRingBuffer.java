@@ -0,0 +1,123 @@
+package com.example.company;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producer threads and a single consumer
+ * thread.
+ *
+ * <p>Every slot of the ring has a sequence number recording whose turn it is:
+ * a producer claims the next position with a single CAS, writes its element,
+ * then publishes it by advancing the slot's sequence. The consumer only reads
+ * slots whose sequence shows they have been published, so it never needs a
+ * CAS.
+ *
+ * @param <E> The type of the elements in the queue
+ */
+final class MpscRingBuffer<E> {
+
+    /**
+     * The elements in the queue.
+     */
+    private final AtomicReferenceArray<E> elements;
+    /**
+     * For every slot, the position it can be written at (if it is equal to the
+     * position), or the position after the one written to it (if it is one
+     * greater).
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * The mask used to map a position to its slot.
+     */
+    private final int mask;
+    /**
+     * The next position to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong(0);
+    /**
+     * The next position to be read by the consumer. Only accessed by the
+     * consumer thread.
+     */
+    private long head = 0;
+
+    /**
+     * @param minCapacity The minimum number of elements the queue can hold
+     *     (rounded up to a power of 2)
+     */
+    MpscRingBuffer(final int minCapacity) {
+        if (minCapacity <= 0 || minCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity: " + minCapacity);
+        }
+        int capacity = Integer.highestOneBit(minCapacity);
+        if (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds an element to the queue, if it isn't full. Safe to call from any
+     * thread.
+     *
+     * @param element The element to add
+     * @return True if the element was added, false if the queue was full
+     */
+    boolean offer(final E element) {
+        long position = tail.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long sequence = sequences.get(slot);
+            if (sequence == position) {
+                // The slot is free; claim the position
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(slot, element);
+                    // Publish the element to the consumer
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // The consumer hasn't read the element a full ring ago yet
+                return false;
+            } else {
+                // Another producer claimed the position first
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the element at the head of the queue. Must only be called from
+     * the consumer thread.
+     *
+     * @return The element, or null if the queue is empty
+     */
+    E poll() {
+        final int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        final E element = elements.get(slot);
+        elements.lazySet(slot, null);
+        // Free the slot for the position a full ring later
+        sequences.lazySet(slot, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    /**
+     * Must only be called from the consumer thread.
+     *
+     * @return True if there are no published elements to read
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,621 @@
+package com.example.company;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A feed of the changes to the state of a venue's seats, for keeping live
+ * seat maps up to date without polling the venue.
+ *
+ * <p>Holds, reservations, and releases (whether a hold expired or was
+ * cancelled) hand their seats to the feed through a lock-free ring buffer, so
+ * the threads changing the seats never wait for the feed or its subscribers.
+ * Once every window, the venue's hold timer drains the ring and marks the
+ * seats that changed for every subscriber. Each subscriber is then sent one
+ * {@link SeatChanges} with the latest state of each of those seats, coalesced
+ * into ranges of consecutive seats.
+ *
+ * <p>Subscribers are only sent changes they have requested. The changes of a
+ * subscriber without demand are coalesced until it requests more, so a slow
+ * subscriber gets fewer, larger updates, while the memory it uses stays
+ * bounded by the size of the venue. (The same goes for a subscriber that is
+ * still handling the last changes it was sent.) The first changes sent to a
+ * subscriber are the full map of the venue.
+ *
+ * <p>If the ring fills up within a window, the feed discards the changes left
+ * in it, rebuilds its map from the venue, and sends every subscriber the full
+ * map. Like the changes made while the feed is enabled, the rebuilt map is
+ * only weakly consistent with holds that are in progress; the seats they
+ * change are sent again once they are done. (Seats are recorded as free just
+ * before they are released, so a release whose record was dropped, or
+ * discarded before the map was read, has the map rebuilt again once the
+ * seats have been released.)
+ *
+ * <p>Subscribers are never called from the venue's hold timer, so a slow or
+ * failing subscriber can't delay the expiration of holds. Each subscriber is
+ * called on the executor it subscribed with (the common fork/join pool by
+ * default), one call at a time. A subscriber that may block (e.g. on a slow
+ * client) should subscribe with its own executor, so it doesn't hold up the
+ * pool's other tasks.
+ */
+public final class SeatChangeFeed implements Flow.Publisher<SeatChanges> {
+
+    /**
+     * The default duration of a window, in milliseconds.
+     */
+    private static final long DEFAULT_WINDOW_MILLIS = 100;
+    /**
+     * The number of changes that can be waiting to be applied.
+     */
+    private static final int CAPACITY = 1 << 16;
+    /**
+     * The state of the seats that can't be sold.
+     */
+    private static final byte UNAVAILABLE = -1;
+
+    /**
+     * The venue's seats that are available to hold.
+     */
+    private final SeatInventory inventory;
+    /**
+     * The venue's reserved SeatHolds.
+     */
+    private final HoldIndex reservations;
+    /**
+     * The timer the windows are closed on.
+     */
+    private final TimingWheel timer;
+    /**
+     * The seats that can be sold.
+     */
+    private final BitSet sellableSeats;
+    /**
+     * The changes that haven't been applied yet.
+     */
+    private final MpscRingBuffer<Change> changes =
+        new MpscRingBuffer<>(CAPACITY);
+    /**
+     * Closes a window once its timeout expires.
+     */
+    private final TimingWheel.ExpiryHandler<SeatChangeFeed> windowHandler =
+        this::closeWindow;
+    /**
+     * The subscriptions that haven't been cancelled.
+     */
+    private final CopyOnWriteArrayList<Subscription> subscriptions =
+        new CopyOnWriteArrayList<>();
+    /**
+     * The seats that changed during the current window. Only accessed while
+     * synchronized on the feed.
+     */
+    private final BitSet changedSeats = new BitSet();
+    /**
+     * The ordinal of the state of every seat, or UNAVAILABLE for seats that
+     * can't be sold. Only accessed while synchronized on the feed.
+     */
+    private byte[] seatStates;
+    /**
+     * The timeout closing the current window. Only accessed while
+     * synchronized on the feed.
+     */
+    private TimingWheel.Timeout<SeatChangeFeed> windowTimeout;
+    /**
+     * True once the feed has been closed. Only accessed while synchronized on
+     * the feed.
+     */
+    private boolean closed;
+    /**
+     * True if a change was dropped because the ring was full.
+     */
+    private volatile boolean overflowed;
+    /**
+     * The number of times the map has been rebuilt from the venue. Only
+     * written while synchronized on the feed.
+     */
+    private volatile long rebuilds;
+    /**
+     * The duration of a window, in nanoseconds.
+     */
+    private volatile long windowNanos =
+        TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+
+    /**
+     * A change waiting to be applied.
+     */
+    private static final class Change {
+
+        /**
+         * The seats that changed. Never modified once the change is made.
+         */
+        private final Set<Integer> seats;
+        /**
+         * The ordinal of the state the seats changed to.
+         */
+        private final byte state;
+
+        /**
+         * @param changedSeats The seats that changed
+         * @param newState The state the seats changed to
+         */
+        private Change(final Set<Integer> changedSeats,
+            final SeatState newState) {
+            seats = changedSeats;
+            state = (byte) newState.ordinal();
+        }
+    }
+
+    /**
+     * A subscriber's subscription to the feed.
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        /**
+         * The subscriber.
+         */
+        private final Flow.Subscriber<? super SeatChanges> subscriber;
+        /**
+         * The executor the subscriber is called on.
+         */
+        private final Executor executor;
+        /**
+         * The calls to the subscriber waiting to be made, in order.
+         */
+        private final ConcurrentLinkedQueue<Runnable> signals =
+            new ConcurrentLinkedQueue<>();
+        /**
+         * The number of calls to the subscriber that haven't been made yet.
+         * The thread that raises it from zero starts making them.
+         */
+        private final AtomicInteger pendingSignals = new AtomicInteger();
+        /**
+         * The number of changes requested but not yet sent.
+         */
+        private final AtomicLong demand = new AtomicLong();
+        /**
+         * The seats that changed since the subscriber was last sent changes.
+         * Only accessed while synchronized on the feed.
+         */
+        private final BitSet dirtySeats = new BitSet();
+        /**
+         * True if the next changes are the full map. Only accessed while
+         * synchronized on the feed.
+         */
+        private boolean fullMap = true;
+        /**
+         * The number of changes sent to the subscriber. Only accessed while
+         * synchronized on the feed.
+         */
+        private long sent;
+        /**
+         * True if the subscriber is about to be sent changes, which haven't
+         * been collected yet. Only accessed while synchronized on the feed.
+         */
+        private boolean sendPending;
+        /**
+         * True once the subscription has been cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * @param feedSubscriber The subscriber
+         * @param subscriberExecutor The executor to call the subscriber on
+         */
+        private Subscription(
+            final Flow.Subscriber<? super SeatChanges> feedSubscriber,
+            final Executor subscriberExecutor) {
+            subscriber = feedSubscriber;
+            executor = subscriberExecutor;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                synchronized (SeatChangeFeed.this) {
+                    if (!cancelled) {
+                        cancel();
+                        signal(() -> subscriber.onError(
+                            new IllegalArgumentException(
+                                "The number of changes requested must be "
+                                    + "positive: " + n)));
+                    }
+                }
+                return;
+            }
+            // Demand is capped at Long.MAX_VALUE, which means unbounded
+            demand.accumulateAndGet(n,
+                (current, added) -> current + added < 0
+                    ? Long.MAX_VALUE : current + added);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Arranges for the subscriber to be sent the seats that changed since
+         * it was last sent changes, if it has requested them. Must be called
+         * while synchronized on the feed.
+         */
+        private void deliver() {
+            if (cancelled || sendPending || dirtySeats.isEmpty()
+                || demand.get() == 0) {
+                return;
+            }
+            // The changes are collected once the subscriber is done with the
+            // last ones, so a slow subscriber has them coalesced
+            sendPending = true;
+            signal(this::sendChanges);
+        }
+
+        /**
+         * Sends the subscriber the seats that changed since it was last sent
+         * changes. Called on the subscriber's executor.
+         */
+        private void sendChanges() {
+            final SeatChanges seatChanges;
+            synchronized (SeatChangeFeed.this) {
+                sendPending = false;
+                if (cancelled || dirtySeats.isEmpty() || demand.get() == 0) {
+                    return;
+                }
+                seatChanges = collectChanges(sent, fullMap, dirtySeats);
+                dirtySeats.clear();
+                fullMap = false;
+                sent++;
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+            }
+            subscriber.onNext(seatChanges);
+        }
+
+        /**
+         * Completes the subscription, unless it was cancelled. Called on the
+         * subscriber's executor.
+         */
+        private void complete() {
+            if (!cancelled) {
+                cancelled = true;
+                subscriber.onComplete();
+            }
+        }
+
+        /**
+         * Calls the subscriber on its executor, after the calls made before.
+         * If the executor rejects the call, the subscription is cancelled.
+         *
+         * @param signal The call
+         */
+        private void signal(final Runnable signal) {
+            signals.add(signal);
+            if (pendingSignals.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drainSignals);
+                } catch (RejectedExecutionException e) {
+                    cancel();
+                }
+            }
+        }
+
+        /**
+         * Makes the calls to the subscriber that are waiting, until there are
+         * none left.
+         */
+        private void drainSignals() {
+            do {
+                try {
+                    signals.poll().run();
+                } catch (RuntimeException e) {
+                    // A subscriber that fails is treated as cancelled
+                    cancel();
+                }
+            } while (pendingSignals.decrementAndGet() != 0);
+        }
+    }
+
+    /**
+     * Starts a feed of the changes to a venue's seats. The map the feed
+     * starts from is read from the venue, so changes being made while it is
+     * read are only weakly consistent with it.
+     *
+     * @param seatInventory The venue's seats that are available to hold
+     * @param reservedSeats The venue's reserved SeatHolds
+     * @param windowTimer The timer to close windows on
+     */
+    SeatChangeFeed(final SeatInventory seatInventory,
+        final HoldIndex reservedSeats, final TimingWheel windowTimer) {
+        inventory = seatInventory;
+        reservations = reservedSeats;
+        timer = windowTimer;
+        sellableSeats =
+            BitSet.valueOf(inventory.getLayout().copyAvailableSeats());
+        synchronized (this) {
+            seatStates = readSeatStates();
+            windowTimeout = timer.schedule(windowHandler, this, windowNanos,
+                TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records that seats changed state. Never blocks; if the ring is full,
+     * the change is dropped, and the feed rebuilds its map from the venue.
+     *
+     * <p>Note: A seat must be recorded in its new state before any other
+     * thread can change it again (e.g. seats are recorded as free before
+     * they are released), so the changes to every seat are applied in the
+     * order they happened. Seats recorded as free must be passed to
+     * {@link #released} once they have been released.
+     *
+     * @param seats The seats, which must not be modified afterwards
+     * @param state The state the seats changed to
+     * @return The token of the change, for released
+     */
+    long record(final Set<Integer> seats, final SeatState state) {
+        final long rebuild = rebuilds;
+        if (!changes.offer(new Change(seats, state))) {
+            overflowed = true;
+            return -1;
+        }
+        return rebuild;
+    }
+
+    /**
+     * Records that seats recorded as free have been released. If their
+     * change was dropped, or the map was rebuilt since it was recorded (so it
+     * may have been discarded, and the seats read before they were
+     * released), the map is rebuilt again now that they have been.
+     *
+     * @param token The token returned when the seats were recorded
+     */
+    void released(final long token) {
+        if (token == -1 || token != rebuilds) {
+            overflowed = true;
+        }
+    }
+
+    /**
+     * Subscribes to the feed, calling the subscriber on the common fork/join
+     * pool.
+     *
+     * @param subscriber The subscriber
+     */
+    @Override
+    public void subscribe(
+        final Flow.Subscriber<? super SeatChanges> subscriber) {
+        subscribe(subscriber, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Subscribes to the feed, calling the subscriber on an executor (one
+     * call at a time, even if the executor has several threads).
+     *
+     * @param subscriber The subscriber
+     * @param executor The executor to call the subscriber on, which should
+     *     never run the calls on the thread handing them to it
+     */
+    public void subscribe(
+        final Flow.Subscriber<? super SeatChanges> subscriber,
+        final Executor executor) {
+        Objects.requireNonNull(subscriber, "The subscriber must not be null");
+        Objects.requireNonNull(executor, "The executor must not be null");
+        final Subscription subscription =
+            new Subscription(subscriber, executor);
+        synchronized (this) {
+            if (!closed) {
+                subscription.dirtySeats.or(sellableSeats);
+                subscriptions.add(subscription);
+            }
+            subscription.signal(() -> subscriber.onSubscribe(subscription));
+            if (closed) {
+                subscription.signal(subscription::complete);
+            }
+        }
+    }
+
+    /**
+     * @return The number of subscriptions that haven't been cancelled
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @param unit The unit to return the window in
+     * @return The time the changes sent to subscribers are coalesced over
+     */
+    public long getWindow(final TimeUnit unit) {
+        return unit.convert(windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the time the changes sent to subscribers are coalesced over,
+     * starting from the next window.
+     *
+     * @param duration The duration of a window
+     * @param unit The unit of the duration
+     */
+    public void setWindow(final long duration, final TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException(
+                "The window must be positive: " + duration);
+        }
+        windowNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * Sends the last changes to the subscribers, then completes their
+     * subscriptions. Subscribers that subscribe afterwards are completed
+     * right away. (Like the changes, the completions are sent on the
+     * subscribers' executors, so they may arrive after this returns.)
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        timer.cancel(windowTimeout);
+        applyChanges();
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.signal(subscription::complete);
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * Applies the changes made during the window that just ended, sends them
+     * to the subscribers, and starts the next window.
+     *
+     * @param timeouts The window's timeout
+     */
+    private synchronized void closeWindow(
+        final List<TimingWheel.Timeout<SeatChangeFeed>> timeouts) {
+        if (closed) {
+            return;
+        }
+        try {
+            applyChanges();
+        } finally {
+            windowTimeout = timer.schedule(windowHandler, this, windowNanos,
+                TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Applies the changes waiting in the ring, and has every subscriber sent
+     * the seats that changed. Must be called while synchronized on the feed.
+     */
+    private void applyChanges() {
+        if (overflowed) {
+            // Some changes were dropped, so rebuild the map from the venue.
+            // The changes still in the ring were recorded before it is read,
+            // and applying them on top of it could undo a later change whose
+            // record was dropped, so they are discarded. (Those not in
+            // effect yet, i.e. seats about to be released, are caught by
+            // released.)
+            overflowed = false;
+            while (changes.poll() != null) {
+                // Discard the change
+            }
+            rebuilds++;
+            seatStates = readSeatStates();
+            for (Subscription subscription : subscriptions) {
+                subscription.fullMap = true;
+                subscription.dirtySeats.or(sellableSeats);
+            }
+        }
+        for (Change change = changes.poll(); change != null;
+            change = changes.poll()) {
+            markSeats(seatStates, change.seats, change.state, changedSeats);
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.dirtySeats.or(changedSeats);
+            subscription.deliver();
+        }
+        changedSeats.clear();
+    }
+
+    /**
+     * @return The ordinal of the state of every seat of the venue, or
+     *     UNAVAILABLE for seats that can't be sold
+     */
+    private byte[] readSeatStates() {
+        byte[] states = new byte[inventory.getLayout().getTotalSeats()];
+        for (int seat = 0; seat < states.length; seat++) {
+            if (!sellableSeats.get(seat)) {
+                states[seat] = UNAVAILABLE;
+            } else if (inventory.isFree(seat)) {
+                states[seat] = (byte) SeatState.FREE.ordinal();
+            } else {
+                states[seat] = (byte) SeatState.HELD.ordinal();
+            }
+        }
+        reservations.forEach(seatHold -> markSeats(states,
+            seatHold.getReservedSeats(), (byte) SeatState.RESERVED.ordinal(),
+            null));
+        return states;
+    }
+
+    /**
+     * Sets the state of some seats.
+     *
+     * @param states The ordinal of the state of every seat
+     * @param seats The seats
+     * @param state The ordinal of the seats' new state
+     * @param changed The set of seats to add the seats to, or null
+     */
+    private static void markSeats(final byte[] states,
+        final Set<Integer> seats, final byte state, final BitSet changed) {
+        if (seats instanceof SeatRuns) {
+            final SeatRuns runs = (SeatRuns) seats;
+            for (int range = 0; range < runs.getRangeCount(); range++) {
+                Arrays.fill(states, runs.getRangeStart(range),
+                    runs.getRangeEnd(range), state);
+                if (changed != null) {
+                    changed.set(runs.getRangeStart(range),
+                        runs.getRangeEnd(range));
+                }
+            }
+        } else {
+            for (int seat : seats) {
+                states[seat] = state;
+                if (changed != null) {
+                    changed.set(seat);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the state of some seats into ranges of consecutive seats in
+     * the same state. Must be called while synchronized on the feed.
+     *
+     * @param sequence The number of the changes among those sent to the
+     *     subscriber
+     * @param fullMap True if every seat that can be sold is reported
+     * @param seats The seats
+     * @return The changes
+     */
+    private SeatChanges collectChanges(final long sequence,
+        final boolean fullMap, final BitSet seats) {
+        int[] ranges = new int[8];
+        byte[] states = new byte[4];
+        int count = 0;
+        for (int start = seats.nextSetBit(0); start != -1;
+            start = seats.nextSetBit(start)) {
+            final int end = seats.nextClearBit(start);
+            while (start < end) {
+                final byte state = seatStates[start];
+                int stop = start + 1;
+                while (stop < end && seatStates[stop] == state) {
+                    stop++;
+                }
+                if (state != UNAVAILABLE) {
+                    if (count == states.length) {
+                        ranges = Arrays.copyOf(ranges, count * 4);
+                        states = Arrays.copyOf(states, count * 2);
+                    }
+                    ranges[count * 2] = start;
+                    ranges[count * 2 + 1] = stop;
+                    states[count++] = state;
+                }
+                start = stop;
+            }
+        }
+        return new SeatChanges(sequence, fullMap,
+            Arrays.copyOf(ranges, count * 2), Arrays.copyOf(states, count));
+    }
+}
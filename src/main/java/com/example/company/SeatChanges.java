@@ -0,0 +1,117 @@
+package com.example.company;
+
+/**
+ * The seats of a venue whose state changed during a window of its
+ * {@link SeatChangeFeed}, with the state each one ended the window in. A seat
+ * that changed several times during the window is only reported once, in its
+ * latest state.
+ *
+ * <p>Seats are reported as ranges of consecutive seats in the same state, in
+ * ascending order, so a hold of a block of seats is a single range however
+ * many seats it has.
+ *
+ * <p>Instances are immutable.
+ */
+public final class SeatChanges {
+
+    /**
+     * The states, in order of their ordinals.
+     */
+    private static final SeatState[] STATES = SeatState.values();
+
+    /**
+     * The number of the changes among those sent to the subscriber, starting
+     * at 0.
+     */
+    private final long sequence;
+    /**
+     * True if every seat that can be sold is reported, not only those that
+     * changed.
+     */
+    private final boolean fullMap;
+    /**
+     * The ranges, as (first seat, seat after the last seat) pairs.
+     */
+    private final int[] ranges;
+    /**
+     * The ordinal of the state of every range.
+     */
+    private final byte[] states;
+
+    /**
+     * @param changeSequence The number of the changes among those sent to
+     *     the subscriber
+     * @param isFullMap True if every seat that can be sold is reported
+     * @param seatRanges The ranges, as (first seat, seat after the last seat)
+     *     pairs. Used as it is, not copied.
+     * @param rangeStates The ordinal of the state of every range. Used as it
+     *     is, not copied.
+     */
+    SeatChanges(final long changeSequence, final boolean isFullMap,
+        final int[] seatRanges, final byte[] rangeStates) {
+        sequence = changeSequence;
+        fullMap = isFullMap;
+        ranges = seatRanges;
+        states = rangeStates;
+    }
+
+    /**
+     * @return The number of these changes among those sent to the
+     *     subscriber, starting at 0. Consecutive changes have consecutive
+     *     numbers.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return True if every seat that can be sold is reported (e.g. in the
+     *     first changes sent to a subscriber), in which case they replace the
+     *     subscriber's picture of the venue instead of updating it
+     */
+    public boolean isFullMap() {
+        return fullMap;
+    }
+
+    /**
+     * @return The number of ranges of consecutive seats in the same state
+     */
+    public int getRangeCount() {
+        return states.length;
+    }
+
+    /**
+     * @param range The index of a range
+     * @return The first seat of the range
+     */
+    public int getRangeStart(final int range) {
+        return ranges[range * 2];
+    }
+
+    /**
+     * @param range The index of a range
+     * @return The seat after the last seat of the range
+     */
+    public int getRangeEnd(final int range) {
+        return ranges[range * 2 + 1];
+    }
+
+    /**
+     * @param range The index of a range
+     * @return The state the seats of the range are in
+     */
+    public SeatState getRangeState(final int range) {
+        return STATES[states[range]];
+    }
+
+    /**
+     * @return The number of seats reported
+     */
+    public int getSeatCount() {
+        int count = 0;
+        for (int range = 0; range < states.length; range++) {
+            count += ranges[range * 2 + 1] - ranges[range * 2];
+        }
+        return count;
+    }
+}
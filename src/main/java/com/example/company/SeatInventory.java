@@ -0,0 +1,931 @@
+package com.example.company;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of the seats in a venue that are available to hold. Seats are stored
+ * as a bitmap packed into 64-bit words, where a set bit represents a free
+ * seat. A seat is claimed (or released) with a compare-and-set on the word
+ * containing it, so no per-seat nodes or boxed Integers are needed, and
+ * which thread wins a seat is decided without locking.
+ *
+ * <p>The number of free seats in the venue, and in each of its rows and
+ * sections, is kept in counters that are updated by every successful claim
+ * and release, so they can be read in constant time.
+ *
+ * <p>Every section of the venue's layout is stored as a separate shard with
+ * its own bitmap and counters, so threads working in different sections never
+ * contend on the same words.
+ *
+ * <p>Each shard also maintains a {@link FreeRunIndex} of its runs of
+ * consecutive free seats in every row, so a block of seats for a group (in a
+ * single row, or over adjacent rows) can be found without copying or
+ * rescanning the bitmap. The index is updated under a lock of its shard after
+ * every successful claim or release, so claiming and releasing seats is not
+ * lock-free: a thread updating the index can briefly block others doing the
+ * same in its section. The index may lag behind the bitmap meanwhile, so the
+ * runs it returns are only candidates, to be claimed seat by seat.
+ *
+ * <p>The best seats according to a {@link SeatScorer} (e.g. those closest to
+ * the center) are found by walking the layout's {@link SeatRanking} for it,
+ * starting from a cursor that skips the seats known to be unavailable.
+ */
+public class SeatInventory {
+
+    /**
+     * The number of bits needed to address a bit within a word.
+     */
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    /**
+     * The number of seats stored in every word of the bitmap.
+     */
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+    /**
+     * A word with every bit set.
+     */
+    private static final long WORD_MASK = 0xFFFFFFFFFFFFFFFFL;
+
+    /**
+     * The layout of the venue the seats belong to.
+     */
+    private final VenueLayout layout;
+    /**
+     * The number of seats the bitmap is able to represent.
+     */
+    private final int capacity;
+    /**
+     * The shards of the inventory, one for every section of the venue.
+     */
+    private final Shard[] shards;
+    /**
+     * The index of the first seat of every shard.
+     */
+    private final int[] shardStarts;
+    /**
+     * The cursors into every ranking seats have been claimed in. Replaced
+     * (never modified) whenever one is added.
+     */
+    private volatile RankCursor[] rankCursors = new RankCursor[0];
+
+    /**
+     * A cursor into a ranking of the venue's seats.
+     */
+    private static final class RankCursor {
+
+        /**
+         * The ranking.
+         */
+        private final SeatRanking ranking;
+        /**
+         * A position in the ranking before which every seat is known to be
+         * unavailable (low 32 bits), and the number of times a seat has been
+         * released (high 32 bits). Releases lower the position and bump the
+         * count, so a hold that read the cursor before a release can't
+         * advance it past the released seat.
+         */
+        private final AtomicLong position = new AtomicLong();
+
+        /**
+         * @param seatRanking The ranking
+         */
+        private RankCursor(final SeatRanking seatRanking) {
+            ranking = seatRanking;
+        }
+    }
+
+    /**
+     * The seats of a single section of the venue.
+     */
+    private static final class Shard {
+
+        /**
+         * The index of the first seat in the shard.
+         */
+        private final int firstSeat;
+        /**
+         * The index after the last seat in the shard.
+         */
+        private final int endSeat;
+        /**
+         * The index of the first row in the shard.
+         */
+        private final int firstRow;
+        /**
+         * The bitmap itself. Bit i of word w represents the seat with index
+         * (firstSeat + w * 64 + i).
+         */
+        private final AtomicLongArray words;
+        /**
+         * The number of free seats in the shard.
+         */
+        private final AtomicInteger freeSeats;
+        /**
+         * The number of free seats in every row of the shard.
+         */
+        private final AtomicIntegerArray freeSeatsInRow;
+        /**
+         * The runs of free seats in the shard, relative to its first seat.
+         * Updated (while synchronized on the index) to the state of the
+         * bitmap after every successful claim or release of a seat in it.
+         */
+        private final FreeRunIndex runs;
+
+        /**
+         * @param layout The layout of the venue
+         * @param section The section of the venue the shard represents
+         * @param venueSeats The free seats of the whole venue, as 64-seat
+         *     words
+         */
+        private Shard(final VenueLayout layout, final int section,
+            final long[] venueSeats) {
+            firstRow = layout.getSectionStartRow(section);
+            final int endRow = layout.getSectionStartRow(section + 1);
+            firstSeat = layout.getRowStart(firstRow);
+            endSeat = layout.getRowStart(endRow);
+
+            // Copy the shard's seats a word at a time, shifting them so the
+            // first seat of the shard is bit 0
+            final int numSeats = endSeat - firstSeat;
+            long[] bitmap =
+                new long[((numSeats - 1) >> ADDRESS_BITS_PER_WORD) + 1];
+            for (int index = 0; index < bitmap.length; index++) {
+                bitmap[index] =
+                    wordAt(venueSeats, firstSeat + index * BITS_PER_WORD);
+            }
+            if ((numSeats & (BITS_PER_WORD - 1)) != 0) {
+                bitmap[bitmap.length - 1] &= ~(WORD_MASK << numSeats);
+            }
+            words = new AtomicLongArray(bitmap);
+            int[] rowStarts = new int[endRow - firstRow + 1];
+            for (int row = firstRow; row <= endRow; row++) {
+                rowStarts[row - firstRow] = layout.getRowStart(row) - firstSeat;
+            }
+            runs = new FreeRunIndex(rowStarts, BitSet.valueOf(bitmap));
+
+            int[] rowCounts = new int[endRow - firstRow];
+            int total = 0;
+            for (int row = firstRow; row < endRow; row++) {
+                final int rowStart = layout.getRowStart(row) - firstSeat;
+                rowCounts[row - firstRow] = countBits(bitmap, rowStart,
+                    rowStart + layout.getRowLength(row));
+                total += rowCounts[row - firstRow];
+            }
+            freeSeats = new AtomicInteger(total);
+            freeSeatsInRow = new AtomicIntegerArray(rowCounts);
+        }
+    }
+
+    /**
+     * Creates an inventory for the seats of a venue. Every seat the layout
+     * marks as available is initially free.
+     *
+     * @param venueLayout The layout of the venue
+     */
+    public SeatInventory(final VenueLayout venueLayout) {
+        this(venueLayout, venueLayout.copyAvailableSeats());
+    }
+
+    /**
+     * Creates an inventory for the seats of a venue, where only some of the
+     * seats are free (e.g. when restoring a venue from a snapshot).
+     *
+     * @param venueLayout The layout of the venue
+     * @param freeSeats The free seats, as a bitmap of 64-seat words (a set bit
+     *     represents a free seat)
+     */
+    public SeatInventory(final VenueLayout venueLayout,
+        final long[] freeSeats) {
+        layout = venueLayout;
+        capacity = layout.getTotalSeats();
+        shards = new Shard[layout.getNumSections()];
+        shardStarts = new int[shards.length];
+        for (int section = 0; section < shards.length; section++) {
+            shards[section] = new Shard(layout, section, freeSeats);
+            shardStarts[section] = shards[section].firstSeat;
+        }
+    }
+
+    /**
+     * @param bitmap A bitmap of 64-bit words
+     * @param from The index of a bit
+     * @return The 64 bits of the bitmap starting at that index (bits past the
+     *     end of the bitmap are clear)
+     */
+    private static long wordAt(final long[] bitmap, final int from) {
+        final int index = from >> ADDRESS_BITS_PER_WORD;
+        final int shift = from & (BITS_PER_WORD - 1);
+        long word = index < bitmap.length ? bitmap[index] >>> shift : 0;
+        if (shift != 0 && index + 1 < bitmap.length) {
+            word |= bitmap[index + 1] << -shift;
+        }
+        return word;
+    }
+
+    /**
+     * @param bitmap A bitmap of 64-bit words
+     * @param from The index of the first bit to count (inclusive)
+     * @param to The index of the last bit to count (exclusive)
+     * @return The number of set bits in that range
+     */
+    private static int countBits(final long[] bitmap, final int from,
+        final int to) {
+        int count = 0;
+        for (int bit = from; bit < to; bit += BITS_PER_WORD) {
+            long word = wordAt(bitmap, bit);
+            if (to - bit < BITS_PER_WORD) {
+                word &= ~(WORD_MASK << (to - bit));
+            }
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of seats the inventory is able to represent
+     */
+    public final int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The layout of the venue the seats belong to
+     */
+    public final VenueLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return The number of shards (i.e. sections) the inventory is split into
+     */
+    public final int getNumSections() {
+        return shards.length;
+    }
+
+    /**
+     * @param section The index of a section
+     * @return The index of the first seat in that section
+     */
+    public final int getSectionStart(final int section) {
+        return shards[section].firstSeat;
+    }
+
+    /**
+     * @param section The index of a section
+     * @return The index after the last seat in that section
+     */
+    public final int getSectionEnd(final int section) {
+        return shards[section].endSeat;
+    }
+
+    /**
+     * @param seat The index of a seat within the venue
+     * @return The index of the shard containing that seat
+     */
+    private int sectionOf(final int seat) {
+        // Find the last shard starting at or before the seat. Any empty
+        // shards starting at the same seat come before the one containing it.
+        int low = 0;
+        int high = shardStarts.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (shardStarts[middle] <= seat) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Updates the counters of free seats, and the index of runs, after a seat
+     * changes state.
+     *
+     * @param shard The shard containing the seat
+     * @param seat The seat that was claimed or released
+     * @param delta -1 if the seat was claimed, 1 if it was released
+     */
+    private void updateCounters(final Shard shard, final int seat,
+        final int delta) {
+        shard.freeSeatsInRow.addAndGet(
+            layout.getRowOf(seat) - shard.firstRow, delta);
+        shard.freeSeats.addAndGet(delta);
+        updateRuns(shard, seat - shard.firstSeat);
+    }
+
+    /**
+     * Brings the index of runs up to date with the bitmap for a seat.
+     *
+     * <p>Note: The seat may have changed state again between the CAS that
+     * changed it and this update (e.g. a released seat claimed by another
+     * thread before the releasing thread gets here), so the updates for a
+     * seat can reach the index out of order. Each update therefore re-reads
+     * the seat's bit while holding the index's lock and records that state,
+     * rather than the change its caller made: whichever update comes last
+     * reads the seat's latest state, so the index always catches up.
+     *
+     * @param shard The shard containing the seat
+     * @param offset The offset of the seat in the shard
+     */
+    private static void updateRuns(final Shard shard, final int offset) {
+        synchronized (shard.runs) {
+            if ((shard.words.get(offset >> ADDRESS_BITS_PER_WORD)
+                & (1L << offset)) != 0) {
+                shard.runs.release(offset);
+            } else {
+                shard.runs.claim(offset);
+            }
+        }
+    }
+
+    /**
+     * Attempts to claim a free seat, making it unavailable.
+     *
+     * @param seat The index of the seat to claim
+     * @return True if the seat was free and this call claimed it, false if it
+     *     was unavailable (or another thread claimed it first)
+     */
+    public final boolean tryClaim(final int seat) {
+        if (seat < 0 || seat >= capacity) {
+            return false;
+        }
+        final Shard shard = shards[sectionOf(seat)];
+        final int offset = seat - shard.firstSeat;
+        final int index = offset >> ADDRESS_BITS_PER_WORD;
+        final long bit = 1L << offset;
+        long word = shard.words.get(index);
+        // Retry while the seat is still free; a failed CAS only means another
+        // seat sharing this word changed.
+        while ((word & bit) != 0) {
+            if (shard.words.compareAndSet(index, word, word & ~bit)) {
+                updateCounters(shard, seat, -1);
+                return true;
+            }
+            word = shard.words.get(index);
+        }
+        return false;
+    }
+
+    /**
+     * Makes a seat available to hold again.
+     *
+     * @param seat The index of the seat to release
+     * @return True if the seat was unavailable before this call
+     */
+    public final boolean release(final int seat) {
+        if (seat < 0 || seat >= capacity) {
+            return false;
+        }
+        final Shard shard = shards[sectionOf(seat)];
+        final int offset = seat - shard.firstSeat;
+        final int index = offset >> ADDRESS_BITS_PER_WORD;
+        final long bit = 1L << offset;
+        long word = shard.words.get(index);
+        while ((word & bit) == 0) {
+            if (shard.words.compareAndSet(index, word, word | bit)) {
+                updateCounters(shard, seat, 1);
+                lowerRankCursors(seat);
+                return true;
+            }
+            word = shard.words.get(index);
+        }
+        return false;
+    }
+
+    /**
+     * Makes every seat in the given collection available to hold again.
+     *
+     * @param seats The seats to release
+     */
+    public final void releaseAll(final Iterable<Integer> seats) {
+        if (seats instanceof SeatRuns) {
+            final SeatRuns runs = (SeatRuns) seats;
+            for (int range = 0; range < runs.getRangeCount(); range++) {
+                releaseRange(runs.getRangeStart(range),
+                    runs.getRangeEnd(range));
+            }
+            return;
+        }
+        for (int seat : seats) {
+            release(seat);
+        }
+    }
+
+    /**
+     * Makes a range of consecutive seats available to hold again, with one
+     * CAS for every word of the bitmap the range covers.
+     *
+     * @param fromSeat The first seat to release
+     * @param toSeat The seat after the last seat to release
+     * @return The number of seats that were unavailable before this call
+     */
+    public final int releaseRange(final int fromSeat, final int toSeat) {
+        final int from = Math.max(0, fromSeat);
+        final int to = Math.min(capacity, toSeat);
+        int released = 0;
+        for (int seat = from; seat < to;) {
+            final Shard shard = shards[sectionOf(seat)];
+            final int end = Math.min(to, shard.endSeat);
+            released += releaseInShard(shard, seat - shard.firstSeat,
+                end - shard.firstSeat);
+            seat = end;
+        }
+        if (released != 0) {
+            lowerRankCursors(from, to);
+        }
+        return released;
+    }
+
+    /**
+     * Releases a range of seats within a single shard, a word at a time.
+     *
+     * @param shard The shard
+     * @param from The offset of the first seat to release in the shard
+     * @param to The offset after the last seat to release in the shard
+     * @return The number of seats that were unavailable before this call
+     */
+    private int releaseInShard(final Shard shard, final int from,
+        final int to) {
+        int released = 0;
+        for (int offset = from; offset < to;) {
+            final int index = offset >> ADDRESS_BITS_PER_WORD;
+            final int wordEnd =
+                Math.min(to, (index + 1) << ADDRESS_BITS_PER_WORD);
+            // The bits from offset (inclusive) to wordEnd (exclusive)
+            final long mask = (WORD_MASK << offset) & (WORD_MASK >>> -wordEnd);
+            long word;
+            long newlyFree;
+            do {
+                word = shard.words.get(index);
+                newlyFree = mask & ~word;
+            } while (newlyFree != 0
+                && !shard.words.compareAndSet(index, word, word | mask));
+
+            if (newlyFree != 0) {
+                released += Long.bitCount(newlyFree);
+                shard.freeSeats.addAndGet(Long.bitCount(newlyFree));
+                // Update the counter of every row the released seats are in
+                long bits = newlyFree;
+                while (bits != 0) {
+                    final int seat = shard.firstSeat
+                        + (index << ADDRESS_BITS_PER_WORD)
+                        + Long.numberOfTrailingZeros(bits);
+                    final int row = layout.getRowOf(seat);
+                    final int rowEnd =
+                        layout.getRowStart(row + 1) - shard.firstSeat;
+                    final long inRow = rowEnd >= wordEnd
+                        ? bits : bits & ~(WORD_MASK << rowEnd);
+                    shard.freeSeatsInRow.addAndGet(row - shard.firstRow,
+                        Long.bitCount(inRow));
+                    bits &= ~inRow;
+                }
+                // Record the seats' current state, as in updateRuns, since
+                // some of them may already have been claimed again
+                synchronized (shard.runs) {
+                    final long current = shard.words.get(index);
+                    if (newlyFree == mask && (current & mask) == mask) {
+                        shard.runs.releaseRange(offset, wordEnd);
+                    } else {
+                        for (long changed = newlyFree; changed != 0;
+                            changed &= changed - 1) {
+                            final int bit =
+                                Long.numberOfTrailingZeros(changed);
+                            final int seat =
+                                (index << ADDRESS_BITS_PER_WORD) + bit;
+                            if ((current & (1L << bit)) != 0) {
+                                shard.runs.release(seat);
+                            } else {
+                                shard.runs.claim(seat);
+                            }
+                        }
+                    }
+                }
+            }
+            offset = wordEnd;
+        }
+        return released;
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return True if the seat is currently available to hold
+     */
+    public final boolean isFree(final int seat) {
+        if (seat < 0 || seat >= capacity) {
+            return false;
+        }
+        final Shard shard = shards[sectionOf(seat)];
+        final int offset = seat - shard.firstSeat;
+        return (shard.words.get(offset >> ADDRESS_BITS_PER_WORD)
+            & (1L << offset)) != 0;
+    }
+
+    /**
+     * Returns the first free seat at or after the given index, within a
+     * single section.
+     *
+     * @param section The index of the section to search
+     * @param fromSeat The index to start searching from (inclusive)
+     * @return The index of the free seat, or -1 if there is none in the
+     *     section
+     */
+    public final int nextFreeSeatInSection(final int section,
+        final int fromSeat) {
+        final Shard shard = shards[section];
+        final int from = Math.max(0, fromSeat - shard.firstSeat);
+        if (from >= shard.endSeat - shard.firstSeat) {
+            return -1;
+        }
+        int index = from >> ADDRESS_BITS_PER_WORD;
+        long word = shard.words.get(index) & (WORD_MASK << from);
+        while (true) {
+            if (word != 0) {
+                return shard.firstSeat + index * BITS_PER_WORD
+                    + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == shard.words.length()) {
+                return -1;
+            }
+            word = shard.words.get(index);
+        }
+    }
+
+    /**
+     * Returns the last free seat at or before the given index, within a
+     * single section.
+     *
+     * @param section The index of the section to search
+     * @param fromSeat The index to start searching from (inclusive)
+     * @return The index of the free seat, or -1 if there is none in the
+     *     section
+     */
+    public final int previousFreeSeatInSection(final int section,
+        final int fromSeat) {
+        final Shard shard = shards[section];
+        final int from = Math.min(shard.endSeat - 1, fromSeat)
+            - shard.firstSeat;
+        if (from < 0) {
+            return -1;
+        }
+        int index = from >> ADDRESS_BITS_PER_WORD;
+        long word = shard.words.get(index) & (WORD_MASK >>> -(from + 1));
+        while (true) {
+            if (word != 0) {
+                return shard.firstSeat + (index + 1) * BITS_PER_WORD - 1
+                    - Long.numberOfLeadingZeros(word);
+            }
+            if (index-- == 0) {
+                return -1;
+            }
+            word = shard.words.get(index);
+        }
+    }
+
+    /**
+     * Returns the first free seat at or after the given index. Sections
+     * without any free seats are skipped without being scanned.
+     *
+     * @param fromSeat The index to start searching from (inclusive)
+     * @return The index of the free seat, or -1 if there is none
+     */
+    public final int nextFreeSeat(final int fromSeat) {
+        final int from = Math.max(0, fromSeat);
+        if (from >= capacity) {
+            return -1;
+        }
+        for (int section = sectionOf(from); section < shards.length;
+            section++) {
+            if (shards[section].freeSeats.get() == 0) {
+                continue;
+            }
+            final int seat = nextFreeSeatInSection(section, from);
+            if (seat != -1) {
+                return seat;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the last free seat at or before the given index. Sections
+     * without any free seats are skipped without being scanned.
+     *
+     * @param fromSeat The index to start searching from (inclusive)
+     * @return The index of the free seat, or -1 if there is none
+     */
+    public final int previousFreeSeat(final int fromSeat) {
+        final int from = Math.min(capacity - 1, fromSeat);
+        if (from < 0) {
+            return -1;
+        }
+        for (int section = sectionOf(from); section >= 0; section--) {
+            if (shards[section].freeSeats.get() == 0) {
+                continue;
+            }
+            final int seat = previousFreeSeatInSection(section, from);
+            if (seat != -1) {
+                return seat;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the ranking cursors back to a seat that has just been released.
+     *
+     * @param seat The seat that was released
+     */
+    private void lowerRankCursors(final int seat) {
+        lowerRankCursors(seat, seat + 1);
+    }
+
+    /**
+     * Moves the ranking cursors back to the first of a range of seats (in
+     * each ranking) that have just been released.
+     *
+     * @param fromSeat The first seat that was released
+     * @param toSeat The seat after the last seat that was released
+     */
+    private void lowerRankCursors(final int fromSeat, final int toSeat) {
+        for (RankCursor rankCursor : rankCursors) {
+            long cursor = rankCursor.position.get();
+            long rank = -1;
+            while (true) {
+                // Note: Ranks are only looked up once the cursor has moved
+                if (rank < 0 && (int) cursor != 0) {
+                    rank = Integer.MAX_VALUE;
+                    for (int seat = fromSeat; seat < toSeat; seat++) {
+                        rank = Math.min(rank,
+                            rankCursor.ranking.rankOf(seat));
+                    }
+                }
+                final long position = rank < 0
+                    ? (int) cursor : Math.min(rank, (int) cursor);
+                final long releases = (cursor >>> Integer.SIZE) + 1;
+                if (rankCursor.position.compareAndSet(cursor,
+                    releases << Integer.SIZE | position)) {
+                    break;
+                }
+                cursor = rankCursor.position.get();
+            }
+        }
+    }
+
+    /**
+     * @param ranking A ranking of the venue's seats
+     * @return The cursor into the ranking, created if necessary
+     */
+    private RankCursor cursorOf(final SeatRanking ranking) {
+        for (RankCursor rankCursor : rankCursors) {
+            if (rankCursor.ranking == ranking) {
+                return rankCursor;
+            }
+        }
+        synchronized (this) {
+            RankCursor[] cursors = rankCursors;
+            for (RankCursor rankCursor : cursors) {
+                if (rankCursor.ranking == ranking) {
+                    return rankCursor;
+                }
+            }
+            final RankCursor rankCursor = new RankCursor(ranking);
+            cursors = Arrays.copyOf(cursors, cursors.length + 1);
+            cursors[cursors.length - 1] = rankCursor;
+            rankCursors = cursors;
+            return rankCursor;
+        }
+    }
+
+    /**
+     * Claims the free seats closest to the center of the venue, in order of
+     * their distance from the center, until the given number of seats have
+     * been claimed or there are no free seats left.
+     *
+     * @param numSeats The number of seats to claim
+     * @param heldSeats The set to add the claimed seats to
+     * @return The number of seats claimed
+     */
+    public final int claimClosestToCenter(final int numSeats,
+        final SeatRuns heldSeats) {
+        return claimBest(SeatScorer.CLOSEST_TO_CENTER, numSeats, heldSeats);
+    }
+
+    /**
+     * Claims the free seats with the best scores, from best to worst, until
+     * the given number of seats have been claimed or there are no free seats
+     * left. The walk starts past the seats known to be unavailable, so it
+     * only looks at about as many seats as it claims.
+     *
+     * @param scorer The scorer of the seats
+     * @param numSeats The number of seats to claim
+     * @param heldSeats The set to add the claimed seats to
+     * @return The number of seats claimed
+     */
+    public final int claimBest(final SeatScorer scorer, final int numSeats,
+        final SeatRuns heldSeats) {
+        final RankCursor rankCursor = cursorOf(layout.getRanking(scorer));
+        final SeatRanking ranking = rankCursor.ranking;
+        final long cursor = rankCursor.position.get();
+        int rank = (int) cursor;
+        // The rank before which every seat has been seen to be unavailable
+        // (or was claimed by this call)
+        int unavailableBefore = rank;
+        int claimed = 0;
+        for (; rank < ranking.size() && claimed != numSeats; rank++) {
+            final int seat = ranking.seatAt(rank);
+            // Check the bitmap first to avoid a CAS on unavailable seats
+            if (isFree(seat) && tryClaim(seat)) {
+                heldSeats.add(seat);
+                claimed++;
+            }
+            if (unavailableBefore == rank && !isFree(seat)) {
+                unavailableBefore++;
+            }
+        }
+        if (claimed != numSeats) {
+            // Start the next walk from the top, in case a seat was released
+            // while the cursor was being created
+            long current;
+            do {
+                current = rankCursor.position.get();
+            } while (!rankCursor.position.compareAndSet(current,
+                ((current >>> Integer.SIZE) + 1) << Integer.SIZE));
+        } else if (unavailableBefore > (int) cursor) {
+            // Skip the unavailable seats next time, unless a seat was
+            // released (or another hold moved the cursor) in the meantime
+            rankCursor.position.compareAndSet(cursor,
+                (cursor & ~0xFFFFFFFFL) | unavailableBefore);
+        }
+        return claimed;
+    }
+
+    /**
+     * Finds runs of consecutive free seats to hold a group in. If a single run
+     * can fit every seat, the smallest such run (the best fit) is returned.
+     * Otherwise, if a block of runs in adjacent rows can fit the group (e.g.
+     * two rows of 6 seats for 12 seats, starting at the same column), the
+     * block over the fewest rows is returned. Otherwise, the largest runs are
+     * returned, in descending order of length, until they contain enough
+     * seats (or there are none left).
+     *
+     * <p>Note: Runs never span more than one row, and blocks never span more
+     * than one section. The seats are not claimed, so another thread may
+     * claim some of them first.
+     *
+     * @param numSeats The number of seats in the group
+     * @return The runs, as consecutive (first seat, length) pairs
+     */
+    public final int[] findRuns(final int numSeats) {
+        // Look for the best fit among all the shards
+        int bestLength = -1;
+        int bestStart = -1;
+        for (int section = 0; section < shards.length
+            && bestLength != numSeats; section++) {
+            final Shard shard = shards[section];
+            // Skip shards that can't fit the group without locking them
+            if (shard.freeSeats.get() < numSeats) {
+                continue;
+            }
+            synchronized (shard.runs) {
+                final int length = shard.runs.bestFitLength(numSeats);
+                if (length != -1 && (bestLength == -1 || length < bestLength)) {
+                    bestLength = length;
+                    bestStart =
+                        shard.firstSeat + shard.runs.runOfLength(length);
+                }
+            }
+        }
+        if (bestLength != -1) {
+            return new int[]{bestStart, bestLength};
+        }
+
+        // Otherwise, look for the block over the fewest rows
+        int[] bestBlock = null;
+        for (int section = 0; section < shards.length; section++) {
+            final Shard shard = shards[section];
+            if (shard.freeSeats.get() < numSeats) {
+                continue;
+            }
+            int[] block;
+            synchronized (shard.runs) {
+                block = shard.runs.findBlock(numSeats);
+            }
+            if (block != null
+                && (bestBlock == null || block.length < bestBlock.length)) {
+                for (int i = 0; i < block.length; i += 2) {
+                    block[i] += shard.firstSeat;
+                }
+                bestBlock = block;
+            }
+        }
+        if (bestBlock != null) {
+            return bestBlock;
+        }
+
+        // Otherwise, merge the largest runs of every shard. Each run is
+        // encoded as (length << 32 | first seat) so sorting orders it by
+        // length.
+        long[] candidates = new long[0];
+        for (Shard shard : shards) {
+            int[] shardRuns;
+            synchronized (shard.runs) {
+                shardRuns = shard.runs.largestRuns(numSeats);
+            }
+            int used = candidates.length;
+            candidates = Arrays.copyOf(candidates, used + shardRuns.length / 2);
+            for (int i = 0; i < shardRuns.length; i += 2) {
+                candidates[used++] = ((long) shardRuns[i + 1] << Integer.SIZE)
+                    | (shard.firstSeat + shardRuns[i]);
+            }
+        }
+        Arrays.sort(candidates);
+
+        int[] runs = new int[candidates.length * 2];
+        int used = 0;
+        int seats = 0;
+        for (int i = candidates.length - 1; i >= 0 && seats < numSeats; i--) {
+            runs[used++] = (int) candidates[i];
+            runs[used++] = (int) (candidates[i] >>> Integer.SIZE);
+            seats += runs[used - 1];
+        }
+        return Arrays.copyOf(runs, used);
+    }
+
+    /**
+     * Note: Each shard's counter is updated right after its bitmap, so this
+     * reflects every claim and release that has completed before it is
+     * called.
+     *
+     * @return The number of seats currently available to hold
+     */
+    public final int size() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.freeSeats.get();
+        }
+        return count;
+    }
+
+    /**
+     * @param row The index of a row
+     * @return The number of seats currently available to hold in that row
+     */
+    public final int sizeOfRow(final int row) {
+        final Shard shard = shards[layout.getSectionOfRow(row)];
+        return shard.freeSeatsInRow.get(row - shard.firstRow);
+    }
+
+    /**
+     * @param section The index of a section
+     * @return The number of seats currently available to hold in that section
+     */
+    public final int sizeOfSection(final int section) {
+        return shards[section].freeSeats.get();
+    }
+
+    /**
+     * Note: Like the iterators of the concurrent collections, this is only
+     * weakly consistent if the inventory is modified while it is running.
+     *
+     * @return The free seats, as a bitmap of 64-seat words (a set bit
+     *     represents a free seat)
+     */
+    public final long[] toBitmap() {
+        long[] bitmap = new long[((capacity - 1) >> ADDRESS_BITS_PER_WORD) + 1];
+        for (Shard shard : shards) {
+            for (int index = 0; index < shard.words.length(); index++) {
+                final long word = shard.words.get(index);
+                final int seat = shard.firstSeat + index * BITS_PER_WORD;
+                final int shift = seat & (BITS_PER_WORD - 1);
+                bitmap[seat >> ADDRESS_BITS_PER_WORD] |= word << shift;
+                if (shift != 0 && word >>> -shift != 0) {
+                    bitmap[(seat >> ADDRESS_BITS_PER_WORD) + 1] |=
+                        word >>> -shift;
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Note: Like the iterators of the concurrent collections, this is only
+     * weakly consistent if the inventory is modified while it is running.
+     *
+     * @return The indices of the free seats, in ascending order
+     */
+    public final int[] toArray() {
+        int[] seats = new int[Math.max(0, size())];
+        int count = 0;
+        for (int seat = nextFreeSeat(0); seat != -1 && count < seats.length;
+            seat = nextFreeSeat(seat + 1)) {
+            seats[count++] = seat;
+        }
+        return count == seats.length
+            ? seats : Arrays.copyOf(seats, count);
+    }
+}
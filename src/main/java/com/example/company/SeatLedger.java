@@ -0,0 +1,274 @@
+package com.example.company;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The owner of every seat of a venue, kept as an ordered log of changes so a
+ * consistent {@link SeatMap} can be taken without stopping holds.
+ *
+ * <p>Every hold, reservation, and release appends its seats to a lock-free
+ * queue before any other thread can change those seats again (e.g. seats are
+ * appended as free before they are released). A change that depends on
+ * another (like holding a seat that was just released) is therefore always
+ * appended after it, so every prefix of the queue is a consistent state of
+ * the venue.
+ *
+ * <p>The queue is applied to pages of seat owners by whichever thread gets
+ * the lock first: holds try to apply it once they have appended their change,
+ * and skip it if another thread is already applying it, so they never wait. A
+ * map shares the pages, which are copied the first time they are changed
+ * after a map was taken (copy-on-write).
+ */
+final class SeatLedger {
+
+    /**
+     * The maximum number of changes a hold applies, so a hold isn't kept
+     * busy by the changes of other threads.
+     */
+    private static final int MAX_CHANGES_PER_HOLD = 256;
+    /**
+     * The maximum number of changes applied before a map is taken, so a map
+     * can always be taken even while changes keep being appended.
+     */
+    private static final int MAX_CHANGES_PER_MAP = 1 << 20;
+
+    /**
+     * The number of seats in the venue.
+     */
+    private final int totalSeats;
+    /**
+     * The changes that haven't been applied yet, in the order they happened.
+     */
+    private final ConcurrentLinkedQueue<Change> changes =
+        new ConcurrentLinkedQueue<>();
+    /**
+     * Held while applying changes or taking a map.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The owner of every seat, in pages. Only accessed while holding the
+     * lock.
+     */
+    private final int[][] pages;
+    /**
+     * The pages shared with the last map taken, which must be copied before
+     * they are changed. Only accessed while holding the lock.
+     */
+    private final BitSet sharedPages = new BitSet();
+    /**
+     * The number of changes applied. Only accessed while holding the lock.
+     */
+    private long version;
+    /**
+     * The number of free seats. Only accessed while holding the lock.
+     */
+    private int freeSeats;
+    /**
+     * The number of held seats. Only accessed while holding the lock.
+     */
+    private int heldSeats;
+    /**
+     * The number of reserved seats. Only accessed while holding the lock.
+     */
+    private int reservedSeats;
+    /**
+     * The last map taken, returned again if nothing changed since. Only
+     * accessed while holding the lock.
+     */
+    private SeatMap lastMap;
+
+    /**
+     * A change that hasn't been applied yet.
+     */
+    private static final class Change {
+
+        /**
+         * The seats that changed. Never modified once the change is made.
+         */
+        private final Set<Integer> seats;
+        /**
+         * The new owner of the seats.
+         */
+        private final int owner;
+
+        /**
+         * @param changedSeats The seats that changed
+         * @param newOwner The new owner of the seats
+         */
+        private Change(final Set<Integer> changedSeats, final int newOwner) {
+            seats = changedSeats;
+            owner = newOwner;
+        }
+    }
+
+    /**
+     * Creates a ledger of a venue's seats, with every seat that can be sold
+     * free except those of the given holds.
+     *
+     * <p>Note: Must be created before any other thread can change the
+     * venue's seats.
+     *
+     * @param layout The layout of the venue
+     * @param pendingHolds The venue's SeatHolds that haven't been reserved
+     * @param reservations The venue's reserved SeatHolds
+     */
+    SeatLedger(final VenueLayout layout, final HoldIndex pendingHolds,
+        final HoldIndex reservations) {
+        totalSeats = layout.getTotalSeats();
+        pages = new int[((totalSeats - 1) >> SeatMap.PAGE_BITS) + 1][];
+        for (int page = 0; page < pages.length; page++) {
+            pages[page] = new int[Math.min(SeatMap.PAGE_MASK + 1,
+                totalSeats - (page << SeatMap.PAGE_BITS))];
+        }
+        for (int seat = 0; seat < totalSeats; seat++) {
+            if (layout.isSeatAvailable(seat)) {
+                pages[seat >>> SeatMap.PAGE_BITS][seat & SeatMap.PAGE_MASK] =
+                    SeatMap.FREE;
+                freeSeats++;
+            } else {
+                pages[seat >>> SeatMap.PAGE_BITS][seat & SeatMap.PAGE_MASK] =
+                    SeatMap.UNAVAILABLE;
+            }
+        }
+        pendingHolds.forEach(seatHold -> apply(new Change(
+            seatHold.getReservedSeats(), ownerOf(seatHold, false))));
+        reservations.forEach(seatHold -> apply(new Change(
+            seatHold.getReservedSeats(), ownerOf(seatHold, true))));
+    }
+
+    /**
+     * @param seatHold A SeatHold
+     * @param reserved True if the SeatHold has been reserved
+     * @return The owner of the seats of the SeatHold
+     */
+    private static int ownerOf(final VenueSeatHold seatHold,
+        final boolean reserved) {
+        return seatHold.getId() << 1 | (reserved ? 1 : 0);
+    }
+
+    /**
+     * Records that seats changed state, then applies the waiting changes
+     * unless another thread already is. Never blocks.
+     *
+     * <p>Note: Seats must be recorded in their new state before any other
+     * thread can change them again, so the changes to every seat are recorded
+     * in the order they happened.
+     *
+     * @param seatHold The SeatHold the seats belong to
+     * @param seats The seats, which must not be modified afterwards
+     * @param state The state the seats changed to
+     */
+    void record(final VenueSeatHold seatHold, final Set<Integer> seats,
+        final SeatState state) {
+        changes.offer(new Change(seats, state == SeatState.FREE
+            ? SeatMap.FREE
+            : ownerOf(seatHold, state == SeatState.RESERVED)));
+        if (!lock.isLocked() && lock.tryLock()) {
+            try {
+                applyChanges(MAX_CHANGES_PER_HOLD);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes a map of the seats, including every change recorded before it
+     * was called (as long as changes aren't recorded faster than they can be
+     * applied). Waits for a thread applying changes, but never for a hold.
+     *
+     * @return The map
+     */
+    SeatMap map() {
+        lock.lock();
+        try {
+            applyChanges(MAX_CHANGES_PER_MAP);
+            if (lastMap == null || lastMap.getVersion() != version) {
+                // Share the pages with the map, and copy them the next time
+                // they change
+                lastMap = new SeatMap(version, totalSeats, pages.clone(),
+                    freeSeats, heldSeats, reservedSeats);
+                sharedPages.set(0, pages.length);
+            }
+            return lastMap;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies the changes waiting in the queue, in order. Must be called while
+     * holding the lock.
+     *
+     * @param maxChanges The maximum number of changes to apply
+     */
+    private void applyChanges(final int maxChanges) {
+        Change change;
+        for (int applied = 0;
+            applied < maxChanges && (change = changes.poll()) != null;
+            applied++) {
+            apply(change);
+        }
+    }
+
+    /**
+     * Applies a change. Must be called while holding the lock (or before the
+     * ledger is shared).
+     *
+     * @param change The change
+     */
+    private void apply(final Change change) {
+        if (change.seats instanceof SeatRuns) {
+            final SeatRuns runs = (SeatRuns) change.seats;
+            for (int range = 0; range < runs.getRangeCount(); range++) {
+                for (int seat = runs.getRangeStart(range);
+                    seat < runs.getRangeEnd(range); seat++) {
+                    setOwner(seat, change.owner);
+                }
+            }
+        } else {
+            for (int seat : change.seats) {
+                setOwner(seat, change.owner);
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Sets the owner of a seat, copying its page first if it is shared with
+     * a map.
+     *
+     * @param seat The seat
+     * @param owner The new owner of the seat
+     */
+    private void setOwner(final int seat, final int owner) {
+        final int page = seat >>> SeatMap.PAGE_BITS;
+        if (sharedPages.get(page)) {
+            pages[page] = pages[page].clone();
+            sharedPages.clear(page);
+        }
+        final int slot = seat & SeatMap.PAGE_MASK;
+        count(pages[page][slot], -1);
+        pages[page][slot] = owner;
+        count(owner, 1);
+    }
+
+    /**
+     * Updates the number of seats in a state.
+     *
+     * @param owner The owner of the seats
+     * @param delta The number of seats added to (or removed from) the state
+     */
+    private void count(final int owner, final int delta) {
+        if (owner == SeatMap.FREE) {
+            freeSeats += delta;
+        } else if ((owner & 1) != 0) {
+            reservedSeats += delta;
+        } else if (owner != SeatMap.UNAVAILABLE) {
+            heldSeats += delta;
+        }
+    }
+}
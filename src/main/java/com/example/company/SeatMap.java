@@ -0,0 +1,160 @@
+package com.example.company;
+
+/**
+ * An immutable, consistent copy of the state of every seat of a venue, taken
+ * with {@link Venue#seatMap()}: which seats are free, held, or reserved, and
+ * the SeatHold each held or reserved seat belongs to.
+ *
+ * <p>Every hold, reservation, and release is either entirely in the map or
+ * not at all, and the map never contains a change without the changes that
+ * happened before it (e.g. the hold of a seat without the release that freed
+ * it), so the map is the state of the venue at a single point in time.
+ *
+ * <p>Maps share their pages of seats with the venue and with each other until
+ * the venue changes a page, so taking one only copies the pages that changed
+ * since the last one.
+ */
+public final class SeatMap {
+
+    /**
+     * The number of bits of a seat addressing it within its page.
+     */
+    static final int PAGE_BITS = 12;
+    /**
+     * The mask used to map a seat to its position within its page.
+     */
+    static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    /**
+     * The owner of a free seat.
+     */
+    static final int FREE = -1;
+    /**
+     * The owner of a seat that can't be sold.
+     */
+    static final int UNAVAILABLE = -2;
+
+    /**
+     * The number of changes to the venue's seats the map includes.
+     */
+    private final long version;
+    /**
+     * The number of seats in the venue, including unavailable ones.
+     */
+    private final int totalSeats;
+    /**
+     * The owner of every seat, in pages: FREE, UNAVAILABLE, or the id of the
+     * SeatHold holding it shifted left by one, with the lowest bit set if it
+     * is reserved. Never modified.
+     */
+    private final int[][] pages;
+    /**
+     * The number of free seats.
+     */
+    private final int freeSeats;
+    /**
+     * The number of held seats.
+     */
+    private final int heldSeats;
+    /**
+     * The number of reserved seats.
+     */
+    private final int reservedSeats;
+
+    /**
+     * @param mapVersion The number of changes the map includes
+     * @param numSeats The number of seats in the venue
+     * @param seatPages The owner of every seat, in pages. Used as it is, not
+     *     copied.
+     * @param numFree The number of free seats
+     * @param numHeld The number of held seats
+     * @param numReserved The number of reserved seats
+     */
+    SeatMap(final long mapVersion, final int numSeats, final int[][] seatPages,
+        final int numFree, final int numHeld, final int numReserved) {
+        version = mapVersion;
+        totalSeats = numSeats;
+        pages = seatPages;
+        freeSeats = numFree;
+        heldSeats = numHeld;
+        reservedSeats = numReserved;
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return The owner of the seat
+     */
+    private int ownerOf(final int seat) {
+        if (seat < 0 || seat >= totalSeats) {
+            throw new IndexOutOfBoundsException("Seat: " + seat);
+        }
+        return pages[seat >>> PAGE_BITS][seat & PAGE_MASK];
+    }
+
+    /**
+     * @return The number of changes to the venue's seats (holds, reservations,
+     *     and releases) the map includes. A map with a greater version
+     *     includes every change of a map with a lower one.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of seats in the venue, including unavailable ones
+     */
+    public int getTotalSeats() {
+        return totalSeats;
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return The state of the seat, or null if it can't be sold
+     */
+    public SeatState getState(final int seat) {
+        final int owner = ownerOf(seat);
+        if (owner == UNAVAILABLE) {
+            return null;
+        } else if (owner == FREE) {
+            return SeatState.FREE;
+        }
+        return (owner & 1) != 0 ? SeatState.RESERVED : SeatState.HELD;
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return The id of the SeatHold the seat is held or reserved by, or -1 if
+     *     it is free (or can't be sold)
+     */
+    public int getSeatHoldId(final int seat) {
+        final int owner = ownerOf(seat);
+        return owner < 0 ? -1 : owner >>> 1;
+    }
+
+    /**
+     * @return The number of free seats
+     */
+    public int getNumFreeSeats() {
+        return freeSeats;
+    }
+
+    /**
+     * @return The number of held seats (that haven't been reserved)
+     */
+    public int getNumHeldSeats() {
+        return heldSeats;
+    }
+
+    /**
+     * @return The number of reserved seats
+     */
+    public int getNumReservedSeats() {
+        return reservedSeats;
+    }
+
+    /**
+     * @return True if every seat that can be sold has been reserved
+     */
+    public boolean isSoldOut() {
+        return freeSeats == 0 && heldSeats == 0;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.company;
+
+import java.util.Arrays;
+
+/**
+ * An immutable ordering of the available seats of a venue layout, from best to
+ * worst according to a {@link SeatScorer}. It is computed once per layout and
+ * scorer, so holding seats in this order never requires sorting or allocating
+ * anything per request.
+ */
+final class SeatRanking {
+
+    /**
+     * The available seats, from best to worst.
+     */
+    private final int[] order;
+    /**
+     * The position of every seat in the order, or -1 for seats that are not
+     * ranked (i.e. can never be sold).
+     */
+    private final int[] ranks;
+
+    /**
+     * @param seatOrder The available seats, from best to worst
+     * @param totalSeats The total number of seats in the venue
+     */
+    private SeatRanking(final int[] seatOrder, final int totalSeats) {
+        order = seatOrder;
+        ranks = new int[totalSeats];
+        Arrays.fill(ranks, -1);
+        for (int rank = 0; rank < order.length; rank++) {
+            ranks[order[rank]] = rank;
+        }
+    }
+
+    /**
+     * Ranks the available seats of a layout by their score, from highest to
+     * lowest. Seats with equal scores are ranked by their index.
+     *
+     * @param layout The layout of the venue
+     * @param scorer The scorer of the seats
+     * @return The ranking
+     */
+    static SeatRanking byScore(final VenueLayout layout,
+        final SeatScorer scorer) {
+        final int totalSeats = layout.getTotalSeats();
+
+        // Map every score to a long that sorts the same way (best first)
+        long[] scores = new long[totalSeats];
+        int[] seats = new int[totalSeats];
+        int count = 0;
+        for (int seat = 0; seat < totalSeats; seat++) {
+            if (layout.isSeatAvailable(seat)) {
+                scores[count] = sortableKey(scorer.score(layout, seat));
+                seats[count++] = seat;
+            }
+        }
+
+        // Replace every score with its position among the distinct scores,
+        // so each key holds a seat's score followed by its index, and sorting
+        // the keys sorts the seats
+        long[] distinct = Arrays.copyOf(scores, count);
+        Arrays.sort(distinct);
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) Arrays.binarySearch(distinct, scores[i])
+                << Integer.SIZE | seats[i];
+        }
+        Arrays.sort(keys);
+
+        int[] seatOrder = new int[count];
+        for (int rank = 0; rank < count; rank++) {
+            seatOrder[rank] = (int) keys[rank];
+        }
+        return new SeatRanking(seatOrder, totalSeats);
+    }
+
+    /**
+     * @param score A score
+     * @return A long that is smaller for higher scores, so sorting the longs
+     *     in ascending order sorts the scores in descending order
+     */
+    private static long sortableKey(final double score) {
+        // Negative zero and NaN would otherwise sort apart from their equals
+        final double value = score == 0 || Double.isNaN(score) ? 0 : -score;
+        final long bits = Double.doubleToLongBits(value);
+        return bits ^ (bits >> (Long.SIZE - 1) & Long.MAX_VALUE);
+    }
+
+    /**
+     * @return The number of seats ranked
+     */
+    int size() {
+        return order.length;
+    }
+
+    /**
+     * @param rank A position in the order
+     * @return The seat at that position
+     */
+    int seatAt(final int rank) {
+        return order[rank];
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return The position of the seat in the order, or -1 if it is not
+     *     ranked
+     */
+    int rankOf(final int seat) {
+        return ranks[seat];
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.company;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of seat indices, stored as sorted ranges of consecutive seats instead
+ * of boxed Integers. A group of seats next to each other (e.g. seats 4 to 11
+ * of a row) is a single range, so a hold costs a couple of ints per range
+ * however many seats it has, and its seats can be returned to a
+ * {@link SeatInventory} a range at a time.
+ *
+ * <p>The set is a regular {@code Set<Integer>}, so it can be used wherever a
+ * SeatHold's seats were used before. Seats can only be added, or the whole set
+ * cleared.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class SeatRuns extends AbstractSet<Integer> {
+
+    /**
+     * The number of ranges there is room for initially.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * The ranges, in ascending order, as (first seat, seat after the last
+     * seat) pairs. No two ranges touch, since they would have been merged.
+     */
+    private int[] ranges = new int[INITIAL_CAPACITY * 2];
+    /**
+     * The number of ranges.
+     */
+    private int rangeCount;
+    /**
+     * The number of seats in the set.
+     */
+    private int size;
+
+    /**
+     * Creates an empty set.
+     */
+    public SeatRuns() {
+    }
+
+    /**
+     * @param seats The seats initially in the set
+     */
+    public SeatRuns(final Collection<Integer> seats) {
+        addAll(seats);
+    }
+
+    /**
+     * @param range The index of a range
+     * @return The first seat of the range
+     */
+    public int getRangeStart(final int range) {
+        return ranges[range * 2];
+    }
+
+    /**
+     * @param range The index of a range
+     * @return The seat after the last seat of the range
+     */
+    public int getRangeEnd(final int range) {
+        return ranges[range * 2 + 1];
+    }
+
+    /**
+     * @return The number of ranges of consecutive seats
+     */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /**
+     * @param seat A seat
+     * @return The index of the first range ending at or after the seat (i.e.
+     *     the first range that contains or touches it, or comes after it)
+     */
+    private int firstRangeEndingAtOrAfter(final int seat) {
+        int low = 0;
+        int high = rangeCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (ranges[middle * 2 + 1] < seat) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds a range of consecutive seats.
+     *
+     * @param fromSeat The first seat of the range
+     * @param toSeat The seat after the last seat of the range
+     * @return The number of seats that weren't in the set already
+     */
+    public int addRange(final int fromSeat, final int toSeat) {
+        if (fromSeat >= toSeat) {
+            return 0;
+        }
+        // Fast path: seats are usually added in ascending order, so the range
+        // extends (or follows) the last one
+        if (rangeCount != 0 && fromSeat >= ranges[rangeCount * 2 - 2]) {
+            final int last = rangeCount * 2 - 2;
+            if (fromSeat <= ranges[last + 1]) {
+                final int added = Math.max(0, toSeat - ranges[last + 1]);
+                ranges[last + 1] += added;
+                size += added;
+                return added;
+            }
+        }
+
+        // The ranges that touch the new one are merged into it
+        final int first = firstRangeEndingAtOrAfter(fromSeat);
+        int end = first;
+        int merged = 0;
+        int start = fromSeat;
+        int stop = toSeat;
+        while (end < rangeCount && ranges[end * 2] <= toSeat) {
+            start = Math.min(start, ranges[end * 2]);
+            stop = Math.max(stop, ranges[end * 2 + 1]);
+            merged += ranges[end * 2 + 1] - ranges[end * 2];
+            end++;
+        }
+        if (first == end) {
+            // Insert a new range
+            if (rangeCount * 2 == ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            System.arraycopy(ranges, first * 2, ranges, first * 2 + 2,
+                (rangeCount - first) * 2);
+            rangeCount++;
+        } else if (end - first > 1) {
+            // Replace the merged ranges with a single one
+            System.arraycopy(ranges, end * 2, ranges, first * 2 + 2,
+                (rangeCount - end) * 2);
+            rangeCount -= end - first - 1;
+        }
+        ranges[first * 2] = start;
+        ranges[first * 2 + 1] = stop;
+        final int added = stop - start - merged;
+        size += added;
+        return added;
+    }
+
+    /**
+     * @param seat The seat to add
+     * @return True if the seat wasn't in the set already
+     */
+    public boolean add(final int seat) {
+        return addRange(seat, seat + 1) != 0;
+    }
+
+    @Override
+    public boolean add(final Integer seat) {
+        return add(seat.intValue());
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends Integer> seats) {
+        if (!(seats instanceof SeatRuns)) {
+            return super.addAll(seats);
+        }
+        final SeatRuns other = (SeatRuns) seats;
+        int added = 0;
+        for (int range = 0; range < other.rangeCount; range++) {
+            added += addRange(other.getRangeStart(range),
+                other.getRangeEnd(range));
+        }
+        return added != 0;
+    }
+
+    /**
+     * @param seat A seat
+     * @return True if the seat is in the set
+     */
+    public boolean contains(final int seat) {
+        final int range = firstRangeEndingAtOrAfter(seat + 1);
+        return range < rangeCount && ranges[range * 2] <= seat;
+    }
+
+    @Override
+    public boolean contains(final Object seat) {
+        return seat instanceof Integer && contains(((Integer) seat).intValue());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        rangeCount = 0;
+        size = 0;
+    }
+
+    /**
+     * @return The seats in the set, in ascending order
+     */
+    public int[] toIntArray() {
+        int[] seats = new int[size];
+        int count = 0;
+        for (int range = 0; range < rangeCount; range++) {
+            for (int seat = ranges[range * 2]; seat < ranges[range * 2 + 1];
+                seat++) {
+                seats[count++] = seat;
+            }
+        }
+        return seats;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            /**
+             * The range containing the next seat.
+             */
+            private int range = 0;
+            /**
+             * The next seat, or the start of the next range if the current
+             * one has been exhausted.
+             */
+            private int seat = rangeCount != 0 ? ranges[0] : 0;
+
+            @Override
+            public boolean hasNext() {
+                return range < rangeCount;
+            }
+
+            @Override
+            public Integer next() {
+                if (range >= rangeCount) {
+                    throw new NoSuchElementException();
+                }
+                final int next = seat++;
+                if (seat == ranges[range * 2 + 1] && ++range < rangeCount) {
+                    seat = ranges[range * 2];
+                }
+                return next;
+            }
+        };
+    }
+}
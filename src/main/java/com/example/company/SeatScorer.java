@@ -0,0 +1,66 @@
+package com.example.company;
+
+import com.example.company.struct.SeatingPreference;
+
+/**
+ * Scores the seats of a venue layout, e.g. by their sightline or price
+ * category. A layout ranks its available seats by score once per scorer, and
+ * venues hold the best available seats by walking that ranking against their
+ * live inventory, so a hold only looks at about as many seats as it takes.
+ *
+ * <p>Note: Rankings are cached per scorer instance, so a scorer should be
+ * created once (e.g. as a constant) and reused for every hold.
+ */
+@FunctionalInterface
+public interface SeatScorer {
+
+    /**
+     * Prefers the seats closest to the front of the venue (the highest seat
+     * indices).
+     */
+    SeatScorer CLOSEST_TO_FRONT = (layout, seat) -> seat;
+    /**
+     * Prefers the seats closest to the back of the venue (the lowest seat
+     * indices).
+     */
+    SeatScorer CLOSEST_TO_BACK = (layout, seat) -> -seat;
+    /**
+     * Prefers the seats closest to the center of the venue, by the distance
+     * between their row and column and the center.
+     */
+    SeatScorer CLOSEST_TO_CENTER = (layout, seat) -> {
+        // Distances are doubled so the center stays on integer coordinates
+        final long rowDistance =
+            2L * layout.getRowOf(seat) - (layout.getNumRows() - 1);
+        final long columnDistance =
+            2L * layout.getColumnOf(seat) - (layout.getMaxRowLength() - 1);
+        return -(rowDistance * rowDistance + columnDistance * columnDistance);
+    };
+
+    /**
+     * Scores a seat. Seats with higher scores are held first, and seats with
+     * equal scores are held in order of their index.
+     *
+     * @param layout The layout of the venue
+     * @param seat The index of an available seat
+     * @return The score of the seat
+     */
+    double score(VenueLayout layout, int seat);
+
+    /**
+     * @param preference A seating preference
+     * @return The built-in scorer for the preference, or null if it doesn't
+     *     rank seats on their own (CLOSEST_TOGETHER holds runs of seats, and
+     *     NONE spreads holds over the venue's sections)
+     */
+    static SeatScorer forPreference(final SeatingPreference preference) {
+        if (preference == SeatingPreference.CLOSEST_TO_FRONT) {
+            return CLOSEST_TO_FRONT;
+        } else if (preference == SeatingPreference.CLOSEST_TO_BACK) {
+            return CLOSEST_TO_BACK;
+        } else if (preference == SeatingPreference.CLOSEST_TO_CENTER) {
+            return CLOSEST_TO_CENTER;
+        }
+        return null;
+    }
+}
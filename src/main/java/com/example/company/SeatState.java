@@ -0,0 +1,20 @@
+package com.example.company;
+
+/**
+ * The state of a seat that can be sold, as reported by a venue's
+ * {@link SeatChangeFeed}.
+ */
+public enum SeatState {
+    /**
+     * The seat is available to hold.
+     */
+    FREE,
+    /**
+     * The seat is held by a customer, and is released if the hold expires.
+     */
+    HELD,
+    /**
+     * The seat has been reserved.
+     */
+    RESERVED
+}
@@ -0,0 +1,378 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+import com.example.company.struct.TicketService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A TicketService that applies every request to a Venue from a single writer
+ * thread, in the order the requests were submitted.
+ *
+ * <p>Callers hand their requests to the writer through a lock-free ring
+ * buffer, and get the result back as a CompletableFuture. Since only one
+ * thread ever holds or reserves seats, requests never contend over the same
+ * seats or make each other fail: a request fails only if it could not have
+ * succeeded at the point it was applied. Consecutive holds are applied
+ * together as a batch, sharing a single scan of the venue.
+ *
+ * <p>Note: The futures are completed on the writer thread, so any dependent
+ * action that may block should use one of the *Async methods of
+ * CompletableFuture. Expired seat holds are still released by the venue's
+ * hold timer.
+ */
+public final class SequencedTicketService
+    implements TicketService, AutoCloseable {
+
+    /**
+     * The default number of requests that can be waiting to be applied.
+     */
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * The maximum number of holds applied as a single batch.
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+    /**
+     * The longest time the writer sleeps for while waiting for requests, in
+     * nanoseconds.
+     */
+    private static final long MAX_IDLE_NANOS = 1_000_000;
+
+    /**
+     * The venue the requests are applied to.
+     */
+    private final Venue venue;
+    /**
+     * The requests waiting to be applied.
+     */
+    private final MpscRingBuffer<Request> requests;
+    /**
+     * The thread applying the requests.
+     */
+    private final Thread writerThread;
+    /**
+     * False once the service has been closed.
+     */
+    private volatile boolean running = true;
+    /**
+     * True while the writer is (about to be) asleep waiting for requests.
+     */
+    private volatile boolean sleeping = false;
+
+    /**
+     * A request waiting to be applied.
+     */
+    private static final class Request {
+
+        /**
+         * The seats to hold, or null if this is a reservation.
+         */
+        private final HoldRequest hold;
+        /**
+         * The id of the SeatHold to reserve.
+         */
+        private final int seatHoldId;
+        /**
+         * The email of the customer reserving the seats.
+         */
+        private final String customerEmail;
+        /**
+         * The result of a hold.
+         */
+        private final CompletableFuture<SeatHold<Integer>> heldSeats;
+        /**
+         * The result of a reservation.
+         */
+        private final CompletableFuture<String> confirmationCode;
+
+        /**
+         * @param seatsToHold The seats to hold
+         */
+        private Request(final HoldRequest seatsToHold) {
+            hold = seatsToHold;
+            seatHoldId = 0;
+            customerEmail = seatsToHold.getCustomerEmail();
+            heldSeats = new CompletableFuture<>();
+            confirmationCode = null;
+        }
+
+        /**
+         * @param id The id of the SeatHold to reserve
+         * @param email The email of the customer reserving the seats
+         */
+        private Request(final int id, final String email) {
+            hold = null;
+            seatHoldId = id;
+            customerEmail = email;
+            heldSeats = null;
+            confirmationCode = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * @param ticketVenue The venue to apply requests to. It should not be used
+     *     directly while the service is running.
+     */
+    public SequencedTicketService(final Venue ticketVenue) {
+        this(ticketVenue, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param ticketVenue The venue to apply requests to. It should not be used
+     *     directly while the service is running.
+     * @param capacity The number of requests that can be waiting to be
+     *     applied before callers have to wait (rounded up to a power of 2)
+     */
+    public SequencedTicketService(final Venue ticketVenue,
+        final int capacity) {
+        venue = ticketVenue;
+        requests = new MpscRingBuffer<>(capacity);
+        writerThread = new Thread(this::run, "ticket-sequencer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return The venue requests are applied to
+     */
+    public final Venue getVenue() {
+        return venue;
+    }
+
+    @Override
+    public final int numSeatsAvailable() {
+        // Note: The venue's counter can be read from any thread
+        return venue.numSeatsAvailable();
+    }
+
+    @Override
+    public final SeatHold<Integer> findAndHoldSeats(final int numSeats,
+        final String customerEmail) {
+        return await(findAndHoldSeatsAsync(numSeats, customerEmail, null));
+    }
+
+    @Override
+    public final String reserveSeats(final int seatHoldId,
+        final String customerEmail) {
+        return await(reserveSeatsAsync(seatHoldId, customerEmail));
+    }
+
+    /**
+     * Find and hold the best available seats for a customer, using the
+     * venue's default seating preference.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats, once the hold has been applied
+     */
+    public final CompletableFuture<SeatHold<Integer>> findAndHoldSeatsAsync(
+        final int numSeats, final String customerEmail) {
+        return findAndHoldSeatsAsync(numSeats, customerEmail, null);
+    }
+
+    /**
+     * Find and hold the best available seats for a customer.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @param userSeatingPreference The Seating preference the customer
+     *     prefers, or null for the venue's default
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats, once the hold has been applied
+     */
+    public final CompletableFuture<SeatHold<Integer>> findAndHoldSeatsAsync(
+        final int numSeats, final String customerEmail,
+        final SeatingPreference userSeatingPreference) {
+        Request request = new Request(new HoldRequest(numSeats, customerEmail,
+            userSeatingPreference));
+        submit(request);
+        return request.heldSeats;
+    }
+
+    /**
+     * Commit seats held for a specific customer.
+     *
+     * @param seatHoldId The seat hold identifier
+     * @param customerEmail The email address of the customer to which the
+     *     seat hold is assigned
+     * @return A reservation confirmation code, or null if the customer has no
+     *     SeatHold, once the reservation has been applied
+     */
+    public final CompletableFuture<String> reserveSeatsAsync(
+        final int seatHoldId, final String customerEmail) {
+        Request request = new Request(seatHoldId, customerEmail);
+        submit(request);
+        return request.confirmationCode;
+    }
+
+    /**
+     * Stops the writer once every request submitted so far has been applied.
+     * Requests submitted while the service is being closed are either
+     * applied, or fail with an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Hands a request to the writer, waiting for room in the ring buffer if
+     * it is full.
+     *
+     * @param request The request to apply
+     */
+    private void submit(final Request request) {
+        if (!running) {
+            throw new IllegalStateException("The ticket service is closed");
+        }
+        while (!requests.offer(request)) {
+            // Let the writer catch up
+            Thread.yield();
+        }
+        if (!running) {
+            // The service was closed meanwhile, so the writer may have
+            // stopped before it saw the request
+            failUnapplied();
+            return;
+        }
+        // Wake the writer up if it went to sleep before the request was
+        // published. (Publishing is a volatile write, so either this sees the
+        // writer sleeping, or the writer sees the request before sleeping.)
+        if (sleeping) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Fails every request left in the ring buffer once the writer has
+     * stopped, i.e. the requests submitted while the service was being
+     * closed that the writer didn't apply.
+     */
+    private void failUnapplied() {
+        if (Thread.currentThread() != writerThread) {
+            boolean interrupted = false;
+            while (writerThread.isAlive()) {
+                try {
+                    writerThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Only one thread at a time may take requests from the ring buffer
+        synchronized (requests) {
+            Request request;
+            while ((request = requests.poll()) != null) {
+                final IllegalStateException e =
+                    new IllegalStateException("The ticket service is closed");
+                if (request.hold != null) {
+                    request.heldSeats.completeExceptionally(e);
+                } else {
+                    request.confirmationCode.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param future The result of a request
+     * @param <T> The type of the result
+     * @return The result, once the request has been applied
+     */
+    private static <T> T await(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Rethrow exceptions thrown by the venue as they are
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The loop run by the writer thread.
+     */
+    private void run() {
+        // The holds waiting to be applied as a batch
+        List<Request> holds = new ArrayList<>();
+        while (true) {
+            Request request = requests.poll();
+            if (request == null) {
+                // Apply the pending holds before waiting for more requests
+                applyHolds(holds);
+                if (!running) {
+                    // Every request published before its submitter saw the
+                    // service running is in the ring by now, so only stop
+                    // once it is empty. (Submitters that see the service
+                    // closed fail their request themselves if needed.)
+                    if (requests.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                sleeping = true;
+                if (requests.isEmpty()) {
+                    LockSupport.parkNanos(this, MAX_IDLE_NANOS);
+                }
+                sleeping = false;
+            } else if (request.hold != null) {
+                holds.add(request);
+                if (holds.size() == MAX_BATCH_SIZE) {
+                    applyHolds(holds);
+                }
+            } else {
+                // Holds submitted before the reservation must be applied
+                // before it
+                applyHolds(holds);
+                try {
+                    request.confirmationCode.complete(venue.reserveSeats(
+                        request.seatHoldId, request.customerEmail));
+                } catch (RuntimeException e) {
+                    request.confirmationCode.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of holds to the venue, and completes their futures.
+     *
+     * @param holds The holds to apply, which are removed from the list
+     */
+    private void applyHolds(final List<Request> holds) {
+        if (holds.isEmpty()) {
+            return;
+        }
+        List<HoldRequest> batch = new ArrayList<>(holds.size());
+        for (Request request : holds) {
+            batch.add(request.hold);
+        }
+        try {
+            List<SeatHold<Integer>> results = venue.findAndHoldSeats(batch);
+            for (int i = 0; i < holds.size(); i++) {
+                holds.get(i).heldSeats.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            // Thrown for an unsupported seating preference, or if the
+            // venue's journal failed
+            for (Request request : holds) {
+                request.heldSeats.completeExceptionally(e);
+            }
+        }
+        holds.clear();
+    }
+}
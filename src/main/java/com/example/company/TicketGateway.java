@@ -0,0 +1,419 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+import com.example.company.struct.TicketService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An embedded HTTP/JSON front end for a TicketService, on the JDK's
+ * com.sun.net.httpserver. Every request runs on its own virtual thread, so a
+ * request that blocks (e.g. a reservation waiting for the journal, or a
+ * caller waiting in a WaitingRoom) only parks its virtual thread, and
+ * concurrency isn't capped by a pool of platform threads.
+ *
+ * <p>The gateway serves:
+ * <ul>
+ * <li>{@code GET /seats}: {@code {"numSeatsAvailable":n}}</li>
+ * <li>{@code POST /holds} with {@code {"numSeats":n,"customerEmail":"...",
+ * "seatingPreference":"..."}} (the preference is optional, and only
+ * taken by a Venue or SequencedTicketService; other services answer
+ * {@code 400} to a request with one):
+ * {@code 201 {"seatHoldId":id,"customerEmail":"...","seats":[...]}}, or
+ * {@code 409} if the seats couldn't be held</li>
+ * <li>{@code POST /holds/{id}/reservation} with
+ * {@code {"customerEmail":"..."}}: {@code {"confirmationCode":"..."}}, or
+ * {@code 404} if the customer has no pending hold with that id</li>
+ * </ul>
+ * Errors are {@code {"error":"..."}}, with 400 for a malformed request, 405
+ * for the wrong method, and 503 if the service turned the caller away.
+ *
+ * <p>Note: Idle keep-alive connections are closed once there are more than
+ * the JDK's limit ({@code -Dsun.net.httpserver.maxIdleConnections}), which
+ * should be raised to keep tens of thousands of connections open.
+ */
+public class TicketGateway implements AutoCloseable {
+
+    /**
+     * The default number of connections waiting to be accepted.
+     */
+    private static final int DEFAULT_BACKLOG = 4096;
+    /**
+     * The largest request body accepted, in bytes.
+     */
+    private static final int MAX_BODY_BYTES = 4096;
+
+    /**
+     * The service requests are passed to.
+     */
+    private final TicketService service;
+    /**
+     * The server.
+     */
+    private final HttpServer server;
+    /**
+     * Runs every request on a new virtual thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The response to a request that was served.
+     */
+    private static final class Response {
+
+        /**
+         * The status code of the response.
+         */
+        private final int status;
+        /**
+         * The JSON of the response.
+         */
+        private final String body;
+
+        /**
+         * @param statusCode The status code of the response
+         * @param json The JSON of the response
+         */
+        private Response(final int statusCode, final String json) {
+            status = statusCode;
+            body = json;
+        }
+    }
+
+    /**
+     * A request that can't be served, and the response to send for it.
+     */
+    private static final class RequestException extends Exception {
+
+        /**
+         * Not serialized.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The status code of the response.
+         */
+        private final int status;
+
+        /**
+         * @param statusCode The status code of the response
+         * @param message The error sent to the client
+         */
+        private RequestException(final int statusCode, final String message) {
+            super(message);
+            status = statusCode;
+        }
+    }
+
+    /**
+     * Starts serving a TicketService.
+     *
+     * @param ticketService The service requests are passed to
+     * @param address The address to listen on (port 0 for any free port)
+     * @throws IOException If the server could not be bound
+     */
+    public TicketGateway(final TicketService ticketService,
+        final InetSocketAddress address) throws IOException {
+        this(ticketService, address, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * Starts serving a TicketService.
+     *
+     * @param ticketService The service requests are passed to
+     * @param address The address to listen on (port 0 for any free port)
+     * @param backlog The number of connections waiting to be accepted
+     * @throws IOException If the server could not be bound
+     */
+    public TicketGateway(final TicketService ticketService,
+        final InetSocketAddress address, final int backlog)
+        throws IOException {
+        if (ticketService == null) {
+            throw new IllegalArgumentException("The service must not be null");
+        }
+        service = ticketService;
+        executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ticket-gateway-", 0).factory());
+        server = HttpServer.create(address, backlog);
+        server.setExecutor(executor);
+        server.createContext("/seats", exchange -> serve(exchange,
+            this::handleSeats));
+        server.createContext("/holds", exchange -> serve(exchange,
+            this::handleHolds));
+        server.start();
+    }
+
+    /**
+     * @return The address the gateway is listening on
+     */
+    public final InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests, waiting up to a second for the requests
+     * being served to finish.
+     */
+    @Override
+    public void close() {
+        // Note: Stopping the server waits for the whole delay even when no
+        // requests are being served, so wait for the requests ourselves
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+    }
+
+    /**
+     * Handles a request and returns its response.
+     */
+    private interface Handler {
+
+        /**
+         * @param exchange The request
+         * @return The response
+         * @throws RequestException If the request can't be served
+         * @throws IOException If the request couldn't be read
+         */
+        Response handle(HttpExchange exchange)
+            throws RequestException, IOException;
+    }
+
+    /**
+     * Serves a request, sending back its response or the error it failed
+     * with.
+     *
+     * @param exchange The request
+     * @param handler The handler of the request
+     * @throws IOException If the response couldn't be sent
+     */
+    private void serve(final HttpExchange exchange, final Handler handler)
+        throws IOException {
+        int status;
+        String body;
+        try {
+            final Response response = handler.handle(exchange);
+            status = response.status;
+            body = response.body;
+        } catch (RequestException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            status = 503;
+            body = error("The service is busy, try again later");
+        } catch (RuntimeException e) {
+            status = 500;
+            body = error("Internal error");
+        }
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (HttpExchange response = exchange) {
+            response.getResponseHeaders().set("Content-Type",
+                "application/json");
+            response.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = response.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * @param message An error
+     * @return The JSON of the error
+     */
+    private static String error(final String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    /**
+     * Serves GET /seats.
+     *
+     * @param exchange The request
+     * @return The number of seats available
+     * @throws RequestException If the request isn't a GET of /seats
+     */
+    private Response handleSeats(final HttpExchange exchange)
+        throws RequestException {
+        requireMethod(exchange, "GET");
+        if (!exchange.getRequestURI().getPath().equals("/seats")) {
+            throw new RequestException(404, "Not found");
+        }
+        return new Response(200, "{\"numSeatsAvailable\":"
+            + service.numSeatsAvailable() + "}");
+    }
+
+    /**
+     * Serves POST /holds and POST /holds/{id}/reservation.
+     *
+     * @param exchange The request
+     * @return The SeatHold, or the confirmation code of the reservation
+     * @throws RequestException If the request can't be served
+     * @throws IOException If the request couldn't be read
+     */
+    private Response handleHolds(final HttpExchange exchange)
+        throws RequestException, IOException {
+        final String[] path = exchange.getRequestURI().getPath()
+            .substring(1).split("/");
+        if (!path[0].equals("holds")) {
+            throw new RequestException(404, "Not found");
+        }
+        if (path.length == 1) {
+            requireMethod(exchange, "POST");
+            return new Response(201, hold(readObject(exchange)));
+        } else if (path.length == 3 && path[2].equals("reservation")) {
+            requireMethod(exchange, "POST");
+            final int seatHoldId;
+            try {
+                seatHoldId = Integer.parseInt(path[1]);
+            } catch (NumberFormatException e) {
+                throw new RequestException(404, "Not found");
+            }
+            return new Response(200, reserve(seatHoldId,
+                readObject(exchange)));
+        }
+        throw new RequestException(404, "Not found");
+    }
+
+    /**
+     * Holds seats for a customer.
+     *
+     * @param request The request's JSON
+     * @return The JSON of the SeatHold
+     * @throws RequestException If the request is malformed or the seats
+     *     couldn't be held
+     */
+    private String hold(final Map<String, String> request)
+        throws RequestException {
+        final String customerEmail = required(request, "customerEmail");
+        final int numSeats;
+        try {
+            numSeats = Integer.parseInt(required(request, "numSeats"));
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "numSeats must be an integer");
+        }
+        if (numSeats < 1) {
+            throw new RequestException(400, "numSeats must be positive");
+        }
+        SeatingPreference preference = null;
+        final String preferenceName = request.get("seatingPreference");
+        if (preferenceName != null) {
+            try {
+                preference = SeatingPreference.valueOf(
+                    preferenceName.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new RequestException(400,
+                    "Unknown seatingPreference: " + preferenceName);
+            }
+            if (!TicketServices.takesSeatingPreference(service)) {
+                throw new RequestException(400,
+                    "seatingPreference isn't supported by this service");
+            }
+        }
+
+        final SeatHold<?> seatHold = TicketServices.findAndHoldSeats(service,
+            numSeats, customerEmail, preference);
+        if (seatHold == null) {
+            throw new RequestException(409,
+                "Unable to hold " + numSeats + " seats");
+        }
+        StringBuilder response = new StringBuilder("{\"seatHoldId\":")
+            .append(seatHold.getId())
+            .append(",\"customerEmail\":").append(Json.quote(customerEmail))
+            .append(",\"seats\":[");
+        boolean first = true;
+        for (Object seat : seatHold.getReservedSeats()) {
+            if (!first) {
+                response.append(',');
+            }
+            response.append(seat);
+            first = false;
+        }
+        return response.append("]}").toString();
+    }
+
+    /**
+     * Reserves a customer's held seats.
+     *
+     * @param seatHoldId The id of the SeatHold
+     * @param request The request's JSON
+     * @return The JSON of the confirmation code
+     * @throws RequestException If the request is malformed or the customer
+     *     has no pending SeatHold with that id
+     */
+    private String reserve(final int seatHoldId,
+        final Map<String, String> request) throws RequestException {
+        final String confirmationCode = service.reserveSeats(seatHoldId,
+            required(request, "customerEmail"));
+        if (confirmationCode == null) {
+            throw new RequestException(404,
+                "No pending seat hold " + seatHoldId + " for the customer");
+        }
+        return "{\"confirmationCode\":" + Json.quote(confirmationCode) + "}";
+    }
+
+    /**
+     * @param exchange A request
+     * @param method The method the request must have
+     * @throws RequestException If the request has another method
+     */
+    private static void requireMethod(final HttpExchange exchange,
+        final String method) throws RequestException {
+        if (!exchange.getRequestMethod().equals(method)) {
+            exchange.getResponseHeaders().set("Allow", method);
+            throw new RequestException(405, "Only " + method + " is allowed");
+        }
+    }
+
+    /**
+     * @param exchange A request
+     * @return The JSON object in the body of the request
+     * @throws RequestException If the body is too large or isn't a JSON
+     *     object
+     * @throws IOException If the body couldn't be read
+     */
+    private static Map<String, String> readObject(final HttpExchange exchange)
+        throws RequestException, IOException {
+        final byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (body.length > MAX_BODY_BYTES) {
+            throw new RequestException(413, "The request is too large");
+        }
+        try {
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new RequestException(400, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param request A request's JSON
+     * @param name The name of a value
+     * @return The value
+     * @throws RequestException If the request doesn't have the value
+     */
+    private static String required(final Map<String, String> request,
+        final String name) throws RequestException {
+        final String value = request.get(name);
+        if (value == null) {
+            throw new RequestException(400, "Missing " + name);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.company;
+
+import com.example.company.struct.SeatingPreference;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary wire protocol of the TicketProtocolServer and
+ * TicketProtocolClient.
+ *
+ * <p>Every message is a frame: the number of bytes after the length (an
+ * int), then the message. All numbers are big-endian, and strings are a
+ * short length followed by that many bytes of UTF-8. Requests are
+ * <ul>
+ * <li>NUM_SEATS_AVAILABLE: the opcode</li>
+ * <li>FIND_AND_HOLD_SEATS: the opcode, the number of seats (int), the
+ * ordinal of the seating preference (byte, or -1 for the service's default),
+ * and the customer's email</li>
+ * <li>RESERVE_SEATS: the opcode, the id of the SeatHold (int), and the
+ * customer's email</li>
+ * </ul>
+ * and every response is a status followed by its result if it is OK: the
+ * number of seats (int); the id of the SeatHold (int) and its seats as a
+ * number of ranges (int) followed by the first seat and the seat after the
+ * last of each range (ints); or the confirmation code (string). A
+ * connection's responses are sent in the order of its requests, so a client
+ * may send many requests without waiting for their responses (pipelining)
+ * and match the responses up by their order.
+ */
+final class TicketProtocol {
+
+    /**
+     * The opcode of numSeatsAvailable.
+     */
+    static final byte NUM_SEATS_AVAILABLE = 1;
+    /**
+     * The opcode of findAndHoldSeats.
+     */
+    static final byte FIND_AND_HOLD_SEATS = 2;
+    /**
+     * The opcode of reserveSeats.
+     */
+    static final byte RESERVE_SEATS = 3;
+
+    /**
+     * The status of a request that succeeded.
+     */
+    static final byte OK = 0;
+    /**
+     * The status of a hold or reservation that failed (for which the
+     * service returned null).
+     */
+    static final byte FAILED = 1;
+    /**
+     * The status of a request the service turned away (e.g. a full
+     * WaitingRoom).
+     */
+    static final byte REJECTED = 2;
+    /**
+     * The status of a request that couldn't be served, followed by an error
+     * message (string).
+     */
+    static final byte ERROR = 3;
+
+    /**
+     * The preference sent for the service's default.
+     */
+    static final byte DEFAULT_PREFERENCE = -1;
+    /**
+     * The seating preferences, by ordinal.
+     */
+    static final SeatingPreference[] PREFERENCES = SeatingPreference.values();
+
+    /**
+     * The size of the length of a frame.
+     */
+    static final int LENGTH_SIZE = Integer.BYTES;
+    /**
+     * The largest request frame, after its length: an opcode, two ints, and
+     * the longest email.
+     */
+    static final int MAX_REQUEST_SIZE = 1 + 2 * Integer.BYTES + Short.BYTES
+        + Short.MAX_VALUE;
+    /**
+     * The most bytes of a string written in a response (longer error
+     * messages are cut short).
+     */
+    static final int MAX_RESPONSE_STRING = 1024;
+
+    /**
+     * Not instantiable.
+     */
+    private TicketProtocol() {
+    }
+
+    /**
+     * Writes a string as its length and UTF-8 bytes, without allocating if it
+     * is ASCII.
+     *
+     * @param buffer The buffer to write to
+     * @param value The string
+     * @param maxBytes The most bytes of the string to write
+     */
+    static void putString(final ByteBuffer buffer, final String value,
+        final int maxBytes) {
+        final int length = value.length();
+        boolean ascii = length <= maxBytes;
+        for (int i = 0; ascii && i < length; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            buffer.putShort((short) length);
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        final int written = Math.min(bytes.length, maxBytes);
+        buffer.putShort((short) written).put(bytes, 0, written);
+    }
+
+    /**
+     * @param buffer The buffer to read from
+     * @return The string read from it
+     */
+    static String getString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+import com.example.company.struct.TicketService;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A TicketService on a connection to a TicketProtocolServer.
+ *
+ * <p>Requests are pipelined: the *Async methods send their request and
+ * return right away, without waiting for the responses of earlier requests,
+ * so a single connection keeps many requests in flight. Responses come back
+ * in the order the requests were sent, and are read by a thread of the
+ * client that completes their futures. The TicketService methods send their
+ * request and wait for its response. The client may be used by many threads
+ * at once.
+ *
+ * <p>Note: The futures are completed on the client's reader thread, so any
+ * dependent action that may block should use one of the *Async methods of
+ * CompletableFuture.
+ */
+public class TicketProtocolClient implements TicketService, AutoCloseable {
+
+    /**
+     * The initial size of the read buffer, and the size of the write buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The connection to the server.
+     */
+    private final SocketChannel channel;
+    /**
+     * Held while sending a request, so requests are sent (and queued for
+     * their response) in the same order.
+     */
+    private final ReentrantLock sendLock = new ReentrantLock();
+    /**
+     * The request being sent. Guarded by sendLock.
+     */
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * The requests waiting for their response, in the order they were sent.
+     */
+    private final ConcurrentLinkedQueue<Pending> pending =
+        new ConcurrentLinkedQueue<>();
+    /**
+     * The thread reading responses.
+     */
+    private final Thread readerThread;
+    /**
+     * Why the connection is unusable (including because it was closed), or
+     * null while it is open.
+     */
+    private volatile IOException failure;
+
+    /**
+     * A request waiting for its response.
+     */
+    private static final class Pending {
+
+        /**
+         * The opcode of the request.
+         */
+        private final byte opcode;
+        /**
+         * The email of the customer, for holds.
+         */
+        private final String customerEmail;
+        /**
+         * Completed with the result of the request.
+         */
+        private final CompletableFuture<Object> result;
+
+        /**
+         * @param requestOpcode The opcode of the request
+         * @param email The email of the customer, for holds
+         * @param future Completed with the result of the request
+         */
+        @SuppressWarnings("unchecked")
+        private Pending(final byte requestOpcode, final String email,
+            final CompletableFuture<?> future) {
+            opcode = requestOpcode;
+            customerEmail = email;
+            result = (CompletableFuture<Object>) future;
+        }
+    }
+
+    /**
+     * Connects to a TicketProtocolServer.
+     *
+     * @param address The address of the server
+     * @throws IOException If the client could not connect
+     */
+    public TicketProtocolClient(final InetSocketAddress address)
+        throws IOException {
+        channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        readerThread = new Thread(this::readResponses,
+            "ticket-protocol-client");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Override
+    public final int numSeatsAvailable() {
+        return await(numSeatsAvailableAsync());
+    }
+
+    @Override
+    public final SeatHold<Integer> findAndHoldSeats(final int numSeats,
+        final String customerEmail) {
+        return await(findAndHoldSeatsAsync(numSeats, customerEmail, null));
+    }
+
+    /**
+     * Find and hold the best available seats for a customer.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @param userSeatingPreference The Seating preference the customer
+     *     prefers, or null for the service's default
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats
+     */
+    public final SeatHold<Integer> findAndHoldSeats(final int numSeats,
+        final String customerEmail,
+        final SeatingPreference userSeatingPreference) {
+        return await(findAndHoldSeatsAsync(numSeats, customerEmail,
+            userSeatingPreference));
+    }
+
+    @Override
+    public final String reserveSeats(final int seatHoldId,
+        final String customerEmail) {
+        return await(reserveSeatsAsync(seatHoldId, customerEmail));
+    }
+
+    /**
+     * @return The number of seats available, once the server has answered
+     */
+    public final CompletableFuture<Integer> numSeatsAvailableAsync() {
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        sendLock.lock();
+        try {
+            writeBuffer.clear();
+            writeBuffer.putInt(1).put(TicketProtocol.NUM_SEATS_AVAILABLE);
+            send(new Pending(TicketProtocol.NUM_SEATS_AVAILABLE, null, result));
+        } finally {
+            sendLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Find and hold the best available seats for a customer.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @param userSeatingPreference The Seating preference the customer
+     *     prefers, or null for the service's default
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats, once the server has answered
+     */
+    public final CompletableFuture<SeatHold<Integer>> findAndHoldSeatsAsync(
+        final int numSeats, final String customerEmail,
+        final SeatingPreference userSeatingPreference) {
+        final byte[] email = encodeEmail(customerEmail);
+        final CompletableFuture<SeatHold<Integer>> result =
+            new CompletableFuture<>();
+        sendLock.lock();
+        try {
+            writeBuffer.clear();
+            writeBuffer.putInt(1 + Integer.BYTES + 1 + Short.BYTES
+                + email.length)
+                .put(TicketProtocol.FIND_AND_HOLD_SEATS)
+                .putInt(numSeats)
+                .put(userSeatingPreference != null
+                    ? (byte) userSeatingPreference.ordinal()
+                    : TicketProtocol.DEFAULT_PREFERENCE)
+                .putShort((short) email.length).put(email);
+            send(new Pending(TicketProtocol.FIND_AND_HOLD_SEATS,
+                customerEmail, result));
+        } finally {
+            sendLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Commit seats held for a specific customer.
+     *
+     * @param seatHoldId The seat hold identifier
+     * @param customerEmail The email address of the customer to which the
+     *     seat hold is assigned
+     * @return A reservation confirmation code, or null if the customer has no
+     *     SeatHold, once the server has answered
+     */
+    public final CompletableFuture<String> reserveSeatsAsync(
+        final int seatHoldId, final String customerEmail) {
+        final byte[] email = encodeEmail(customerEmail);
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        sendLock.lock();
+        try {
+            writeBuffer.clear();
+            writeBuffer.putInt(1 + Integer.BYTES + Short.BYTES + email.length)
+                .put(TicketProtocol.RESERVE_SEATS)
+                .putInt(seatHoldId)
+                .putShort((short) email.length).put(email);
+            send(new Pending(TicketProtocol.RESERVE_SEATS, null, result));
+        } finally {
+            sendLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * @param customerEmail An email
+     * @return The UTF-8 bytes of the email
+     */
+    private static byte[] encodeEmail(final String customerEmail) {
+        final byte[] email = customerEmail.getBytes(StandardCharsets.UTF_8);
+        if (email.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Email is too long");
+        }
+        return email;
+    }
+
+    /**
+     * Queues a request for its response, then sends it. Must be called while
+     * holding sendLock.
+     *
+     * @param request The request, encoded in the write buffer
+     */
+    private void send(final Pending request) {
+        if (failure != null) {
+            request.result.completeExceptionally(
+                new UncheckedIOException(failure));
+            return;
+        }
+        pending.offer(request);
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Waits for the result of a request.
+     *
+     * @param result The future of the result
+     * @param <T> The type of the result
+     * @return The result
+     */
+    private static <T> T await(final CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The loop run by the reader thread.
+     */
+    private void readResponses() {
+        ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try {
+            while (true) {
+                if (channel.read(readBuffer) < 0) {
+                    throw new EOFException("The server closed the connection");
+                }
+                readBuffer.flip();
+                while (readBuffer.remaining() >= TicketProtocol.LENGTH_SIZE) {
+                    final int start = readBuffer.position();
+                    final int length = readBuffer.getInt(start);
+                    if (length < 1) {
+                        throw new IOException("Invalid response length: "
+                            + length);
+                    }
+                    final int end = start + TicketProtocol.LENGTH_SIZE
+                        + length;
+                    if (end > readBuffer.limit()) {
+                        break;
+                    }
+                    final int limit = readBuffer.limit();
+                    readBuffer.position(start + TicketProtocol.LENGTH_SIZE)
+                        .limit(end);
+                    complete(pending.poll(), readBuffer);
+                    readBuffer.limit(limit).position(end);
+                }
+                readBuffer.compact();
+                if (!readBuffer.hasRemaining()) {
+                    // A response larger than the buffer
+                    ByteBuffer larger =
+                        ByteBuffer.allocate(readBuffer.capacity() * 2);
+                    readBuffer.flip();
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Completes a request with its response.
+     *
+     * @param request The request
+     * @param response The response, between its position and limit
+     * @throws IOException If there is no request waiting for the response
+     */
+    private static void complete(final Pending request,
+        final ByteBuffer response) throws IOException {
+        if (request == null) {
+            throw new IOException("Received a response to no request");
+        }
+        final byte status = response.get();
+        if (status == TicketProtocol.FAILED) {
+            request.result.complete(null);
+        } else if (status == TicketProtocol.REJECTED) {
+            request.result.completeExceptionally(new RejectedExecutionException(
+                "The service turned the request away"));
+        } else if (status == TicketProtocol.ERROR) {
+            request.result.completeExceptionally(new IllegalStateException(
+                "The server failed to serve the request: "
+                    + TicketProtocol.getString(response)));
+        } else if (request.opcode == TicketProtocol.NUM_SEATS_AVAILABLE) {
+            request.result.complete(response.getInt());
+        } else if (request.opcode == TicketProtocol.FIND_AND_HOLD_SEATS) {
+            final int seatHoldId = response.getInt();
+            final int rangeCount = response.getInt();
+            SeatRuns seats = new SeatRuns();
+            for (int range = 0; range < rangeCount; range++) {
+                seats.addRange(response.getInt(), response.getInt());
+            }
+            request.result.complete(new VenueSeatHold(seatHoldId, seats,
+                request.customerEmail));
+        } else {
+            request.result.complete(TicketProtocol.getString(response));
+        }
+    }
+
+    /**
+     * Closes the connection after it failed, and fails every request still
+     * waiting for its response.
+     *
+     * @param error Why the connection failed
+     */
+    private void fail(final IOException error) {
+        if (failure == null) {
+            failure = error;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+        // Requests are only queued while holding the lock and before the
+        // failure is set, so no request is queued after this
+        sendLock.lock();
+        try {
+            Pending request;
+            while ((request = pending.poll()) != null) {
+                request.result.completeExceptionally(
+                    new UncheckedIOException(failure));
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the connection. Requests still waiting for their response fail
+     * with an UncheckedIOException.
+     */
+    @Override
+    public void close() {
+        fail(new ClosedChannelException());
+        try {
+            readerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
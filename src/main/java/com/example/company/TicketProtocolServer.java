@@ -0,0 +1,683 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+import com.example.company.struct.TicketService;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Serves a TicketService over the binary {@link TicketProtocol}, with
+ * non-blocking NIO.
+ *
+ * <p>An acceptor thread hands every new connection to one of a fixed number
+ * of selector threads, round-robin. Each selector thread reads the requests
+ * of its connections into a pooled direct buffer, serves every complete
+ * request that was read, in order, and writes all of their responses back
+ * with a single write. Clients can therefore pipeline requests: the requests
+ * that arrive together are served as a batch, without a round trip each.
+ *
+ * <p>Requests are decoded straight from the read buffer, and responses are
+ * encoded straight into the write buffer (the seats of a hold as ranges of
+ * consecutive seats, from its SeatRuns). Serving a request mostly allocates
+ * nothing but what the TicketService itself does, with three exceptions:
+ * <ul>
+ *   <li>A request with a different email than the connection's last one
+ *       allocates the String of the new email. (Its bytes are read into a
+ *       buffer kept by the connection.)</li>
+ *   <li>A response too large for the write buffer is copied into a buffer of
+ *       its own.</li>
+ *   <li>The seats of a hold that aren't a SeatRuns are copied into one.</li>
+ * </ul>
+ * A connection whose responses aren't being read stops being read from until
+ * they are.
+ *
+ * <p>Note: The service is called on the selector threads, so a service that
+ * blocks (e.g. a Venue whose journal forces every reservation to disk) holds
+ * up every connection of that thread meanwhile.
+ */
+public class TicketProtocolServer implements AutoCloseable {
+
+    /**
+     * The size of every read and write buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * The most buffers kept for new connections.
+     */
+    private static final int MAX_POOLED_BUFFERS = 1024;
+    /**
+     * The most room any response takes in the write buffer, except for the
+     * seats of a hold: a status, two ints, and the longest string.
+     */
+    private static final int MAX_FIXED_RESPONSE = TicketProtocol.LENGTH_SIZE
+        + 1 + 2 * Integer.BYTES + Short.BYTES
+        + TicketProtocol.MAX_RESPONSE_STRING;
+
+    /**
+     * The service requests are passed to.
+     */
+    private final TicketService service;
+    /**
+     * The channel connections are accepted on.
+     */
+    private final ServerSocketChannel serverChannel;
+    /**
+     * The buffers of the connections.
+     */
+    private final BufferPool buffers =
+        new BufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    /**
+     * The selector threads connections are served on.
+     */
+    private final Worker[] workers;
+    /**
+     * The thread accepting connections.
+     */
+    private final Thread acceptThread;
+    /**
+     * False once the server has been closed.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * A selector thread, and the connections it serves.
+     */
+    private final class Worker implements Runnable {
+
+        /**
+         * The selector of the worker's connections.
+         */
+        private final Selector selector;
+        /**
+         * The connections accepted for the worker that it hasn't registered
+         * yet.
+         */
+        private final ConcurrentLinkedQueue<SocketChannel> accepted =
+            new ConcurrentLinkedQueue<>();
+        /**
+         * The thread running the worker.
+         */
+        private final Thread thread;
+
+        /**
+         * @param index The number of the worker
+         * @throws IOException If the selector could not be opened
+         */
+        private Worker(final int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "ticket-protocol-" + index);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Hands a connection to the worker.
+         *
+         * @param channel The connection
+         */
+        private void add(final SocketChannel channel) {
+            accepted.offer(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(this::ready);
+                    SocketChannel channel;
+                    while ((channel = accepted.poll()) != null) {
+                        register(channel);
+                    }
+                }
+            } catch (IOException e) {
+                // The selector failed; its connections are closed below
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                SocketChannel channel;
+                while ((channel = accepted.poll()) != null) {
+                    closeQuietly(channel);
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            }
+        }
+
+        /**
+         * @param channel A connection to start serving
+         */
+        private void register(final SocketChannel channel) {
+            final Connection connection = new Connection(channel);
+            try {
+                connection.key = channel.register(selector,
+                    SelectionKey.OP_READ, connection);
+            } catch (ClosedChannelException e) {
+                connection.close();
+            }
+        }
+
+        /**
+         * Serves a connection that is ready to be read from or written to.
+         *
+         * @param key The key of the connection
+         */
+        private void ready(final SelectionKey key) {
+            final Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    connection.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.serve();
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * A connection, and its buffers.
+     */
+    private final class Connection {
+
+        /**
+         * The channel of the connection.
+         */
+        private final SocketChannel channel;
+        /**
+         * The requests read but not served yet.
+         */
+        private final ByteBuffer readBuffer;
+        /**
+         * The responses not written yet.
+         */
+        private final ByteBuffer writeBuffer;
+        /**
+         * The key of the connection, once it is registered.
+         */
+        private SelectionKey key;
+        /**
+         * A response too large for the write buffer, written after the
+         * write buffer, or null.
+         */
+        private ByteBuffer overflow;
+        /**
+         * The UTF-8 bytes of the last email read, followed by unused room.
+         */
+        private byte[] emailBytes = new byte[0];
+        /**
+         * The number of bytes of the last email read, or -1 if none has
+         * been.
+         */
+        private int emailLength = -1;
+        /**
+         * The last email read, or null.
+         */
+        private String lastEmail;
+        /**
+         * The operations the connection's key is interested in.
+         */
+        private int interestOps = SelectionKey.OP_READ;
+        /**
+         * True once the connection has been closed.
+         */
+        private boolean closed;
+
+        /**
+         * @param socketChannel The channel of the connection
+         */
+        private Connection(final SocketChannel socketChannel) {
+            channel = socketChannel;
+            readBuffer = buffers.acquire();
+            writeBuffer = buffers.acquire();
+        }
+
+        /**
+         * Reads requests, and serves them.
+         *
+         * @throws IOException If the connection failed
+         */
+        private void onReadable() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            serve();
+        }
+
+        /**
+         * Serves the requests that have been read, and writes their
+         * responses, for as long as their responses can be written.
+         *
+         * @throws IOException If the connection failed
+         */
+        private void serve() throws IOException {
+            boolean stalled;
+            do {
+                stalled = process();
+            } while (flush() && stalled);
+
+            // Stop reading while the read buffer is full, and wait to write
+            // while responses are left
+            int ops = 0;
+            if (readBuffer.hasRemaining()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (writeBuffer.position() > 0 || overflow != null) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            if (ops != interestOps) {
+                key.interestOps(ops);
+                interestOps = ops;
+            }
+        }
+
+        /**
+         * Serves every complete request in the read buffer, as long as there
+         * is room for its response.
+         *
+         * @return True if a complete request is left because there was no
+         *     room for its response
+         * @throws IOException If a request has an invalid length
+         */
+        private boolean process() throws IOException {
+            readBuffer.flip();
+            try {
+                while (readBuffer.remaining() >= TicketProtocol.LENGTH_SIZE) {
+                    final int start = readBuffer.position();
+                    final int length = readBuffer.getInt(start);
+                    if (length < 1
+                        || length > TicketProtocol.MAX_REQUEST_SIZE) {
+                        throw new IOException("Invalid request length: "
+                            + length);
+                    }
+                    final int end = start + TicketProtocol.LENGTH_SIZE + length;
+                    if (end > readBuffer.limit()) {
+                        return false;
+                    }
+                    if (overflow != null
+                        || writeBuffer.remaining() < MAX_FIXED_RESPONSE) {
+                        return true;
+                    }
+                    final int limit = readBuffer.limit();
+                    readBuffer.position(start + TicketProtocol.LENGTH_SIZE)
+                        .limit(end);
+                    respond();
+                    readBuffer.limit(limit).position(end);
+                }
+                return false;
+            } finally {
+                readBuffer.compact();
+            }
+        }
+
+        /**
+         * Serves the request in the read buffer (between its position and
+         * limit), and appends its response to the write buffer (or puts it
+         * in the overflow buffer).
+         */
+        private void respond() {
+            final int frameStart = writeBuffer.position();
+            final int bodyStart = frameStart + TicketProtocol.LENGTH_SIZE;
+            writeBuffer.position(bodyStart);
+            try {
+                final byte opcode = readBuffer.get();
+                if (opcode == TicketProtocol.NUM_SEATS_AVAILABLE) {
+                    writeBuffer.put(TicketProtocol.OK)
+                        .putInt(service.numSeatsAvailable());
+                } else if (opcode == TicketProtocol.FIND_AND_HOLD_SEATS) {
+                    hold(frameStart);
+                } else if (opcode == TicketProtocol.RESERVE_SEATS) {
+                    reserve();
+                } else {
+                    error(bodyStart, "Unknown opcode: " + opcode);
+                }
+            } catch (BufferUnderflowException e) {
+                error(bodyStart, "Malformed request");
+            } catch (RejectedExecutionException e) {
+                writeBuffer.position(bodyStart);
+                writeBuffer.put(TicketProtocol.REJECTED);
+            } catch (RuntimeException e) {
+                error(bodyStart, e.toString());
+            }
+            // Responses in the overflow buffer already have their length
+            if (writeBuffer.position() > frameStart) {
+                writeBuffer.putInt(frameStart,
+                    writeBuffer.position() - bodyStart);
+            }
+        }
+
+        /**
+         * Holds seats, and writes the SeatHold.
+         *
+         * @param frameStart The position of the response in the write buffer
+         */
+        private void hold(final int frameStart) {
+            final int numSeats = readBuffer.getInt();
+            final byte ordinal = readBuffer.get();
+            final String email = readEmail();
+            SeatingPreference preference = null;
+            if (ordinal != TicketProtocol.DEFAULT_PREFERENCE) {
+                if (ordinal < 0
+                    || ordinal >= TicketProtocol.PREFERENCES.length) {
+                    throw new IllegalArgumentException(
+                        "Unknown seating preference: " + ordinal);
+                }
+                preference = TicketProtocol.PREFERENCES[ordinal];
+            }
+
+            final SeatHold<?> seatHold = TicketServices.findAndHoldSeats(
+                service, numSeats, email, preference);
+            if (seatHold == null) {
+                writeBuffer.put(TicketProtocol.FAILED);
+                return;
+            }
+            // The response is sized and written from a single set of seats.
+            // The sets of a VenueSeatHold are never modified once handed
+            // out (seats are added to a copy), and other sets are copied.
+            final SeatRuns runs = toRuns(seatHold.getReservedSeats());
+            final int rangeCount = runs.getRangeCount();
+            final int size = 1 + 2 * Integer.BYTES
+                + rangeCount * 2 * Integer.BYTES;
+
+            ByteBuffer response = writeBuffer;
+            if (size > writeBuffer.remaining()) {
+                // Too large for the write buffer: the response is written
+                // once the write buffer has been, and no other request is
+                // served until it is
+                writeBuffer.position(frameStart);
+                overflow = ByteBuffer.allocate(TicketProtocol.LENGTH_SIZE
+                    + size);
+                overflow.putInt(size);
+                response = overflow;
+            }
+            response.put(TicketProtocol.OK).putInt(seatHold.getId())
+                .putInt(rangeCount);
+            for (int range = 0; range < rangeCount; range++) {
+                response.putInt(runs.getRangeStart(range))
+                    .putInt(runs.getRangeEnd(range));
+            }
+            if (response == overflow) {
+                overflow.flip();
+            }
+        }
+
+        /**
+         * @param seats The seats of a SeatHold
+         * @return The seats, copied into a SeatRuns unless they are one
+         */
+        private SeatRuns toRuns(final Set<?> seats) {
+            if (seats instanceof SeatRuns) {
+                return (SeatRuns) seats;
+            }
+            final SeatRuns runs = new SeatRuns();
+            for (Object seat : seats) {
+                if (!(seat instanceof Integer)) {
+                    throw new IllegalStateException(
+                        "Only integer seats can be sent");
+                }
+                runs.add((Integer) seat);
+            }
+            return runs;
+        }
+
+        /**
+         * Reserves seats, and writes the confirmation code.
+         */
+        private void reserve() {
+            final int seatHoldId = readBuffer.getInt();
+            final String confirmationCode = service.reserveSeats(seatHoldId,
+                readEmail());
+            if (confirmationCode == null) {
+                writeBuffer.put(TicketProtocol.FAILED);
+            } else {
+                writeBuffer.put(TicketProtocol.OK);
+                TicketProtocol.putString(writeBuffer, confirmationCode,
+                    TicketProtocol.MAX_RESPONSE_STRING);
+            }
+        }
+
+        /**
+         * Writes an error, replacing anything written for the response.
+         *
+         * @param bodyStart The position of the response after its length
+         * @param message The error
+         */
+        private void error(final int bodyStart, final String message) {
+            writeBuffer.position(bodyStart);
+            writeBuffer.put(TicketProtocol.ERROR);
+            TicketProtocol.putString(writeBuffer, message,
+                TicketProtocol.MAX_RESPONSE_STRING);
+        }
+
+        /**
+         * Reads an email, reusing the last email's String if it is the same.
+         * Otherwise, the email's bytes are read into the connection's buffer
+         * of email bytes (which only grows for an email longer than any
+         * before), and only its String is allocated.
+         *
+         * @return The email
+         */
+        private String readEmail() {
+            final int length = readBuffer.getShort() & 0xFFFF;
+            if (length > readBuffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            final int position = readBuffer.position();
+            if (emailLength == length) {
+                int i = 0;
+                while (i < length
+                    && readBuffer.get(position + i) == emailBytes[i]) {
+                    i++;
+                }
+                if (i == length) {
+                    readBuffer.position(position + length);
+                    return lastEmail;
+                }
+            }
+            if (length > emailBytes.length) {
+                emailBytes = new byte[length];
+            }
+            readBuffer.get(emailBytes, 0, length);
+            emailLength = length;
+            lastEmail = new String(emailBytes, 0, length,
+                StandardCharsets.UTF_8);
+            return lastEmail;
+        }
+
+        /**
+         * Writes as many responses as the channel takes.
+         *
+         * @return True if every response was written
+         * @throws IOException If the connection failed
+         */
+        private boolean flush() throws IOException {
+            writeBuffer.flip();
+            if (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            final boolean wroteAll = !writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (!wroteAll) {
+                return false;
+            }
+            if (overflow != null) {
+                channel.write(overflow);
+                if (overflow.hasRemaining()) {
+                    return false;
+                }
+                overflow = null;
+            }
+            return true;
+        }
+
+        /**
+         * Closes the connection, and returns its buffers to the pool.
+         */
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            closeQuietly(channel);
+            buffers.release(readBuffer);
+            buffers.release(writeBuffer);
+        }
+    }
+
+    /**
+     * Starts serving a TicketService, with a selector thread per processor.
+     *
+     * @param ticketService The service requests are passed to
+     * @param address The address to listen on (port 0 for any free port)
+     * @throws IOException If the server could not be bound
+     */
+    public TicketProtocolServer(final TicketService ticketService,
+        final InetSocketAddress address) throws IOException {
+        this(ticketService, address,
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts serving a TicketService.
+     *
+     * @param ticketService The service requests are passed to
+     * @param address The address to listen on (port 0 for any free port)
+     * @param selectorThreads The number of threads serving connections
+     * @throws IOException If the server could not be bound
+     */
+    public TicketProtocolServer(final TicketService ticketService,
+        final InetSocketAddress address, final int selectorThreads)
+        throws IOException {
+        if (ticketService == null) {
+            throw new IllegalArgumentException("The service must not be null");
+        }
+        if (selectorThreads < 1) {
+            throw new IllegalArgumentException(
+                "There must be at least one selector thread");
+        }
+        service = ticketService;
+        serverChannel = ServerSocketChannel.open();
+        workers = new Worker[selectorThreads];
+        try {
+            serverChannel.bind(address);
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Worker(i);
+            }
+        } catch (IOException e) {
+            for (Worker worker : workers) {
+                if (worker != null) {
+                    worker.selector.close();
+                }
+            }
+            serverChannel.close();
+            throw e;
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        acceptThread = new Thread(this::acceptConnections,
+            "ticket-protocol-acceptor");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * The loop run by the acceptor thread.
+     */
+    private void acceptConnections() {
+        int next = 0;
+        while (running) {
+            final SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                // Closing the server closes its channel
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                closeQuietly(channel);
+                continue;
+            }
+            workers[next].add(channel);
+            next = (next + 1) % workers.length;
+        }
+    }
+
+    /**
+     * @return The address the server is listening on
+     */
+    public final InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException("The server is closed", e);
+        }
+    }
+
+    /**
+     * Stops accepting connections, and closes every connection. Requests
+     * being served are finished first.
+     */
+    @Override
+    public void close() {
+        running = false;
+        closeQuietly(serverChannel);
+        boolean interrupted = false;
+        for (Worker worker : workers) {
+            worker.selector.wakeup();
+        }
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param channel A channel to close, ignoring any error
+     */
+    private static void closeQuietly(final Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+import com.example.company.struct.TicketService;
+
+/**
+ * Helpers for calling any TicketService with the features of this package's
+ * services.
+ */
+final class TicketServices {
+
+    /**
+     * Not instantiable.
+     */
+    private TicketServices() {
+    }
+
+    /**
+     * @param service A ticket service
+     * @return True if the service holds seats with a seating preference (a
+     *     Venue or a SequencedTicketService)
+     */
+    static boolean takesSeatingPreference(final TicketService service) {
+        return service instanceof Venue
+            || service instanceof SequencedTicketService;
+    }
+
+    /**
+     * Find and hold the best available seats for a customer, with a seating
+     * preference if the service takes one (a Venue or a
+     * SequencedTicketService). Other services hold seats with their default
+     * preference.
+     *
+     * @param service The service to hold seats from
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @param preference The seating preference of the customer, or null for
+     *     the service's default
+     * @return The SeatHold, or null if the hold failed
+     */
+    static SeatHold<?> findAndHoldSeats(final TicketService service,
+        final int numSeats, final String customerEmail,
+        final SeatingPreference preference) {
+        if (preference != null) {
+            if (service instanceof Venue) {
+                return ((Venue) service).findAndHoldSeats(numSeats,
+                    customerEmail, preference);
+            } else if (service instanceof SequencedTicketService) {
+                return ((SequencedTicketService) service)
+                    .findAndHoldSeatsAsync(numSeats, customerEmail, preference)
+                    .join();
+            }
+        }
+        return service.findAndHoldSeats(numSeats, customerEmail);
+    }
+}
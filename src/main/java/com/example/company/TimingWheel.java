@@ -0,0 +1,486 @@
+package com.example.company;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel for expiring large numbers of timeouts (e.g. seat
+ * holds) cheaply.
+ *
+ * <p>Scheduling, cancelling, and extending a timeout are all constant-time and
+ * lock-free: a new timeout is handed to the wheel's thread through a queue,
+ * while cancelling or extending one only updates its deadline with a CAS. The
+ * wheel's thread advances one bucket every tick, and hands every timeout that
+ * expired during the tick to its handler in a single batch.
+ *
+ * <p>Timeouts fire at most one tick after their deadline. The thread is only
+ * started once the first timeout is scheduled, and is a daemon thread.
+ *
+ * <p>A handler that throws doesn't stop the wheel: the exception is passed to
+ * the uncaught exception handler of the wheel's thread, and the other
+ * batches and later timeouts still expire.
+ */
+public class TimingWheel implements AutoCloseable {
+
+    /**
+     * The default duration of a tick, in milliseconds.
+     */
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    /**
+     * The default number of buckets in the wheel (covering 5.12 seconds with
+     * the default tick).
+     */
+    private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+    /**
+     * The deadline of a timeout that has been cancelled.
+     */
+    private static final long CANCELLED = -1;
+    /**
+     * The deadline of a timeout that has expired.
+     */
+    private static final long EXPIRED = -2;
+
+    /**
+     * The duration of a tick, in nanoseconds.
+     */
+    private final long tickNanos;
+    /**
+     * The buckets of the wheel. Each one is the head of a doubly-linked list of
+     * the timeouts expiring in the ticks that map to it. Only accessed by the
+     * wheel's thread.
+     */
+    private final Timeout<?>[] buckets;
+    /**
+     * The mask used to map a tick to its bucket.
+     */
+    private final int mask;
+    /**
+     * Runs the handlers of expired timeouts.
+     */
+    private final Executor handlerExecutor;
+    /**
+     * The timeouts that have been scheduled but not yet added to a bucket.
+     */
+    private final ConcurrentLinkedQueue<Timeout<?>> scheduledTimeouts =
+        new ConcurrentLinkedQueue<>();
+    /**
+     * The timeouts that have been cancelled but not yet removed from their
+     * bucket.
+     */
+    private final ConcurrentLinkedQueue<Timeout<?>> cancelledTimeouts =
+        new ConcurrentLinkedQueue<>();
+    /**
+     * True once the wheel's thread has been started.
+     */
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    /**
+     * The wheel's thread.
+     */
+    private final Thread workerThread;
+    /**
+     * The time (from System.nanoTime) all deadlines are relative to.
+     */
+    private final long startTime = System.nanoTime();
+    /**
+     * False once the wheel has been closed.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Handles timeouts once they expire.
+     *
+     * @param <K> The type of the keys of the timeouts
+     */
+    public interface ExpiryHandler<K> {
+
+        /**
+         * Called with every timeout of this handler that expired during a
+         * tick of the wheel.
+         *
+         * @param timeouts The expired timeouts
+         */
+        void expired(List<Timeout<K>> timeouts);
+    }
+
+    /**
+     * A pending expiration, returned when it is scheduled.
+     *
+     * @param <K> The type of the key identifying what expires
+     */
+    public static final class Timeout<K> {
+
+        /**
+         * Updates the deadline of a timeout atomically.
+         */
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<Timeout> DEADLINE =
+            AtomicLongFieldUpdater.newUpdater(Timeout.class, "deadline");
+
+        /**
+         * The handler to call once the timeout expires.
+         */
+        private final ExpiryHandler<K> handler;
+        /**
+         * The key identifying what expires.
+         */
+        private final K key;
+        /**
+         * The time the timeout expires, in nanoseconds after the wheel's
+         * start time, or CANCELLED / EXPIRED.
+         */
+        private volatile long deadline;
+        /**
+         * The bucket the timeout is in, or -1 if it isn't in one. Only
+         * accessed by the wheel's thread.
+         */
+        private int bucket = -1;
+        /**
+         * The previous timeout in the bucket. Only accessed by the wheel's
+         * thread.
+         */
+        private Timeout<?> previous;
+        /**
+         * The next timeout in the bucket. Only accessed by the wheel's thread.
+         */
+        private Timeout<?> next;
+
+        /**
+         * @param expiryHandler The handler to call once the timeout expires
+         * @param timeoutKey The key identifying what expires
+         * @param expiresAt The time the timeout expires, relative to the
+         *     wheel's start time
+         */
+        private Timeout(final ExpiryHandler<K> expiryHandler,
+            final K timeoutKey, final long expiresAt) {
+            handler = expiryHandler;
+            key = timeoutKey;
+            deadline = expiresAt;
+        }
+
+        /**
+         * @return The key identifying what expires
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * Cancels the timeout, so its handler is never called for it.
+         *
+         * @param wheel The wheel the timeout was scheduled on
+         * @return True if the timeout was pending, false if it had already
+         *     expired or been cancelled
+         */
+        private boolean cancel(final TimingWheel wheel) {
+            long current = deadline;
+            while (current >= 0) {
+                if (DEADLINE.compareAndSet(this, current, CANCELLED)) {
+                    wheel.cancelledTimeouts.offer(this);
+                    return true;
+                }
+                current = deadline;
+            }
+            return false;
+        }
+
+        /**
+         * Pushes the deadline of the timeout back.
+         *
+         * @param newDeadline The new deadline, relative to the wheel's start
+         *     time. Deadlines are never moved forward.
+         * @return True if the timeout was extended, false if it had already
+         *     expired or been cancelled
+         */
+        private boolean extend(final long newDeadline) {
+            long current = deadline;
+            while (current >= 0) {
+                if (current >= newDeadline
+                    || DEADLINE.compareAndSet(this, current, newDeadline)) {
+                    return true;
+                }
+                current = deadline;
+            }
+            return false;
+        }
+
+        /**
+         * Marks the timeout as expired if its deadline has passed.
+         *
+         * @param now The current time, relative to the wheel's start time
+         * @return True if the timeout expired, false if its deadline hasn't
+         *     passed yet (or it was cancelled)
+         */
+        private boolean expire(final long now) {
+            long current = deadline;
+            while (current >= 0 && current <= now) {
+                if (DEADLINE.compareAndSet(this, current, EXPIRED)) {
+                    return true;
+                }
+                current = deadline;
+            }
+            return false;
+        }
+
+        /**
+         * @return True if the timeout has not expired or been cancelled
+         */
+        public boolean isPending() {
+            return deadline >= 0;
+        }
+    }
+
+    /**
+     * Creates a wheel with 10ms ticks and 512 buckets, that calls handlers on
+     * its own thread.
+     */
+    public TimingWheel() {
+        this(Runnable::run);
+    }
+
+    /**
+     * Creates a wheel with 10ms ticks and 512 buckets.
+     *
+     * @param executor Runs the handlers of expired timeouts
+     */
+    public TimingWheel(final Executor executor) {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS,
+            DEFAULT_TICKS_PER_WHEEL, executor);
+    }
+
+    /**
+     * @param tickDuration The duration of a tick
+     * @param unit The unit of the tick duration
+     * @param ticksPerWheel The number of buckets in the wheel (rounded up to
+     *     a power of 2)
+     * @param executor Runs the handlers of expired timeouts
+     */
+    public TimingWheel(final long tickDuration, final TimeUnit unit,
+        final int ticksPerWheel, final Executor executor) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException(
+                "The tick duration and ticks per wheel must be positive");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        int numBuckets = Integer.highestOneBit(ticksPerWheel);
+        if (numBuckets < ticksPerWheel) {
+            numBuckets <<= 1;
+        }
+        buckets = new Timeout<?>[numBuckets];
+        mask = numBuckets - 1;
+        handlerExecutor = executor;
+        workerThread = new Thread(this::run, "timing-wheel");
+        workerThread.setDaemon(true);
+    }
+
+    /**
+     * Schedules a timeout.
+     *
+     * @param handler The handler to call once the timeout expires
+     * @param key The key identifying what expires
+     * @param delay The time until the timeout expires
+     * @param unit The unit of the delay
+     * @param <K> The type of the key
+     * @return The timeout
+     */
+    public final <K> Timeout<K> schedule(final ExpiryHandler<K> handler,
+        final K key, final long delay, final TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("The timing wheel is closed");
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            workerThread.start();
+        }
+        Timeout<K> timeout = new Timeout<>(handler, key, deadlineAfter(delay,
+            unit));
+        scheduledTimeouts.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Cancels a timeout, so its handler is never called for it.
+     *
+     * @param timeout The timeout to cancel
+     * @return True if the timeout was pending, false if it had already expired
+     *     or been cancelled
+     */
+    public final boolean cancel(final Timeout<?> timeout) {
+        return timeout.cancel(this);
+    }
+
+    /**
+     * Pushes back the deadline of a timeout, so it expires after the given
+     * delay from now (unless it already expires later than that).
+     *
+     * @param timeout The timeout to extend
+     * @param delay The time until the timeout should expire
+     * @param unit The unit of the delay
+     * @return True if the timeout was extended, false if it had already
+     *     expired or been cancelled
+     */
+    public final boolean extend(final Timeout<?> timeout, final long delay,
+        final TimeUnit unit) {
+        return timeout.extend(deadlineAfter(delay, unit));
+    }
+
+    /**
+     * @param timeout A timeout scheduled on this wheel
+     * @param unit The unit of the delay
+     * @return The time left until the timeout expires (0 if it is due), or -1
+     *     if it already expired or was cancelled
+     */
+    public final long getDelay(final Timeout<?> timeout, final TimeUnit unit) {
+        final long deadline = timeout.deadline;
+        if (deadline < 0) {
+            return -1;
+        }
+        return unit.convert(Math.max(0,
+            deadline - (System.nanoTime() - startTime)), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param delay A delay from now
+     * @param unit The unit of the delay
+     * @return The deadline after that delay, relative to the wheel's start
+     *     time
+     */
+    private long deadlineAfter(final long delay, final TimeUnit unit) {
+        return Math.max(0, System.nanoTime() - startTime + unit.toNanos(delay));
+    }
+
+    /**
+     * Stops the wheel. Pending timeouts never expire.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(workerThread);
+    }
+
+    /**
+     * @param timeout A timeout that isn't in a bucket
+     * @param tick The tick the timeout expires in
+     */
+    private void link(final Timeout<?> timeout, final long tick) {
+        final int bucket = (int) (tick & mask);
+        timeout.bucket = bucket;
+        timeout.previous = null;
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        buckets[bucket] = timeout;
+    }
+
+    /**
+     * @param timeout A timeout in a bucket
+     */
+    private void unlink(final Timeout<?> timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.bucket = -1;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+
+    /**
+     * The loop run by the wheel's thread.
+     */
+    private void run() {
+        long tick = 0;
+        while (running) {
+            // Wait for the end of the current tick
+            final long tickEnd = (tick + 1) * tickNanos;
+            long now = System.nanoTime() - startTime;
+            while (now < tickEnd && running) {
+                LockSupport.parkNanos(tickEnd - now);
+                now = System.nanoTime() - startTime;
+            }
+            if (!running) {
+                return;
+            }
+
+            // Remove cancelled timeouts, then add newly scheduled ones
+            Timeout<?> timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                if (timeout.bucket != -1) {
+                    unlink(timeout);
+                }
+            }
+            while ((timeout = scheduledTimeouts.poll()) != null) {
+                if (timeout.isPending()) {
+                    link(timeout, Math.max(tick, timeout.deadline / tickNanos));
+                }
+            }
+
+            expireBucket(tick, now);
+            tick++;
+        }
+    }
+
+    /**
+     * Expires every timeout in the bucket of a tick whose deadline has passed,
+     * and calls their handlers.
+     *
+     * @param tick The current tick
+     * @param now The current time, relative to the wheel's start time
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void expireBucket(final long tick, final long now) {
+        Map<ExpiryHandler, List<Timeout>> expired = null;
+        Timeout<?> timeout = buckets[(int) (tick & mask)];
+        while (timeout != null) {
+            final Timeout<?> next = timeout.next;
+            if (timeout.expire(now)) {
+                unlink(timeout);
+                if (expired == null) {
+                    expired = new IdentityHashMap<>();
+                }
+                expired.computeIfAbsent(timeout.handler,
+                    handler -> new ArrayList<>()).add(timeout);
+            } else if (!timeout.isPending()) {
+                // Cancelled; it will be unlinked with the cancelled timeouts
+                timeout = next;
+                continue;
+            } else if (timeout.deadline / tickNanos > tick) {
+                // Not due yet (or extended); move it to the bucket of its
+                // deadline, unless it is already there
+                final long deadlineTick = timeout.deadline / tickNanos;
+                if ((deadlineTick & mask) != timeout.bucket) {
+                    unlink(timeout);
+                    link(timeout, deadlineTick);
+                }
+            }
+            timeout = next;
+        }
+
+        if (expired != null) {
+            for (Map.Entry<ExpiryHandler, List<Timeout>> batch
+                : expired.entrySet()) {
+                try {
+                    handlerExecutor.execute(
+                        () -> batch.getKey().expired(batch.getValue()));
+                } catch (RuntimeException e) {
+                    // Thrown by the handler (when it runs on this thread) or
+                    // by the executor; report it and keep the wheel running
+                    final Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler()
+                        .uncaughtException(thread, e);
+                }
+            }
+        }
+    }
+}
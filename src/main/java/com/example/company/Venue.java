@@ -4,15 +4,16 @@ import com.example.company.struct.SeatHold;
 import com.example.company.struct.SeatingPreference;
 import com.example.company.struct.TicketService;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -20,50 +21,110 @@ import java.util.concurrent.atomic.AtomicInteger;
  * A Ticketing service for a Venue that supports concurrent operations, allows
  * users to specify their desired seating preference, and automatically releases
  * held seats that have not been reserved after a set period of time.
+ *
+ * <p>If the venue's layout is split into sections, each section's seats are
+ * stored in a separate shard. Customers without a seating preference start in
+ * a random shard, and every search spills over into the next shard once one
+ * is exhausted, so throughput keeps scaling with the number of threads.
  */
-public class Venue implements TicketService {
+public class Venue implements TicketService, AutoCloseable {
+
+    /**
+     * The default amount of time in seconds before held seats are released.
+     */
+    private static final long DEFAULT_SEAT_HOLD_EXPIRATION_SECONDS = 5;
+    /**
+     * The most passes over the venue in a row that an admitted request may
+     * make without claiming a seat, before it gives up and hands its
+     * admission back.
+     */
+    private static final int MAX_EMPTY_CLAIM_PASSES = 1000;
 
     /**
      * The total seating capacity of the venue.
      */
     private final int totalSeatsInVenue;
     /**
-     * The amount of time in seconds before held seats are released.
+     * The bitmap containing the seats available to hold.
      */
-    private final int seatHoldExpirationTime = 5;
+    private final SeatInventory availableSeats;
     /**
-     * The set containing the number of seats available to hold.
+     * The number of free seats that haven't been admitted to a request yet.
+     * A request claims its number of seats from this counter before it looks
+     * for them, so it only touches the bitmap once its seats are known to be
+     * there. Released seats are added back after they are freed in the
+     * bitmap, so the counter never exceeds the number of free seats.
      */
-    private final ConcurrentSkipListSet<Integer> availableSeats =
-        new ConcurrentSkipListSet<>();
+    private final AtomicInteger admissibleSeats = new AtomicInteger();
     /**
-     * Maps the email of customers who have been given a temporary seat hold to
-     * their SeatHold.
+     * The journal every hold, reservation, and expiration is appended to, or
+     * null if the venue isn't journaled.
      */
-    private final ConcurrentHashMap<String, VenueSeatHold> seatHolds =
-        new ConcurrentHashMap<>();
+    private final HoldJournal journal;
+    /**
+     * Maps the id of every SeatHold that hasn't been reserved or released yet
+     * to the SeatHold. A thread takes ownership of a SeatHold (to extend,
+     * reserve, or release it) by removing it from the index.
+     */
+    private final HoldIndex seatHolds = new HoldIndex();
     /**
      * Maps the email of customers who have been given a temporary seat hold to
-     * the pending event that will remove the hold.
+     * the SeatHold their next holds are merged into.
      */
-    private final ConcurrentHashMap<String, ScheduledFuture<?>> pendingTasks =
+    private final ConcurrentHashMap<String, VenueSeatHold> customerHolds =
         new ConcurrentHashMap<>();
     /**
-     * Maps the email of customers who have registered their seats to their
-     * SeatHold.
+     * Maps the id of every reserved SeatHold to the SeatHold.
+     */
+    private final HoldIndex reservedSeats = new HoldIndex();
+    /**
+     * The owner of every seat, from which consistent maps of the venue are
+     * taken.
      */
-    private final ConcurrentHashMap<String, VenueSeatHold> reservedSeats
-        = new ConcurrentHashMap<>();
+    private final SeatLedger ledger;
     /**
      * The id to be assigned to the next SeatHold.
      */
     private final AtomicInteger nextSeatHoldId = new AtomicInteger(0);
     /**
-     * This uses an unbounded queue, and .shutdown() is never called, so a
-     * RejectedExecutionHandler is not necessary.
+     * Expires seat holds. Scheduling, extending, and cancelling a hold's
+     * timeout are constant-time, and the holds that expire during a tick are
+     * released together.
+     */
+    private final TimingWheel holdTimer;
+    /**
+     * True if the venue created its hold timer, and closes it when it is
+     * closed.
+     */
+    private final boolean ownsHoldTimer;
+    /**
+     * Releases the seat holds whose timeouts expired.
+     */
+    private final TimingWheel.ExpiryHandler<VenueSeatHold> holdExpiryHandler =
+        this::releaseExpiredHolds;
+    /**
+     * The amount of time in nanoseconds before held seats are released.
+     */
+    private volatile long seatHoldExpirationNanos =
+        TimeUnit.SECONDS.toNanos(DEFAULT_SEAT_HOLD_EXPIRATION_SECONDS);
+    /**
+     * True if a customer's holds are merged into a single SeatHold, false if
+     * every hold gets a SeatHold of its own.
+     */
+    private volatile boolean mergingHolds = true;
+    /**
+     * The metrics of the venue, or null if they are disabled.
+     */
+    private volatile VenueMetrics metrics;
+    /**
+     * The feed of changes to the venue's seats, or null if it is disabled.
+     */
+    private volatile SeatChangeFeed changeFeed;
+    /**
+     * True once the venue has been closed, after which it takes no more
+     * holds or reservations, and expires no more holds.
      */
-    private final ScheduledThreadPoolExecutor timerExecutorService =
-        new ScheduledThreadPoolExecutor(3);
+    private volatile boolean closed = false;
     /**
      * The default seating order of the venue.
      */
@@ -78,12 +139,7 @@ public class Venue implements TicketService {
      */
     public Venue(final int seatsPerSide) {
         // Creates a square seating arrangement.
-        // Note: The index of a seat is represented by its position in row-major
-        // order. Index 0 is in the back left corner of the venue.
-        for (int i = 0; i < seatsPerSide * seatsPerSide; i++) {
-            availableSeats.add(i);
-        }
-        totalSeatsInVenue = seatsPerSide * seatsPerSide;
+        this(VenueLayout.square(seatsPerSide));
     }
 
     /**
@@ -96,12 +152,7 @@ public class Venue implements TicketService {
      */
     public Venue(final int seatsPerRow, final int numColumns) {
         // Creates a rectangular seating arrangement.
-        // Note: The index of a seat is represented by its position in row-major
-        // order. Index 0 is in the back left corner of the venue.
-        for (int i = 0; i < seatsPerRow * numColumns; i++) {
-            availableSeats.add(i);
-        }
-        totalSeatsInVenue = seatsPerRow * numColumns;
+        this(VenueLayout.rectangular(seatsPerRow, numColumns));
     }
 
     /**
@@ -114,110 +165,157 @@ public class Venue implements TicketService {
      *     available in the venue
      */
     public Venue(final boolean[][] seatingConfiguration) {
+        this(VenueLayout.fromConfiguration(seatingConfiguration));
+    }
+
+    /**
+     * Initializes the set of available seats from a layout. Every seat the
+     * layout marks as available is free to hold.
+     *
+     * @param layout The seating layout of the venue
+     */
+    public Venue(final VenueLayout layout) {
+        this(layout, null);
+    }
+
+    /**
+     * Initializes the set of available seats from a layout, then rebuilds the
+     * venue's holds and reservations by replaying a journal. Every hold,
+     * reservation, and expiration from then on is appended to the journal.
+     *
+     * <p>Holds that expired while the venue was down are released shortly
+     * after it starts.
+     *
+     * @param layout The seating layout of the venue
+     * @param holdJournal The journal of the venue, or null to not journal it
+     */
+    public Venue(final VenueLayout layout, final HoldJournal holdJournal) {
+        this(layout, holdJournal, null);
+    }
+
+    /**
+     * Initializes the set of available seats from a layout, then rebuilds the
+     * venue's holds and reservations by replaying a journal. Holds expire on
+     * the given timer, which may be shared by many venues.
+     *
+     * @param layout The seating layout of the venue
+     * @param holdJournal The journal of the venue, or null to not journal it
+     * @param timer The timer that expires the venue's holds, or null for the
+     *     venue to create its own (which it closes when it is closed)
+     */
+    public Venue(final VenueLayout layout, final HoldJournal holdJournal,
+        final TimingWheel timer) {
         // Note: The index of a seat is represented by its position in row-major
         // order. Index 0 is in the back left corner of the venue.
+        availableSeats = new SeatInventory(layout);
+        admissibleSeats.set(availableSeats.size());
+        totalSeatsInVenue = layout.getTotalSeats();
+        journal = holdJournal;
+        holdTimer = timer != null ? timer : new TimingWheel();
+        ownsHoldTimer = timer == null;
+        Map<Integer, VenueSeatHold> pendingHolds = new LinkedHashMap<>();
+        Map<Integer, Long> deadlines = new HashMap<>();
+        restoreHolds(pendingHolds, deadlines, 0);
+        ledger = new SeatLedger(layout, seatHolds, reservedSeats);
+        startHoldTimers(pendingHolds, deadlines);
+    }
 
-        int currentSeatNumber = -1;
-        // For each row
-        for (boolean[] row : seatingConfiguration) {
-            // For each column
-            for (boolean seatAvailable : row) {
-                currentSeatNumber++;
-                // Check if the seat at this location is available
-                if (seatAvailable) {
-                    // If it is, add it to the set of available seats
-                    // Note: The index of a seat is represented by its position
-                    // in row-major order.
-                    availableSeats.add(currentSeatNumber);
-                }
-            }
+    /**
+     * Restores a venue from a snapshot.
+     *
+     * @param snapshot The snapshot of the venue
+     */
+    public Venue(final VenueSnapshot snapshot) {
+        this(snapshot, null);
+    }
+
+    /**
+     * Restores a venue from a snapshot, then replays the records appended to
+     * its journal after the snapshot was taken. Every hold, reservation, and
+     * expiration from then on is appended to the journal.
+     *
+     * <p>Holds that expired while the venue was down are released shortly
+     * after it starts.
+     *
+     * @param snapshot The snapshot of the venue
+     * @param holdJournal The journal of the venue, or null to not journal it
+     */
+    public Venue(final VenueSnapshot snapshot, final HoldJournal holdJournal) {
+        this(snapshot, holdJournal, null);
+    }
+
+    /**
+     * Restores a venue from a snapshot, then replays the records appended to
+     * its journal after the snapshot was taken. Holds expire on the given
+     * timer, which may be shared by many venues.
+     *
+     * @param snapshot The snapshot of the venue
+     * @param holdJournal The journal of the venue, or null to not journal it
+     * @param timer The timer that expires the venue's holds, or null for the
+     *     venue to create its own (which it closes when it is closed)
+     */
+    public Venue(final VenueSnapshot snapshot, final HoldJournal holdJournal,
+        final TimingWheel timer) {
+        final VenueLayout layout = snapshot.getLayout();
+        availableSeats = new SeatInventory(layout, snapshot.copyFreeSeats());
+        totalSeatsInVenue = layout.getTotalSeats();
+        journal = holdJournal;
+        holdTimer = timer != null ? timer : new TimingWheel();
+        ownsHoldTimer = timer == null;
+        nextSeatHoldId.set(snapshot.getNextSeatHoldId());
+        seatHoldExpirationNanos = snapshot.getSeatHoldExpirationNanos();
+        seatingPreference = snapshot.getSeatingPreference();
+
+        for (VenueSnapshot.Entry entry : snapshot.getReservations()) {
+            reservedSeats.put(entry.toSeatHold());
         }
-        this.totalSeatsInVenue = currentSeatNumber + 1;
-    }
-
-    /**
-     * Given a sorted array, this function returns a set of all the runs
-     * (consecutive integers of size >= 1) in said array. The TreeSet returns
-     * the runs in by descending number of elements.
-     *
-     * @param arr The sorted array of integers to find runs in
-     * @return A set of all runs in the array, in descending order
-     */
-    private static TreeSet<LinkedHashSet<Integer>> getRuns(
-        final Integer[] arr) {
-        // If there are no elements
-        if (arr.length == 0) {
-            return new TreeSet<>();
-        }
-        // The variable holding the previous element in the array (see loop
-        // below)
-        int previousValue = arr[0];
-
-        // Create a new TreeSet (ordered) and override the comparator so largest
-        // elements come first
-        TreeSet<LinkedHashSet<Integer>> allRuns =
-            new TreeSet<>(
-                (LinkedHashSet<Integer> o1, LinkedHashSet<Integer> o2) -> {
-                    // Compare the lengths of the sets
-                    int result = Integer.compare(o2.size(), o1.size());
-                    // If the sets have the same size
-                    if (result == 0) {
-                        // Check if they are equal (so two sets with the same
-                        // size can both be added)
-                        if (!o1.equals(o2)) {
-                            // If they are different sets, set the result to
-                            // 1 (o1 is "bigger" than o2)
-                            result = 1;
-                        }
-                        // If they are equal, keep the result 0 so the set is
-                        // not added again
-                    }
-                    return result;
-                });
-        // The set of runs for this loop iteration
-        LinkedHashSet<Integer> currentRuns = new LinkedHashSet<>();
-        // Add the first element in the array to the above set
-        currentRuns.add(previousValue);
-
-        // For each element in the array, starting at index 1
-        for (int i = 1; i < arr.length; i++) {
-            // Get the value of that element
-            int val = arr[i];
-            // If this value is part of a run with the previous element
-            if (val == previousValue + 1) {
-                // Add it to the set of runs for this iteration
-                currentRuns.add(val);
-            } else {
-                // Otherwise, the run for this iteration to the set of all
-                // runs (may contain only one value)
-                allRuns.add(currentRuns);
-                // Clear the set of runs in preparation for the next iteration
-                currentRuns = new LinkedHashSet<>();
-                // Add this element to the new set of runs
-                currentRuns.add(val);
-            }
-            // Update the value of the previous element in the array
-            previousValue = val;
+        Map<Integer, VenueSeatHold> pendingHolds = new LinkedHashMap<>();
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (VenueSnapshot.Entry entry : snapshot.getHolds()) {
+            VenueSeatHold seatHold = entry.toSeatHold();
+            pendingHolds.put(seatHold.getId(), seatHold);
+            deadlines.put(seatHold.getId(), entry.getExpiresAtMillis());
         }
-        // Add the last run to the set of all runs
-        allRuns.add(currentRuns);
-        return allRuns;
+        restoreHolds(pendingHolds, deadlines, snapshot.getJournalPosition());
+        ledger = new SeatLedger(layout, seatHolds, reservedSeats);
+        startHoldTimers(pendingHolds, deadlines);
     }
 
     @Override
     public final int numSeatsAvailable() {
-        // Note: This is not guaranteed to always show the latest value if
-        // the set is modified while
-        // this is running.
-        // As such, this value can only be used as an estimate. To prevent
-        // this, a lock should be used
-        // in addition to,
-        // the availableSeats set, but then the benefits of concurrent code
-        // would negated.
-        // As such, I consider this estimated value to be okay.
+        // Note: The inventory keeps an exact counter of its free seats, so
+        // this reflects every hold, expiration, and rollback that has
+        // completed before it is called, without iterating the venue.
         return availableSeats.size();
     }
 
+    /**
+     * The number of seats in a row that are neither held nor reserved.
+     *
+     * @param row The index of the row (0 is the back row)
+     * @return The number of seats available in that row
+     */
+    public final int numSeatsAvailableInRow(final int row) {
+        return availableSeats.sizeOfRow(row);
+    }
+
+    /**
+     * The number of seats in a section that are neither held nor reserved.
+     *
+     * @param section The index of the section (0 is the back section)
+     * @return The number of seats available in that section
+     */
+    public final int numSeatsAvailableInSection(final int section) {
+        return availableSeats.sizeOfSection(section);
+    }
+
+    /**
+     * @return The seating layout of this venue
+     */
+    public final VenueLayout getLayout() {
+        return availableSeats.getLayout();
+    }
+
     @Override
     public final SeatHold<Integer> findAndHoldSeats(final int numSeats,
         final String customerEmail) {
@@ -238,126 +336,426 @@ public class Venue implements TicketService {
     public final SeatHold<Integer> findAndHoldSeats(
         final int numSeats, final String customerEmail,
         final SeatingPreference userSeatingPreference) {
+        return findAndHoldSeats(numSeats, customerEmail,
+            userSeatingPreference,
+            SeatScorer.forPreference(userSeatingPreference));
+    }
+
+    /**
+     * Find and hold the available seats with the best scores for a customer.
+     * The seats are ranked once per layout and scorer, and the hold walks the
+     * ranking from the first seat that might still be available, so it takes
+     * time proportional to the number of seats held rather than the size of
+     * the venue.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @param scorer The scorer of the seats (which should be reused for every
+     *     hold, since rankings are cached per scorer)
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats
+     */
+    public final SeatHold<Integer> findAndHoldBestSeats(final int numSeats,
+        final String customerEmail, final SeatScorer scorer) {
+        if (scorer == null) {
+            throw new IllegalArgumentException("The scorer must not be null");
+        }
+        return findAndHoldSeats(numSeats, customerEmail, null, scorer);
+    }
+
+    /**
+     * Find and hold seats for a customer, either by a scorer or by a seating
+     * preference that doesn't rank seats.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @param userSeatingPreference The Seating preference the customer
+     *     prefers, or null if the hold is only ranked by its scorer
+     * @param scorer The scorer of the seats, or null if the seating
+     *     preference doesn't rank seats
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats
+     */
+    private SeatHold<Integer> findAndHoldSeats(final int numSeats,
+        final String customerEmail,
+        final SeatingPreference userSeatingPreference,
+        final SeatScorer scorer) {
+        checkOpen();
+        final VenueMetrics venueMetrics = metrics;
+        final long startTime = venueMetrics != null ? System.nanoTime() : 0;
+
+        // Admit the request first: if there aren't enough seats left for
+        // it, fail without touching the bitmap (or anyone else's seats)
+        if (!admit(numSeats)) {
+            if (venueMetrics != null) {
+                venueMetrics.recordHold(userSeatingPreference, false, 0,
+                    System.nanoTime() - startTime);
+            }
+            // Since the customer's request did not succeed, return null
+            return null;
+        }
 
         // The id of the seats that have been held
-        Set<Integer> heldSeats = new HashSet<>(numSeats);
-        // The amount of seats that have been held so far
-        int seatsSuccessfullyReserved = 0;
+        SeatRuns heldSeats = new SeatRuns();
+        final int rolledBack = claimAdmittedSeats(numSeats,
+            userSeatingPreference, scorer, heldSeats,
+            newScanCursor(userSeatingPreference));
+        final SeatHold<Integer> seatHold = rolledBack == -1
+            ? holdSeats(customerEmail, heldSeats) : null;
+        if (venueMetrics != null) {
+            venueMetrics.recordHold(userSeatingPreference, seatHold != null,
+                Math.max(0, rolledBack), System.nanoTime() - startTime);
+        }
+        return seatHold;
+    }
 
-        // An iterator for the set
-        // Note: It is undefined whether or not iterators will see the
-        // changes of any concurrent
-        // modifications to the map.
-        Iterator<Integer> iterator = null;
-
-        // Hold seats based on the venue's seating order
-        if (userSeatingPreference == SeatingPreference.CLOSEST_TO_BACK
-            || userSeatingPreference == SeatingPreference.NONE) {
-            // An iterator that iterates the set in order
-            iterator = availableSeats.iterator();
-        } else if (userSeatingPreference
-            == SeatingPreference.CLOSEST_TO_FRONT) {
-            // An iterator that iterates the set backwards
-            iterator = availableSeats.descendingIterator();
-        } else if (userSeatingPreference
-            == SeatingPreference.CLOSEST_TO_CENTER) {
-            // Convert the set to an array
-            Integer[] availableSeatsArray = availableSeats
-                .toArray(new Integer[0]);
-
-            // A sparse-array-like representation of the above array.
-            // The array's size is the value of the largest available seat's
-            // index (+1 to include that
-            // index as well)
-            Boolean[] seatAtIndex = new Boolean[totalSeatsInVenue];
-            // Initialize the values in the array
-            // e.g. [3,5,9] -> [false, false, false, true, false, true,
-            // false, false, false, true]
-            for (Integer i : availableSeatsArray) {
-                seatAtIndex[i] = true;
+    /**
+     * Find and hold the best available seats for many customers at once.
+     *
+     * <p>Each request succeeds or fails on its own, exactly as if it was
+     * passed to findAndHoldSeats, but requests without a seating preference
+     * share a single scan of the venue: each one picks up where the previous
+     * one stopped, instead of scanning the seats it already held again.
+     * (Requests that rank seats pick up where the previous one stopped
+     * anyway, through the cursor of the ranking.)
+     *
+     * @param requests The requests to hold seats for, in the order they
+     *     should be served
+     * @return The SeatHold for every request, in the same order, or null for
+     *     the requests that were unable to hold their seats
+     */
+    public final List<SeatHold<Integer>> findAndHoldSeats(
+        final List<HoldRequest> requests) {
+        checkOpen();
+        List<SeatHold<Integer>> results = new ArrayList<>(requests.size());
+        // The scan shared by the requests with each seating preference
+        Map<SeatingPreference, ScanCursor> scans =
+            new EnumMap<>(SeatingPreference.class);
+        final VenueMetrics venueMetrics = metrics;
+
+        for (HoldRequest request : requests) {
+            final long startTime = venueMetrics != null ? System.nanoTime() : 0;
+            final int numSeats = request.getNumSeats();
+            final SeatingPreference preference =
+                request.getSeatingPreference() != null
+                    ? request.getSeatingPreference() : seatingPreference;
+            ScanCursor scan = scans.computeIfAbsent(preference,
+                this::newScanCursor);
+            final SeatScorer scorer = SeatScorer.forPreference(preference);
+
+            // Requests that are admitted get their seats (unless the seats
+            // keep being claimed from under them), so the scan never has to
+            // be rewound
+            SeatHold<Integer> seatHold = null;
+            int rolledBack = 0;
+            if (admit(numSeats)) {
+                SeatRuns heldSeats = new SeatRuns();
+                rolledBack = claimAdmittedSeats(numSeats, preference, scorer,
+                    heldSeats, scan);
+                if (rolledBack == -1) {
+                    seatHold = holdSeats(request.getCustomerEmail(),
+                        heldSeats);
+                    rolledBack = 0;
+                }
+            }
+            results.add(seatHold);
+            if (venueMetrics != null) {
+                venueMetrics.recordHold(preference, seatHold != null,
+                    rolledBack, System.nanoTime() - startTime);
             }
+        }
+        return results;
+    }
 
-            final int arrSize = seatAtIndex.length;
-            // Variable used to determine whether the next seat index that
-            // should be check is above or
-            // below the center
-            boolean up = true;
-            final int center = arrSize / 2;
-            // The distance the current index is from the center
-            int distanceFromCenter = 0;
-
-            // If the number of reserved seats desired has not been reached,
-            // and the end of the array
-            // hasn't been reached
-            for (int seat = center;
-                (seatsSuccessfullyReserved != numSeats) && (seat < arrSize - 2
-                    && seat > 1);
-                up ^= true) {
-                if (up) {
-                    // If the next index that should be checked is above the
-                    // center
-                    // Get the seat at the appropriate distance from the
-                    // center (initially the center itself)
-                    seat = center + distanceFromCenter;
-                    // Increment the current distance from the center (only
-                    // done every other seat checked)
-                    distanceFromCenter++;
-                } else {
-                    // If the next index that should be checked is below the
-                    // center
-                    // Get the seat at the appropriate distance from the center
-                    seat = center - distanceFromCenter;
+    /**
+     * The position of a scan through the venue's sections, shared by every
+     * request in a batch without a seating preference.
+     */
+    private static final class ScanCursor {
+
+        /**
+         * The section (shard) the scan starts in. The scan spills over into
+         * the following sections (wrapping around) as each one is exhausted.
+         */
+        private final int firstSection;
+        /**
+         * The number of sections that have been exhausted.
+         */
+        private int sectionsScanned;
+        /**
+         * The seat to continue scanning the current section from.
+         */
+        private int nextSeat;
+
+        /**
+         * @param startSection The section the scan starts in
+         */
+        private ScanCursor(final int startSection) {
+            firstSection = startSection;
+        }
+    }
+
+    /**
+     * @param userSeatingPreference A seating preference
+     * @return A new scan for that seating preference, or null if it does not
+     *     use a single scan of the venue
+     */
+    private ScanCursor newScanCursor(
+        final SeatingPreference userSeatingPreference) {
+        // Note: It is undefined whether or not a scan will see the changes of
+        // any concurrent modifications to the bitmap.
+        if (userSeatingPreference == SeatingPreference.NONE) {
+            // Scan the bitmap in order, starting from a random section so
+            // concurrent customers spread out over the venue's shards instead
+            // of all fighting over the first few seats
+            final int numSections = availableSeats.getNumSections();
+            return new ScanCursor(numSections > 1
+                ? ThreadLocalRandom.current().nextInt(numSections) : 0);
+        }
+        return null;
+    }
+
+    /**
+     * @throws IllegalStateException If the venue has been closed
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The venue is closed");
+        }
+    }
+
+    /**
+     * Admits a request for seats, if enough of the free seats haven't been
+     * admitted to other requests.
+     *
+     * @param numSeats The number of seats requested
+     * @return True if the request was admitted, in which case the seats must
+     *     be claimed (or handed back with releaseSeats)
+     */
+    private boolean admit(final int numSeats) {
+        int admissible;
+        do {
+            admissible = admissibleSeats.get();
+            if (numSeats < 0 || admissible < numSeats) {
+                return false;
+            }
+        } while (!admissibleSeats.compareAndSet(admissible,
+            admissible - numSeats));
+        return true;
+    }
+
+    /**
+     * Returns seats to the set of available seats, and makes them admissible
+     * again.
+     *
+     * @param seats The seats
+     */
+    private void releaseSeats(final Set<Integer> seats) {
+        availableSeats.releaseAll(seats);
+        admissibleSeats.addAndGet(seats.size());
+    }
+
+    /**
+     * Claims the seats of a request that has been admitted. Since the
+     * admission counter never exceeds the number of free seats, the seats are
+     * there: if a scan comes up short (because seats were released behind it
+     * while other requests claimed the ones ahead of it), it is started over.
+     * If a pass for the seating preference claims nothing (e.g. because the
+     * index of runs hasn't caught up with the seats yet), the venue's free
+     * seats are claimed in order instead.
+     *
+     * <p>The seats should turn up within a few passes, but in case they keep
+     * being claimed from under the request, it gives up after
+     * MAX_EMPTY_CLAIM_PASSES passes in a row without claiming a seat, and
+     * hands back its admission and the seats it did claim.
+     *
+     * @param numSeats The number of seats to claim
+     * @param userSeatingPreference The Seating preference the customer
+     *     prefers
+     * @param scorer The scorer of the seats, or null if the seating
+     *     preference doesn't rank seats
+     * @param heldSeats The set the claimed seats are added to
+     * @param scan The scan to continue, for seating preferences that scan the
+     *     venue in order
+     * @return -1 if every seat was claimed, or else the number of seats that
+     *     were claimed and then released again when the request gave up
+     */
+    private int claimAdmittedSeats(final int numSeats,
+        final SeatingPreference userSeatingPreference,
+        final SeatScorer scorer, final SeatRuns heldSeats,
+        final ScanCursor scan) {
+        try {
+            int claimed = claimSeats(numSeats, userSeatingPreference, scorer,
+                heldSeats, scan);
+            int emptyPasses = 0;
+            while (claimed != numSeats) {
+                if (scan != null) {
+                    scan.sectionsScanned = 0;
+                    scan.nextSeat = 0;
                 }
-                // Check if the seat at the specified index is available
-                // This check is not strictly necessary, but would otherwise
-                // hinder performance (though is
-                // technically less accurate)
-                if (seatAtIndex[seat] != null && seatAtIndex[seat]) {
-                    // Remove it from the set of available seats
-                    boolean succeeded = availableSeats.remove(seat);
-                    // Check if the removal succeeded (will fail if another
-                    // thread removed the seat before
-                    // this one)
-                    if (succeeded) {
-                        // If it successfully removed the seat, add it to the
-                        // set of held seats
-                        heldSeats.add(seat);
-                        seatsSuccessfullyReserved++;
-                    }
+                int more = claimSeats(numSeats - claimed,
+                    userSeatingPreference, scorer, heldSeats, scan);
+                if (more == 0) {
+                    more = claimFreeSeats(numSeats - claimed, heldSeats);
                 }
+                if (more != 0) {
+                    emptyPasses = 0;
+                } else if (++emptyPasses == MAX_EMPTY_CLAIM_PASSES) {
+                    availableSeats.releaseAll(heldSeats);
+                    admissibleSeats.addAndGet(numSeats);
+                    return claimed;
+                } else {
+                    // The missing seats are still being released
+                    Thread.onSpinWait();
+                }
+                claimed += more;
             }
-        } else if (userSeatingPreference
-            == SeatingPreference.CLOSEST_TOGETHER) {
-            // Convert the set to an array
-            Integer[] availableSeatsArray = availableSeats
-                .toArray(new Integer[0]);
-
-            // Find the runs in the array of available seats (largest run first)
-            TreeSet<LinkedHashSet<Integer>> runs = getRuns(availableSeatsArray);
-
-            if (runs != null) {
-                // For each run
-                for (LinkedHashSet<Integer> run : runs) {
-                    Iterator<Integer> iterator1 = run.iterator();
-                    // For each seat in the run, and while the number of
-                    // seats the customer wanted has been
-                    // not yet been held
-                    while (iterator1.hasNext()
-                        && seatsSuccessfullyReserved != numSeats) {
-                        Integer seat = iterator1.next();
-                        // Remove it from the set of available seats
-                        boolean succeeded = availableSeats.remove(seat);
-                        // Check if the removal succeeded (will fail if
-                        // another thread removed the seat before
-                        // this one)
+            return -1;
+        } catch (RuntimeException e) {
+            // Hand back the admission, along with any seats claimed so far
+            availableSeats.releaseAll(heldSeats);
+            admissibleSeats.addAndGet(numSeats);
+            throw e;
+        }
+    }
+
+    /**
+     * Claims the first free seats of the venue, in its seating order,
+     * straight from the bitmap of available seats.
+     *
+     * @param numSeats The number of seats to claim
+     * @param heldSeats The set the claimed seats are added to
+     * @return The number of seats claimed, which is less than numSeats if
+     *     there weren't enough seats left
+     */
+    private int claimFreeSeats(final int numSeats, final SeatRuns heldSeats) {
+        int claimed = 0;
+        int claimsLost = 0;
+        for (int seat = availableSeats.nextFreeSeat(0);
+            seat != -1 && claimed != numSeats;
+            seat = availableSeats.nextFreeSeat(seat + 1)) {
+            if (availableSeats.tryClaim(seat)) {
+                heldSeats.add(seat);
+                claimed++;
+            } else {
+                claimsLost++;
+            }
+        }
+        final VenueMetrics venueMetrics = metrics;
+        if (claimsLost != 0 && venueMetrics != null) {
+            venueMetrics.recordLostClaims(claimsLost);
+        }
+        return claimed;
+    }
+
+    /**
+     * Claims seats for a customer from the set of available seats, based on
+     * their seating preference.
+     *
+     * @param numSeats The number of seats to claim
+     * @param userSeatingPreference The Seating preference the customer
+     *     prefers
+     * @param scorer The scorer of the seats, or null if the seating
+     *     preference doesn't rank seats
+     * @param heldSeats The set the claimed seats are added to
+     * @param scan The scan to continue, for seating preferences that scan the
+     *     venue in order (it is left where the claiming stopped)
+     * @return The number of seats claimed, which is less than numSeats if
+     *     there weren't enough seats left
+     */
+    private int claimSeats(final int numSeats,
+        final SeatingPreference userSeatingPreference,
+        final SeatScorer scorer, final SeatRuns heldSeats,
+        final ScanCursor scan) {
+        // The amount of seats that have been held so far
+        int seatsSuccessfullyReserved = 0;
+        // The amount of free seats that another thread claimed first
+        int claimsLost = 0;
+        final int numSections = availableSeats.getNumSections();
+
+        if (scorer != null) {
+            // Claim seats in order of their score (e.g. their distance from
+            // the front, back, or center of the venue). The order is
+            // precomputed once for the venue's layout, and the walk starts
+            // past the seats already known to be unavailable.
+            seatsSuccessfullyReserved +=
+                availableSeats.claimBest(scorer, numSeats, heldSeats);
+        } else if (scan != null) {
+            // Hold seats in the venue's seating order, for each section in
+            // the order they should be scanned
+            for (; scan.sectionsScanned < numSections
+                && seatsSuccessfullyReserved != numSeats;
+                scan.sectionsScanned++) {
+                final int section =
+                    (scan.firstSection + scan.sectionsScanned) % numSections;
+                int seat = -1;
+                // Skip sections that have been exhausted without scanning them
+                if (availableSeats.sizeOfSection(section) != 0) {
+                    // For each available seat in the section, and while the
+                    // number of seats the customer wanted has been not yet
+                    // been held
+                    for (seat = availableSeats.nextFreeSeatInSection(section,
+                            scan.nextSeat);
+                        seat != -1 && seatsSuccessfullyReserved != numSeats;
+                        seat = availableSeats.nextFreeSeatInSection(section,
+                            seat + 1)) {
+
+                        // Claim it from the set of available seats
+                        boolean succeeded = availableSeats.tryClaim(seat);
+                        // Check if the removal succeeded (will fail if another
+                        // thread removed the seat before this one)
                         if (succeeded) {
                             // If it successfully removed the seat, add it to
                             // the set of held seats
                             heldSeats.add(seat);
                             seatsSuccessfullyReserved++;
+                        } else {
+                            claimsLost++;
                         }
                     }
                 }
+                if (seat != -1) {
+                    // The customer has all their seats; the next scan starts
+                    // from the next free seat in this section
+                    scan.nextSeat = seat;
+                    break;
+                }
+                // Start the next section from its first seat
+                scan.nextSeat = 0;
+            }
+        } else if (userSeatingPreference
+            == SeatingPreference.CLOSEST_TOGETHER) {
+            // Find the runs of available seats to hold from: the smallest
+            // run in a single row that fits every seat, a block over adjacent
+            // rows or, if there is neither, the largest runs first. The runs
+            // come from the inventory's index, so nothing is copied or sorted
+            // here.
+            int[] runs = availableSeats.findRuns(numSeats);
+
+            // For each run (stored as (first seat, length) pairs)
+            for (int run = 0; run < runs.length
+                && seatsSuccessfullyReserved != numSeats; run += 2) {
+                final int runEnd = runs[run] + runs[run + 1];
+                // For each seat in the run, and while the number of seats the
+                // customer wanted has been not yet been held
+                for (int seat = runs[run];
+                    seat < runEnd && seatsSuccessfullyReserved != numSeats;
+                    seat++) {
+                    // Claim it from the set of available seats
+                    boolean succeeded = availableSeats.tryClaim(seat);
+                    // Check if the removal succeeded (will fail if another
+                    // thread removed the seat before this one)
+                    if (succeeded) {
+                        // If it successfully removed the seat, add it to the
+                        // set of held seats
+                        heldSeats.add(seat);
+                        seatsSuccessfullyReserved++;
+                    } else {
+                        claimsLost++;
+                    }
+                }
             }
         } else {
             // In case a new SeatingPreference is added, throw an exception
@@ -366,96 +764,253 @@ public class Venue implements TicketService {
                     + " is not currently supported.");
         }
 
-        // If an the current SeatingPreference required a single iterator
-        if (iterator != null) {
-            // For each available seat, and while the number of seats the
-            // customer wanted has been not yet
-            // been held
-            while (iterator.hasNext()
-                && seatsSuccessfullyReserved != numSeats) {
-                Integer seat = iterator.next();
-
-                // Remove it from the set of available seats
-                boolean succeeded = availableSeats.remove(seat);
-                // Check if the removal succeeded (will fail if another
-                // thread removed the seat before this
-                // one)
-                if (succeeded) {
-                    // If it successfully removed the seat, add it to the set
-                    // of held seats
-                    heldSeats.add(seat);
-                    seatsSuccessfullyReserved++;
-                }
-            }
+        final VenueMetrics venueMetrics = metrics;
+        if (claimsLost != 0 && venueMetrics != null) {
+            venueMetrics.recordLostClaims(claimsLost);
         }
+        return seatsSuccessfullyReserved;
+    }
 
-        // If all seats have been checked and there are none left, but the
-        // customer wanted more seats
-        if (heldSeats.size() != numSeats) {
-            // Optionally, check if there are more seats available now and
-            // try to hold the remaining seats
-            // needed
-            /*if(numSeatsAvailable() != 0){
-            VenueSeatHold vsh = (VenueSeatHold) findAndHoldSeats(numSeats -
-            heldSeats.size(), customerEmail);
-
-            if(vsh != null){
-              vsh.reserveAdditionalSeats(heldSeats);
+    /**
+     * Gives a customer a SeatHold for seats that have been claimed for them,
+     * and schedules its release.
+     *
+     * @param customerEmail The email of the customer holding the seats
+     * @param heldSeats The seats claimed for the customer
+     * @return The customer's SeatHold
+     */
+    private VenueSeatHold holdSeats(final String customerEmail,
+        final SeatRuns heldSeats) {
+        // Get the SeatHold the customer's holds are merged into, if any, and
+        // take it out of the index of SeatHolds. (A lock isn't necessary
+        // since only one thread will succeed in removing it.)
+        VenueSeatHold seatHold = mergingHolds
+            ? customerHolds.get(customerEmail) : null;
+        if (seatHold != null && seatHolds.remove(seatHold)) {
+            // If this customer already has some seats held it will have
+            // a pending timeout. Push it back instead of replacing it.
+            // Note: If the timeout fired while the SeatHold was removed
+            // from the index, it found nothing to release and can't be
+            // extended, so a new one is needed. If there is no timeout yet,
+            // the thread that created the SeatHold is about to schedule it.
+            TimingWheel.Timeout<VenueSeatHold> pendingTask =
+                seatHold.getExpiryTimeout();
+            if (pendingTask != null && !holdTimer.extend(pendingTask,
+                seatHoldExpirationNanos, TimeUnit.NANOSECONDS)) {
+                createAutoReleaseTask(seatHold, seatHoldExpirationNanos);
             }
-            }else{See below}*/
 
-            // Remember to add the held seats back to the set of available seats
-            availableSeats.addAll(heldSeats);
-            // Since the customer's request did not succeed, return null
-            return null;
+            // Update the SeatHold with the additional seats
+            seatHold.reserveAdditionalSeats(heldSeats);
+            journalHold(seatHold, heldSeats);
+            recordChange(seatHold, heldSeats, SeatState.HELD);
+            seatHolds.put(seatHold);
         } else {
-            // If all seats were registered successfully.
-
-            // Get the current SeatHold Object associated with the customer
-            VenueSeatHold seatHold = seatHolds.remove(customerEmail);
-            if (seatHold != null) {
-                // If this customer already has some seats held it will have
-                // a scheduled task running. Get
-                // that task
-                // (A lock isn't necessary since only one thread will succeed
-                // in removing from a concurrent
-                // collection)
-                ScheduledFuture<?> pendingTask = pendingTasks
-                    .remove(customerEmail);
-                pendingTask.cancel(true);
-
-                // Update the SeatHold with the additional seats
-                seatHold.reserveAdditionalSeats(heldSeats);
-            } else {
-                // Otherwise, return a new SeatHold Object with those seats
-                seatHold = new VenueSeatHold(nextSeatHoldId.getAndIncrement(),
-                    heldSeats,
-                    customerEmail);
-                seatHolds.put(customerEmail, seatHold);
+            // Otherwise, return a new SeatHold Object with those seats
+            seatHold = new VenueSeatHold(nextSeatHoldId.getAndIncrement(),
+                heldSeats,
+                customerEmail);
+            journalHold(seatHold, heldSeats);
+            recordChange(seatHold, heldSeats, SeatState.HELD);
+            seatHolds.put(seatHold);
+            if (mergingHolds) {
+                customerHolds.put(customerEmail, seatHold);
             }
 
             // Create a new timer to auto-release the seatHold
-            createAutoReleaseTask(customerEmail);
+            createAutoReleaseTask(seatHold, seatHoldExpirationNanos);
+        }
+
+        return seatHold;
+    }
 
-            return seatHold;
+    /**
+     * Appends seats added to a SeatHold to the journal, if there is one.
+     *
+     * <p>Note: This must be called while no other thread can see the
+     * SeatHold (i.e. before it is put in the index of SeatHolds), so the
+     * records of a single SeatHold are appended in order.
+     *
+     * @param seatHold The SeatHold
+     * @param heldSeats The seats added to it
+     */
+    private void journalHold(final VenueSeatHold seatHold,
+        final SeatRuns heldSeats) {
+        if (journal != null) {
+            journal.appendHold(seatHold.getId(), seatHold.getEmail(),
+                System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(
+                    seatHoldExpirationNanos), heldSeats);
         }
     }
 
+    /**
+     * Records that seats changed state in the venue's ledger, and in its feed
+     * of changes if it is enabled.
+     *
+     * <p>Note: Like journalHold, this must be called before any other thread
+     * can change the seats again, so the changes to every seat are recorded
+     * in order.
+     *
+     * @param seatHold The SeatHold the seats belong to
+     * @param seats The seats, which must not be modified afterwards (the
+     *     seats claimed for a hold are copied into its SeatHold, which never
+     *     modifies the sets it hands out)
+     * @param state The state the seats changed to
+     * @return The token of the change in the feed, to pass to
+     *     SeatChangeFeed.released once freed seats have been released, or 0
+     *     if the feed is disabled
+     */
+    private long recordChange(final VenueSeatHold seatHold,
+        final Set<Integer> seats, final SeatState state) {
+        ledger.record(seatHold, seats, state);
+        final SeatChangeFeed feed = changeFeed;
+        return feed != null ? feed.record(seats, state) : 0;
+    }
+
     @Override
     public final String reserveSeats(final int seatHoldId,
         final String customerEmail) {
-        // Get the actual SeatHold registered by this customer, if there is
-        // one, and remove it from the
-        VenueSeatHold seatHold = seatHolds.remove(customerEmail);
-        // If the customer actually has a SeatHold
-        if (seatHold != null) {
-            // Update the relevant maps
-            reservedSeats.put(customerEmail, seatHold);
-            pendingTasks.remove(customerEmail);
-
-            return Integer.toString(seatHoldId);
-        } else {
-            return null;
+        checkOpen();
+        final VenueMetrics venueMetrics = metrics;
+        final long startTime = venueMetrics != null ? System.nanoTime() : 0;
+
+        // Get the SeatHold with the given id, and take it out of the index
+        // if it belongs to this customer
+        VenueSeatHold seatHold = seatHolds.get(seatHoldId);
+        String confirmationCode = null;
+        if (seatHold != null && seatHold.getEmail().equals(customerEmail)
+            && seatHolds.remove(seatHold)) {
+            // Only reserve the seats (and confirm the reservation) once it is
+            // durable. If the journal fails, the hold is put back as it was.
+            if (journal != null) {
+                try {
+                    journal.awaitDurable(journal.appendReservation(
+                        seatHold.getId(), customerEmail));
+                } catch (RuntimeException e) {
+                    restoreHold(seatHold);
+                    throw e;
+                }
+            }
+
+            // Update the relevant indexes
+            forgetCustomerHold(seatHold);
+            reservedSeats.put(seatHold);
+            recordChange(seatHold, seatHold.getReservedSeats(),
+                SeatState.RESERVED);
+            TimingWheel.Timeout<VenueSeatHold> pendingTask =
+                seatHold.getExpiryTimeout();
+            if (pendingTask != null) {
+                holdTimer.cancel(pendingTask);
+            }
+            confirmationCode = Integer.toString(seatHoldId);
+        }
+
+        if (venueMetrics != null) {
+            venueMetrics.recordReservation(confirmationCode != null,
+                System.nanoTime() - startTime);
+        }
+        return confirmationCode;
+    }
+
+    /**
+     * Puts a SeatHold that was taken out of the index back, once it turns out
+     * it can't be reserved.
+     *
+     * @param seatHold The SeatHold
+     */
+    private void restoreHold(final VenueSeatHold seatHold) {
+        seatHolds.put(seatHold);
+        // If its timeout fired while it was out of the index, it found
+        // nothing to release, so expire it now instead
+        TimingWheel.Timeout<VenueSeatHold> pendingTask =
+            seatHold.getExpiryTimeout();
+        if (pendingTask != null && !pendingTask.isPending()) {
+            createAutoReleaseTask(seatHold, 0);
+        }
+    }
+
+    /**
+     * Releases the seats of a SeatHold before it expires.
+     *
+     * @param seatHoldId The id of the SeatHold
+     * @param customerEmail The email of the customer who owns the SeatHold
+     * @return True if the SeatHold was released, false if there is no pending
+     *     SeatHold with that id for that customer
+     */
+    public final boolean cancelSeatHold(final int seatHoldId,
+        final String customerEmail) {
+        VenueSeatHold seatHold = seatHolds.get(seatHoldId);
+        if (seatHold == null || !seatHold.getEmail().equals(customerEmail)
+            || !seatHolds.remove(seatHold)) {
+            return false;
+        }
+        TimingWheel.Timeout<VenueSeatHold> pendingTask =
+            seatHold.getExpiryTimeout();
+        if (pendingTask != null) {
+            holdTimer.cancel(pendingTask);
+        }
+        releaseHold(seatHold);
+        return true;
+    }
+
+    /**
+     * Looks up a SeatHold by its id, whether it is pending or reserved.
+     *
+     * @param seatHoldId The id of the SeatHold
+     * @return The SeatHold, or null if there is none with that id (or it was
+     *     released)
+     */
+    public final SeatHold<Integer> getSeatHold(final int seatHoldId) {
+        VenueSeatHold seatHold = seatHolds.get(seatHoldId);
+        return seatHold != null ? seatHold : reservedSeats.get(seatHoldId);
+    }
+
+    /**
+     * @param seatHoldId The id of a SeatHold
+     * @return True if the SeatHold has been reserved
+     */
+    public final boolean isReserved(final int seatHoldId) {
+        return reservedSeats.get(seatHoldId) != null;
+    }
+
+    /**
+     * Removes a SeatHold from the index of customers' SeatHolds, if it is
+     * there.
+     *
+     * @param seatHold The SeatHold
+     */
+    private void forgetCustomerHold(final VenueSeatHold seatHold) {
+        // Skip hashing the email if holds have never been merged
+        if (!customerHolds.isEmpty()) {
+            customerHolds.remove(seatHold.getEmail(), seatHold);
+        }
+    }
+
+    /**
+     * Returns the seats of a SeatHold that has been taken out of the index to
+     * the set of available seats.
+     *
+     * @param seatHold The SeatHold
+     */
+    private void releaseHold(final VenueSeatHold seatHold) {
+        forgetCustomerHold(seatHold);
+        // Journal the expiration and record the seats as free before anyone
+        // else can hold them, so the hold that takes them next comes after
+        // this one in the journal and the feed. (If the journal has failed,
+        // the seats are still released; nothing can be appended after it.)
+        try {
+            if (journal != null) {
+                journal.appendExpiration(seatHold.getId(),
+                    seatHold.getEmail());
+            }
+        } finally {
+            final long token = recordChange(seatHold,
+                seatHold.getReservedSeats(), SeatState.FREE);
+            releaseSeats(seatHold.getReservedSeats());
+            final SeatChangeFeed feed = changeFeed;
+            if (feed != null) {
+                feed.released(token);
+            }
         }
     }
 
@@ -476,35 +1031,330 @@ public class Venue implements TicketService {
     }
 
     /**
-     * Automatically releases the held seats associated with a SeatHold after a
-     * set amount of time goes by without those seats being reserved.
+     * Starts recording the venue's metrics, if it isn't already.
      *
-     * @param customerEmail The email of the customer who owns the SeatHold
+     * @return The venue's metrics
+     */
+    public final synchronized VenueMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new VenueMetrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops recording the venue's metrics. Enabling them again starts from
+     * zero.
+     */
+    public final synchronized void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * @return The venue's metrics, or null if they are disabled
+     */
+    public final VenueMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts the feed of changes to the venue's seats, if it isn't already.
+     * Holds, reservations, and releases only hand their seats to the feed,
+     * so subscribers never slow them down.
+     *
+     * <p>Note: The feed starts from the venue's current seats, so changes
+     * made while it is being enabled may be missed until those seats change
+     * again. Enable it before the venue starts taking requests for an exact
+     * map.
+     *
+     * @return The venue's feed of changes
+     */
+    public final synchronized SeatChangeFeed enableChangeFeed() {
+        if (changeFeed == null) {
+            changeFeed = new SeatChangeFeed(availableSeats, reservedSeats,
+                holdTimer);
+        }
+        return changeFeed;
+    }
+
+    /**
+     * @return The venue's feed of changes, or null if it is disabled
+     */
+    public final SeatChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * @param unit The unit to return the expiration time in
+     * @return The amount of time before held seats are released
+     */
+    public final long getSeatHoldExpiration(final TimeUnit unit) {
+        return unit.convert(seatHoldExpirationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the amount of time before held seats are released. Holds that are
+     * already pending keep their current expiration time until they are
+     * extended by another hold.
+     *
+     * @param duration The amount of time before held seats are released
+     * @param unit The unit of the duration
+     */
+    public final void setSeatHoldExpiration(final long duration,
+        final TimeUnit unit) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException(
+                "The seat hold expiration must be positive: " + duration);
+        }
+        seatHoldExpirationNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * @return True if a customer's holds are merged into a single SeatHold
+     */
+    public final boolean isMergingHolds() {
+        return mergingHolds;
+    }
+
+    /**
+     * Sets whether a customer's holds are merged into a single SeatHold (the
+     * default), or every hold gets a SeatHold of its own that is reserved and
+     * expires independently. SeatHolds that are already pending are not
+     * affected.
+     *
+     * @param merge True to merge a customer's holds
+     */
+    public final void setMergingHolds(final boolean merge) {
+        mergingHolds = merge;
+    }
+
+    /**
+     * Automatically releases the held seats associated with a SeatHold after
+     * the given amount of time goes by without those seats being reserved.
+     *
+     * @param seatHold The SeatHold
+     * @param delayNanos The time until the seats are released, in nanoseconds
+     */
+    private void createAutoReleaseTask(final VenueSeatHold seatHold,
+        final long delayNanos) {
+        seatHold.setExpiryTimeout(holdTimer.schedule(holdExpiryHandler,
+            seatHold, delayNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Releases the seats of every SeatHold whose timeout expired during a
+     * tick of the hold timer.
+     *
+     * @param timeouts The expired timeouts, keyed by SeatHold
+     */
+    private void releaseExpiredHolds(
+        final List<TimingWheel.Timeout<VenueSeatHold>> timeouts) {
+        if (closed) {
+            // Their timeouts were cancelled while this batch was expiring;
+            // they stay pending in the journal
+            return;
+        }
+        for (TimingWheel.Timeout<VenueSeatHold> timeout : timeouts) {
+            final VenueSeatHold seatHold = timeout.getKey();
+            // Take the SeatHold out of the index of SeatHolds
+            if (!seatHolds.remove(seatHold)) {
+                // Note: Either another thread calling reserveSeats got it
+                // first, or one calling findAndHoldSeats is extending it and
+                // will schedule a new timeout when it finds this one has
+                // fired.
+                continue;
+            }
+            // Only release the SeatHold if this is still its timeout;
+            // otherwise it was rescheduled in the meantime
+            if (seatHold.getExpiryTimeout() != timeout) {
+                seatHolds.put(seatHold);
+                continue;
+            }
+            // Return the held seats to the set of available seats
+            releaseHold(seatHold);
+            final VenueMetrics venueMetrics = metrics;
+            if (venueMetrics != null) {
+                venueMetrics.recordExpiredHold(
+                    seatHold.getReservedSeats().size());
+            }
+        }
+    }
+
+    /**
+     * Replays the venue's journal (if it has one) on top of the holds that
+     * are already known, then adds the holds that are still pending to the
+     * indexes.
+     *
+     * @param pendingHolds The SeatHolds that are pending, keyed by id
+     * @param deadlines When each pending SeatHold expires, in milliseconds
+     *     since the epoch, keyed by id
+     * @param journalPosition The position to replay the journal from
      */
-    private void createAutoReleaseTask(final String customerEmail) {
-        // Create a task to automatically release a SeatHold after 5 seconds.
-        ScheduledFuture<?> scheduledTask =
-            timerExecutorService.schedule(
-                () -> {
-                    // Remove the SeatHold from the map of SeatHolds
-                    VenueSeatHold seatHold = seatHolds.remove(customerEmail);
-                    if (seatHold != null) {
-                        // Return the held seats to the set of available seats
-                        availableSeats.addAll(seatHold.getReservedSeats());
-                        // Remove this task from the map of tasks
-                        pendingTasks.remove(customerEmail);
+    private void restoreHolds(final Map<Integer, VenueSeatHold> pendingHolds,
+        final Map<Integer, Long> deadlines, final long journalPosition) {
+        if (journal != null) {
+            replayJournal(pendingHolds, deadlines, journalPosition);
+        }
+        admissibleSeats.set(availableSeats.size());
+
+        for (VenueSeatHold seatHold : pendingHolds.values()) {
+            seatHolds.put(seatHold);
+            if (mergingHolds) {
+                customerHolds.put(seatHold.getEmail(), seatHold);
+            }
+        }
+    }
+
+    /**
+     * Restarts the timers of the holds that are still pending once a venue
+     * has been restored. Holds that expired while the venue was down are
+     * released on the timer's next tick.
+     *
+     * @param pendingHolds The SeatHolds that are pending, keyed by id
+     * @param deadlines When each pending SeatHold expires, in milliseconds
+     *     since the epoch, keyed by id
+     */
+    private void startHoldTimers(final Map<Integer, VenueSeatHold> pendingHolds,
+        final Map<Integer, Long> deadlines) {
+        final long now = System.currentTimeMillis();
+        for (VenueSeatHold seatHold : pendingHolds.values()) {
+            createAutoReleaseTask(seatHold,
+                TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+                    deadlines.get(seatHold.getId()) - now)));
+        }
+    }
+
+    /**
+     * Applies the records of the venue's journal to its holds and
+     * reservations.
+     *
+     * @param pendingHolds The SeatHolds that are pending, keyed by id
+     * @param deadlines When each pending SeatHold expires, in milliseconds
+     *     since the epoch, keyed by id
+     * @param journalPosition The position to replay the journal from
+     */
+    private void replayJournal(final Map<Integer, VenueSeatHold> pendingHolds,
+        final Map<Integer, Long> deadlines, final long journalPosition) {
+        journal.replay(new HoldJournal.Replayer() {
+            @Override
+            public void hold(final int seatHoldId, final String customerEmail,
+                final long expiresAtMillis, final int[] seats) {
+                SeatRuns heldSeats = new SeatRuns();
+                for (int seat : seats) {
+                    if (availableSeats.tryClaim(seat)) {
+                        heldSeats.add(seat);
                     }
-                    // Note: The task is not auto-removed if a SeatHold is
-                    // not found; this means either an
-                    // improper email was
-                    // entered, or another thread calling
-                    // reserveSeats/findAndHoldSeats got the SeatHold
-                    // first and will
-                    // remove the task there.
-                },
-                seatHoldExpirationTime,
-                TimeUnit.SECONDS);
-
-        pendingTasks.put(customerEmail, scheduledTask);
+                }
+                VenueSeatHold seatHold = pendingHolds.get(seatHoldId);
+                if (seatHold != null) {
+                    seatHold.reserveAdditionalSeats(heldSeats);
+                } else {
+                    pendingHolds.put(seatHoldId, new VenueSeatHold(seatHoldId,
+                        heldSeats, customerEmail));
+                }
+                deadlines.put(seatHoldId, expiresAtMillis);
+                nextSeatHoldId.accumulateAndGet(seatHoldId + 1, Math::max);
+            }
+
+            @Override
+            public void reserve(final int seatHoldId,
+                final String customerEmail) {
+                VenueSeatHold seatHold = pendingHolds.remove(seatHoldId);
+                if (seatHold != null) {
+                    reservedSeats.put(seatHold);
+                }
+            }
+
+            @Override
+            public void expire(final int seatHoldId,
+                final String customerEmail) {
+                VenueSeatHold seatHold = pendingHolds.remove(seatHoldId);
+                if (seatHold != null) {
+                    // Note: The admission counter is set once the journal has
+                    // been replayed
+                    availableSeats.releaseAll(seatHold.getReservedSeats());
+                }
+            }
+        }, journalPosition);
+    }
+
+    /**
+     * Takes a consistent map of the venue's seats: the state of every seat,
+     * and the SeatHold it belongs to, at a single point in time. Holds are
+     * never stopped or slowed down while it is taken, and it only copies the
+     * parts of the venue that changed since the last map.
+     *
+     * @return The map
+     */
+    public final SeatMap seatMap() {
+        return ledger.map();
+    }
+
+    /**
+     * Takes a snapshot of the venue, which can be written to a file and
+     * restored with {@link #Venue(VenueSnapshot, HoldJournal)}.
+     *
+     * <p>Note: Like the iterators of the concurrent collections, the snapshot
+     * is only weakly consistent if the venue is modified while it is taken.
+     * Take it while the venue is idle (e.g. from the writer thread of a
+     * {@link SequencedTicketService}) for an exact copy, or use {@link
+     * #seatMap()} for a consistent map of the seats alone.
+     *
+     * @return The snapshot
+     */
+    public final VenueSnapshot snapshot() {
+        final long journalPosition = journal != null ? journal.position() : 0;
+        final long now = System.currentTimeMillis();
+        List<VenueSnapshot.Entry> holds = new ArrayList<>();
+        seatHolds.forEach(seatHold -> {
+            TimingWheel.Timeout<VenueSeatHold> timeout =
+                seatHold.getExpiryTimeout();
+            final long delay = timeout != null
+                ? holdTimer.getDelay(timeout, TimeUnit.MILLISECONDS) : 0;
+            holds.add(VenueSnapshot.Entry.of(seatHold,
+                now + Math.max(0, delay)));
+        });
+        List<VenueSnapshot.Entry> reservations = new ArrayList<>();
+        reservedSeats.forEach(seatHold ->
+            reservations.add(VenueSnapshot.Entry.of(seatHold, 0)));
+        return new VenueSnapshot(availableSeats.getLayout(),
+            availableSeats.toBitmap(), nextSeatHoldId.get(),
+            seatHoldExpirationNanos, getSeatingPreference(), journalPosition,
+            holds, reservations);
+    }
+
+    /**
+     * Stops taking holds and reservations, cancels the timers of the venue's
+     * holds (closing its hold timer, if it created it), completes the
+     * subscriptions to its feed of changes, and then closes its journal (if
+     * it has one). Pending holds are kept in the journal, so a venue
+     * restored from it expires them as usual.
+     *
+     * <p>Note: The venue must not be used once it is closed. Holds and
+     * reservations fail with an IllegalStateException, and expirations still
+     * in progress skip the journal.
+     *
+     * @throws IOException If the journal could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        seatHolds.forEach(seatHold -> {
+            TimingWheel.Timeout<VenueSeatHold> timeout =
+                seatHold.getExpiryTimeout();
+            if (timeout != null) {
+                holdTimer.cancel(timeout);
+            }
+        });
+        if (ownsHoldTimer) {
+            holdTimer.close();
+        }
+        final SeatChangeFeed feed = changeFeed;
+        if (feed != null) {
+            feed.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
     }
 }
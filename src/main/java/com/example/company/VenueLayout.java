@@ -0,0 +1,453 @@
+package com.example.company;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The immutable seating layout of a venue: how many seats it has, how those
+ * seats are split into rows and sections, and which of them can be sold.
+ *
+ * <p>Seats are identified by their position in row-major order. Index 0 is in
+ * the back left corner of the venue. Rows may have different lengths (for
+ * venues with an odd-shaped layout), and a section is a run of consecutive
+ * rows.
+ *
+ * <p>A layout is meant to be built once per physical venue and shared by
+ * every event held there: everything derived from it (the row of every seat,
+ * and the ranking of seats by every {@link SeatScorer}) is computed once and
+ * shared too.
+ */
+public final class VenueLayout {
+
+    /**
+     * The number of bits needed to address a bit within a word.
+     */
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+
+    /**
+     * The index of the first seat of every row, followed by the total number
+     * of seats in the venue.
+     */
+    private final int[] rowStarts;
+    /**
+     * The index of the first row of every section, followed by the total
+     * number of rows in the venue.
+     */
+    private final int[] sectionStarts;
+    /**
+     * The row every seat belongs to, so finding a seat's row (which happens
+     * on every claim and release) is a single array read. Shared by every
+     * sectioned copy of the layout.
+     */
+    private final int[] seatRows;
+    /**
+     * The section every row belongs to.
+     */
+    private final int[] rowSections;
+    /**
+     * The seats that can be sold, as a bitmap of 64-seat words (a set bit
+     * represents an available seat).
+     */
+    private final long[] availableSeats;
+    /**
+     * The number of seats that can be sold in every row.
+     */
+    private final int[] availableSeatsInRow;
+    /**
+     * The length of the longest row.
+     */
+    private final int maxRowLength;
+    /**
+     * The available seats ranked by every scorer that has been used, each
+     * computed the first time it is needed. Shared by every sectioned copy of
+     * the layout.
+     */
+    private ConcurrentHashMap<SeatScorer, SeatRanking> rankings =
+        new ConcurrentHashMap<>();
+
+    /**
+     * @param seatRowStarts The index of the first seat of every row, followed
+     *     by the total number of seats
+     * @param sectionRowStarts The index of the first row of every section,
+     *     followed by the total number of rows
+     * @param seatBitmap The seats that can be sold
+     * @param rowOfSeat The row every seat belongs to, or null to compute it
+     */
+    private VenueLayout(final int[] seatRowStarts,
+        final int[] sectionRowStarts, final long[] seatBitmap,
+        final int[] rowOfSeat) {
+        rowStarts = seatRowStarts;
+        sectionStarts = sectionRowStarts;
+        availableSeats = seatBitmap;
+
+        final int numRows = rowStarts.length - 1;
+        if (rowOfSeat != null) {
+            seatRows = rowOfSeat;
+        } else {
+            seatRows = new int[rowStarts[numRows]];
+            for (int row = 0; row < numRows; row++) {
+                Arrays.fill(seatRows, rowStarts[row], rowStarts[row + 1], row);
+            }
+        }
+        rowSections = new int[numRows];
+        availableSeatsInRow = new int[numRows];
+        int longestRow = 0;
+        for (int row = 0; row < numRows; row++) {
+            longestRow =
+                Math.max(longestRow, rowStarts[row + 1] - rowStarts[row]);
+        }
+        maxRowLength = longestRow;
+        for (int section = 0; section < sectionStarts.length - 1; section++) {
+            for (int row = sectionStarts[section];
+                row < sectionStarts[section + 1]; row++) {
+                rowSections[row] = section;
+            }
+        }
+        for (int row = 0; row < numRows; row++) {
+            for (int seat = rowStarts[row]; seat < rowStarts[row + 1];
+                seat++) {
+                if (isSeatAvailable(seat)) {
+                    availableSeatsInRow[row]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a square layout with seatsPerSide^2 seats, all of them
+     * available, in a single section.
+     *
+     * @param seatsPerSide The number of seats in every row and column
+     * @return The layout
+     */
+    public static VenueLayout square(final int seatsPerSide) {
+        return rectangular(seatsPerSide, seatsPerSide);
+    }
+
+    /**
+     * Creates a rectangular layout with seatsPerRow*numColumns seats, all of
+     * them available, in a single section.
+     *
+     * @param seatsPerRow The number of seats in every row
+     * @param numColumns The number of seats in every column (i.e. the number
+     *     of rows)
+     * @return The layout
+     */
+    public static VenueLayout rectangular(final int seatsPerRow,
+        final int numColumns) {
+        // A venue with a negative dimension has no seats
+        final int rowLength = seatsPerRow > 0 && numColumns > 0
+            ? seatsPerRow : 0;
+        final int numRows = rowLength > 0 ? numColumns : 0;
+
+        int[] rowStarts = new int[numRows + 1];
+        for (int row = 0; row <= numRows; row++) {
+            rowStarts[row] = row * rowLength;
+        }
+        long[] seats = newBitmap(numRows * rowLength);
+        for (int seat = 0; seat < numRows * rowLength; seat++) {
+            seats[seat >> ADDRESS_BITS_PER_WORD] |= 1L << seat;
+        }
+        return new VenueLayout(rowStarts, new int[]{0, numRows}, seats,
+            null);
+    }
+
+    /**
+     * Creates a layout from a 2d-array representing available seats, in a
+     * single section. True values represent a free seat while false values
+     * represent an unavailable seat (or a lack of a seat, for venues with an
+     * odd-shaped layout).
+     *
+     * @param seatingConfiguration A 2d-array representing the seats
+     *     available in the venue
+     * @return The layout
+     */
+    public static VenueLayout fromConfiguration(
+        final boolean[][] seatingConfiguration) {
+        final int numRows = seatingConfiguration.length;
+        int[] rowStarts = new int[numRows + 1];
+        for (int row = 0; row < numRows; row++) {
+            rowStarts[row + 1] =
+                rowStarts[row] + seatingConfiguration[row].length;
+        }
+
+        long[] seats = newBitmap(rowStarts[numRows]);
+        for (int row = 0; row < numRows; row++) {
+            for (int column = 0; column < seatingConfiguration[row].length;
+                column++) {
+                if (seatingConfiguration[row][column]) {
+                    final int seat = rowStarts[row] + column;
+                    seats[seat >> ADDRESS_BITS_PER_WORD] |= 1L << seat;
+                }
+            }
+        }
+        return new VenueLayout(rowStarts, new int[]{0, numRows}, seats,
+            null);
+    }
+
+    /**
+     * Creates a layout from its raw arrays, as written by {@link
+     * VenueSnapshot}. The arrays are used as they are, not copied.
+     *
+     * @param seatRowStarts The index of the first seat of every row, followed
+     *     by the total number of seats
+     * @param sectionRowStarts The index of the first row of every section,
+     *     followed by the total number of rows
+     * @param seatBitmap The seats that can be sold, as 64-seat words
+     * @return The layout
+     */
+    static VenueLayout fromArrays(final int[] seatRowStarts,
+        final int[] sectionRowStarts, final long[] seatBitmap) {
+        final int numRows = seatRowStarts.length - 1;
+        for (int row = 0; row < numRows; row++) {
+            if (seatRowStarts[row] > seatRowStarts[row + 1]) {
+                throw new IllegalArgumentException("Rows must be ascending");
+            }
+        }
+        for (int section = 0; section < sectionRowStarts.length - 1;
+            section++) {
+            if (sectionRowStarts[section] > sectionRowStarts[section + 1]) {
+                throw new IllegalArgumentException(
+                    "Sections must be ascending");
+            }
+        }
+        if (numRows < 0 || seatRowStarts[0] != 0
+            || sectionRowStarts.length == 0
+            || sectionRowStarts[0] != 0
+            || sectionRowStarts[sectionRowStarts.length - 1] != numRows
+            || seatBitmap.length
+            != newBitmap(seatRowStarts[numRows]).length) {
+            throw new IllegalArgumentException("Malformed layout");
+        }
+        return new VenueLayout(seatRowStarts, sectionRowStarts, seatBitmap,
+            null);
+    }
+
+    /**
+     * @param numSeats The number of seats the bitmap must be able to hold
+     * @return An empty bitmap large enough to hold that many seats
+     */
+    private static long[] newBitmap(final int numSeats) {
+        return new long[((numSeats - 1) >> ADDRESS_BITS_PER_WORD) + 1];
+    }
+
+    /**
+     * Returns a copy of this layout split into sections. Each section starts
+     * at the given row, and runs until the start of the next section (or the
+     * last row).
+     *
+     * @param firstRows The first row of every section, in ascending order.
+     *     Row 0 always starts a section, whether it is included or not.
+     * @return The sectioned layout
+     */
+    public VenueLayout withSections(final int... firstRows) {
+        final int numRows = getNumRows();
+        int[] starts = new int[firstRows.length + 2];
+        int numSections = 0;
+        starts[numSections++] = 0;
+        for (int row : firstRows) {
+            if (row <= starts[numSections - 1] || row >= numRows) {
+                if (row != 0) {
+                    throw new IllegalArgumentException(
+                        "Section rows must be ascending and within the "
+                            + "venue: " + Arrays.toString(firstRows));
+                }
+                continue;
+            }
+            starts[numSections++] = row;
+        }
+        starts[numSections] = numRows;
+        VenueLayout sectioned = new VenueLayout(rowStarts,
+            Arrays.copyOf(starts, numSections + 1), availableSeats, seatRows);
+        // Sections don't change where seats are, so the rankings can be
+        // shared
+        sectioned.rankings = rankings;
+        return sectioned;
+    }
+
+    /**
+     * Returns a copy of this layout split into sections of (at most)
+     * rowsPerSection rows each.
+     *
+     * @param rowsPerSection The number of rows in every section
+     * @return The sectioned layout
+     */
+    public VenueLayout withSectionsOf(final int rowsPerSection) {
+        if (rowsPerSection <= 0) {
+            throw new IllegalArgumentException(
+                "Sections must have at least one row: " + rowsPerSection);
+        }
+        final int numRows = getNumRows();
+        int[] firstRows = new int[Math.max(0,
+            (numRows - 1) / rowsPerSection + 1)];
+        for (int section = 0; section < firstRows.length; section++) {
+            firstRows[section] = section * rowsPerSection;
+        }
+        return withSections(firstRows);
+    }
+
+    /**
+     * @return The total number of seats in the venue, including unavailable
+     *     ones
+     */
+    public int getTotalSeats() {
+        return rowStarts[rowStarts.length - 1];
+    }
+
+    /**
+     * @return The number of rows in the venue
+     */
+    public int getNumRows() {
+        return rowStarts.length - 1;
+    }
+
+    /**
+     * @return The number of sections in the venue
+     */
+    public int getNumSections() {
+        return sectionStarts.length - 1;
+    }
+
+    /**
+     * @param row The index of a row
+     * @return The index of the first seat in that row
+     */
+    public int getRowStart(final int row) {
+        return rowStarts[row];
+    }
+
+    /**
+     * @param row The index of a row
+     * @return The number of seats in that row
+     */
+    public int getRowLength(final int row) {
+        return rowStarts[row + 1] - rowStarts[row];
+    }
+
+    /**
+     * @param section The index of a section
+     * @return The index of the first row in that section
+     */
+    public int getSectionStartRow(final int section) {
+        return sectionStarts[section];
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return The row containing that seat
+     */
+    public int getRowOf(final int seat) {
+        if (seat < 0 || seat >= getTotalSeats()) {
+            throw new IndexOutOfBoundsException("Seat: " + seat);
+        }
+        return seatRows[seat];
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return The position of the seat within its row (0 for the leftmost
+     *     seat)
+     */
+    public int getColumnOf(final int seat) {
+        return seat - rowStarts[getRowOf(seat)];
+    }
+
+    /**
+     * @return The number of seats in the longest row
+     */
+    public int getMaxRowLength() {
+        return maxRowLength;
+    }
+
+    /**
+     * @param row The index of a row
+     * @return The section containing that row
+     */
+    public int getSectionOfRow(final int row) {
+        return rowSections[row];
+    }
+
+    /**
+     * @param seat The index of a seat
+     * @return True if the seat can be sold (i.e. it is not permanently
+     *     unavailable)
+     */
+    public boolean isSeatAvailable(final int seat) {
+        return seat >= 0 && seat < getTotalSeats()
+            && (availableSeats[seat >> ADDRESS_BITS_PER_WORD]
+            & (1L << seat)) != 0;
+    }
+
+    /**
+     * @param row The index of a row
+     * @return The number of seats in that row that can be sold
+     */
+    public int getAvailableSeatsInRow(final int row) {
+        return availableSeatsInRow[row];
+    }
+
+    /**
+     * Note: Each ranking is computed once, the first time it is needed, and
+     * shared by every venue using this layout. If two threads race to compute
+     * it, both get equivalent rankings.
+     *
+     * @param scorer The scorer of the seats
+     * @return The available seats ranked by the scorer
+     */
+    SeatRanking getRanking(final SeatScorer scorer) {
+        SeatRanking ranking = rankings.get(scorer);
+        if (ranking == null) {
+            ranking = SeatRanking.byScore(this, scorer);
+            final SeatRanking existing = rankings.putIfAbsent(scorer, ranking);
+            if (existing != null) {
+                ranking = existing;
+            }
+        }
+        return ranking;
+    }
+
+    /**
+     * @return The available seats ordered by their (row and column) distance
+     *     from the center of the venue
+     */
+    SeatRanking getCenterRanking() {
+        return getRanking(SeatScorer.CLOSEST_TO_CENTER);
+    }
+
+    /**
+     * @param scorer The scorer of the seats
+     * @return The available seats, from the best to the worst score
+     */
+    public int[] rankSeats(final SeatScorer scorer) {
+        final SeatRanking ranking = getRanking(scorer);
+        int[] seats = new int[ranking.size()];
+        for (int rank = 0; rank < seats.length; rank++) {
+            seats[rank] = ranking.seatAt(rank);
+        }
+        return seats;
+    }
+
+    /**
+     * @return A copy of the index of the first seat of every row, followed by
+     *     the total number of seats
+     */
+    int[] copyRowStarts() {
+        return rowStarts.clone();
+    }
+
+    /**
+     * @return A copy of the index of the first row of every section, followed
+     *     by the total number of rows
+     */
+    int[] copySectionStarts() {
+        return sectionStarts.clone();
+    }
+
+    /**
+     * @return A copy of the bitmap of seats that can be sold, as 64-seat
+     *     words
+     */
+    long[] copyAvailableSeats() {
+        return availableSeats.clone();
+    }
+}
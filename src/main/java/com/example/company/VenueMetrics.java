@@ -0,0 +1,366 @@
+package com.example.company;
+
+import com.example.company.struct.SeatingPreference;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the operations of a venue.
+ *
+ * <p>Every counter is striped (a LongAdder), and every histogram is lock-free,
+ * so recording an operation costs a few uncontended atomic adds. The metrics
+ * can be read as a consistent-enough snapshot, or through JMX once
+ * registered.
+ */
+public final class VenueMetrics implements VenueMetricsMXBean {
+
+    /**
+     * The number of holds that succeeded.
+     */
+    private final LongAdder holdsSucceeded = new LongAdder();
+    /**
+     * The number of holds that failed.
+     */
+    private final LongAdder holdsFailed = new LongAdder();
+    /**
+     * The number of seats claimed by admitted holds that then gave up, and
+     * released again.
+     */
+    private final LongAdder seatsRolledBack = new LongAdder();
+    /**
+     * The number of seats that were claimed by another thread first.
+     */
+    private final LongAdder claimsLost = new LongAdder();
+    /**
+     * The number of holds that expired.
+     */
+    private final LongAdder holdsExpired = new LongAdder();
+    /**
+     * The number of seats released by expired holds.
+     */
+    private final LongAdder seatsExpired = new LongAdder();
+    /**
+     * The number of reservations that succeeded.
+     */
+    private final LongAdder reservationsSucceeded = new LongAdder();
+    /**
+     * The number of reservations that failed.
+     */
+    private final LongAdder reservationsFailed = new LongAdder();
+    /**
+     * The latency of findAndHoldSeats, indexed by seating preference.
+     */
+    private final LatencyHistogram[] holdLatencies =
+        new LatencyHistogram[SeatingPreference.values().length];
+    /**
+     * The latency of reserveSeats.
+     */
+    private final LatencyHistogram reserveLatency = new LatencyHistogram();
+
+    /**
+     * Creates an empty set of metrics.
+     */
+    VenueMetrics() {
+        for (int i = 0; i < holdLatencies.length; i++) {
+            holdLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a call to findAndHoldSeats.
+     *
+     * @param preference The seating preference of the hold, or null for holds
+     *     ranked by a custom scorer (which have no latency histogram)
+     * @param succeeded True if the customer got their seats
+     * @param rolledBackSeats The number of seats the hold claimed and then
+     *     released, because it gave up on claiming the rest
+     * @param nanos The latency of the hold
+     */
+    void recordHold(final SeatingPreference preference,
+        final boolean succeeded, final int rolledBackSeats, final long nanos) {
+        if (succeeded) {
+            holdsSucceeded.increment();
+        } else {
+            holdsFailed.increment();
+            seatsRolledBack.add(rolledBackSeats);
+        }
+        if (preference != null) {
+            holdLatencies[preference.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * @param lostClaims The number of free seats a hold found, but another
+     *     thread claimed first
+     */
+    void recordLostClaims(final int lostClaims) {
+        claimsLost.add(lostClaims);
+    }
+
+    /**
+     * @param seats The number of seats released by an expired hold
+     */
+    void recordExpiredHold(final int seats) {
+        holdsExpired.increment();
+        seatsExpired.add(seats);
+    }
+
+    /**
+     * Records a call to reserveSeats.
+     *
+     * @param succeeded True if the seats were reserved
+     * @param nanos The latency of the reservation
+     */
+    void recordReservation(final boolean succeeded, final long nanos) {
+        if (succeeded) {
+            reservationsSucceeded.increment();
+        } else {
+            reservationsFailed.increment();
+        }
+        reserveLatency.record(nanos);
+    }
+
+    @Override
+    public long getHoldsSucceeded() {
+        return holdsSucceeded.sum();
+    }
+
+    @Override
+    public long getHoldsFailed() {
+        return holdsFailed.sum();
+    }
+
+    @Override
+    public long getSeatsRolledBack() {
+        return seatsRolledBack.sum();
+    }
+
+    @Override
+    public long getClaimsLost() {
+        return claimsLost.sum();
+    }
+
+    @Override
+    public long getHoldsExpired() {
+        return holdsExpired.sum();
+    }
+
+    @Override
+    public long getSeatsExpired() {
+        return seatsExpired.sum();
+    }
+
+    @Override
+    public long getReservationsSucceeded() {
+        return reservationsSucceeded.sum();
+    }
+
+    @Override
+    public long getReservationsFailed() {
+        return reservationsFailed.sum();
+    }
+
+    /**
+     * @param preference A seating preference
+     * @return A snapshot of the latency of findAndHoldSeats with that
+     *     preference
+     */
+    public LatencySnapshot getHoldLatency(final SeatingPreference preference) {
+        return holdLatencies[preference.ordinal()].snapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getHoldLatencies() {
+        Map<String, LatencySnapshot> latencies = new LinkedHashMap<>();
+        for (SeatingPreference preference : SeatingPreference.values()) {
+            LatencySnapshot latency = getHoldLatency(preference);
+            if (latency.getCount() != 0) {
+                latencies.put(preference.name(), latency);
+            }
+        }
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    @Override
+    public LatencySnapshot getReserveLatency() {
+        return reserveLatency.snapshot();
+    }
+
+    /**
+     * Note: Every counter is read separately, so operations completing while
+     * the snapshot is taken may be counted in some of them but not others.
+     *
+     * @return A snapshot of every metric
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, under
+     * com.example.company:type=VenueMetrics,name=venueName.
+     *
+     * @param venueName The name identifying the venue
+     * @return The name the metrics were registered under
+     * @throws JMException If the metrics could not be registered (e.g. the
+     *     name is already in use)
+     */
+    public ObjectName register(final String venueName) throws JMException {
+        ObjectName name = new ObjectName(
+            "com.example.company:type=VenueMetrics,name="
+                + ObjectName.quote(venueName));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * An immutable snapshot of a venue's metrics.
+     */
+    public static final class Snapshot {
+
+        /**
+         * The number of holds that succeeded.
+         */
+        private final long holdsSucceeded;
+        /**
+         * The number of holds that failed.
+         */
+        private final long holdsFailed;
+        /**
+         * The number of seats claimed by holds that gave up, and released
+         * again.
+         */
+        private final long seatsRolledBack;
+        /**
+         * The number of seats that were claimed by another thread first.
+         */
+        private final long claimsLost;
+        /**
+         * The number of holds that expired.
+         */
+        private final long holdsExpired;
+        /**
+         * The number of seats released by expired holds.
+         */
+        private final long seatsExpired;
+        /**
+         * The number of reservations that succeeded.
+         */
+        private final long reservationsSucceeded;
+        /**
+         * The number of reservations that failed.
+         */
+        private final long reservationsFailed;
+        /**
+         * The latency of findAndHoldSeats, for every seating preference.
+         */
+        private final Map<SeatingPreference, LatencySnapshot> holdLatencies;
+        /**
+         * The latency of reserveSeats.
+         */
+        private final LatencySnapshot reserveLatency;
+
+        /**
+         * @param metrics The metrics to take a snapshot of
+         */
+        private Snapshot(final VenueMetrics metrics) {
+            holdsSucceeded = metrics.getHoldsSucceeded();
+            holdsFailed = metrics.getHoldsFailed();
+            seatsRolledBack = metrics.getSeatsRolledBack();
+            claimsLost = metrics.getClaimsLost();
+            holdsExpired = metrics.getHoldsExpired();
+            seatsExpired = metrics.getSeatsExpired();
+            reservationsSucceeded = metrics.getReservationsSucceeded();
+            reservationsFailed = metrics.getReservationsFailed();
+            Map<SeatingPreference, LatencySnapshot> latencies =
+                new EnumMap<>(SeatingPreference.class);
+            for (SeatingPreference preference : SeatingPreference.values()) {
+                latencies.put(preference, metrics.getHoldLatency(preference));
+            }
+            holdLatencies = Collections.unmodifiableMap(latencies);
+            reserveLatency = metrics.getReserveLatency();
+        }
+
+        /**
+         * @return The number of holds that succeeded
+         */
+        public long getHoldsSucceeded() {
+            return holdsSucceeded;
+        }
+
+        /**
+         * @return The number of holds that failed, and had their seats rolled
+         *     back
+         */
+        public long getHoldsFailed() {
+            return holdsFailed;
+        }
+
+        /**
+         * @return The number of seats claimed by holds that gave up on
+         *     claiming the rest of their seats, and released again
+         */
+        public long getSeatsRolledBack() {
+            return seatsRolledBack;
+        }
+
+        /**
+         * @return The number of times a hold found a free seat, but another
+         *     thread claimed it first
+         */
+        public long getClaimsLost() {
+            return claimsLost;
+        }
+
+        /**
+         * @return The number of holds that expired before being reserved
+         */
+        public long getHoldsExpired() {
+            return holdsExpired;
+        }
+
+        /**
+         * @return The number of seats released by expired holds
+         */
+        public long getSeatsExpired() {
+            return seatsExpired;
+        }
+
+        /**
+         * @return The number of reservations that succeeded
+         */
+        public long getReservationsSucceeded() {
+            return reservationsSucceeded;
+        }
+
+        /**
+         * @return The number of reservations that failed
+         */
+        public long getReservationsFailed() {
+            return reservationsFailed;
+        }
+
+        /**
+         * @param preference A seating preference
+         * @return The latency of findAndHoldSeats with that preference
+         */
+        public LatencySnapshot getHoldLatency(
+            final SeatingPreference preference) {
+            return holdLatencies.get(preference);
+        }
+
+        /**
+         * @return The latency of reserveSeats
+         */
+        public LatencySnapshot getReserveLatency() {
+            return reserveLatency;
+        }
+    }
+}
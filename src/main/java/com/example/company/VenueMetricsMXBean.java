@@ -0,0 +1,64 @@
+package com.example.company;
+
+import java.util.Map;
+
+/**
+ * The metrics of a venue, as exposed through JMX.
+ */
+public interface VenueMetricsMXBean {
+
+    /**
+     * @return The number of holds that succeeded
+     */
+    long getHoldsSucceeded();
+
+    /**
+     * @return The number of holds that failed, because there weren't enough
+     *     seats left or (rarely) the seats kept being claimed by other holds
+     */
+    long getHoldsFailed();
+
+    /**
+     * @return The number of seats that were claimed by a hold that then gave
+     *     up on claiming the rest of its seats, and were released again
+     */
+    long getSeatsRolledBack();
+
+    /**
+     * @return The number of times a hold found a free seat, but another
+     *     thread claimed it first
+     */
+    long getClaimsLost();
+
+    /**
+     * @return The number of holds that expired before being reserved
+     */
+    long getHoldsExpired();
+
+    /**
+     * @return The number of seats released by expired holds
+     */
+    long getSeatsExpired();
+
+    /**
+     * @return The number of reservations that succeeded
+     */
+    long getReservationsSucceeded();
+
+    /**
+     * @return The number of reservations that failed (i.e. the customer had
+     *     no SeatHold)
+     */
+    long getReservationsFailed();
+
+    /**
+     * @return The latency of findAndHoldSeats, for every seating preference
+     *     that has been used
+     */
+    Map<String, LatencySnapshot> getHoldLatencies();
+
+    /**
+     * @return The latency of reserveSeats
+     */
+    LatencySnapshot getReserveLatency();
+}
@@ -0,0 +1,357 @@
+package com.example.company;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages the venues of many events, keyed by event id. Every venue shares a
+ * single hold timer, whose expired holds are released on a fixed pool of
+ * worker threads, so the number of threads stays the same however many
+ * events are on sale.
+ *
+ * <p>Venues are opened the first time their event is looked up, and closed
+ * once they haven't been looked up for a while (or when they are evicted
+ * explicitly). Their idle timeouts run on the same timer as their holds, and
+ * looking a venue up only pushes its timeout back with a CAS.
+ *
+ * <p>An event's entry stays in the registry from the time its venue starts
+ * opening until it is fully closed, so the venue is never opened twice at
+ * once. Venues are opened and closed outside of the map's locks, so opening
+ * or closing one never blocks the others, and event sources may look up
+ * other events.
+ */
+public final class VenueRegistry implements AutoCloseable {
+
+    /**
+     * Opens and closes the venues of events, e.g. from snapshots and
+     * journals. Sources may look up other events in the registry, but not
+     * the event being opened or closed.
+     */
+    public interface EventSource {
+
+        /**
+         * Opens the venue of an event.
+         *
+         * @param eventId The id of the event
+         * @param holdTimer The timer the venue must expire its holds on
+         * @return The venue, or null if there is no such event
+         * @throws IOException If the venue could not be opened
+         */
+        Venue open(String eventId, TimingWheel holdTimer) throws IOException;
+
+        /**
+         * Called before the venue of an event is closed (e.g. to take a
+         * snapshot of it). Does nothing by default.
+         *
+         * @param eventId The id of the event
+         * @param venue The venue of the event
+         * @throws IOException If the venue could not be saved
+         */
+        default void closing(final String eventId, final Venue venue)
+            throws IOException {
+        }
+    }
+
+    /**
+     * The venue of an event that is open, or being opened or closed.
+     */
+    private static final class Entry {
+
+        /**
+         * The id of the event.
+         */
+        private final String eventId;
+        /**
+         * Completed with the venue once it is open, or with null if there is
+         * no such event.
+         */
+        private final CompletableFuture<Venue> opened =
+            new CompletableFuture<>();
+        /**
+         * Set by the thread closing the venue.
+         */
+        private final AtomicBoolean closing = new AtomicBoolean(false);
+        /**
+         * Completed once the venue is closed and the entry removed.
+         */
+        private final CompletableFuture<Void> closed =
+            new CompletableFuture<>();
+        /**
+         * Closes the venue once it has been idle for too long. Set once,
+         * before the venue is opened.
+         */
+        private TimingWheel.Timeout<Entry> idleTimeout;
+
+        /**
+         * @param event The id of the event
+         */
+        private Entry(final String event) {
+            eventId = event;
+        }
+    }
+
+    /**
+     * Opens and closes the venues of events.
+     */
+    private final EventSource source;
+    /**
+     * How long a venue stays open without being looked up, in nanoseconds.
+     */
+    private final long idleNanos;
+    /**
+     * Runs the expiry handlers of the hold timer.
+     */
+    private final ExecutorService workers;
+    /**
+     * The timer shared by the holds and idle timeouts of every venue.
+     */
+    private final TimingWheel holdTimer;
+    /**
+     * Closes venues that have been idle for too long.
+     */
+    private final TimingWheel.ExpiryHandler<Entry> idleHandler =
+        this::closeIdleVenues;
+    /**
+     * Maps the id of every open event to its venue.
+     */
+    private final ConcurrentHashMap<String, Entry> venues =
+        new ConcurrentHashMap<>();
+
+    /**
+     * @param eventSource Opens and closes the venues of events
+     * @param idleTimeout How long a venue stays open without being looked up
+     * @param unit The unit of the idle timeout
+     * @param workerThreads The number of threads releasing expired holds
+     */
+    public VenueRegistry(final EventSource eventSource,
+        final long idleTimeout, final TimeUnit unit,
+        final int workerThreads) {
+        if (idleTimeout <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException(
+                "The idle timeout and number of worker threads must be "
+                    + "positive");
+        }
+        source = eventSource;
+        idleNanos = unit.toNanos(idleTimeout);
+        final AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable,
+                "venue-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        holdTimer = new TimingWheel(workers);
+    }
+
+    /**
+     * Looks up the venue of an event, opening it if it isn't open already.
+     *
+     * @param eventId The id of the event
+     * @return The venue, or null if there is no such event
+     * @throws IOException If the venue could not be opened
+     */
+    public Venue get(final String eventId) throws IOException {
+        while (true) {
+            Entry entry = venues.get(eventId);
+            if (entry == null) {
+                final Entry added = new Entry(eventId);
+                entry = venues.putIfAbsent(eventId, added);
+                if (entry == null) {
+                    entry = added;
+                    open(added);
+                }
+            }
+            final Venue venue = await(entry.opened);
+            if (venue == null) {
+                return null;
+            }
+            if (holdTimer.extend(entry.idleTimeout, idleNanos,
+                TimeUnit.NANOSECONDS)) {
+                return venue;
+            }
+            // The venue is being closed for being idle; open it again once
+            // it is closed
+            close(entry);
+        }
+    }
+
+    /**
+     * Opens the venue of an entry just added to the registry, and removes
+     * the entry again if there is no such event or it could not be opened.
+     *
+     * @param entry The entry for the venue
+     */
+    private void open(final Entry entry) {
+        final Venue venue;
+        try {
+            venue = source.open(entry.eventId, holdTimer);
+        } catch (IOException | RuntimeException | Error e) {
+            venues.remove(entry.eventId, entry);
+            entry.opened.completeExceptionally(e);
+            return;
+        }
+        if (venue == null) {
+            venues.remove(entry.eventId, entry);
+            entry.opened.complete(null);
+            return;
+        }
+        entry.idleTimeout = holdTimer.schedule(idleHandler, entry, idleNanos,
+            TimeUnit.NANOSECONDS);
+        entry.opened.complete(venue);
+    }
+
+    /**
+     * Waits for a venue to be opened or closed.
+     *
+     * @param future The result of opening or closing the venue
+     * @param <T> The type of the result
+     * @return The result
+     * @throws IOException If the venue could not be opened
+     */
+    private static <T> T await(final CompletableFuture<T> future)
+        throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param eventId The id of an event
+     * @return True if the event's venue is open, or being opened or closed
+     */
+    public boolean isOpen(final String eventId) {
+        return venues.containsKey(eventId);
+    }
+
+    /**
+     * @return The ids of the events whose venues are open, or being opened
+     *     or closed
+     */
+    public Set<String> getOpenEvents() {
+        return venues.keySet();
+    }
+
+    /**
+     * Closes the venue of an event, if it is open.
+     *
+     * @param eventId The id of the event
+     * @return True if the venue was open
+     * @throws IOException If the venue could not be closed
+     */
+    public boolean evict(final String eventId) throws IOException {
+        final Entry entry = venues.get(eventId);
+        return entry != null && close(entry);
+    }
+
+    /**
+     * Closes a venue once it is open, unless another thread already is. Either
+     * way, returns once the venue is closed.
+     *
+     * @param entry The entry for the venue
+     * @return True if this call closed the venue
+     * @throws IOException If the venue could not be closed
+     */
+    private boolean close(final Entry entry) throws IOException {
+        final Venue venue;
+        try {
+            venue = await(entry.opened);
+        } catch (IOException | RuntimeException e) {
+            // Never opened, and already removed
+            return false;
+        }
+        if (venue == null) {
+            return false;
+        }
+        if (!entry.closing.compareAndSet(false, true)) {
+            await(entry.closed);
+            return false;
+        }
+        holdTimer.cancel(entry.idleTimeout);
+        try {
+            try {
+                source.closing(entry.eventId, venue);
+            } finally {
+                venue.close();
+            }
+        } finally {
+            // Keep the key until the venue is fully closed, so it isn't
+            // opened again before then
+            venues.remove(entry.eventId, entry);
+            entry.closed.complete(null);
+        }
+        return true;
+    }
+
+    /**
+     * Closes the venues whose idle timeouts expired.
+     *
+     * @param timeouts The expired idle timeouts
+     */
+    private void closeIdleVenues(final List<TimingWheel.Timeout<Entry>>
+        timeouts) {
+        List<IOException> errors = new ArrayList<>();
+        for (TimingWheel.Timeout<Entry> timeout : timeouts) {
+            try {
+                close(timeout.getKey());
+            } catch (IOException e) {
+                errors.add(e);
+            }
+        }
+        if (!errors.isEmpty()) {
+            UncheckedIOException error =
+                new UncheckedIOException(errors.get(0));
+            for (int i = 1; i < errors.size(); i++) {
+                error.addSuppressed(errors.get(i));
+            }
+            throw error;
+        }
+    }
+
+    /**
+     * Closes every open venue, then stops the hold timer and worker threads.
+     *
+     * @throws IOException If a venue could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Entry entry : venues.values()) {
+            try {
+                close(entry);
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        holdTimer.close();
+        workers.shutdown();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -7,6 +7,11 @@ import java.util.Set;
 /**
  * Creates a SeatHold object for a venue where seats are represented as
  * Integers.
+ *
+ * <p>The set of seats a VenueSeatHold hands out is never modified: the seats
+ * it is created with are copied, and adding seats replaces the set with a
+ * new one. The venue's ledger, its feed of changes, and its clients can read
+ * the seats from other threads while the SeatHold is merged with another.
  */
 public class VenueSeatHold extends SeatHold<Integer> {
 
@@ -14,31 +19,41 @@ public class VenueSeatHold extends SeatHold<Integer> {
      * The email address of the person who registered this SeatHold.
      */
     private final String email;
+    /**
+     * The timeout that will release the SeatHold if it isn't reserved, or
+     * null if it has none. Only changed by the thread that has removed the
+     * SeatHold from its venue's index of holds.
+     */
+    private volatile TimingWheel.Timeout<VenueSeatHold> expiryTimeout;
 
     /**
      * @param id The id of the new VenueSeatHold Object
      * @param reservedSeats The list of seats reserved by this VenueSeatHold
-     *     Object
+     *     Object. They are copied into a {@link SeatRuns}, which stores them
+     *     as ranges of consecutive seats.
      * @param customerEmail The
      */
     public VenueSeatHold(final int id, final Set<Integer> reservedSeats,
         final String customerEmail) {
 
-        super(id, reservedSeats);
+        super(id, new SeatRuns(reservedSeats));
         email = customerEmail;
     }
 
     /**
-     * Reserves an additional set of seats to the SeatHold.
+     * Reserves an additional set of seats to the SeatHold. The seats are
+     * added to a copy of the current set, so a set returned by
+     * {@link #getReservedSeats} beforehand doesn't change.
      *
      * @param seats The set of additional seats to be added to the current
      *     SeatHold
      */
     public final void reserveAdditionalSeats(final Set<Integer> seats) {
-        // Get the current seats reserved
-        Set<Integer> reservedSeats = getReservedSeats();
-        // Add the new seats to the set (passed by reference).
+        // Copy the current seats reserved, and add the new seats to the copy.
+        // Ranges of seats are merged a range at a time.
+        SeatRuns reservedSeats = new SeatRuns(getReservedSeats());
         reservedSeats.addAll(seats);
+        setReservedSeats(reservedSeats);
     }
 
     /**
@@ -47,4 +62,21 @@ public class VenueSeatHold extends SeatHold<Integer> {
     public final String getEmail() {
         return email;
     }
+
+    /**
+     * @return The timeout that will release the SeatHold if it isn't
+     *     reserved, or null if it has none
+     */
+    final TimingWheel.Timeout<VenueSeatHold> getExpiryTimeout() {
+        return expiryTimeout;
+    }
+
+    /**
+     * @param timeout The timeout that will release the SeatHold if it isn't
+     *     reserved
+     */
+    final void setExpiryTimeout(
+        final TimingWheel.Timeout<VenueSeatHold> timeout) {
+        expiryTimeout = timeout;
+    }
 }
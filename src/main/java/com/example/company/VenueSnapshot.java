@@ -0,0 +1,490 @@
+package com.example.company;
+
+import com.example.company.struct.SeatingPreference;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable copy of the state of a venue: its layout, the seats that are
+ * free, and every hold (with its deadline) and reservation. A snapshot can be
+ * written to a compact binary file and read back, so a large venue can be
+ * restored without rebuilding its state one seat at a time.
+ *
+ * <p>The layout and the free seats are stored as bitmaps of 64-seat words,
+ * which are copied in bulk from the mapped file. The seats of every hold and
+ * reservation are stored as runs of consecutive seats.
+ *
+ * <p>If the venue is journaled, the snapshot also records how much of the
+ * journal it covers, so restoring it only replays the records appended after
+ * it was taken.
+ */
+public final class VenueSnapshot {
+
+    /**
+     * The first bytes of every snapshot file ("VSNP").
+     */
+    private static final int MAGIC = 0x56534E50;
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The layout of the venue.
+     */
+    private final VenueLayout layout;
+    /**
+     * The free seats, as a bitmap of 64-seat words.
+     */
+    private final long[] freeSeats;
+    /**
+     * The id to be assigned to the next SeatHold.
+     */
+    private final int nextSeatHoldId;
+    /**
+     * The amount of time in nanoseconds before held seats are released.
+     */
+    private final long seatHoldExpirationNanos;
+    /**
+     * The default seating order of the venue.
+     */
+    private final SeatingPreference seatingPreference;
+    /**
+     * The position in the venue's journal the snapshot covers, or 0 if the
+     * venue isn't journaled.
+     */
+    private final long journalPosition;
+    /**
+     * The seats held by customers.
+     */
+    private final List<Entry> holds;
+    /**
+     * The seats reserved by customers.
+     */
+    private final List<Entry> reservations;
+
+    /**
+     * The seats of a single hold or reservation.
+     */
+    static final class Entry {
+
+        /**
+         * The id of the SeatHold.
+         */
+        private final int id;
+        /**
+         * The email of the customer the seats belong to.
+         */
+        private final String email;
+        /**
+         * When the hold expires, in milliseconds since the epoch, or 0 for a
+         * reservation.
+         */
+        private final long expiresAtMillis;
+        /**
+         * The seats, as consecutive (first seat, length) pairs.
+         */
+        private final int[] runs;
+
+        /**
+         * @param seatHoldId The id of the SeatHold
+         * @param customerEmail The email of the customer the seats belong to
+         * @param expiresAt When the hold expires, in milliseconds since the
+         *     epoch, or 0 for a reservation
+         * @param seatRuns The seats, as consecutive (first seat, length) pairs
+         */
+        Entry(final int seatHoldId, final String customerEmail,
+            final long expiresAt, final int[] seatRuns) {
+            id = seatHoldId;
+            email = customerEmail;
+            expiresAtMillis = expiresAt;
+            runs = seatRuns;
+        }
+
+        /**
+         * @param seatHold A SeatHold
+         * @param expiresAt When the hold expires, in milliseconds since the
+         *     epoch, or 0 for a reservation
+         * @return An entry for the seats of the SeatHold
+         */
+        static Entry of(final VenueSeatHold seatHold, final long expiresAt) {
+            return new Entry(seatHold.getId(), seatHold.getEmail(), expiresAt,
+                toRuns(seatHold.getReservedSeats()));
+        }
+
+        /**
+         * @return A new SeatHold for the seats of the entry
+         */
+        VenueSeatHold toSeatHold() {
+            SeatRuns seats = new SeatRuns();
+            for (int i = 0; i < runs.length; i += 2) {
+                seats.addRange(runs[i], runs[i] + runs[i + 1]);
+            }
+            return new VenueSeatHold(id, seats, email);
+        }
+
+        /**
+         * @return When the hold expires, in milliseconds since the epoch, or 0
+         *     for a reservation
+         */
+        long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+
+    /**
+     * @param venueLayout The layout of the venue
+     * @param free The free seats, as a bitmap of 64-seat words
+     * @param nextId The id to be assigned to the next SeatHold
+     * @param expirationNanos The amount of time in nanoseconds before held
+     *     seats are released
+     * @param preference The default seating order of the venue
+     * @param position The position in the venue's journal the snapshot
+     *     covers
+     * @param heldSeats The seats held by customers
+     * @param reservedSeats The seats reserved by customers
+     */
+    VenueSnapshot(final VenueLayout venueLayout, final long[] free,
+        final int nextId, final long expirationNanos,
+        final SeatingPreference preference, final long position,
+        final List<Entry> heldSeats, final List<Entry> reservedSeats) {
+        layout = venueLayout;
+        freeSeats = free;
+        nextSeatHoldId = nextId;
+        seatHoldExpirationNanos = expirationNanos;
+        seatingPreference = preference;
+        journalPosition = position;
+        holds = heldSeats;
+        reservations = reservedSeats;
+    }
+
+    /**
+     * @param seats A collection of seats
+     * @return The seats, as consecutive (first seat, length) pairs in
+     *     ascending order
+     */
+    static int[] toRuns(final Collection<Integer> seats) {
+        if (seats instanceof SeatRuns) {
+            final SeatRuns ranges = (SeatRuns) seats;
+            int[] runs = new int[ranges.getRangeCount() * 2];
+            for (int range = 0; range < ranges.getRangeCount(); range++) {
+                runs[range * 2] = ranges.getRangeStart(range);
+                runs[range * 2 + 1] = ranges.getRangeEnd(range)
+                    - ranges.getRangeStart(range);
+            }
+            return runs;
+        }
+        int[] sorted = new int[seats.size()];
+        int count = 0;
+        for (int seat : seats) {
+            sorted[count++] = seat;
+        }
+        Arrays.sort(sorted);
+
+        int[] runs = new int[sorted.length * 2];
+        int used = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (used > 0 && runs[used - 2] + runs[used - 1] == sorted[i]) {
+                runs[used - 1]++;
+            } else {
+                runs[used++] = sorted[i];
+                runs[used++] = 1;
+            }
+        }
+        return Arrays.copyOf(runs, used);
+    }
+
+    /**
+     * @return The layout of the venue
+     */
+    public VenueLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return The number of seats that were free when the snapshot was taken
+     */
+    public int getNumSeatsAvailable() {
+        int count = 0;
+        for (long word : freeSeats) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return The position in the venue's journal the snapshot covers, or 0
+     *     if the venue isn't journaled
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+
+    /**
+     * @return A copy of the free seats, as a bitmap of 64-seat words
+     */
+    long[] copyFreeSeats() {
+        return freeSeats.clone();
+    }
+
+    /**
+     * @return The id to be assigned to the next SeatHold
+     */
+    int getNextSeatHoldId() {
+        return nextSeatHoldId;
+    }
+
+    /**
+     * @return The amount of time in nanoseconds before held seats are
+     *     released
+     */
+    long getSeatHoldExpirationNanos() {
+        return seatHoldExpirationNanos;
+    }
+
+    /**
+     * @return The default seating order of the venue
+     */
+    SeatingPreference getSeatingPreference() {
+        return seatingPreference;
+    }
+
+    /**
+     * @return The seats held by customers
+     */
+    List<Entry> getHolds() {
+        return holds;
+    }
+
+    /**
+     * @return The seats reserved by customers
+     */
+    List<Entry> getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing it atomically. A crash while
+     * writing leaves the previous file (if any) intact.
+     *
+     * @param file The file to write the snapshot to
+     * @throws IOException If the file could not be written
+     */
+    public void write(final Path file) throws IOException {
+        final int[] rowStarts = layout.copyRowStarts();
+        final int[] sectionStarts = layout.copySectionStarts();
+        final long[] layoutSeats = layout.copyAvailableSeats();
+
+        // The header, the counts of every array, and the scalar fields,
+        // followed by the arrays themselves
+        long size = 9L * Integer.BYTES + 2L * Long.BYTES + 1
+            + (long) (rowStarts.length + sectionStarts.length) * Integer.BYTES
+            + (long) (layoutSeats.length + freeSeats.length) * Long.BYTES;
+        for (Entry entry : holds) {
+            size += sizeOf(entry);
+        }
+        for (Entry entry : reservations) {
+            size += sizeOf(entry);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The snapshot is too large to map: " + size);
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            putInts(buffer, rowStarts);
+            putInts(buffer, sectionStarts);
+            putLongs(buffer, layoutSeats);
+            putLongs(buffer, freeSeats);
+            buffer.putInt(nextSeatHoldId).putLong(seatHoldExpirationNanos)
+                .put((byte) seatingPreference.ordinal())
+                .putLong(journalPosition);
+            putEntries(buffer, holds);
+            putEntries(buffer, reservations);
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}.
+     *
+     * @param file The file to read the snapshot from
+     * @return The snapshot
+     * @throws IOException If the file could not be read, or isn't a valid
+     *     snapshot
+     */
+    public static VenueSnapshot read(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The snapshot is too large to map: "
+                    + size);
+            }
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.remaining() < 2 * Integer.BYTES
+                || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a venue snapshot: " + file);
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: "
+                    + version);
+            }
+
+            final VenueLayout layout = VenueLayout.fromArrays(getInts(buffer),
+                getInts(buffer), getLongs(buffer));
+            final long[] free = getLongs(buffer);
+            final int nextId = buffer.getInt();
+            final long expirationNanos = buffer.getLong();
+            final SeatingPreference preference =
+                SeatingPreference.values()[buffer.get()];
+            final long position = buffer.getLong();
+            final List<Entry> holds = getEntries(buffer, layout);
+            final List<Entry> reservations = getEntries(buffer, layout);
+            if (free.length != layout.copyAvailableSeats().length) {
+                throw new IOException("Malformed snapshot: " + file);
+            }
+            return new VenueSnapshot(layout, free, nextId, expirationNanos,
+                preference, position, holds, reservations);
+        } catch (BufferUnderflowException | IllegalArgumentException
+            | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Malformed snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * @param entry A hold or reservation
+     * @return The number of bytes it takes up in a snapshot file
+     */
+    private static long sizeOf(final Entry entry) {
+        return Integer.BYTES + Long.BYTES + Short.BYTES
+            + entry.email.getBytes(StandardCharsets.UTF_8).length
+            + Integer.BYTES + (long) entry.runs.length * Integer.BYTES;
+    }
+
+    /**
+     * @param buffer The buffer being written
+     * @param values The values to write, after their count
+     */
+    private static void putInts(final ByteBuffer buffer, final int[] values) {
+        buffer.putInt(values.length);
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    /**
+     * @param buffer The buffer being written
+     * @param values The values to write, after their count
+     */
+    private static void putLongs(final ByteBuffer buffer,
+        final long[] values) {
+        buffer.putInt(values.length);
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+    }
+
+    /**
+     * @param buffer The buffer being written
+     * @param entries The holds or reservations to write, after their count
+     */
+    private static void putEntries(final ByteBuffer buffer,
+        final List<Entry> entries) {
+        buffer.putInt(entries.size());
+        for (Entry entry : entries) {
+            final byte[] email = entry.email.getBytes(StandardCharsets.UTF_8);
+            if (email.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Email is too long");
+            }
+            buffer.putInt(entry.id).putLong(entry.expiresAtMillis)
+                .putShort((short) email.length).put(email);
+            putInts(buffer, entry.runs);
+        }
+    }
+
+    /**
+     * Reads the count of an array, checking it against the bytes left, so a
+     * corrupt count can't allocate more than the snapshot holds.
+     *
+     * @param buffer The buffer being read
+     * @param minBytes The fewest bytes each element of the array takes
+     * @return The count read
+     */
+    private static int getCount(final ByteBuffer buffer, final int minBytes) {
+        final int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / minBytes) {
+            throw new IllegalArgumentException("Count out of range: "
+                + count);
+        }
+        return count;
+    }
+
+    /**
+     * @param buffer The buffer being read
+     * @return The values read, after their count
+     */
+    private static int[] getInts(final ByteBuffer buffer) {
+        int[] values = new int[getCount(buffer, Integer.BYTES)];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * @param buffer The buffer being read
+     * @return The values read, after their count
+     */
+    private static long[] getLongs(final ByteBuffer buffer) {
+        long[] values = new long[getCount(buffer, Long.BYTES)];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    /**
+     * @param buffer The buffer being read
+     * @param layout The layout of the venue, to check seats against
+     * @return The holds or reservations read, after their count
+     */
+    private static List<Entry> getEntries(final ByteBuffer buffer,
+        final VenueLayout layout) {
+        Entry[] entries = new Entry[getCount(buffer, Integer.BYTES
+            + Long.BYTES + Short.BYTES + Integer.BYTES)];
+        for (int i = 0; i < entries.length; i++) {
+            final int id = buffer.getInt();
+            final long expiresAt = buffer.getLong();
+            byte[] email = new byte[buffer.getShort()];
+            buffer.get(email);
+            final int[] runs = getInts(buffer);
+            for (int run = 0; run < runs.length; run += 2) {
+                if (runs[run] < 0 || runs[run + 1] < 0 || runs[run]
+                    > layout.getTotalSeats() - runs[run + 1]) {
+                    throw new IllegalArgumentException("Seats out of range");
+                }
+            }
+            entries[i] = new Entry(id,
+                new String(email, StandardCharsets.UTF_8), expiresAt, runs);
+        }
+        return Arrays.asList(entries);
+    }
+}
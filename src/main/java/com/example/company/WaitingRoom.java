@@ -0,0 +1,349 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.TicketService;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A virtual waiting room in front of a TicketService. At most a fixed number
+ * of holds run against the service at once; the callers beyond that wait in
+ * a bounded first-in-first-out queue, and are turned away right away once the
+ * queue is full.
+ *
+ * <p>Every caller takes a numbered {@link Ticket}. Ticket n may start its hold
+ * once n is less than the number of holds that have finished plus the number
+ * allowed to run at once, so callers are let in in the order they arrived
+ * without a lock: entering the room is a CAS on the ticket counter, and
+ * finishing a hold is an increment of the finished counter that wakes up
+ * the one caller it lets in.
+ *
+ * <p>Reservations and seat counts are passed straight through to the
+ * service, since they don't scan the venue.
+ */
+public class WaitingRoom implements TicketService {
+
+    /**
+     * The weight of the previous average in the average hold time, out of
+     * 8.
+     */
+    private static final int AVERAGE_WEIGHT = 7;
+
+    /**
+     * The service holds are run against.
+     */
+    private final TicketService service;
+    /**
+     * The number of holds that may run at once.
+     */
+    private final int maxActive;
+    /**
+     * The number of callers that may wait for their turn.
+     */
+    private final int queueCapacity;
+    /**
+     * The number of tickets handed out.
+     */
+    private final AtomicLong ticketsIssued = new AtomicLong();
+    /**
+     * The number of tickets whose holds have finished (or were given up).
+     */
+    private final AtomicLong ticketsFinished = new AtomicLong();
+    /**
+     * The tickets waiting for their turn, in the slot of their number (modulo
+     * the capacity of the queue).
+     */
+    private final AtomicReferenceArray<Ticket> waiters;
+    /**
+     * The number of callers turned away because the queue was full.
+     */
+    private final LongAdder rejected = new LongAdder();
+    /**
+     * The recent average time a hold takes, in nanoseconds. Updated without
+     * synchronization, since it is only used for estimates.
+     */
+    private volatile long averageHoldNanos;
+
+    /**
+     * A caller's place in the waiting room.
+     */
+    public final class Ticket {
+
+        /**
+         * The number of the ticket, in order of arrival.
+         */
+        private final long number;
+        /**
+         * True once the caller has left the room.
+         */
+        private final AtomicBoolean left = new AtomicBoolean(false);
+        /**
+         * When the caller's turn started (in System.nanoTime), or 0 if they
+         * haven't waited for it yet.
+         */
+        private long admittedAt;
+        /**
+         * The thread waiting for the ticket's turn, set before the ticket is
+         * put in its slot.
+         */
+        private Thread waiter;
+
+        /**
+         * @param ticketNumber The number of the ticket
+         */
+        private Ticket(final long ticketNumber) {
+            number = ticketNumber;
+        }
+
+        /**
+         * @return The number of the ticket, in order of arrival
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return The number of callers ahead of this one that have to start
+         *     their holds first, plus one, or 0 if it is this caller's turn
+         */
+        public long getPosition() {
+            return Math.max(0, number - admittedTickets() + 1);
+        }
+
+        /**
+         * @return True if it is this caller's turn
+         */
+        public boolean isAdmitted() {
+            return number < admittedTickets();
+        }
+
+        /**
+         * @param unit The unit to return the wait in
+         * @return The estimated time until it is this caller's turn, based on
+         *     how long recent holds took
+         */
+        public long getEstimatedWait(final TimeUnit unit) {
+            return unit.convert(getPosition() * averageHoldNanos / maxActive,
+                TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param ticketService The service to run holds against
+     * @param maxActiveHolds The number of holds that may run at once
+     * @param maxWaiting The number of callers that may wait for their turn
+     */
+    public WaitingRoom(final TicketService ticketService,
+        final int maxActiveHolds, final int maxWaiting) {
+        if (maxActiveHolds <= 0 || maxWaiting <= 0) {
+            throw new IllegalArgumentException(
+                "The number of active holds and waiting callers must be "
+                    + "positive");
+        }
+        service = ticketService;
+        maxActive = maxActiveHolds;
+        queueCapacity = maxWaiting;
+        waiters = new AtomicReferenceArray<>(maxWaiting);
+    }
+
+    /**
+     * @return The number of tickets whose turn has come
+     */
+    private long admittedTickets() {
+        return ticketsFinished.get() + maxActive;
+    }
+
+    /**
+     * Takes a ticket, without waiting for its turn.
+     *
+     * @return The ticket, which must be passed to {@link #leave} once the
+     *     caller is done with it
+     * @throws RejectedExecutionException If the queue is full
+     */
+    public final Ticket enter() {
+        while (true) {
+            final long issued = ticketsIssued.get();
+            if (issued - admittedTickets() >= queueCapacity) {
+                rejected.increment();
+                throw new RejectedExecutionException(
+                    "The waiting room is full");
+            }
+            if (ticketsIssued.compareAndSet(issued, issued + 1)) {
+                return new Ticket(issued);
+            }
+        }
+    }
+
+    /**
+     * Waits until it is a ticket's turn.
+     *
+     * <p>Note: Waiting is not interruptible, since the ticket would still
+     * have to be let in before it could leave. The interrupt status of the
+     * thread is restored once it returns.
+     *
+     * @param ticket The ticket
+     */
+    public final void await(final Ticket ticket) {
+        if (!ticket.isAdmitted() && publish(ticket)) {
+            final int slot = (int) (ticket.number % queueCapacity);
+            boolean interrupted = false;
+            while (!ticket.isAdmitted()) {
+                LockSupport.park(this);
+                interrupted |= Thread.interrupted();
+            }
+            waiters.compareAndSet(slot, ticket, null);
+            if (interrupted) {
+                ticket.waiter.interrupt();
+            }
+        }
+        ticket.admittedAt = System.nanoTime();
+    }
+
+    /**
+     * Puts a ticket in its slot, so the caller that lets it in can wake up
+     * its thread. The ticket's turn must be checked again afterwards, so the
+     * caller that lets it in either sees it or is seen.
+     *
+     * <p>Note: The slot is shared by every ticket a full queue apart, and a
+     * ticket is only issued once the ticket a full queue before it has been
+     * let in. So a ticket finding an earlier one in its slot may replace it
+     * (waking it up, in case it hasn't been woken yet), and a ticket finding
+     * a later one there has already been let in, and must not replace it.
+     *
+     * @param ticket A ticket whose turn hasn't come yet
+     * @return True if the ticket was put in its slot, false if its turn has
+     *     come meanwhile
+     */
+    private boolean publish(final Ticket ticket) {
+        final int slot = (int) (ticket.number % queueCapacity);
+        ticket.waiter = Thread.currentThread();
+        while (true) {
+            final Ticket current = waiters.get(slot);
+            if (current != null && current.number > ticket.number) {
+                return false;
+            }
+            if (waiters.compareAndSet(slot, current, ticket)) {
+                if (current != null) {
+                    LockSupport.unpark(current.waiter);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives up a ticket, letting the next caller in. Does nothing if the
+     * ticket was already given up.
+     *
+     * <p>Note: Tickets are let in strictly by number, so a ticket given up
+     * before its turn waits for its turn first.
+     *
+     * @param ticket The ticket
+     */
+    public final void leave(final Ticket ticket) {
+        if (!ticket.left.compareAndSet(false, true)) {
+            return;
+        }
+        if (!ticket.isAdmitted()) {
+            await(ticket);
+        } else if (ticket.admittedAt != 0) {
+            final long elapsed = System.nanoTime() - ticket.admittedAt;
+            averageHoldNanos =
+                (averageHoldNanos * AVERAGE_WEIGHT + elapsed)
+                    / (AVERAGE_WEIGHT + 1);
+        }
+        final long letIn = ticketsFinished.incrementAndGet() + maxActive - 1;
+        if (letIn < ticketsIssued.get()) {
+            final Ticket waiter =
+                waiters.get((int) (letIn % queueCapacity));
+            if (waiter != null && waiter.number == letIn) {
+                LockSupport.unpark(waiter.waiter);
+            }
+        }
+    }
+
+    @Override
+    public final int numSeatsAvailable() {
+        return service.numSeatsAvailable();
+    }
+
+    /**
+     * Find and hold the best available seats for a customer, once it is their
+     * turn. Requests that can't succeed because the venue doesn't have enough
+     * free seats fail without waiting.
+     *
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats
+     * @throws RejectedExecutionException If the queue is full
+     */
+    @Override
+    public final SeatHold<?> findAndHoldSeats(final int numSeats,
+        final String customerEmail) {
+        if (service.numSeatsAvailable() < numSeats) {
+            return null;
+        }
+        return findAndHoldSeats(enter(), numSeats, customerEmail);
+    }
+
+    /**
+     * Find and hold the best available seats for a customer holding a ticket,
+     * once it is their turn. The ticket is given up afterwards.
+     *
+     * @param ticket The customer's ticket
+     * @param numSeats The number of seats to hold
+     * @param customerEmail The email of the customer trying to hold the
+     *     seats
+     * @return The SeatHold containing the seats that were reserved, or null if
+     *     it was unable to reserve any seats
+     * @throws IllegalStateException If the ticket was already given up
+     */
+    public final SeatHold<?> findAndHoldSeats(final Ticket ticket,
+        final int numSeats, final String customerEmail) {
+        if (ticket.left.get()) {
+            throw new IllegalStateException("The ticket has already been used");
+        }
+        try {
+            await(ticket);
+            return service.findAndHoldSeats(numSeats, customerEmail);
+        } finally {
+            leave(ticket);
+        }
+    }
+
+    @Override
+    public final String reserveSeats(final int seatHoldId,
+        final String customerEmail) {
+        return service.reserveSeats(seatHoldId, customerEmail);
+    }
+
+    /**
+     * @return The number of callers waiting for their turn
+     */
+    public final long getQueueLength() {
+        return Math.max(0, ticketsIssued.get() - admittedTickets());
+    }
+
+    /**
+     * @return The number of holds running against the service
+     */
+    public final long getActiveCount() {
+        final long finished = ticketsFinished.get();
+        return Math.min(ticketsIssued.get(), finished + maxActive) - finished;
+    }
+
+    /**
+     * @return The number of callers turned away because the queue was full
+     */
+    public final long getRejectedCount() {
+        return rejected.sum();
+    }
+}
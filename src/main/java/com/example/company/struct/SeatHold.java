@@ -20,9 +20,10 @@ public abstract class SeatHold<T> {
     private final int id;
 
     /**
-     * The list of the seats reserved.
+     * The list of the seats reserved. Volatile, since a SeatHold can be read
+     * by other threads while its seats are replaced.
      */
-    private Set<T> reservedSeats;
+    private volatile Set<T> reservedSeats;
 
     /**
      * @param seatHoldId The id of the new SeatHold Object
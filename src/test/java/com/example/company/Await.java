@@ -0,0 +1,45 @@
+package com.example.company;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Waits in tests for something another thread does, by polling for its
+ * outcome rather than sleeping for a fixed time.
+ */
+final class Await {
+
+    /**
+     * How long to wait before failing, in seconds. Generous, since it is only
+     * reached when a test is failing anyway.
+     */
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private Await() {
+    }
+
+    /**
+     * Polls a condition until it holds, failing the test if it doesn't
+     * within the timeout (or the thread is interrupted).
+     *
+     * @param message The failure message
+     * @param condition The condition
+     */
+    static void until(final String message, final BooleanSupplier condition) {
+        final long deadline =
+            System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                fail(message);
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                fail("Thread interrupted");
+            }
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package com.example.company;
 
 import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
 
 import org.junit.Test;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.*;
@@ -119,4 +128,257 @@ public class ConcurrentTests {
             }
         }
     }
+
+    @Test
+    public void testShardedVenueHoldsEverySeatExactlyOnce() {
+        // Create a venue with 400 seats in 10 sections, and have every thread
+        // hold seats until the venue sells out
+
+        Venue venue = new Venue(VenueLayout.rectangular(20, 20)
+            .withSectionsOf(2));
+
+        // Every seat held by any thread
+        Set<Integer> heldSeats = ConcurrentHashMap.newKeySet();
+        // True if any seat was held by more than one thread
+        AtomicBoolean seatHeldTwice = new AtomicBoolean(false);
+
+        Thread[] threads = new Thread[N_THREADS];
+        for (int i = 0; i < N_THREADS; i++) {
+            final int T_NUM = i;
+            Runnable runnable =
+                () -> {
+                    int holdNumber = 0;
+                    SeatHold<Integer> result;
+                    // Hold 3 seats at a time until a hold fails
+                    while ((result = venue.findAndHoldSeats(3,
+                        T_NUM + "-" + holdNumber++ + "@email.com",
+                        SeatingPreference.NONE)) != null) {
+                        for (Integer seat : result.getReservedSeats()) {
+                            if (!heldSeats.add(seat)) {
+                                seatHeldTwice.set(true);
+                            }
+                        }
+                    }
+                };
+            threads[i] = new Thread(runnable);
+            threads[i].start();
+        }
+
+        // Wait for all threads to finish
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                fail("Thread died");
+            }
+        }
+
+        // Holds are admitted before they claim seats, so concurrent holds
+        // can't make each other fail near the end of the sale
+        assertNull("Expected no holds to be left for a single thread",
+            venue.findAndHoldSeats(3, "last@email.com"));
+        assertFalse("Expected every seat to be held only once",
+            seatHeldTwice.get());
+        // 400 is not a multiple of 3, so one seat can never be held
+        assertEquals("Expected every hold to spill over until the venue "
+            + "was full", 399, heldSeats.size());
+        assertEquals(1, venue.numSeatsAvailable());
+    }
+
+    @Test
+    public void testOversubscribedHoldsNeverDisturbEachOther() {
+        // Every thread asks for more seats than half the venue, over and
+        // over. Failed requests are turned away before they claim any seats,
+        // so exactly the holds that fit succeed.
+        final int seatsPerHold = 7;
+        Venue venue = new Venue(10);
+
+        Set<Integer> heldSeats = ConcurrentHashMap.newKeySet();
+        AtomicBoolean seatHeldTwice = new AtomicBoolean(false);
+
+        Thread[] threads = new Thread[N_THREADS];
+        for (int i = 0; i < N_THREADS; i++) {
+            final int T_NUM = i;
+            threads[i] = new Thread(() -> {
+                for (int hold = 0; hold < 1000; hold++) {
+                    SeatHold<Integer> result = venue.findAndHoldSeats(
+                        seatsPerHold, T_NUM + "-" + hold + "@email.com",
+                        SeatingPreference.CLOSEST_TO_FRONT);
+                    if (result != null) {
+                        for (Integer seat : result.getReservedSeats()) {
+                            if (!heldSeats.add(seat)) {
+                                seatHeldTwice.set(true);
+                            }
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // Wait for all threads to finish
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                fail("Thread died");
+            }
+        }
+
+        assertFalse("Expected every seat to be held only once",
+            seatHeldTwice.get());
+        assertEquals("Expected every hold that fits to succeed",
+            100 / seatsPerHold * seatsPerHold, heldSeats.size());
+        assertEquals(100 % seatsPerHold, venue.numSeatsAvailable());
+    }
+
+    @Test(timeout = 60_000)
+    public void testAdmittedHoldsAlwaysFinish() {
+        // Threads keep holding and cancelling groups of seats in a small
+        // venue, so the runs a hold finds are often claimed or released
+        // under it. Every admitted hold must still get its seats (or give
+        // up), rather than retrying forever.
+        Venue venue = new Venue(8, 1);
+        venue.setMergingHolds(false);
+        AtomicBoolean seatHeldTwice = new AtomicBoolean(false);
+        Set<Integer> heldSeats = ConcurrentHashMap.newKeySet();
+
+        Thread[] threads = new Thread[N_THREADS];
+        for (int i = 0; i < N_THREADS; i++) {
+            final int T_NUM = i;
+            threads[i] = new Thread(() -> {
+                for (int hold = 0; hold < 20_000; hold++) {
+                    String email = T_NUM + "-" + hold + "@email.com";
+                    SeatHold<Integer> result = venue.findAndHoldSeats(
+                        1 + hold % 3, email,
+                        SeatingPreference.CLOSEST_TOGETHER);
+                    if (result != null) {
+                        for (Integer seat : result.getReservedSeats()) {
+                            if (!heldSeats.add(seat)) {
+                                seatHeldTwice.set(true);
+                            }
+                        }
+                        heldSeats.removeAll(result.getReservedSeats());
+                        venue.cancelSeatHold(result.getId(), email);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // Wait for all threads to finish
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                fail("Thread died");
+            }
+        }
+
+        assertFalse("Expected every seat to be held only once at a time",
+            seatHeldTwice.get());
+        assertEquals(8, venue.numSeatsAvailable());
+        assertNotNull(venue.findAndHoldSeats(8, "last@email.com",
+            SeatingPreference.CLOSEST_TOGETHER));
+    }
+
+    @Test
+    public void testSequencedServiceNeverFailsWhileSeatsRemain() {
+        // Each thread holds exactly its share of the venue's seats. Since the
+        // requests are applied one at a time, none of them can make another
+        // fail, so every hold should succeed.
+        final int seatsPerHold = 5;
+        final int holdsPerThread = 10;
+        Venue venue = new Venue(seatsPerHold, N_THREADS * holdsPerThread);
+
+        Set<Integer> heldSeats = ConcurrentHashMap.newKeySet();
+        AtomicBoolean holdFailed = new AtomicBoolean(false);
+
+        try (SequencedTicketService service =
+            new SequencedTicketService(venue, 16)) {
+            Thread[] threads = new Thread[N_THREADS];
+            for (int i = 0; i < N_THREADS; i++) {
+                final int T_NUM = i;
+                threads[i] = new Thread(() -> {
+                    for (int hold = 0; hold < holdsPerThread; hold++) {
+                        SeatHold<Integer> result = service
+                            .findAndHoldSeatsAsync(seatsPerHold,
+                                T_NUM + "-" + hold + "@email.com",
+                                SeatingPreference.CLOSEST_TOGETHER)
+                            .join();
+                        if (result == null) {
+                            holdFailed.set(true);
+                        } else {
+                            heldSeats.addAll(result.getReservedSeats());
+                        }
+                    }
+                });
+                threads[i].start();
+            }
+
+            // Wait for all threads to finish
+            for (Thread t : threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    fail("Thread died");
+                }
+            }
+
+            assertFalse("Expected every hold to succeed", holdFailed.get());
+            assertEquals("Expected every seat to be held once",
+                seatsPerHold * N_THREADS * holdsPerThread, heldSeats.size());
+            assertEquals(0, service.numSeatsAvailable());
+            assertNull("Expected a hold to fail once the venue is full",
+                service.findAndHoldSeats(1, "late@email.com"));
+        }
+    }
+
+    @Test
+    public void testRequestsRacingCloseAreAlwaysCompleted()
+        throws InterruptedException, ExecutionException {
+        // Threads keep submitting holds while the service is closed under
+        // them. Every request that was submitted must be applied or fail,
+        // never be left waiting.
+        for (int run = 0; run < 20; run++) {
+            SequencedTicketService service =
+                new SequencedTicketService(new Venue(100));
+            List<CompletableFuture<SeatHold<Integer>>> holds =
+                new CopyOnWriteArrayList<>();
+            Thread[] threads = new Thread[N_THREADS];
+            for (int i = 0; i < N_THREADS; i++) {
+                final int T_NUM = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int hold = 0; hold < 1000; hold++) {
+                            holds.add(service.findAndHoldSeatsAsync(1,
+                                T_NUM + "-" + hold + "@email.com"));
+                        }
+                    } catch (IllegalStateException e) {
+                        // Submitted after the service was closed
+                    }
+                });
+                threads[i].start();
+            }
+            service.close();
+            for (Thread t : threads) {
+                t.join();
+            }
+
+            for (CompletableFuture<SeatHold<Integer>> hold : holds) {
+                try {
+                    hold.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue("Expected the hold to fail as closed",
+                        e.getCause() instanceof IllegalStateException);
+                } catch (TimeoutException e) {
+                    fail("Expected every submitted request to be completed");
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package com.example.company;
+
+import com.example.company.FlashSaleReport.FailureReason;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FlashSaleSimulatorTests {
+
+    @Test
+    public void testSimulatorSellsOutVenue() throws Exception {
+        Venue venue = new Venue(10);
+        venue.setSeatHoldExpiration(50, TimeUnit.MILLISECONDS);
+        FlashSaleSimulator simulator = new FlashSaleSimulator(venue);
+        simulator.setCustomers(500);
+        simulator.setThinkTime(5, TimeUnit.MILLISECONDS);
+        simulator.setAttempts(5, 20, TimeUnit.MILLISECONDS);
+        simulator.setThreads(32);
+        for (SeatingPreference preference : SeatingPreference.values()) {
+            simulator.setPreferenceWeight(preference, 1);
+        }
+
+        FlashSaleReport report = simulator.run();
+        assertEquals(500, report.getCustomers());
+        assertTrue("Expected the venue to sell out",
+            report.getTimeToSellOut(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(report.getFailures(FailureReason.SOLD_OUT) > 0);
+        assertEquals(0, report.getFailures(FailureReason.ERROR));
+        assertTrue(report.getAbandonedHolds() > 0);
+
+        // Every attempt is accounted for
+        assertEquals(report.getHoldAttempts(), report.getHolds()
+            + report.getFailures(FailureReason.SOLD_OUT)
+            + report.getFailures(FailureReason.NOT_ENOUGH_SEATS)
+            + report.getFailures(FailureReason.HOLD_REJECTED));
+        assertEquals(report.getHolds(), report.getReservations()
+            + report.getAbandonedHolds()
+            + report.getFailures(FailureReason.RESERVATION_REJECTED));
+        assertEquals(venue.seatMap().getNumReservedSeats(),
+            report.getSeatsReserved());
+        assertTrue(report.getHoldLatency().getP999Nanos()
+            >= report.getHoldLatency().getP50Nanos());
+        venue.close();
+    }
+
+    @Test
+    public void testSimulatorPacesArrivalsAndPassesPreferences()
+        throws Exception {
+        Venue venue = new Venue(10);
+        try (SequencedTicketService service =
+                 new SequencedTicketService(venue)) {
+            FlashSaleSimulator simulator = new FlashSaleSimulator(service);
+            simulator.setCustomers(20);
+            simulator.setArrivalRate(200);
+            simulator.setGroupSizeWeights(1);
+            simulator.setPreferenceWeight(SeatingPreference.CLOSEST_TO_FRONT,
+                1);
+            simulator.setAbandonRate(0);
+            simulator.setThinkTime(0, TimeUnit.MILLISECONDS);
+
+            FlashSaleReport report = simulator.run();
+            assertEquals(20, report.getHolds());
+            assertEquals(20, report.getReservations());
+            assertEquals(20, report.getSeatsReserved());
+            assertEquals(20, report.getHoldLatency().getCount());
+            assertEquals(0, report.getCustomersGaveUp());
+            assertEquals(-1, report.getTimeToSellOut(TimeUnit.NANOSECONDS));
+            for (FailureReason reason : FailureReason.values()) {
+                assertEquals(0, report.getFailures(reason));
+            }
+            assertTrue("Expected customers to arrive over time",
+                report.getDuration(TimeUnit.MILLISECONDS) > 0);
+            assertTrue(report.getHoldsPerSecond() > 0);
+        }
+
+        // Every customer sat in one of the 2 front rows
+        SeatMap map = venue.seatMap();
+        for (int seat = 80; seat < 100; seat++) {
+            assertEquals(SeatState.RESERVED, map.getState(seat));
+        }
+        venue.close();
+    }
+}
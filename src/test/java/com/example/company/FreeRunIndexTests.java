@@ -0,0 +1,132 @@
+package com.example.company;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FreeRunIndexTests {
+
+    /**
+     * The first seat of every row, followed by the number of seats. Includes
+     * an empty row, and a row of a single seat.
+     */
+    private static final int[] ROW_STARTS = {0, 10, 25, 25, 26, 40};
+
+    /**
+     * @param free The free seats
+     * @return The runs of the free seats, as "start+length" strings
+     */
+    private static Set<String> runsOf(final BitSet free) {
+        Set<String> runs = new HashSet<>();
+        for (int row = 0; row < ROW_STARTS.length - 1; row++) {
+            final int rowEnd = ROW_STARTS[row + 1];
+            int start = free.nextSetBit(ROW_STARTS[row]);
+            while (start != -1 && start < rowEnd) {
+                final int end = Math.min(rowEnd, free.nextClearBit(start));
+                runs.add(start + "+" + (end - start));
+                start = free.nextSetBit(end);
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Checks that the index holds exactly the runs of the free seats.
+     *
+     * @param index The index
+     * @param free The free seats
+     */
+    private static void assertRuns(final FreeRunIndex index,
+        final BitSet free) {
+        final Set<String> expected = runsOf(free);
+        Set<String> actual = new HashSet<>();
+        final int[] runs = index.largestRuns(Integer.MAX_VALUE);
+        for (int i = 0; i < runs.length; i += 2) {
+            assertTrue("Expected every run to be listed once",
+                actual.add(runs[i] + "+" + runs[i + 1]));
+            if (i > 0) {
+                assertTrue("Expected the runs in descending order of length",
+                    runs[i + 1] <= runs[i - 1]);
+            }
+        }
+        assertEquals(expected, actual);
+
+        for (int numSeats = 1; numSeats <= 16; numSeats++) {
+            int bestFit = -1;
+            for (String run : expected) {
+                final int length =
+                    Integer.parseInt(run.substring(run.indexOf('+') + 1));
+                if (length >= numSeats && (bestFit == -1 || length < bestFit)) {
+                    bestFit = length;
+                }
+            }
+            assertEquals(bestFit, index.bestFitLength(numSeats));
+            if (bestFit != -1) {
+                assertTrue(expected.contains(
+                    index.runOfLength(bestFit) + "+" + bestFit));
+            }
+        }
+    }
+
+    @Test
+    public void testRunsFollowClaimsAndReleases() {
+        BitSet free = new BitSet();
+        free.set(0, 40);
+        FreeRunIndex index = new FreeRunIndex(ROW_STARTS, free);
+        assertRuns(index, free);
+
+        // Claim from the ends of runs and from their middle
+        for (int seat : new int[]{0, 9, 5, 25, 30, 39, 31, 29}) {
+            index.claim(seat);
+            free.clear(seat);
+            assertRuns(index, free);
+        }
+        // Release next to runs, and between two runs
+        for (int seat : new int[]{0, 9, 30, 39, 5}) {
+            index.release(seat);
+            free.set(seat);
+            assertRuns(index, free);
+        }
+        assertEquals(-1, index.bestFitLength(41));
+    }
+
+    @Test
+    public void testRunsMatchTheFreeSeatsAfterRandomChanges() {
+        Random random = new Random(42);
+        BitSet free = new BitSet();
+        for (int seat = 0; seat < 40; seat++) {
+            if (random.nextBoolean()) {
+                free.set(seat);
+            }
+        }
+        FreeRunIndex index = new FreeRunIndex(ROW_STARTS, free);
+        assertRuns(index, free);
+
+        for (int i = 0; i < 10000; i++) {
+            final int seat = random.nextInt(40);
+            switch (random.nextInt(3)) {
+                case 0:
+                    // Recording a seat in the state it already has does
+                    // nothing
+                    index.claim(seat);
+                    free.clear(seat);
+                    break;
+                case 1:
+                    index.release(seat);
+                    free.set(seat);
+                    break;
+                default:
+                    final int to = Math.min(40, seat + 1 + random.nextInt(12));
+                    index.releaseRange(seat, to);
+                    free.set(seat, to);
+                    break;
+            }
+            assertRuns(index, free);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HoldJournalTests {
+
+    @Test
+    public void testVenueIsRebuiltFromItsJournal() throws IOException {
+        Path file = Files.createTempFile("holds", ".journal");
+        try {
+            SeatHold held;
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(VenueLayout.square(10), journal)) {
+                venue.setSeatHoldExpiration(1, TimeUnit.HOURS);
+                held = venue.findAndHoldSeats(3, "a@example.com");
+                SeatHold reserved = venue.findAndHoldSeats(4,
+                    "b@example.com");
+                assertNotNull(venue.reserveSeats(reserved.getId(),
+                    "b@example.com"));
+                // Merged into a's existing hold
+                venue.findAndHoldSeats(2, "a@example.com");
+                assertEquals(91, venue.numSeatsAvailable());
+            }
+
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(VenueLayout.square(10), journal)) {
+                assertEquals(91, venue.numSeatsAvailable());
+                // Reservations are only made once
+                assertNull(venue.reserveSeats(held.getId(), "b@example.com"));
+                assertNotNull(venue.reserveSeats(held.getId(),
+                    "a@example.com"));
+                // New holds never reuse an id from the journal
+                SeatHold next = venue.findAndHoldSeats(1, "c@example.com");
+                assertTrue(next.getId() > held.getId());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testHoldsExpiredWhileDownAreReleased() throws IOException {
+        Path file = Files.createTempFile("holds", ".journal");
+        try {
+            try (HoldJournal journal = HoldJournal.open(file,
+                HoldJournal.Durability.ASYNC)) {
+                journal.appendHold(0, "a@example.com",
+                    System.currentTimeMillis() - 1000, List.of(0, 1, 2));
+                journal.appendHold(1, "b@example.com",
+                    System.currentTimeMillis() + 60000, List.of(3, 4));
+            }
+
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.ASYNC);
+                 Venue venue = new Venue(VenueLayout.square(10), journal)) {
+                assertEquals(95, venue.numSeatsAvailable());
+                Await.until("Expected the expired hold to be released",
+                    () -> venue.numSeatsAvailable() == 98);
+                assertNull(venue.reserveSeats(0, "a@example.com"));
+            }
+
+            // The expiration was journaled too
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.ASYNC);
+                 Venue venue = new Venue(VenueLayout.square(10), journal)) {
+                assertEquals(98, venue.numSeatsAvailable());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheJournal() throws IOException {
+        Path file = Files.createTempFile("holds", ".journal");
+        try {
+            final long end;
+            try (HoldJournal journal = HoldJournal.open(file,
+                HoldJournal.Durability.FSYNC_PER_BATCH)) {
+                end = journal.appendHold(0, "a@example.com",
+                    System.currentTimeMillis() + 60000, List.of(0, 1));
+                journal.appendHold(1, "b@example.com",
+                    System.currentTimeMillis() + 60000, List.of(2, 3));
+            }
+
+            // Corrupt the last byte of the second record, as if the process
+            // died while writing it
+            try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xff}),
+                    end + 8 + 1 + 4 + 8 + 2 + "b@example.com".length() + 4
+                        + 4 + 3);
+            }
+
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(VenueLayout.square(10), journal)) {
+                assertEquals(98, venue.numSeatsAvailable());
+                assertNull(venue.reserveSeats(1, "b@example.com"));
+                assertNotNull(venue.reserveSeats(0, "a@example.com"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSeatsHeldAgainAreReplayedInOrder()
+        throws IOException, InterruptedException {
+        // Threads keep holding and cancelling the seats of a small venue,
+        // reserving some of them, so seats are held again as soon as they
+        // are released. The replayed venue must have the same reservations.
+        Path file = Files.createTempFile("holds", ".journal");
+        try {
+            int available;
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.ASYNC);
+                 Venue venue = new Venue(VenueLayout.rectangular(8, 1),
+                     journal)) {
+                venue.setSeatHoldExpiration(1, TimeUnit.HOURS);
+                venue.setMergingHolds(false);
+                Thread[] threads = new Thread[4];
+                for (int i = 0; i < threads.length; i++) {
+                    final int T_NUM = i;
+                    threads[i] = new Thread(() -> {
+                        for (int hold = 0; hold < 20_000; hold++) {
+                            String email = T_NUM + "-" + hold + "@email.com";
+                            SeatHold<Integer> result =
+                                venue.findAndHoldSeats(1, email);
+                            if (result == null) {
+                                continue;
+                            }
+                            if (hold % 5000 == 4999) {
+                                venue.reserveSeats(result.getId(), email);
+                            } else {
+                                venue.cancelSeatHold(result.getId(), email);
+                            }
+                        }
+                    });
+                    threads[i].start();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                available = venue.numSeatsAvailable();
+                assertTrue("Expected some seats to be reserved",
+                    available < 8);
+            }
+
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.ASYNC);
+                 Venue venue = new Venue(VenueLayout.rectangular(8, 1),
+                     journal)) {
+                assertEquals("Expected every reserved seat to stay reserved",
+                    available, venue.numSeatsAvailable());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testExpiriesRacingCloseSkipTheJournal() throws IOException {
+        // The timer hands expired holds to this queue instead of releasing
+        // them, so they can be released once the venue is closed
+        BlockingQueue<Runnable> expiries = new LinkedBlockingQueue<>();
+        Path file = Files.createTempFile("holds", ".journal");
+        try (TimingWheel timer = new TimingWheel(expiries::add)) {
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(VenueLayout.square(10), journal,
+                     timer)) {
+                venue.setSeatHoldExpiration(10, TimeUnit.MILLISECONDS);
+                assertNotNull(venue.findAndHoldSeats(3, "a@example.com"));
+                Await.until("Expected the hold to expire",
+                    () -> !expiries.isEmpty());
+
+                venue.close();
+                try {
+                    venue.findAndHoldSeats(1, "b@example.com");
+                    fail("Expected a closed venue to take no holds");
+                } catch (IllegalStateException e) {
+                    // Expected
+                }
+                // Doesn't throw, and leaves the hold pending in the journal
+                expiries.poll().run();
+                assertEquals(97, venue.numSeatsAvailable());
+            }
+
+            try (HoldJournal journal = HoldJournal.open(file,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(VenueLayout.square(10), journal,
+                     timer)) {
+                assertEquals(97, venue.numSeatsAvailable());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testFailedReservationsLeaveTheHoldPending()
+        throws IOException {
+        Path file = Files.createTempFile("holds", ".journal");
+        try (HoldJournal journal = HoldJournal.open(file,
+                 HoldJournal.Durability.FSYNC_PER_BATCH);
+             Venue venue = new Venue(VenueLayout.square(10), journal)) {
+            venue.setSeatHoldExpiration(500, TimeUnit.MILLISECONDS);
+            SeatHold<Integer> held = venue.findAndHoldSeats(3,
+                "a@example.com");
+            // The reservation can't be journaled
+            journal.close();
+            try {
+                venue.reserveSeats(held.getId(), "a@example.com");
+                fail("Expected the reservation to fail");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            assertFalse(venue.isReserved(held.getId()));
+            assertSame(held, venue.getSeatHold(held.getId()));
+            assertEquals(97, venue.numSeatsAvailable());
+
+            // The hold still expires
+            Await.until("Expected the hold to expire",
+                () -> venue.numSeatsAvailable() == 100);
+            assertNull(venue.getSeatHold(held.getId()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
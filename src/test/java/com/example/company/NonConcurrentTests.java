@@ -6,8 +6,12 @@ import com.example.company.struct.TicketService;
 
 import org.junit.Test;
 
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
@@ -68,6 +72,31 @@ public class NonConcurrentTests {
             ts.numSeatsAvailable());
     }
 
+    @Test
+    public void testHoldingSeatsUpdatesRowAndSectionAvailability() {
+        boolean[][] seatingConfiguration =
+            new boolean[][]{
+                {true, true, false, true},
+                {false, true, true},
+                {true, true, true, true},
+                {false, true}
+            };
+        Venue venue = new Venue(
+            VenueLayout.fromConfiguration(seatingConfiguration)
+                .withSections(2));
+
+        venue.findAndHoldSeats(4, "fake@email.com",
+            SeatingPreference.CLOSEST_TO_BACK);
+
+        assertEquals(6, venue.numSeatsAvailable());
+        assertEquals(0, venue.numSeatsAvailableInRow(0));
+        assertEquals(1, venue.numSeatsAvailableInRow(1));
+        assertEquals(4, venue.numSeatsAvailableInRow(2));
+        assertEquals(1, venue.numSeatsAvailableInRow(3));
+        assertEquals(1, venue.numSeatsAvailableInSection(0));
+        assertEquals(5, venue.numSeatsAvailableInSection(1));
+    }
+
     @Test
     public void testPartialSeatHoldsFail() {
         TicketService ts1 = new Venue(1);
@@ -117,6 +146,31 @@ public class NonConcurrentTests {
         assertEquals("Expected Sets to be equal", expectedSeats, seats);
     }
 
+    @Test
+    public void testMergingHoldsLeavesEarlierSeatSetsAlone()
+        throws Exception {
+        Set<Integer> initialSeats = Stream.of(1, 2, 3)
+            .collect(Collectors.toSet());
+        VenueSeatHold venueSeatHold =
+            new VenueSeatHold(0, initialSeats, "fake@email.com");
+        // The SeatHold keeps a copy of the seats it is created with
+        initialSeats.add(4);
+        assertEquals(3, venueSeatHold.getReservedSeats().size());
+
+        Venue venue = new Venue(10);
+        SeatHold<Integer> seatHold = venue.findAndHoldSeats(2,
+            "fake@email.com");
+        Set<Integer> heldSeats = seatHold.getReservedSeats();
+        Set<Integer> expectedSeats = Set.copyOf(heldSeats);
+        assertSame("Expected the holds to be merged", seatHold,
+            venue.findAndHoldSeats(3, "fake@email.com"));
+        assertEquals("Expected the earlier set to be unchanged", expectedSeats,
+            heldSeats);
+        assertEquals(5, seatHold.getReservedSeats().size());
+        assertTrue(seatHold.getReservedSeats().containsAll(expectedSeats));
+        venue.close();
+    }
+
     @Test
     public void testSeatHoldExpires() {
         TicketService ts = new Venue(10);
@@ -157,6 +211,86 @@ public class NonConcurrentTests {
             ts.numSeatsAvailable());
     }
 
+    @Test
+    public void testSeatHoldExpirationIsConfigurable() {
+        Venue venue = new Venue(10);
+        venue.setSeatHoldExpiration(200, TimeUnit.MILLISECONDS);
+
+        SeatHold sh = venue.findAndHoldSeats(10, "fake@email.com");
+        // A second hold pushes back the expiration of the first
+        venue.findAndHoldSeats(5, "fake@email.com");
+
+        assertEquals(
+            "Expected seats to become unavailable after SeatHold given", 85,
+            venue.numSeatsAvailable());
+
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            fail("Thread interrupted");
+        }
+
+        assertEquals(
+            "Expected seats to become available after SeatHold expired", 100,
+            venue.numSeatsAvailable());
+        assertNull("Expected reserveSeats to fail",
+            venue.reserveSeats(sh.getId(), "fake@email.com"));
+    }
+
+    @Test
+    public void testBatchHoldsMatchIndividualHolds() {
+        Venue venue = new Venue(10);
+
+        List<SeatHold<Integer>> holds = venue.findAndHoldSeats(List.of(
+            new HoldRequest(15, "a@email.com",
+                SeatingPreference.CLOSEST_TO_BACK),
+            new HoldRequest(200, "b@email.com",
+                SeatingPreference.CLOSEST_TO_BACK),
+            new HoldRequest(3, "c@email.com",
+                SeatingPreference.CLOSEST_TO_FRONT),
+            new HoldRequest(10, "d@email.com",
+                SeatingPreference.CLOSEST_TO_BACK),
+            new HoldRequest(2, "a@email.com",
+                SeatingPreference.CLOSEST_TO_BACK)));
+
+        assertEquals(5, holds.size());
+        assertEquals("Expected the customer's requests to hold the back seats",
+            IntStream.concat(IntStream.range(0, 15), IntStream.range(25, 27))
+                .boxed().collect(Collectors.toSet()),
+            holds.get(0).getReservedSeats());
+        assertNull("Expected the oversized request to fail", holds.get(1));
+        assertEquals("Expected the front request to hold the front seats",
+            Set.of(97, 98, 99), holds.get(2).getReservedSeats());
+        assertEquals("Expected the failed request's seats to be reused",
+            IntStream.range(15, 25).boxed().collect(Collectors.toSet()),
+            holds.get(3).getReservedSeats());
+        assertSame("Expected the customer's holds to be merged",
+            holds.get(0), holds.get(4));
+        assertEquals("Expected every successful request to hold its seats",
+            100 - 15 - 3 - 10 - 2, venue.numSeatsAvailable());
+    }
+
+    @Test
+    public void testSequencedServiceAppliesRequestsInOrder() {
+        try (SequencedTicketService service =
+            new SequencedTicketService(new Venue(10))) {
+            CompletableFuture<SeatHold<Integer>> hold =
+                service.findAndHoldSeatsAsync(15, "fake@email.com");
+            // Submitted before the hold has been applied, so the id is
+            // unknown, but the reservation is still applied after the hold
+            CompletableFuture<String> reservation =
+                service.reserveSeatsAsync(0, "fake@email.com");
+
+            assertEquals(15, hold.join().getReservedSeats().size());
+            assertNotNull("Expected reservation to succeed",
+                reservation.join());
+            assertNull("Expected the SeatHold to already be reserved",
+                service.reserveSeats(0, "fake@email.com"));
+            assertEquals(85, service.numSeatsAvailable());
+        }
+    }
+
     @Test
     public void testHoldingThenImmediatelyReservingSeatsSucceeds() {
         TicketService ts = new Venue(10);
@@ -167,6 +301,87 @@ public class NonConcurrentTests {
         assertNotNull("Expected reservation to succeed", confirmationCode);
     }
 
+    @Test
+    public void testReservationChecksSeatHoldIdAndEmail() {
+        Venue venue = new Venue(10);
+
+        SeatHold<Integer> sh = venue.findAndHoldSeats(15, "fake@email.com");
+
+        assertNull("Expected another customer's reservation to fail",
+            venue.reserveSeats(sh.getId(), "other@email.com"));
+        assertNull("Expected an unknown SeatHold id to fail",
+            venue.reserveSeats(sh.getId() + 1, "fake@email.com"));
+        assertNull("Expected a negative SeatHold id to fail",
+            venue.reserveSeats(-1, "fake@email.com"));
+        assertNotNull("Expected reservation to succeed",
+            venue.reserveSeats(sh.getId(), "fake@email.com"));
+        assertNull("Expected the SeatHold to already be reserved",
+            venue.reserveSeats(sh.getId(), "fake@email.com"));
+        assertTrue(venue.isReserved(sh.getId()));
+        assertSame(sh, venue.getSeatHold(sh.getId()));
+    }
+
+    @Test
+    public void testCustomerCanHaveSeveralSeatHolds() {
+        Venue venue = new Venue(10);
+        venue.setMergingHolds(false);
+        venue.setSeatHoldExpiration(300, TimeUnit.MILLISECONDS);
+
+        SeatHold<Integer> first = venue.findAndHoldSeats(10, "fake@email.com");
+        SeatHold<Integer> second =
+            venue.findAndHoldSeats(5, "fake@email.com");
+        SeatHold<Integer> third = venue.findAndHoldSeats(3, "fake@email.com");
+
+        assertNotEquals("Expected separate SeatHolds", first.getId(),
+            second.getId());
+        assertEquals(10, first.getReservedSeats().size());
+        assertEquals(5, second.getReservedSeats().size());
+        assertNotNull("Expected reservation to succeed",
+            venue.reserveSeats(second.getId(), "fake@email.com"));
+        assertTrue("Expected the SeatHold to be cancelled",
+            venue.cancelSeatHold(third.getId(), "fake@email.com"));
+        assertFalse("Expected the SeatHold to already be cancelled",
+            venue.cancelSeatHold(third.getId(), "fake@email.com"));
+        assertNull(venue.getSeatHold(third.getId()));
+        assertEquals(85, venue.numSeatsAvailable());
+
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            fail("Thread interrupted");
+        }
+
+        assertEquals("Expected only the unreserved SeatHold to expire", 95,
+            venue.numSeatsAvailable());
+        assertNull("Expected reserveSeats to fail",
+            venue.reserveSeats(first.getId(), "fake@email.com"));
+        assertSame(second, venue.getSeatHold(second.getId()));
+    }
+
+    @Test
+    public void testClosestToCenterHoldsEdgeSeats() {
+        // A single row of 3 seats, and a 2x2 square
+        Venue v1 = new Venue(3, 1);
+        Venue v2 = new Venue(2);
+
+        assertNotNull("Expected to hold every seat in the row",
+            v1.findAndHoldSeats(3, "fake@email.com",
+                SeatingPreference.CLOSEST_TO_CENTER));
+        assertNotNull("Expected to hold 3 seats",
+            v2.findAndHoldSeats(3, "fake@email.com",
+                SeatingPreference.CLOSEST_TO_CENTER));
+
+        // This hold fails, and returns the last seat to the venue
+        assertNull("Expected not to find seats",
+            v2.findAndHoldSeats(2, "fake2@email.com",
+                SeatingPreference.CLOSEST_TO_CENTER));
+        assertNotNull("Expected the returned seat to be found again",
+            v2.findAndHoldSeats(1, "fake3@email.com",
+                SeatingPreference.CLOSEST_TO_CENTER));
+        assertEquals(0, v2.numSeatsAvailable());
+    }
+
     @Test
     public void testSeatingPreferenceGetsBestSeats() {
         boolean[][] seatingConfiguration =
@@ -206,16 +421,15 @@ public class NonConcurrentTests {
         // For closest to back, the top three available seats and the
         // second-from-the-left middle seat
         // should be selected
-        // For closest to center, all available middle row seats and the last
-        // 2nd row seat should be
-        // selected
+        // For closest to center, the two middle seats of the middle row and
+        // the two middle seats of the row behind it should be selected
         // For closest together, all seats in the second from the bottom row
         // should be selected
         Set<Integer> expectedSeats1 = Stream.of(25, 26, 27, 29)
             .collect(Collectors.toSet());
         Set<Integer> expectedSeats2 = Stream.of(0, 2, 3, 7)
             .collect(Collectors.toSet());
-        Set<Integer> expectedSeats3 = Stream.of(11, 14, 15, 16)
+        Set<Integer> expectedSeats3 = Stream.of(8, 9, 14, 15)
             .collect(Collectors.toSet());
         Set<Integer> expectedSeats4 = Stream.of(19, 20, 21, 22)
             .collect(Collectors.toSet());
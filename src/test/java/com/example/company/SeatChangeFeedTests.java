@@ -0,0 +1,358 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.Assert.*;
+
+public class SeatChangeFeedTests {
+
+    /**
+     * A subscriber that queues the changes it is sent, and only requests
+     * more when it is told to.
+     */
+    private static class QueueSubscriber
+        implements Flow.Subscriber<SeatChanges> {
+
+        private final BlockingQueue<SeatChanges> received =
+            new LinkedBlockingQueue<>();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean completed;
+
+        @Override
+        public void onSubscribe(final Flow.Subscription feedSubscription) {
+            subscription = feedSubscription;
+        }
+
+        @Override
+        public void onNext(final SeatChanges changes) {
+            received.add(changes);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        private Flow.Subscription subscription() {
+            Await.until("Expected the subscriber to be subscribed",
+                () -> subscription != null);
+            return subscription;
+        }
+
+        private SeatChanges next() throws InterruptedException {
+            SeatChanges changes = received.poll(2, TimeUnit.SECONDS);
+            assertNotNull("Expected changes to be sent", changes);
+            return changes;
+        }
+    }
+
+    private static void assertRange(SeatChanges changes, int range,
+        int start, int end, SeatState state) {
+        assertEquals(start, changes.getRangeStart(range));
+        assertEquals(end, changes.getRangeEnd(range));
+        assertEquals(state, changes.getRangeState(range));
+    }
+
+    @Test
+    public void testFeedSendsFullMapThenChanges() throws Exception {
+        // 2 rows of 5 seats, with seat 2 unavailable
+        Venue venue = new Venue(new boolean[][]{
+            {true, true, false, true, true},
+            {true, true, true, true, true}
+        });
+        SeatChangeFeed feed = venue.enableChangeFeed();
+        feed.setWindow(10, TimeUnit.MILLISECONDS);
+        QueueSubscriber subscriber = new QueueSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.subscription().request(Long.MAX_VALUE);
+
+        SeatChanges map = subscriber.next();
+        assertTrue("Expected the full map first", map.isFullMap());
+        assertEquals(0, map.getSequence());
+        assertEquals(2, map.getRangeCount());
+        assertRange(map, 0, 0, 2, SeatState.FREE);
+        assertRange(map, 1, 3, 10, SeatState.FREE);
+
+        SeatHold<Integer> seatHold = venue.findAndHoldSeats(3,
+            "fake@email.com", SeatingPreference.CLOSEST_TO_FRONT);
+        SeatChanges held = subscriber.next();
+        assertFalse(held.isFullMap());
+        assertEquals(1, held.getSequence());
+        assertEquals(1, held.getRangeCount());
+        assertRange(held, 0, 7, 10, SeatState.HELD);
+
+        assertNotNull(venue.reserveSeats(seatHold.getId(), "fake@email.com"));
+        assertRange(subscriber.next(), 0, 7, 10, SeatState.RESERVED);
+
+        SeatHold<Integer> cancelled = venue.findAndHoldSeats(2,
+            "fake2@email.com", SeatingPreference.CLOSEST_TO_BACK);
+        assertRange(subscriber.next(), 0, 0, 2, SeatState.HELD);
+        assertTrue(venue.cancelSeatHold(cancelled.getId(), "fake2@email.com"));
+        assertRange(subscriber.next(), 0, 0, 2, SeatState.FREE);
+
+        venue.close();
+        Await.until("Expected the subscription to be completed",
+            () -> subscriber.completed);
+    }
+
+    @Test
+    public void testSlowSubscriberGetsCoalescedChanges() throws Exception {
+        Venue venue = new Venue(10);
+        venue.setSeatHoldExpiration(30, TimeUnit.MILLISECONDS);
+        SeatChangeFeed feed = venue.enableChangeFeed();
+        feed.setWindow(10, TimeUnit.MILLISECONDS);
+        QueueSubscriber subscriber = new QueueSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.subscription().request(1);
+        assertTrue(subscriber.next().isFullMap());
+        // Sent every change as soon as its window ends
+        QueueSubscriber witness = new QueueSubscriber();
+        feed.subscribe(witness);
+        witness.subscription().request(Long.MAX_VALUE);
+        assertTrue(witness.next().isFullMap());
+
+        // Without demand, the hold and its expiration (several windows
+        // later) are coalesced into the seats' latest state
+        venue.findAndHoldSeats(4, "fake@email.com",
+            SeatingPreference.CLOSEST_TO_BACK);
+        SeatHold<Integer> reserved = venue.findAndHoldSeats(2,
+            "fake2@email.com", SeatingPreference.CLOSEST_TO_FRONT);
+        venue.reserveSeats(reserved.getId(), "fake2@email.com");
+        SeatChanges expired;
+        do {
+            expired = witness.next();
+        } while (expired.getRangeStart(0) != 0
+            || expired.getRangeState(0) != SeatState.FREE);
+        assertEquals(100 - 2, venue.numSeatsAvailable());
+        assertTrue("Expected no changes without demand",
+            subscriber.received.isEmpty());
+
+        subscriber.subscription().request(1);
+        SeatChanges changes = subscriber.next();
+        assertEquals(1, changes.getSequence());
+        assertEquals(2, changes.getRangeCount());
+        assertRange(changes, 0, 0, 4, SeatState.FREE);
+        assertRange(changes, 1, 98, 100, SeatState.RESERVED);
+        assertEquals(6, changes.getSeatCount());
+
+        // Later changes wait for demand again
+        venue.findAndHoldSeats(1, "fake3@email.com",
+            SeatingPreference.CLOSEST_TO_BACK);
+        do {
+            expired = witness.next();
+        } while (expired.getRangeState(0) != SeatState.HELD);
+        assertTrue("Expected nothing else to be sent",
+            subscriber.received.isEmpty());
+        venue.close();
+    }
+
+    @Test
+    public void testOverflowDiscardsChangesBeforeTheRebuiltMap()
+        throws Exception {
+        Venue venue = new Venue(10);
+        venue.setSeatHoldExpiration(1, TimeUnit.HOURS);
+        venue.setMergingHolds(false);
+        SeatChangeFeed feed = venue.enableChangeFeed();
+        // Every window after the first one (which sends the full map) lasts
+        // long enough for the changes below to fall in a single window
+        feed.setWindow(1, TimeUnit.HOURS);
+        QueueSubscriber subscriber = new QueueSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.subscription().request(Long.MAX_VALUE);
+        assertTrue(subscriber.next().isFullMap());
+
+        // The seat's hold is recorded, then so many changes that the ring
+        // fills up and the seat's release is dropped
+        SeatHold<Integer> first = venue.findAndHoldSeats(1, "first@email.com");
+        for (int i = 0; i < 40_000; i++) {
+            SeatHold<Integer> churn = venue.findAndHoldSeats(1,
+                i + "@email.com");
+            venue.cancelSeatHold(churn.getId(), i + "@email.com");
+        }
+        assertTrue(venue.cancelSeatHold(first.getId(), "first@email.com"));
+
+        // Closing the venue sends the last window's changes
+        venue.close();
+        Await.until("Expected the subscription to be completed",
+            () -> subscriber.completed);
+        SeatChanges last = null;
+        while (!subscriber.received.isEmpty()) {
+            last = subscriber.received.poll();
+        }
+        assertNotNull("Expected the rebuilt map to be sent", last);
+        assertTrue("Expected the full map to be sent", last.isFullMap());
+        assertEquals("Expected every seat to be free", 1,
+            last.getRangeCount());
+        assertRange(last, 0, 0, 100, SeatState.FREE);
+    }
+
+    @Test
+    public void testBlockedSubscribersDontDelayExpiration() throws Exception {
+        Venue venue = new Venue(10);
+        venue.setSeatHoldExpiration(20, TimeUnit.MILLISECONDS);
+        SeatChangeFeed feed = venue.enableChangeFeed();
+        feed.setWindow(5, TimeUnit.MILLISECONDS);
+        CountDownLatch unblock = new CountDownLatch(1);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        QueueSubscriber blocked = new QueueSubscriber() {
+            @Override
+            public void onNext(final SeatChanges changes) {
+                super.onNext(changes);
+                threads.add(Thread.currentThread().getName());
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        QueueSubscriber throwing = new QueueSubscriber() {
+            @Override
+            public void onNext(final SeatChanges changes) {
+                threads.add(Thread.currentThread().getName());
+                throw new IllegalStateException("Subscriber failed");
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            feed.subscribe(blocked, executor);
+            blocked.subscription().request(Long.MAX_VALUE);
+            feed.subscribe(throwing);
+            throwing.subscription().request(Long.MAX_VALUE);
+            assertTrue(blocked.next().isFullMap());
+
+            // The hold expires while the subscriber is blocked, and the
+            // failed subscriber is cancelled
+            venue.findAndHoldSeats(10, "fake@email.com");
+            Await.until("Expected the hold to expire",
+                () -> venue.numSeatsAvailable() == 100);
+            Await.until("Expected the failed subscriber to be cancelled",
+                () -> feed.getSubscriberCount() == 1);
+
+            // The subscriber is sent the seats' latest state once it is done
+            // (and the window the release was recorded in has ended)
+            unblock.countDown();
+            SeatChanges changes;
+            do {
+                changes = blocked.next();
+                assertFalse(changes.isFullMap());
+                assertEquals(1, changes.getRangeCount());
+                assertEquals(10, changes.getSeatCount());
+            } while (changes.getRangeState(0) != SeatState.FREE);
+            venue.close();
+            Await.until("Expected the subscription to be completed",
+                () -> blocked.completed);
+            assertFalse("Expected subscribers to be called off the timer",
+                threads.contains("timing-wheel"));
+        } finally {
+            unblock.countDown();
+            venue.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMergingHoldsKeepsTheFeedConsistent() throws Exception {
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        Thread.UncaughtExceptionHandler defaultHandler =
+            Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(
+            (thread, e) -> reported.add(e));
+        Venue venue = new Venue(10);
+        try {
+            venue.setSeatHoldExpiration(1, TimeUnit.HOURS);
+            SeatChangeFeed feed = venue.enableChangeFeed();
+            feed.setWindow(1, TimeUnit.MILLISECONDS);
+            // Keeps the latest state of every seat it is sent
+            AtomicReferenceArray<SeatState> states =
+                new AtomicReferenceArray<>(100);
+            feed.subscribe(new Flow.Subscriber<SeatChanges>() {
+                @Override
+                public void onSubscribe(final Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(final SeatChanges changes) {
+                    for (int range = 0; range < changes.getRangeCount();
+                        range++) {
+                        for (int seat = changes.getRangeStart(range);
+                            seat < changes.getRangeEnd(range); seat++) {
+                            states.set(seat, changes.getRangeState(range));
+                        }
+                    }
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                    reported.add(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+
+            // Every customer's holds are merged into one SeatHold while the
+            // feed and the ledger read the seats of the earlier holds
+            Thread[] customers = new Thread[4];
+            AtomicReferenceArray<SeatHold<Integer>> seatHolds =
+                new AtomicReferenceArray<>(customers.length);
+            for (int i = 0; i < customers.length; i++) {
+                final int customer = i;
+                customers[i] = new Thread(() -> {
+                    for (int hold = 0; hold < 20; hold++) {
+                        seatHolds.set(customer, venue.findAndHoldSeats(1,
+                            customer + "@email.com"));
+                        venue.seatMap();
+                    }
+                });
+                customers[i].start();
+            }
+            for (Thread customer : customers) {
+                customer.join();
+            }
+
+            SeatMap map = venue.seatMap();
+            assertEquals(80, map.getNumHeldSeats());
+            Await.until("Expected the feed to match the venue", () -> {
+                for (int seat = 0; seat < 100; seat++) {
+                    if (states.get(seat) != map.getState(seat)) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            for (int i = 0; i < customers.length; i++) {
+                SeatHold<Integer> seatHold = seatHolds.get(i);
+                assertEquals(20, seatHold.getReservedSeats().size());
+                for (int seat : seatHold.getReservedSeats()) {
+                    assertEquals(seatHold.getId(), map.getSeatHoldId(seat));
+                }
+            }
+            assertEquals("Expected nothing to fail", List.of(), reported);
+        } finally {
+            venue.close();
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.company;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.*;
+
+public class SeatInventoryTests {
+
+    /**
+     * Creates an inventory for a single row venue where every seat is
+     * initially unavailable.
+     */
+    private static SeatInventory emptyInventory(int seats) {
+        return new SeatInventory(
+            VenueLayout.fromConfiguration(new boolean[1][seats]));
+    }
+
+    @Test
+    public void testSeatsCanOnlyBeClaimedOnce() {
+        SeatInventory inventory = emptyInventory(10);
+        inventory.release(3);
+
+        assertTrue("Expected the free seat to be claimed",
+            inventory.tryClaim(3));
+        assertFalse("Expected the seat to already be claimed",
+            inventory.tryClaim(3));
+        assertFalse("Expected an unavailable seat not to be claimed",
+            inventory.tryClaim(4));
+        assertFalse("Expected a seat outside the venue not to be claimed",
+            inventory.tryClaim(10));
+    }
+
+    @Test
+    public void testScansCrossWordBoundaries() {
+        // 200 seats spans four 64-bit words
+        SeatInventory inventory = emptyInventory(200);
+        inventory.release(5);
+        inventory.release(64);
+        inventory.release(130);
+        inventory.release(199);
+
+        assertEquals(5, inventory.nextFreeSeat(0));
+        assertEquals(64, inventory.nextFreeSeat(6));
+        assertEquals(130, inventory.nextFreeSeat(65));
+        assertEquals(199, inventory.nextFreeSeat(131));
+        assertEquals(-1, inventory.nextFreeSeat(200));
+
+        assertEquals(199, inventory.previousFreeSeat(199));
+        assertEquals(130, inventory.previousFreeSeat(198));
+        assertEquals(64, inventory.previousFreeSeat(129));
+        assertEquals(5, inventory.previousFreeSeat(63));
+        assertEquals(-1, inventory.previousFreeSeat(4));
+
+        assertEquals("Unexpected number of free seats", 4, inventory.size());
+        assertArrayEquals(new int[]{5, 64, 130, 199}, inventory.toArray());
+    }
+
+    @Test
+    public void testEmptyInventoryHasNoSeats() {
+        SeatInventory inventory = emptyInventory(0);
+
+        assertEquals(-1, inventory.nextFreeSeat(0));
+        assertEquals(-1, inventory.previousFreeSeat(0));
+        assertEquals(0, inventory.size());
+    }
+
+    @Test
+    public void testCountersTrackRowsAndSections() {
+        // 4 rows of 5 seats, in sections of 2 rows
+        SeatInventory inventory = new SeatInventory(
+            VenueLayout.rectangular(5, 4).withSectionsOf(2));
+
+        assertEquals(20, inventory.size());
+        inventory.tryClaim(0);
+        inventory.tryClaim(4);
+        inventory.tryClaim(12);
+        // Claiming an unavailable seat must not change the counters
+        inventory.tryClaim(12);
+        inventory.release(4);
+
+        assertEquals("Unexpected number of free seats", 18, inventory.size());
+        assertEquals(4, inventory.sizeOfRow(0));
+        assertEquals(5, inventory.sizeOfRow(1));
+        assertEquals(4, inventory.sizeOfRow(2));
+        assertEquals(9, inventory.sizeOfSection(0));
+        assertEquals(9, inventory.sizeOfSection(1));
+    }
+
+    @Test
+    public void testFindRunsReturnsBestFitAndTracksChanges() {
+        // Runs of 3 (0-2), 5 (4-8) and 2 (10-11)
+        SeatInventory inventory = new SeatInventory(
+            VenueLayout.fromConfiguration(new boolean[][]{
+                {true, true, true, false, true, true, true, true, true, false,
+                    true, true}
+            }));
+
+        assertArrayEquals("Expected the smallest run that fits",
+            new int[]{0, 3}, inventory.findRuns(3));
+        assertArrayEquals("Expected the only run that fits",
+            new int[]{4, 5}, inventory.findRuns(4));
+        assertArrayEquals("Expected the largest runs first if none fits",
+            new int[]{4, 5, 0, 3}, inventory.findRuns(7));
+
+        // Splitting the run of 5 leaves runs of 2 (4-5) and 2 (7-8)
+        inventory.tryClaim(6);
+        assertArrayEquals(new int[]{0, 3}, inventory.findRuns(3));
+
+        // Releasing seats merges runs: 0-8 becomes a single run of 9
+        inventory.release(3);
+        inventory.release(6);
+        assertArrayEquals(new int[]{0, 9}, inventory.findRuns(6));
+    }
+
+    @Test
+    public void testReleaseRangeUpdatesCountersAndRuns() {
+        // 10 rows of 20 seats, in sections of 3 rows
+        SeatInventory inventory = new SeatInventory(
+            VenueLayout.rectangular(20, 10).withSectionsOf(3));
+        for (int seat = 0; seat < 200; seat++) {
+            inventory.tryClaim(seat);
+        }
+        // Seat 90 is already free, so it isn't released again
+        inventory.release(90);
+
+        // Seats 50-149 span rows 2-7, sections 0-2, and three 64-bit words
+        assertEquals(99, inventory.releaseRange(50, 150));
+
+        assertEquals("Unexpected number of free seats", 100, inventory.size());
+        assertEquals(10, inventory.sizeOfRow(2));
+        assertEquals(20, inventory.sizeOfRow(3));
+        assertEquals(10, inventory.sizeOfRow(7));
+        assertEquals(0, inventory.sizeOfRow(8));
+        assertEquals(10, inventory.sizeOfSection(0));
+        assertEquals(60, inventory.sizeOfSection(1));
+        assertEquals(30, inventory.sizeOfSection(2));
+        assertFalse(inventory.isFree(49));
+        assertTrue(inventory.isFree(149));
+        assertFalse(inventory.isFree(150));
+        assertArrayEquals("Expected the section's rows to form one block",
+            new int[]{60, 20, 80, 20, 100, 20}, inventory.findRuns(60));
+        assertEquals("Expected nothing to be released twice", 0,
+            inventory.releaseRange(50, 150));
+    }
+
+    @Test
+    public void testFindRunsStaysWithinRowsAndFindsBlocks() {
+        // 4 rows of 8 seats
+        SeatInventory inventory =
+            new SeatInventory(VenueLayout.rectangular(8, 4));
+        // Leave seats 5-7 of row 0 and seats 0-1 of row 1 free, which are
+        // consecutive indices but not consecutive seats
+        for (int seat = 0; seat < 5; seat++) {
+            inventory.tryClaim(seat);
+        }
+        for (int seat = 10; seat < 16; seat++) {
+            inventory.tryClaim(seat);
+        }
+        // Leave 5 seats in each of rows 2 and 3, offset by one column
+        inventory.tryClaim(16);
+        inventory.tryClaim(22);
+        inventory.tryClaim(23);
+        inventory.tryClaim(24);
+        inventory.tryClaim(25);
+        inventory.tryClaim(31);
+
+        assertArrayEquals("Expected a run within a single row",
+            new int[]{5, 3}, inventory.findRuns(3));
+        assertArrayEquals("Expected the columns both rows have free",
+            new int[]{18, 4, 26, 4}, inventory.findRuns(8));
+        assertArrayEquals("Expected the last row of the block to be shorter",
+            new int[]{18, 4, 26, 3}, inventory.findRuns(7));
+
+        // Once rows 2 and 3 don't overlap enough, the largest runs are used
+        inventory.tryClaim(19);
+        assertArrayEquals(new int[]{26, 5, 5, 3}, inventory.findRuns(8));
+
+        // Released rows are still separate runs, but form a block
+        inventory.release(19);
+        inventory.releaseRange(0, 16);
+        assertArrayEquals(new int[]{0, 6, 8, 6}, inventory.findRuns(12));
+    }
+
+    @Test
+    public void testRunsTrackSeatsClaimedAndReleasedConcurrently()
+        throws InterruptedException {
+        // Threads keep claiming and releasing the seats of a single row, so
+        // a released seat is often claimed again before its release reaches
+        // the index of runs. Every thread ends up holding a few seats.
+        SeatInventory inventory = new SeatInventory(
+            VenueLayout.rectangular(64, 1));
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int[] held = new int[4];
+                int numHeld = 0;
+                for (int j = 0; j < 1_000_000; j++) {
+                    if (numHeld == held.length) {
+                        inventory.release(held[--numHeld]);
+                    }
+                    int seat = random.nextInt(64);
+                    if (inventory.tryClaim(seat)) {
+                        held[numHeld++] = seat;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // The runs of the index must be exactly the free seats
+        int[] runs = inventory.findRuns(64);
+        int seats = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            for (int seat = runs[i]; seat < runs[i] + runs[i + 1]; seat++) {
+                assertTrue("Expected seat " + seat + " of a run to be free",
+                    inventory.isFree(seat));
+                seats++;
+            }
+        }
+        assertEquals("Expected every free seat to be in a run",
+            inventory.size(), seats);
+    }
+}
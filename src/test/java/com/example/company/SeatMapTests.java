@@ -0,0 +1,114 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class SeatMapTests {
+
+    private static final int N_THREADS = 8;
+
+    @Test
+    public void testSeatMapIsImmutableCopyOfSeats() {
+        // 2 rows of 3 seats, with seat 1 unavailable
+        Venue venue = new Venue(new boolean[][]{
+            {true, false, true},
+            {true, true, true}
+        });
+        SeatMap empty = venue.seatMap();
+        assertEquals(5, empty.getNumFreeSeats());
+        assertNull("Expected unavailable seats to have no state",
+            empty.getState(1));
+        assertSame("Expected the same map while nothing changes", empty,
+            venue.seatMap());
+
+        SeatHold<Integer> reserved = venue.findAndHoldSeats(2,
+            "fake@email.com", SeatingPreference.CLOSEST_TO_FRONT);
+        venue.reserveSeats(reserved.getId(), "fake@email.com");
+        SeatHold<Integer> held = venue.findAndHoldSeats(1, "fake2@email.com",
+            SeatingPreference.CLOSEST_TO_BACK);
+
+        SeatMap map = venue.seatMap();
+        assertEquals(3, map.getVersion());
+        assertEquals(SeatState.FREE, map.getState(2));
+        assertEquals(-1, map.getSeatHoldId(2));
+        assertEquals(SeatState.HELD, map.getState(0));
+        assertEquals(held.getId(), map.getSeatHoldId(0));
+        assertEquals(SeatState.RESERVED, map.getState(5));
+        assertEquals(reserved.getId(), map.getSeatHoldId(4));
+        assertEquals(2, map.getNumFreeSeats());
+        assertEquals(1, map.getNumHeldSeats());
+        assertEquals(2, map.getNumReservedSeats());
+        assertFalse(map.isSoldOut());
+
+        // Later changes don't affect maps already taken
+        venue.cancelSeatHold(held.getId(), "fake2@email.com");
+        assertEquals(SeatState.HELD, map.getState(0));
+        assertEquals(SeatState.FREE, venue.seatMap().getState(0));
+        assertEquals(5, empty.getNumFreeSeats());
+    }
+
+    @Test
+    public void testSeatMapsAreConsistentDuringHolds() throws Exception {
+        final int seatsPerHold = 5;
+        Venue venue = new Venue(100);
+        venue.setMergingHolds(false);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        // Every thread keeps holding seats and cancelling its holds
+        Thread[] threads = new Thread[N_THREADS];
+        for (int i = 0; i < N_THREADS; i++) {
+            final String email = "fake" + i + "@email.com";
+            threads[i] = new Thread(() -> {
+                while (running.get()) {
+                    SeatHold<Integer> seatHold = venue.findAndHoldSeats(
+                        seatsPerHold, email, SeatingPreference.NONE);
+                    if (seatHold != null) {
+                        venue.cancelSeatHold(seatHold.getId(), email);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        try {
+            long lastVersion = -1;
+            for (int i = 0; i < 200; i++) {
+                SeatMap map = venue.seatMap();
+                assertTrue(map.getVersion() >= lastVersion);
+                lastVersion = map.getVersion();
+                assertEquals(10_000, map.getNumFreeSeats()
+                    + map.getNumHeldSeats() + map.getNumReservedSeats());
+
+                // Every hold in the map has all of its seats
+                Map<Integer, Integer> seatsByHold = new HashMap<>();
+                int heldSeats = 0;
+                for (int seat = 0; seat < map.getTotalSeats(); seat++) {
+                    if (map.getState(seat) == SeatState.HELD) {
+                        seatsByHold.merge(map.getSeatHoldId(seat), 1,
+                            Integer::sum);
+                        heldSeats++;
+                    }
+                }
+                assertEquals(map.getNumHeldSeats(), heldSeats);
+                for (int seats : seatsByHold.values()) {
+                    assertEquals("Expected holds to be all or nothing",
+                        seatsPerHold, seats);
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        assertEquals(10_000, venue.seatMap().getNumFreeSeats());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.company;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class SeatRunsTests {
+
+    @Test
+    public void testConsecutiveSeatsShareARange() {
+        SeatRuns seats = new SeatRuns();
+        // Ascending, descending, and out of order
+        for (int seat = 10; seat < 20; seat++) {
+            assertTrue(seats.add(seat));
+        }
+        for (int seat = 9; seat >= 5; seat--) {
+            assertTrue(seats.add(seat));
+        }
+        seats.add(30);
+        seats.add(25);
+        seats.add(26);
+        assertFalse("Expected the seat to already be in the set",
+            seats.add(12));
+
+        assertEquals(18, seats.size());
+        assertEquals(3, seats.getRangeCount());
+        assertEquals(5, seats.getRangeStart(0));
+        assertEquals(20, seats.getRangeEnd(0));
+        assertEquals(25, seats.getRangeStart(1));
+        assertEquals(27, seats.getRangeEnd(1));
+        assertEquals(30, seats.getRangeStart(2));
+
+        // Filling the gaps merges the ranges
+        assertEquals(8, seats.addRange(18, 31));
+        assertEquals(1, seats.getRangeCount());
+        assertEquals(26, seats.size());
+    }
+
+    @Test
+    public void testBehavesLikeASetOfIntegers() {
+        Set<Integer> expected = new TreeSet<>(List.of(3, 4, 5, 64, 65, 100));
+        SeatRuns seats = new SeatRuns(expected);
+
+        assertEquals(expected, seats);
+        assertEquals(seats, expected);
+        assertEquals(expected.hashCode(), seats.hashCode());
+        assertTrue(seats.contains(64));
+        assertFalse(seats.contains(6));
+        assertFalse(seats.contains(2));
+        assertFalse(seats.contains("3"));
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(seats));
+        assertArrayEquals(new int[]{3, 4, 5, 64, 65, 100},
+            seats.toIntArray());
+
+        SeatRuns more = new SeatRuns();
+        more.addRange(0, 4);
+        seats.addAll(more);
+        assertEquals(9, seats.size());
+        assertEquals(0, seats.getRangeStart(0));
+        assertEquals(6, seats.getRangeEnd(0));
+
+        seats.clear();
+        assertTrue(seats.isEmpty());
+        assertFalse(seats.iterator().hasNext());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SeatScorerTests {
+
+    /**
+     * Prefers the seats of the row with index 2, then the rows closest to
+     * it, and the left side of each row.
+     */
+    private static final SeatScorer SIGHTLINE = (layout, seat) ->
+        -10 * Math.abs(layout.getRowOf(seat) - 2) - layout.getColumnOf(seat);
+
+    @Test
+    public void testRankingFollowsScores() {
+        // 4 rows of 3 seats, where seat 7 can't be sold
+        VenueLayout layout = VenueLayout.fromConfiguration(new boolean[][]{
+            {true, true, true},
+            {true, true, true},
+            {true, false, true},
+            {true, true, true}
+        });
+
+        assertArrayEquals(new int[]{6, 8, 3, 9, 4, 10, 5, 11, 0, 1, 2},
+            layout.rankSeats(SIGHTLINE));
+        assertArrayEquals("Expected the front scorer to rank by index",
+            new int[]{11, 10, 9, 8, 6, 5, 4, 3, 2, 1, 0},
+            layout.rankSeats(SeatScorer.CLOSEST_TO_FRONT));
+        assertSame("Expected the ranking to be computed once",
+            layout.getRanking(SIGHTLINE),
+            layout.withSectionsOf(1).getRanking(SIGHTLINE));
+    }
+
+    @Test
+    public void testVenueHoldsBestAvailableSeats() {
+        Venue venue = new Venue(VenueLayout.rectangular(3, 4));
+
+        SeatHold<Integer> first = venue.findAndHoldBestSeats(2,
+            "first@email.com", SIGHTLINE);
+        SeatHold<Integer> second = venue.findAndHoldBestSeats(3,
+            "second@email.com", SIGHTLINE);
+        assertEquals(Set.of(6, 7), first.getReservedSeats());
+        assertEquals("Expected the next best seats to be held next",
+            Set.of(8, 3, 9), second.getReservedSeats());
+
+        // Released seats are found again, even though the ranking's cursor
+        // had moved past them
+        assertTrue(venue.cancelSeatHold(first.getId(), "first@email.com"));
+        assertEquals(Set.of(6, 7), venue.findAndHoldBestSeats(2,
+            "third@email.com", SIGHTLINE).getReservedSeats());
+
+        // The built-in preferences are scorers too
+        assertEquals(Set.of(11), venue.findAndHoldSeats(1, "front@email.com",
+            SeatingPreference.CLOSEST_TO_FRONT).getReservedSeats());
+        assertEquals(Set.of(0), venue.findAndHoldBestSeats(1,
+            "back@email.com", SeatScorer.CLOSEST_TO_BACK).getReservedSeats());
+        assertEquals(5, venue.numSeatsAvailable());
+    }
+}
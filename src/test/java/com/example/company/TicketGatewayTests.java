@@ -0,0 +1,155 @@
+package com.example.company;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TicketGatewayTests {
+
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    private static HttpResponse<String> send(TicketGateway gateway,
+        String method, String path, String body) throws Exception {
+        URI uri = URI.create("http://localhost:"
+            + gateway.getAddress().getPort() + path);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .method(method, body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testGatewayHoldsAndReservesSeats() throws Exception {
+        Venue venue = new Venue(10);
+        try (TicketGateway gateway = new TicketGateway(venue,
+                 new InetSocketAddress("localhost", 0))) {
+            HttpResponse<String> seats = send(gateway, "GET", "/seats", null);
+            assertEquals(200, seats.statusCode());
+            assertEquals("{\"numSeatsAvailable\":100}", seats.body());
+
+            HttpResponse<String> hold = send(gateway, "POST", "/holds",
+                "{\"numSeats\": 2, \"customerEmail\": \"fake@email.com\","
+                    + " \"seatingPreference\": \"closest_to_front\"}");
+            assertEquals(201, hold.statusCode());
+            Map<String, String> held = Json.parseObject(
+                hold.body().replaceAll(",\"seats\":\\[.*]", ""));
+            assertEquals("fake@email.com", held.get("customerEmail"));
+            assertTrue(hold.body().endsWith("\"seats\":[98,99]}"));
+            assertEquals("{\"numSeatsAvailable\":98}",
+                send(gateway, "GET", "/seats", null).body());
+
+            String reservation = "/holds/" + held.get("seatHoldId")
+                + "/reservation";
+            HttpResponse<String> wrongCustomer = send(gateway, "POST",
+                reservation, "{\"customerEmail\":\"other@email.com\"}");
+            assertEquals(404, wrongCustomer.statusCode());
+            HttpResponse<String> reserved = send(gateway, "POST",
+                reservation, "{\"customerEmail\":\"fake@email.com\"}");
+            assertEquals(200, reserved.statusCode());
+            assertEquals("{\"confirmationCode\":\""
+                + held.get("seatHoldId") + "\"}", reserved.body());
+            assertTrue(venue.isReserved(
+                Integer.parseInt(held.get("seatHoldId"))));
+
+            HttpResponse<String> tooMany = send(gateway, "POST", "/holds",
+                "{\"numSeats\":99,\"customerEmail\":\"fake@email.com\"}");
+            assertEquals(409, tooMany.statusCode());
+        }
+        venue.close();
+    }
+
+    @Test
+    public void testGatewayRejectsInvalidRequests() throws Exception {
+        Venue venue = new Venue(10);
+        try (TicketGateway gateway = new TicketGateway(venue,
+                 new InetSocketAddress("localhost", 0))) {
+            assertEquals(400, send(gateway, "POST", "/holds",
+                "{\"numSeats\":2").statusCode());
+            assertEquals(400, send(gateway, "POST", "/holds",
+                "{\"numSeats\":2}").statusCode());
+            assertEquals(400, send(gateway, "POST", "/holds",
+                "{\"numSeats\":\"two\",\"customerEmail\":\"a@b.com\"}")
+                .statusCode());
+            assertEquals(400, send(gateway, "POST", "/holds",
+                "{\"numSeats\":2,\"customerEmail\":\"a@b.com\","
+                    + "\"seatingPreference\":\"BALCONY\"}").statusCode());
+            HttpResponse<String> wrongMethod = send(gateway, "GET", "/holds",
+                null);
+            assertEquals(405, wrongMethod.statusCode());
+            assertEquals("POST",
+                wrongMethod.headers().firstValue("Allow").orElse(null));
+            assertEquals(404, send(gateway, "POST", "/holds/x/reservation",
+                "{\"customerEmail\":\"a@b.com\"}").statusCode());
+            assertEquals(404, send(gateway, "POST", "/holdsXYZ",
+                "{\"numSeats\":2,\"customerEmail\":\"a@b.com\"}")
+                .statusCode());
+            assertEquals(404, send(gateway, "POST", "/holdsXYZ/1/reservation",
+                "{\"customerEmail\":\"a@b.com\"}").statusCode());
+            assertEquals(100, venue.numSeatsAvailable());
+        }
+        venue.close();
+    }
+
+    @Test
+    public void testGatewayRejectsUnsupportedPreferences() throws Exception {
+        Venue venue = new Venue(10);
+        WaitingRoom waitingRoom = new WaitingRoom(venue, 10, 10);
+        try (TicketGateway gateway = new TicketGateway(waitingRoom,
+                 new InetSocketAddress("localhost", 0))) {
+            assertEquals(400, send(gateway, "POST", "/holds",
+                "{\"numSeats\":2,\"customerEmail\":\"a@b.com\","
+                    + "\"seatingPreference\":\"CLOSEST_TO_FRONT\"}")
+                .statusCode());
+            assertEquals(100, venue.numSeatsAvailable());
+            assertEquals(201, send(gateway, "POST", "/holds",
+                "{\"numSeats\":2,\"customerEmail\":\"a@b.com\"}")
+                .statusCode());
+            assertEquals(98, venue.numSeatsAvailable());
+        }
+        venue.close();
+    }
+
+    @Test
+    public void testGatewayServesConcurrentRequests() throws Exception {
+        final int customers = 500;
+        Venue venue = new Venue(10);
+        try (TicketGateway gateway = new TicketGateway(venue,
+                 new InetSocketAddress("localhost", 0));
+             ExecutorService clients =
+                 Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < customers; i++) {
+                final String body = "{\"numSeats\":1,\"customerEmail\":\"fake"
+                    + i + "@email.com\"}";
+                statuses.add(clients.submit(() ->
+                    send(gateway, "POST", "/holds", body).statusCode()));
+            }
+            int held = 0;
+            for (Future<Integer> status : statuses) {
+                if (status.get() == 201) {
+                    held++;
+                } else {
+                    assertEquals(409, (int) status.get());
+                }
+            }
+            assertEquals("Expected every seat to be held exactly once", 100,
+                held);
+            assertEquals(0, venue.numSeatsAvailable());
+        }
+        venue.close();
+    }
+}
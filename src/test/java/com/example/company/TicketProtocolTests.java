@@ -0,0 +1,183 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class TicketProtocolTests {
+
+    private static final int N_THREADS = 4;
+
+    @Test
+    public void testClientHoldsAndReservesSeats() throws Exception {
+        Venue venue = new Venue(10);
+        try (TicketProtocolServer server = new TicketProtocolServer(venue,
+                 new InetSocketAddress("localhost", 0));
+             TicketProtocolClient client =
+                 new TicketProtocolClient(server.getAddress())) {
+            assertEquals(100, client.numSeatsAvailable());
+
+            SeatHold<Integer> seatHold = client.findAndHoldSeats(3,
+                "fake@email.com", SeatingPreference.CLOSEST_TO_FRONT);
+            assertNotNull(seatHold);
+            assertEquals(new HashSet<>(Arrays.asList(97, 98, 99)),
+                seatHold.getReservedSeats());
+            assertEquals(venue.getSeatHold(seatHold.getId())
+                .getReservedSeats(), seatHold.getReservedSeats());
+            assertEquals(97, client.numSeatsAvailable());
+
+            assertNull(client.reserveSeats(seatHold.getId(),
+                "other@email.com"));
+            assertEquals(Integer.toString(seatHold.getId()),
+                client.reserveSeats(seatHold.getId(), "fake@email.com"));
+            assertTrue(venue.isReserved(seatHold.getId()));
+
+            assertNull(client.findAndHoldSeats(98, "fake2@email.com"));
+            assertNotNull(client.findAndHoldSeats(97, "fake2@email.com"));
+            assertEquals(0, client.numSeatsAvailable());
+        }
+        venue.close();
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws Exception {
+        Venue venue = new Venue(10);
+        venue.setMergingHolds(false);
+        try (TicketProtocolServer server = new TicketProtocolServer(venue,
+                 new InetSocketAddress("localhost", 0), 2)) {
+            // Several clients each send all of their holds without waiting
+            Set<Integer> heldSeats = new HashSet<>();
+            List<TicketProtocolClient> clients = new ArrayList<>();
+            List<CompletableFuture<SeatHold<Integer>>> holds =
+                new ArrayList<>();
+            for (int i = 0; i < N_THREADS; i++) {
+                clients.add(new TicketProtocolClient(server.getAddress()));
+            }
+            for (int i = 0; i < 1000; i++) {
+                holds.add(clients.get(i % N_THREADS).findAndHoldSeatsAsync(1,
+                    "fake" + i + "@email.com", SeatingPreference.NONE));
+            }
+            int held = 0;
+            for (CompletableFuture<SeatHold<Integer>> hold : holds) {
+                SeatHold<Integer> seatHold = hold.join();
+                if (seatHold != null) {
+                    held++;
+                    assertEquals(1, seatHold.getReservedSeats().size());
+                    assertTrue("Expected every seat to be held once",
+                        heldSeats.addAll(seatHold.getReservedSeats()));
+                }
+            }
+            assertEquals(100, held);
+            assertEquals(0, (int) clients.get(0).numSeatsAvailableAsync()
+                .join());
+
+            for (TicketProtocolClient client : clients) {
+                client.close();
+            }
+            try {
+                clients.get(0).numSeatsAvailable();
+                fail("Expected a closed client to fail");
+            } catch (UncheckedIOException e) {
+                // Expected
+            }
+        }
+        venue.close();
+    }
+
+    @Test
+    public void testMergedHoldsAreSentWhole() throws Exception {
+        Venue venue = new Venue(10);
+        // Emails of different lengths, so each connection reads emails
+        // longer and shorter than the last one
+        String[] emails = {"a@email.com", "longer.name@email.com",
+            "b@email.com", "much.longer.name@example.email.com"};
+        try (TicketProtocolServer server = new TicketProtocolServer(venue,
+                 new InetSocketAddress("localhost", 0), 2)) {
+            // Every customer's holds are merged on several selector threads
+            List<TicketProtocolClient> clients = new ArrayList<>();
+            List<CompletableFuture<SeatHold<Integer>>> holds =
+                new ArrayList<>();
+            for (int i = 0; i < N_THREADS; i++) {
+                clients.add(new TicketProtocolClient(server.getAddress()));
+            }
+            for (int i = 0; i < 100; i++) {
+                holds.add(clients.get(i % N_THREADS).findAndHoldSeatsAsync(1,
+                    emails[i / N_THREADS % emails.length],
+                    SeatingPreference.NONE));
+            }
+            Map<Integer, Integer> largestResponses = new HashMap<>();
+            for (int i = 0; i < holds.size(); i++) {
+                SeatHold<Integer> seatHold = holds.get(i).join();
+                VenueSeatHold merged =
+                    (VenueSeatHold) venue.getSeatHold(seatHold.getId());
+                assertEquals(emails[i / N_THREADS % emails.length],
+                    merged.getEmail());
+                // Every response is the hold as it was at some point
+                assertTrue(merged.getReservedSeats()
+                    .containsAll(seatHold.getReservedSeats()));
+                largestResponses.merge(seatHold.getId(),
+                    seatHold.getReservedSeats().size(), Math::max);
+            }
+            // The last hold merged into each SeatHold was sent all of it.
+            // (Holds racing a merge can start SeatHolds of their own.)
+            int heldSeats = 0;
+            for (Map.Entry<Integer, Integer> largest
+                : largestResponses.entrySet()) {
+                final int size = venue.getSeatHold(largest.getKey())
+                    .getReservedSeats().size();
+                assertEquals(size, (int) largest.getValue());
+                heldSeats += size;
+            }
+            assertEquals(100, heldSeats);
+            assertEquals(0, venue.numSeatsAvailable());
+
+            for (TicketProtocolClient client : clients) {
+                client.close();
+            }
+        }
+        venue.close();
+    }
+
+    @Test
+    public void testResponsesLargerThanBuffersAreSent() throws Exception {
+        // Every other seat is unavailable, so a hold of every seat is as
+        // many ranges as seats
+        boolean[][] seating = new boolean[150][150];
+        for (boolean[] row : seating) {
+            for (int column = 0; column < row.length; column += 2) {
+                row[column] = true;
+            }
+        }
+        Venue venue = new Venue(seating);
+        final int seats = 150 * 75;
+        try (TicketProtocolServer server = new TicketProtocolServer(venue,
+                 new InetSocketAddress("localhost", 0), 1);
+             TicketProtocolClient client =
+                 new TicketProtocolClient(server.getAddress())) {
+            CompletableFuture<Integer> before = client.numSeatsAvailableAsync();
+            CompletableFuture<SeatHold<Integer>> hold =
+                client.findAndHoldSeatsAsync(seats, "fake@email.com", null);
+            CompletableFuture<Integer> after = client.numSeatsAvailableAsync();
+            assertEquals(seats, (int) before.join());
+            assertEquals(seats, hold.join().getReservedSeats().size());
+            assertTrue(hold.join().getReservedSeats().contains(2));
+            assertFalse(hold.join().getReservedSeats().contains(3));
+            assertEquals(0, (int) after.join());
+        }
+        venue.close();
+    }
+}
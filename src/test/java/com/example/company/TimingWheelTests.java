@@ -0,0 +1,130 @@
+package com.example.company;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTests {
+
+    @Test
+    public void testTimeoutsExpireTogether() {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        AtomicLong expiredAt = new AtomicLong();
+        TimingWheel.ExpiryHandler<String> handler = timeouts -> {
+            expiredAt.compareAndSet(0, System.nanoTime());
+            List<String> keys = new ArrayList<>();
+            for (TimingWheel.Timeout<String> timeout : timeouts) {
+                keys.add(timeout.getKey());
+            }
+            expired.addAll(keys);
+        };
+
+        try (TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS,
+            8, Runnable::run)) {
+            // Scheduled well past a full turn of the wheel
+            long scheduledAt = System.nanoTime();
+            wheel.schedule(handler, "a", 200, TimeUnit.MILLISECONDS);
+            wheel.schedule(handler, "b", 200, TimeUnit.MILLISECONDS);
+
+            Await.until("Expected both timeouts to expire",
+                () -> expired.size() == 2);
+            assertTrue("Expected no timeouts to expire early",
+                expiredAt.get() - scheduledAt
+                    >= TimeUnit.MILLISECONDS.toNanos(200));
+            List<String> keys = new ArrayList<>(expired);
+            Collections.sort(keys);
+            assertEquals(List.of("a", "b"), keys);
+        }
+    }
+
+    @Test
+    public void testCancelledTimeoutsNeverExpire() {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        TimingWheel.ExpiryHandler<String> handler =
+            timeouts -> timeouts.forEach(t -> expired.add(t.getKey()));
+
+        try (TimingWheel wheel = new TimingWheel()) {
+            TimingWheel.Timeout<String> cancelled =
+                wheel.schedule(handler, "cancelled", 50, TimeUnit.MILLISECONDS);
+            wheel.schedule(handler, "expired", 50, TimeUnit.MILLISECONDS);
+
+            assertTrue("Expected the timeout to be cancelled",
+                wheel.cancel(cancelled));
+            assertFalse("Expected the timeout to already be cancelled",
+                wheel.cancel(cancelled));
+            assertFalse("Expected a cancelled timeout not to be extended",
+                wheel.extend(cancelled, 1, TimeUnit.SECONDS));
+
+            // Both timeouts would expire in the same tick
+            Await.until("Expected the timeout to expire",
+                () -> !expired.isEmpty());
+            assertEquals(List.of("expired"), expired);
+        }
+    }
+
+    @Test
+    public void testExtendedTimeoutsExpireLater() {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        AtomicLong expiredAt = new AtomicLong();
+        TimingWheel.ExpiryHandler<String> handler = timeouts -> {
+            expiredAt.set(System.nanoTime());
+            timeouts.forEach(t -> expired.add(t.getKey()));
+        };
+
+        try (TimingWheel wheel = new TimingWheel()) {
+            long scheduledAt = System.nanoTime();
+            TimingWheel.Timeout<String> timeout =
+                wheel.schedule(handler, "extended", 100, TimeUnit.MILLISECONDS);
+            assertTrue("Expected the timeout to be extended",
+                wheel.extend(timeout, 500, TimeUnit.MILLISECONDS));
+            assertTrue(timeout.isPending());
+
+            Await.until("Expected the timeout to expire",
+                () -> !expired.isEmpty());
+            assertTrue("Expected the timeout not to expire before its new "
+                + "deadline", expiredAt.get() - scheduledAt
+                    >= TimeUnit.MILLISECONDS.toNanos(500));
+            assertEquals(List.of("extended"), expired);
+            assertFalse("Expected an expired timeout not to be extended",
+                wheel.extend(timeout, 1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testThrowingHandlersDontStopTheWheel() {
+        List<String> expired = new CopyOnWriteArrayList<>();
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        TimingWheel.ExpiryHandler<String> throwing = timeouts -> {
+            timeouts.forEach(t -> expired.add(t.getKey()));
+            throw new IllegalStateException("Handler failed");
+        };
+        TimingWheel.ExpiryHandler<String> handler =
+            timeouts -> timeouts.forEach(t -> expired.add(t.getKey()));
+
+        Thread.UncaughtExceptionHandler defaultHandler =
+            Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(
+            (thread, e) -> reported.add(e));
+        try (TimingWheel wheel = new TimingWheel()) {
+            wheel.schedule(throwing, "throwing", 10, TimeUnit.MILLISECONDS);
+            Await.until("Expected the throwing handler to be reported",
+                () -> !reported.isEmpty());
+            assertEquals("Handler failed", reported.get(0).getMessage());
+
+            // Timeouts scheduled after the failure still expire
+            wheel.schedule(handler, "later", 10, TimeUnit.MILLISECONDS);
+            Await.until("Expected the later timeout to expire",
+                () -> expired.size() == 2);
+            assertEquals(List.of("throwing", "later"), expired);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+public class VenueMetricsTests {
+
+    @Test
+    public void testHistogramPercentilesAreWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        LatencySnapshot latency = histogram.snapshot();
+
+        assertEquals(1000, latency.getCount());
+        assertEquals(500500, latency.getMeanNanos());
+        assertEquals(1000000, latency.getMaxNanos());
+        // Percentiles are rounded up to the end of their bucket, which is at
+        // most 12.5% wider than the value
+        assertBetween(500000, 562500, latency.getP50Nanos());
+        assertBetween(990000, 1000000, latency.getP99Nanos());
+        assertEquals(1000000, latency.getP999Nanos());
+    }
+
+    @Test
+    public void testHistogramBucketsCoverEveryLatency() {
+        for (long nanos : new long[]{0, 1, 7, 8, 9, 1023, 1024, 123456789,
+            Long.MAX_VALUE}) {
+            final int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue("Unexpected bucket for " + nanos,
+                bucket >= 0 && bucket < LatencyHistogram.NUM_BUCKETS);
+            if (bucket < LatencyHistogram.NUM_BUCKETS - 1) {
+                assertTrue("Expected " + nanos + " to fit in its bucket",
+                    nanos <= LatencyHistogram.upperBoundOf(bucket));
+                assertTrue("Expected " + nanos + " not to fit in the bucket "
+                        + "before it", bucket == 0
+                    || nanos > LatencyHistogram.upperBoundOf(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testVenueCountsHoldsAndReservations() {
+        Venue venue = new Venue(10);
+        assertNull("Expected metrics to be disabled", venue.getMetrics());
+        VenueMetrics metrics = venue.enableMetrics();
+
+        SeatHold<Integer> hold = venue.findAndHoldSeats(10, "a@email.com",
+            SeatingPreference.CLOSEST_TO_FRONT);
+        venue.findAndHoldSeats(200, "b@email.com",
+            SeatingPreference.CLOSEST_TOGETHER);
+        venue.reserveSeats(hold.getId(), "a@email.com");
+        venue.reserveSeats(hold.getId(), "a@email.com");
+
+        VenueMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getHoldsSucceeded());
+        assertEquals(1, snapshot.getHoldsFailed());
+        assertEquals("Expected the failed hold not to claim any seats", 0,
+            snapshot.getSeatsRolledBack());
+        assertEquals(0, snapshot.getClaimsLost());
+        assertEquals(1, snapshot.getReservationsSucceeded());
+        assertEquals(1, snapshot.getReservationsFailed());
+        assertEquals(1, snapshot.getHoldLatency(
+            SeatingPreference.CLOSEST_TO_FRONT).getCount());
+        assertEquals(1, snapshot.getHoldLatency(
+            SeatingPreference.CLOSEST_TOGETHER).getCount());
+        assertEquals(0, snapshot.getHoldLatency(
+            SeatingPreference.NONE).getCount());
+        assertEquals(2, snapshot.getReserveLatency().getCount());
+    }
+
+    @Test
+    public void testVenueCountsExpiredHolds() {
+        Venue venue = new Venue(10);
+        VenueMetrics metrics = venue.enableMetrics();
+        venue.setSeatHoldExpiration(50, TimeUnit.MILLISECONDS);
+
+        venue.findAndHoldSeats(4, "a@email.com");
+        venue.findAndHoldSeats(3, "b@email.com");
+
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            fail("Thread interrupted");
+        }
+
+        assertEquals(2, metrics.getHoldsExpired());
+        assertEquals(7, metrics.getSeatsExpired());
+    }
+
+    @Test
+    public void testMetricsAreExposedThroughJmx() throws JMException {
+        Venue venue = new Venue(10);
+        VenueMetrics metrics = venue.enableMetrics();
+        venue.findAndHoldSeats(5, "a@email.com", SeatingPreference.NONE);
+
+        ObjectName name = metrics.register("testMetricsAreExposedThroughJmx");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.getAttribute(name, "HoldsSucceeded"));
+            assertNotNull(server.getAttribute(name, "HoldLatencies"));
+            assertNotNull(server.getAttribute(name, "ReserveLatency"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Asserts that a value is within a range (inclusive).
+     */
+    private static void assertBetween(long min, long max, long value) {
+        assertTrue("Expected " + value + " to be between " + min + " and "
+            + max, value >= min && value <= max);
+    }
+}
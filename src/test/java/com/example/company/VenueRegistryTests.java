@@ -0,0 +1,164 @@
+package com.example.company;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VenueRegistryTests {
+
+    /**
+     * Opens a 10x10 venue for every event whose id starts with "event", and
+     * records the events whose venues are closed.
+     */
+    private static class TestSource
+        implements VenueRegistry.EventSource {
+
+        /**
+         * The ids of the events whose venues were closed.
+         */
+        private final List<String> closed = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Venue open(final String eventId, final TimingWheel holdTimer) {
+            if (!eventId.startsWith("event")) {
+                return null;
+            }
+            return new Venue(VenueLayout.square(10), null, holdTimer);
+        }
+
+        @Override
+        public void closing(final String eventId, final Venue venue) {
+            closed.add(eventId);
+        }
+    }
+
+    /**
+     * @return The number of live threads belonging to hold timers
+     */
+    private static int countTimerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("venue-worker")
+                || thread.getName().equals("timing-wheel")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testVenuesShareOneTimer() throws IOException {
+        final int threadsBefore = countTimerThreads();
+        try (VenueRegistry registry = new VenueRegistry(new TestSource(),
+            1, TimeUnit.HOURS, 2)) {
+            for (int event = 0; event < 1000; event++) {
+                Venue venue = registry.get("event-" + event);
+                venue.setSeatHoldExpiration(50, TimeUnit.MILLISECONDS);
+                assertNotNull(venue.findAndHoldSeats(10, "a@example.com"));
+            }
+            assertNull(registry.get("unknown"));
+            assertEquals(1000, registry.getOpenEvents().size());
+            assertSame(registry.get("event-0"), registry.get("event-0"));
+            // The registry's timer thread, and at most 2 workers
+            assertTrue(countTimerThreads() - threadsBefore <= 3);
+
+            // Every hold expires on the shared timer
+            for (int event = 0; event < 1000; event++) {
+                final Venue venue = registry.get("event-" + event);
+                Await.until("Expected the hold to expire",
+                    () -> venue.numSeatsAvailable() == 100);
+            }
+        }
+    }
+
+    @Test
+    public void testIdleVenuesAreClosed() throws IOException {
+        TestSource source = new TestSource();
+        try (VenueRegistry registry = new VenueRegistry(source,
+            100, TimeUnit.MILLISECONDS, 1)) {
+            Venue idle = registry.get("event-idle");
+            Venue busy = registry.get("event-busy");
+            // Looking the busy venue up keeps it open
+            Await.until("Expected the idle venue to be closed", () -> {
+                try {
+                    assertSame(busy, registry.get("event-busy"));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return !registry.isOpen("event-idle");
+            });
+            assertTrue(registry.isOpen("event-busy"));
+            Await.until("Expected the busy venue to be closed once idle",
+                () -> !registry.isOpen("event-busy"));
+            assertEquals(List.of("event-idle", "event-busy"), source.closed);
+
+            // Opened again the next time it is looked up
+            assertNotSame(idle, registry.get("event-idle"));
+        }
+    }
+
+    @Test
+    public void testEvictedVenuesAreClosed() throws IOException {
+        TestSource source = new TestSource();
+        VenueRegistry registry = new VenueRegistry(source, 1, TimeUnit.HOURS,
+            1);
+        registry.get("event-1");
+        registry.get("event-2");
+        assertTrue(registry.evict("event-1"));
+        assertFalse(registry.evict("event-1"));
+        assertEquals(List.of("event-1"), source.closed);
+
+        registry.close();
+        assertEquals(List.of("event-1", "event-2"), source.closed);
+        assertTrue(registry.getOpenEvents().isEmpty());
+    }
+
+    @Test
+    public void testSourcesMayLookUpOtherEvents() throws IOException {
+        // Opening each event opens the one before it, and closing it evicts
+        // that one too
+        final VenueRegistry[] registry = new VenueRegistry[1];
+        final TestSource chained = new TestSource() {
+            @Override
+            public Venue open(final String eventId,
+                final TimingWheel holdTimer) {
+                final int event = Integer.parseInt(eventId.substring(6));
+                if (event > 0) {
+                    try {
+                        assertNotNull(registry[0].get("event-" + (event - 1)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return super.open(eventId, holdTimer);
+            }
+
+            @Override
+            public void closing(final String eventId, final Venue venue) {
+                super.closing(eventId, venue);
+                final int event = Integer.parseInt(eventId.substring(6));
+                if (event > 0) {
+                    try {
+                        registry[0].evict("event-" + (event - 1));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        };
+        registry[0] = new VenueRegistry(chained, 1, TimeUnit.HOURS, 1);
+        assertNotNull(registry[0].get("event-200"));
+        assertEquals(201, registry[0].getOpenEvents().size());
+
+        assertTrue(registry[0].evict("event-200"));
+        assertTrue(registry[0].getOpenEvents().isEmpty());
+        assertEquals(201, chained.closed.size());
+        registry[0].close();
+    }
+}
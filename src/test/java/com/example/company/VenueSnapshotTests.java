@@ -0,0 +1,154 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.SeatingPreference;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VenueSnapshotTests {
+
+    @Test
+    public void testRunsOfSeats() {
+        assertArrayEquals(new int[]{1, 3, 7, 1, 9, 2},
+            VenueSnapshot.toRuns(List.of(9, 2, 1, 10, 3, 7)));
+        assertArrayEquals(new int[0], VenueSnapshot.toRuns(List.of()));
+    }
+
+    @Test
+    public void testVenueIsRestoredFromASnapshot() throws IOException {
+        boolean[][] configuration = new boolean[30][70];
+        for (int row = 0; row < configuration.length; row++) {
+            for (int column = 0; column < configuration[row].length;
+                column++) {
+                configuration[row][column] = (row + column) % 11 != 0;
+            }
+        }
+        Venue venue = new Venue(
+            VenueLayout.fromConfiguration(configuration).withSectionsOf(7));
+        venue.setSeatHoldExpiration(1, TimeUnit.HOURS);
+        venue.setSeatingPreference(SeatingPreference.CLOSEST_TOGETHER);
+        SeatHold<Integer> held = venue.findAndHoldSeats(40, "a@example.com");
+        SeatHold<Integer> reserved = venue.findAndHoldSeats(25,
+            "b@example.com", SeatingPreference.CLOSEST_TO_CENTER);
+        assertNotNull(venue.reserveSeats(reserved.getId(), "b@example.com"));
+
+        Path file = Files.createTempFile("venue", ".snapshot");
+        try {
+            venue.snapshot().write(file);
+            VenueSnapshot snapshot = VenueSnapshot.read(file);
+            assertEquals(venue.numSeatsAvailable(),
+                snapshot.getNumSeatsAvailable());
+
+            Venue restored = new Venue(snapshot);
+            assertEquals(venue.numSeatsAvailable(),
+                restored.numSeatsAvailable());
+            for (int row = 0; row < configuration.length; row++) {
+                assertEquals(venue.numSeatsAvailableInRow(row),
+                    restored.numSeatsAvailableInRow(row));
+            }
+            assertEquals(SeatingPreference.CLOSEST_TOGETHER,
+                restored.getSeatingPreference());
+            assertEquals(TimeUnit.HOURS.toNanos(1),
+                restored.getSeatHoldExpiration(TimeUnit.NANOSECONDS));
+
+            assertNull(restored.reserveSeats(reserved.getId(),
+                "b@example.com"));
+            assertNotNull(restored.reserveSeats(held.getId(),
+                "a@example.com"));
+            SeatHold<Integer> next = restored.findAndHoldSeats(1,
+                "c@example.com");
+            assertTrue(next.getId() > reserved.getId());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testJournalIsReplayedAfterTheSnapshot() throws IOException {
+        Path journalFile = Files.createTempFile("holds", ".journal");
+        try {
+            VenueSnapshot snapshot;
+            try (HoldJournal journal = HoldJournal.open(journalFile,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(VenueLayout.square(10), journal)) {
+                venue.setSeatHoldExpiration(1, TimeUnit.HOURS);
+                SeatHold<Integer> held = venue.findAndHoldSeats(5,
+                    "a@example.com");
+                snapshot = venue.snapshot();
+                // Only in the journal
+                assertNotNull(venue.reserveSeats(held.getId(),
+                    "a@example.com"));
+                venue.findAndHoldSeats(3, "b@example.com");
+            }
+
+            try (HoldJournal journal = HoldJournal.open(journalFile,
+                     HoldJournal.Durability.FSYNC_PER_BATCH);
+                 Venue venue = new Venue(snapshot, journal)) {
+                assertEquals(92, venue.numSeatsAvailable());
+                assertNull(venue.reserveSeats(0, "a@example.com"));
+                assertNotNull(venue.reserveSeats(1, "b@example.com"));
+            }
+        } finally {
+            Files.delete(journalFile);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedSnapshotIsRejected() throws IOException {
+        Path file = Files.createTempFile("venue", ".snapshot");
+        try {
+            Files.write(file, new byte[]{0x56, 0x53, 0x4E, 0x50, 0, 0, 0, 1,
+                0x7f});
+            VenueSnapshot.read(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Reads a snapshot with the given body, expecting it to be rejected.
+     *
+     * @param body The ints after the snapshot's header
+     * @return The error the snapshot was rejected with
+     */
+    private static IOException assertRejected(int... body)
+        throws IOException {
+        Path file = Files.createTempFile("venue", ".snapshot");
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((body.length + 2)
+                * Integer.BYTES);
+            buffer.putInt(0x56534E50).putInt(1);
+            buffer.asIntBuffer().put(body);
+            Files.write(file, buffer.array());
+            VenueSnapshot.read(file);
+            fail("Expected the snapshot to be rejected");
+            return null;
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Malformed snapshot"));
+            return e;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCorruptCountsAreRejected() throws IOException {
+        // Counts larger than the snapshot, for the rows, sections and seats
+        assertRejected(Integer.MAX_VALUE);
+        assertRejected(2, 0, 10, Integer.MAX_VALUE);
+        assertRejected(2, 0, 10, 2, 0, 1, Integer.MAX_VALUE);
+        // Rows that don't start at the first seat
+        assertEquals("Malformed layout",
+            assertRejected(2, 5, 10, 2, 0, 1, 1, 0, 0).getCause()
+                .getMessage());
+    }
+}
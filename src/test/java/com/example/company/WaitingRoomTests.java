@@ -0,0 +1,183 @@
+package com.example.company;
+
+import com.example.company.struct.SeatHold;
+import com.example.company.struct.TicketService;
+
+import org.junit.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class WaitingRoomTests {
+
+    private static final int N_THREADS = 8;
+
+    /**
+     * A venue whose holds take a while, and which records how many of them
+     * ran at once.
+     */
+    private static final class SlowVenue implements TicketService {
+
+        private final Venue venue = new Venue(10);
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+
+        @Override
+        public int numSeatsAvailable() {
+            return venue.numSeatsAvailable();
+        }
+
+        @Override
+        public SeatHold<Integer> findAndHoldSeats(final int numSeats,
+            final String customerEmail) {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            active.decrementAndGet();
+            return venue.findAndHoldSeats(numSeats, customerEmail);
+        }
+
+        @Override
+        public String reserveSeats(final int seatHoldId,
+            final String customerEmail) {
+            return venue.reserveSeats(seatHoldId, customerEmail);
+        }
+    }
+
+    @Test
+    public void testActiveHoldsAreCapped() {
+        SlowVenue venue = new SlowVenue();
+        WaitingRoom room = new WaitingRoom(venue, 2, N_THREADS);
+        AtomicBoolean holdFailed = new AtomicBoolean(false);
+
+        Thread[] threads = new Thread[N_THREADS];
+        for (int i = 0; i < N_THREADS; i++) {
+            final int T_NUM = i;
+            threads[i] = new Thread(() -> {
+                if (room.findAndHoldSeats(10, T_NUM + "@email.com") == null) {
+                    holdFailed.set(true);
+                }
+            });
+            threads[i].start();
+        }
+
+        // Wait for all threads to finish
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                fail("Thread died");
+            }
+        }
+
+        assertFalse("Expected every hold to succeed", holdFailed.get());
+        assertTrue("Expected at most 2 holds to run at once",
+            venue.maxActive.get() <= 2);
+        assertEquals(100 - 10 * N_THREADS, room.numSeatsAvailable());
+        assertEquals(0, room.getQueueLength());
+        assertEquals(0, room.getActiveCount());
+    }
+
+    @Test
+    public void testCallersAreLetInInOrderAndRejectedWhenFull() {
+        WaitingRoom room = new WaitingRoom(new Venue(10), 1, 2);
+
+        WaitingRoom.Ticket first = room.enter();
+        WaitingRoom.Ticket second = room.enter();
+        WaitingRoom.Ticket third = room.enter();
+        try {
+            room.enter();
+            fail("Expected the full waiting room to reject the caller");
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, room.getRejectedCount());
+        }
+
+        assertTrue(first.isAdmitted());
+        assertEquals(0, first.getPosition());
+        assertEquals(1, second.getPosition());
+        assertEquals(2, third.getPosition());
+        assertEquals(2, room.getQueueLength());
+        assertEquals(1, room.getActiveCount());
+
+        // The next caller in line is let in once the first one is done
+        Thread waiter = new Thread(() ->
+            room.findAndHoldSeats(second, 5, "second@email.com"));
+        waiter.start();
+        Await.until("Expected the second caller to wait for its turn",
+            () -> waiter.getState() == Thread.State.WAITING);
+        assertFalse(second.isAdmitted());
+        assertNotNull(room.findAndHoldSeats(first, 5, "first@email.com"));
+        try {
+            waiter.join();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            fail("Thread died");
+        }
+        assertTrue(third.isAdmitted());
+        assertEquals(0, third.getEstimatedWait(TimeUnit.NANOSECONDS));
+        assertEquals(90, room.numSeatsAvailable());
+        room.leave(third);
+        assertEquals(0, room.getActiveCount());
+    }
+
+    @Test
+    public void testSoldOutHoldsFailWithoutWaiting() {
+        WaitingRoom room = new WaitingRoom(new Venue(2), 1, 1);
+        WaitingRoom.Ticket first = room.enter();
+        WaitingRoom.Ticket second = room.enter();
+
+        // The room is full, but the request can't succeed anyway
+        assertNull(room.findAndHoldSeats(5, "fake@email.com"));
+        assertEquals(0, room.getRejectedCount());
+        room.leave(first);
+        room.leave(second);
+        assertEquals(0, room.getQueueLength());
+    }
+
+    @Test(timeout = 60_000)
+    public void testEveryCallerIsWokenUpForItsTurn() {
+        // One caller at a time, and a queue of 2, so every slot of the queue
+        // is reused over and over by callers that arrive and leave at once.
+        // A caller that misses its wakeup never returns.
+        WaitingRoom room = new WaitingRoom(new Venue(1), 1, 2);
+        AtomicInteger finished = new AtomicInteger();
+
+        Thread[] threads = new Thread[N_THREADS];
+        for (int i = 0; i < N_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                for (int turn = 0; turn < 20_000; turn++) {
+                    WaitingRoom.Ticket ticket;
+                    try {
+                        ticket = room.enter();
+                    } catch (RejectedExecutionException e) {
+                        Thread.yield();
+                        continue;
+                    }
+                    room.await(ticket);
+                    room.leave(ticket);
+                    finished.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+
+        // Wait for all threads to finish
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                fail("Thread died");
+            }
+        }
+
+        assertTrue(finished.get() > 0);
+        assertEquals(0, room.getQueueLength());
+        assertEquals(0, room.getActiveCount());
+    }
+}